@@ -0,0 +1,139 @@
+package com.utp.timeline.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker sencillo para llamadas externas. Tras
+ * {@code failureThreshold} fallos seguidos se abre y rechaza las llamadas sin
+ * intentarlas durante {@code openDurationMs}; después deja pasar una llamada
+ * de prueba (semiabierto) que decide si vuelve a cerrarse.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final Predicate<Throwable> isFailure;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInProgress;
+
+    // Métricas
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param isFailure qué excepciones cuentan como fallo del servicio remoto
+     *                  (un 4xx por datos del cliente no debe abrir el circuito)
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMs, Predicate<Throwable> isFailure) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+        this.isFailure = isFailure;
+    }
+
+    /**
+     * Ejecuta la llamada si el circuito lo permite.
+     * @throws CircuitBreakerOpenException si el circuito está abierto
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!acquirePermission()) {
+            rejections.increment();
+            throw new CircuitBreakerOpenException("Servicio " + name + " no disponible temporalmente");
+        }
+        try {
+            T result = call.get();
+            onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            if (isFailure.test(e)) {
+                onFailure();
+            } else {
+                // El servicio respondió: no es un fallo de disponibilidad
+                onSuccess();
+            }
+            throw e;
+        } catch (Error e) {
+            // Fallo local (OOM, StackOverflow, assert): no dice nada del servicio,
+            // pero la llamada de prueba debe liberarse o el circuito queda semiabierto
+            releaseTrial();
+            throw e;
+        }
+    }
+
+    private synchronized boolean acquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInProgress = true;
+                return true;
+            case HALF_OPEN:
+            default:
+                // Solo una llamada de prueba a la vez
+                if (trialInProgress) {
+                    return false;
+                }
+                trialInProgress = true;
+                return true;
+        }
+    }
+
+    private synchronized void onSuccess() {
+        successes.increment();
+        consecutiveFailures = 0;
+        trialInProgress = false;
+        state = State.CLOSED;
+    }
+
+    private synchronized void releaseTrial() {
+        trialInProgress = false;
+    }
+
+    private synchronized void onFailure() {
+        failures.increment();
+        trialInProgress = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        // Un circuito abierto cuyo plazo venció se reporta como semiabierto
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("estado", getState().name());
+        stats.put("exitos", successes.sum());
+        stats.put("fallos", failures.sum());
+        stats.put("rechazadas", rejections.sum());
+        return stats;
+    }
+
+    public static class CircuitBreakerOpenException extends RuntimeException {
+        public CircuitBreakerOpenException(String message) {
+            super(message);
+        }
+    }
+}
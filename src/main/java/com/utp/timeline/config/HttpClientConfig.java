@@ -0,0 +1,96 @@
+package com.utp.timeline.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Cliente HTTP saliente (Google OAuth / JWKS): pool de conexiones con
+ * keep-alive, límites por host y timeouts acotados, para que una respuesta
+ * lenta de Google no retenga hilos de Tomcat indefinidamente.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${app.http-client.max-total:50}")
+    private int maxTotal;
+
+    @Value("${app.http-client.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${app.http-client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${app.http-client.read-timeout-ms:5000}")
+    private long readTimeoutMs;
+
+    // Espera máxima por una conexión libre del pool
+    @Value("${app.http-client.pool-timeout-ms:1000}")
+    private long poolTimeoutMs;
+
+    @Value("${app.http-client.idle-evict-ms:30000}")
+    private long idleEvictMs;
+
+    @Value("${app.google.circuit-breaker.failure-threshold:5}")
+    private int googleFailureThreshold;
+
+    @Value("${app.google.circuit-breaker.open-duration-ms:30000}")
+    private long googleOpenDurationMs;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictMs))
+                .build();
+    }
+
+    @Bean
+    public OutboundHttpMetrics outboundHttpMetrics(PoolingHttpClientConnectionManager httpConnectionManager) {
+        return new OutboundHttpMetrics(httpConnectionManager);
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient httpClient, OutboundHttpMetrics outboundHttpMetrics) {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        restTemplate.getInterceptors().add(outboundHttpMetrics);
+        return restTemplate;
+    }
+
+    // Solo los timeouts/errores de red y los 5xx cuentan como caída de Google
+    @Bean
+    public CircuitBreaker googleCircuitBreaker() {
+        return new CircuitBreaker("Google", googleFailureThreshold, googleOpenDurationMs,
+                e -> e instanceof ResourceAccessException || e instanceof HttpServerErrorException);
+    }
+}
@@ -0,0 +1,146 @@
+package com.utp.timeline.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estado de tokens en el heap del nodo. Es la opción por defecto y solo sirve
+ * cuando hay una única instancia de la aplicación.
+ */
+@Component
+@ConditionalOnProperty(name = "app.token-store.tipo", havingValue = "memoria", matchIfMissing = true)
+public class InMemoryTokenStateStore implements TokenStateStore {
+
+    private final RevokedTokenStore revokedTokens;
+
+    // familia -> refresh token vigente de esa sesión
+    private final Map<String, RefreshEntry> refreshTokens = new ConcurrentHashMap<>();
+
+    // username -> familias de refresh tokens abiertas
+    private final Map<String, Set<String>> userFamilies = new ConcurrentHashMap<>();
+
+    // id de usuario -> versión de seguridad incrementada
+    private final Map<Long, VersionEntry> securityVersions = new ConcurrentHashMap<>();
+
+    public InMemoryTokenStateStore(@Value("${jwt.revocation.bloom-bits:1048576}") int bloomBits) {
+        this.revokedTokens = new RevokedTokenStore(bloomBits);
+    }
+
+    @Override
+    public void revoke(String jti, long expiresAtMillis) {
+        revokedTokens.revoke(jti, expiresAtMillis);
+    }
+
+    @Override
+    public boolean isRevoked(String jti) {
+        return revokedTokens.isRevoked(jti);
+    }
+
+    @Override
+    public void saveRefreshToken(String username, String family, String jti, long expiresAtMillis) {
+        refreshTokens.put(family, new RefreshEntry(jti, expiresAtMillis));
+        userFamilies.compute(username, (u, families) -> {
+            Set<String> actual = families != null ? families : ConcurrentHashMap.newKeySet();
+            actual.add(family);
+            return actual;
+        });
+    }
+
+    @Override
+    public boolean isRefreshTokenValid(String family, String jti) {
+        RefreshEntry entry = refreshTokens.get(family);
+        return entry != null && entry.jti.equals(jti) && entry.expiresAtMillis > System.currentTimeMillis();
+    }
+
+    @Override
+    public boolean consumeRefreshToken(String family, String jti) {
+        RefreshEntry entry = refreshTokens.get(family);
+        return entry != null && entry.jti.equals(jti)
+                && entry.expiresAtMillis > System.currentTimeMillis()
+                && refreshTokens.remove(family, entry);
+    }
+
+    @Override
+    public void removeRefreshFamily(String username, String family) {
+        refreshTokens.remove(family);
+        Set<String> families = userFamilies.get(username);
+        if (families != null) {
+            families.remove(family);
+        }
+    }
+
+    @Override
+    public void removeRefreshTokens(String username) {
+        Set<String> families = userFamilies.remove(username);
+        if (families != null) {
+            families.forEach(refreshTokens::remove);
+        }
+    }
+
+    @Override
+    public void registerSecurityVersion(Long userId, int version, long expiresAtMillis) {
+        securityVersions.merge(userId, new VersionEntry(version, expiresAtMillis),
+                (actual, nueva) -> nueva.version >= actual.version ? nueva : actual);
+    }
+
+    @Override
+    public int getSecurityVersion(Long userId) {
+        VersionEntry entry = securityVersions.get(userId);
+        return entry != null && entry.expiresAtMillis > System.currentTimeMillis() ? entry.version : 0;
+    }
+
+    /**
+     * Descarta revocaciones, refresh tokens y versiones de seguridad expirados.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms:30000}")
+    public void purgeExpired() {
+        revokedTokens.purgeExpired();
+        long now = System.currentTimeMillis();
+        refreshTokens.values().removeIf(entry -> entry.expiresAtMillis <= now);
+        // Familias consumidas o expiradas: solo se conservan las que siguen vigentes
+        for (String username : userFamilies.keySet()) {
+            userFamilies.computeIfPresent(username, (u, families) -> {
+                families.removeIf(family -> !refreshTokens.containsKey(family));
+                return families.isEmpty() ? null : families;
+            });
+        }
+        securityVersions.values().removeIf(entry -> entry.expiresAtMillis <= now);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tipo", "memoria");
+        stats.put("revocados", revokedTokens.size());
+        stats.put("refreshTokens", refreshTokens.size());
+        stats.put("versionesSeguridad", securityVersions.size());
+        return stats;
+    }
+
+    static final class VersionEntry {
+        final int version;
+        final long expiresAtMillis;
+
+        VersionEntry(int version, long expiresAtMillis) {
+            this.version = version;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private static final class RefreshEntry {
+        final String jti;
+        final long expiresAtMillis;
+
+        RefreshEntry(String jti, long expiresAtMillis) {
+            this.jti = jti;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -2,18 +2,19 @@ package com.utp.timeline.config;
 
 
 import java.io.IOException;
+import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.utp.timeline.entity.Usuario;
-import com.utp.timeline.repository.UsuarioRepository;
 import com.utp.timeline.service.CustomUserDetailsService;
+import com.utp.timeline.service.PrincipalCacheService;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -27,14 +28,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtService jwtService;
 
     @Autowired
-    private CustomUserDetailsService userDetailsService;
+    private VerifiedTokenCache verifiedTokenCache;
 
     @Autowired
-    private UsuarioRepository usuarioRepository;
+    private PrincipalCacheService principalCacheService;
+
+    @Autowired
+    private SecurityVersionRegistry securityVersionRegistry;
+
+    @Autowired
+    private RouteAuthorizationTable routeAuthorizationTable;
 
     private static final String AUTH_HEADER = "Authorization";
     private static final String BEARER_PREFIX = "Bearer ";
 
+    // Atributo de request con el token ya verificado (para código posterior al filtro)
+    public static final String VERIFIED_TOKEN_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".VERIFIED_TOKEN";
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -44,25 +54,59 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = extractJwtFromRequest(request);
 
-            if (jwt != null && jwtService.validateToken(jwt)) {
-                String username = jwtService.extractUsername(jwt);
+            if (jwt != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Si el token ya fue verificado antes, se evita volver a comprobar la firma
+                VerifiedToken token = verifiedTokenCache.get(jwt);
+                if (token != null && jwtService.isRevoked(token)) {
+                    verifiedTokenCache.invalidate(jwt);
+                    token = null;
+                } else if (token == null) {
+                    // El token se verifica una sola vez; el resto lee los claims desde VerifiedToken
+                    token = jwtService.verifyAccessToken(jwt).orElse(null);
+                    if (token != null) {
+                        verifiedTokenCache.put(jwt, token);
+                    }
+                }
 
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    Usuario usuario = usuarioRepository.findByEmail(username)
-                            .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                if (token != null && token.getUsername() != null) {
+                    Usuario usuario;
+                    List<GrantedAuthority> authorities;
+
+                    if (jwtService.isStatelessEnabled() && token.hasPrincipalClaims()
+                            && securityVersionRegistry.isCurrent(token.getUserId(), token.getSecurityVersion())) {
+                        // Modo stateless: el principal sale de los claims, sin consultar la BD
+                        usuario = token.toUsuario();
+                        authorities = CustomUserDetailsService.construirAuthorities(usuario);
+                    } else {
+                        // Usuario + authorities desde la caché de principales (una consulta como máximo)
+                        PrincipalCacheService.PrincipalUsuario principal = principalCacheService
+                                .obtener(token.getUsername())
+                                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+                        usuario = principal.getUsuario();
+                        authorities = principal.getAuthorities();
+
+                        // La versión de seguridad cambió (plan, rol o cierre de sesión forzado):
+                        // los claims del token ya no son válidos y hay que renovarlo
+                        if (token.hasPrincipalClaims()) {
+                            int versionActual = usuario.getVersionSeguridad() != null ? usuario.getVersionSeguridad() : 0;
+                            if (!token.getUserId().equals(usuario.getId())
+                                    || token.getSecurityVersion() < versionActual) {
+                                securityVersionRegistry.register(token.getUserId(), versionActual);
+                                throw new RuntimeException("Token con versión de seguridad obsoleta");
+                            }
+                        }
+                    }
 
-                    if (jwtService.validateToken(jwt, userDetails)) {
-                        UsernamePasswordAuthenticationToken authToken =
-                                new UsernamePasswordAuthenticationToken(
-                                        usuario,
-                                        null,
-                                        userDetails.getAuthorities()
-                                );
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(
+                                    usuario,
+                                    null,
+                                    authorities
+                            );
 
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                    }
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                    request.setAttribute(VERIFIED_TOKEN_ATTRIBUTE, token);
                 }
             }
         } catch (Exception e) {
@@ -91,14 +135,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     // Excluir endpoints públicos del filtro JWT
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
-        String path = request.getServletPath();
-
-        // Endpoints públicos que no requieren autenticación
-        return path.startsWith("/api/auth/") ||
-                path.startsWith("/public/") ||
-                path.startsWith("/api/publico/public/") ||
-                path.startsWith("/api/publico/info/") ||
-                path.startsWith("/api/publico/validar/") ||
-                path.equals("/error");
+        // Endpoints públicos que no requieren autenticación (ver RouteAuthorizationTable)
+        return routeAuthorizationTable.shouldSkipJwt(request);
     }
 }
\ No newline at end of file
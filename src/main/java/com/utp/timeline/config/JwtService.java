@@ -5,19 +5,24 @@ import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import javax.crypto.SecretKey;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import com.utp.timeline.entity.Usuario;
+
+import jakarta.annotation.PostConstruct;
+
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -34,14 +39,32 @@ public class JwtService {
     @Value("${jwt.refresh.expiration}")
     private Long refreshExpiration;
 
-   // Almacenar tokens revocados (en producción usa Redis)
-    private final Set<String> revokedTokens = ConcurrentHashMap.newKeySet();
-    
-    // Almacenar refresh tokens válidos
-    private final Map<String, String> validRefreshTokens = new ConcurrentHashMap<>();
+    // Modo stateless: el access token lleva id, rol, plan y versión de seguridad
+    @Value("${jwt.stateless.enabled:false}")
+    private boolean statelessEnabled;
+
+    // Revocaciones y refresh tokens vigentes (memoria o Redis)
+    @Autowired
+    private TokenStateStore tokenStateStore;
+
+    // Tokens ya verificados por el filtro; se invalidan al revocar
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    // Clave y parser se construyen una sola vez (son inmutables y thread-safe)
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        this.signingKey = buildSigningKey();
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
 
     // Generar clave secreta SEGURA
-    private SecretKey getSigningKey() {
+    private SecretKey buildSigningKey() {
         // IMPORTANTE: jwt.secret debe tener al menos 256 bits (32 bytes)
         byte[] keyBytes = jwtSecret.getBytes();
         if (keyBytes.length < 32) {
@@ -52,19 +75,65 @@ public class JwtService {
         return Keys.hmacShaKeyFor(keyBytes);
     }
 
+    private SecretKey getSigningKey() {
+        return signingKey;
+    }
+
+    // Parsear y verificar el token UNA sola vez (firma + expiración)
+    public VerifiedToken parseToken(String token) {
+        Claims claims = extractAllClaims(token);
+        String rol = claims.get("rol", String.class);
+        String plan = claims.get("plan", String.class);
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("type", String.class),
+                claims.getId(),
+                claims.getIssuedAt(),
+                claims.getExpiration(),
+                claims.get("fam", String.class),
+                claims.get("uid", Long.class),
+                claims.get("nombre", String.class),
+                rol != null ? Usuario.Rol.valueOf(rol) : null,
+                plan != null ? Usuario.Plan.valueOf(plan) : null,
+                claims.get("sv", Integer.class)
+        );
+    }
+
+    public boolean isStatelessEnabled() {
+        return statelessEnabled;
+    }
+
+    // Verificar token: firma, expiración y revocación. Vacío si no es válido
+    public Optional<VerifiedToken> verifyToken(String token) {
+        try {
+            VerifiedToken verified = parseToken(token);
+            if (isRevoked(verified)) {
+                return Optional.empty();
+            }
+            return Optional.of(verified);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    // Verificar que además sea un access token
+    public Optional<VerifiedToken> verifyAccessToken(String token) {
+        return verifyToken(token).filter(VerifiedToken::isAccessToken);
+    }
+
     // Extraer username del token
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return parseToken(token).getUsername();
     }
 
     // Extraer fecha de expiración
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return new Date(parseToken(token).getExpiresAtMillis());
     }
 
     // Extraer tipo de token
     public String extractTokenType(String token) {
-        return extractClaim(token, claims -> claims.get("type", String.class));
+        return parseToken(token).getType();
     }
 
     // Extraer claim específico
@@ -75,21 +144,23 @@ public class JwtService {
 
     // Extraer todos los claims
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
+        return jwtParser
                 .parseClaimsJws(token)
                 .getBody();
     }
 
-    // Verificar si el token ha expirado
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
     // Verificar si el token está revocado
     public Boolean isTokenRevoked(String token) {
-        return revokedTokens.contains(token);
+        try {
+            return isRevoked(parseToken(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Verificar si un token ya verificado está revocado (sin volver a parsear)
+    public boolean isRevoked(VerifiedToken verified) {
+        return tokenStateStore.isRevoked(verified.getJti());
     }
 
     // Generar Access Token
@@ -99,17 +170,45 @@ public class JwtService {
         return createToken(claims, userDetails.getUsername(), jwtExpiration);
     }
 
+    // Generar Access Token a partir del usuario; en modo stateless incluye
+    // los claims necesarios para autenticar sin consultar la BD
+    public String generateAccessToken(Usuario usuario) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("type", "access");
+        if (statelessEnabled) {
+            claims.put("uid", usuario.getId());
+            claims.put("nombre", usuario.getNombre());
+            claims.put("rol", usuario.getRol().name());
+            claims.put("plan", usuario.getPlan().name());
+            claims.put("sv", usuario.getVersionSeguridad() != null ? usuario.getVersionSeguridad() : 0);
+        }
+        return createToken(claims, usuario.getEmail(), jwtExpiration);
+    }
+
     // Generar Refresh Token
     public String generateRefreshToken(UserDetails userDetails) {
+        return generateRefreshToken(userDetails.getUsername());
+    }
+
+    // Generar Refresh Token de una nueva sesión (nueva familia)
+    public String generateRefreshToken(String username) {
+        return generateRefreshToken(username, generateTokenId());
+    }
+
+    // Generar Refresh Token dentro de una familia; reemplaza al jti vigente
+    // de esa familia sin tocar las sesiones de otros dispositivos
+    public String generateRefreshToken(String username, String family) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("type", "refresh");
-        claims.put("jti", generateTokenId()); // Token ID único
-        
-        String refreshToken = createToken(claims, userDetails.getUsername(), refreshExpiration);
-        
+        claims.put("fam", family);
+        String tokenId = generateTokenId(); // Token ID único
+
+        long now = System.currentTimeMillis();
+        String refreshToken = createToken(claims, username, now, refreshExpiration, tokenId);
+
         // Guardar refresh token como válido
-        validRefreshTokens.put(userDetails.getUsername(), refreshToken);
-        
+        tokenStateStore.saveRefreshToken(username, family, tokenId, now + refreshExpiration);
+
         return refreshToken;
     }
 
@@ -121,51 +220,97 @@ public class JwtService {
         return tokens;
     }
 
+    // Generar par de tokens a partir del usuario (claims stateless si están activos)
+    public Map<String, String> generateTokenPair(Usuario usuario) {
+        return generateTokenPair(usuario, generateTokenId());
+    }
+
+    // Generar par de tokens rotando el refresh token dentro de su familia
+    public Map<String, String> generateTokenPair(Usuario usuario, String family) {
+        Map<String, String> tokens = new HashMap<>();
+        tokens.put("accessToken", generateAccessToken(usuario));
+        tokens.put("refreshToken", generateRefreshToken(usuario.getEmail(), family));
+        return tokens;
+    }
+
+    // Consumir un refresh token para rotarlo: solo una HMAC, sin BCrypt.
+    // Si se presenta un refresh token de la familia que ya no es el vigente
+    // (ya rotado), se asume robo y se invalida solo esa familia; las sesiones
+    // de otros dispositivos del usuario no se tocan
+    public Optional<VerifiedToken> consumeRefreshToken(String refreshToken) {
+        VerifiedToken token;
+        try {
+            // Sin comprobar la revocación: un refresh token rotado está revocado
+            // y presentarlo de nuevo es justo la reutilización a detectar
+            token = parseToken(refreshToken);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (!token.isRefreshToken()) {
+            return Optional.empty();
+        }
+
+        String family = familyOf(token);
+        if (!tokenStateStore.consumeRefreshToken(family, token.getJti())) {
+            tokenStateStore.removeRefreshFamily(token.getUsername(), family);
+            return Optional.empty();
+        }
+        tokenStateStore.revoke(token.getJti(), token.getExpiresAtMillis());
+        return Optional.of(token);
+    }
+
+    // Familia del refresh token. Los emitidos antes de las familias no llevan el
+    // claim y se guardaban con un único jti por usuario, bajo su username
+    public String familyOf(VerifiedToken refreshToken) {
+        return refreshToken.getFamily() != null ? refreshToken.getFamily() : refreshToken.getUsername();
+    }
+
+    // Cerrar la sesión de un refresh token (solo su familia)
+    public void revokeRefreshFamily(String refreshToken) {
+        try {
+            VerifiedToken verified = parseToken(refreshToken);
+            if (verified.isRefreshToken()) {
+                tokenStateStore.removeRefreshFamily(verified.getUsername(), familyOf(verified));
+                tokenStateStore.revoke(verified.getJti(), verified.getExpiresAtMillis());
+            }
+        } catch (JwtException | IllegalArgumentException e) {
+            // Token inválido o ya expirado: no hay sesión que cerrar
+        }
+    }
+
     // Crear token JWT
     private String createToken(Map<String, Object> claims, String subject, Long expiration) {
-        Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + expiration);
-        
+        return createToken(claims, subject, System.currentTimeMillis(), expiration, UUID.randomUUID().toString());
+    }
+
+    private String createToken(Map<String, Object> claims, String subject, long issuedAtMillis,
+                               Long expiration, String tokenId) {
+        Date now = new Date(issuedAtMillis);
+        Date expiryDate = new Date(issuedAtMillis + expiration);
+
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .setId(UUID.randomUUID().toString()) // JTI para tracking
+                .setId(tokenId) // JTI para tracking
                 .signWith(getSigningKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
 
     // Validar Access Token
     public Boolean validateAccessToken(String token, UserDetails userDetails) {
-        try {
-            final String username = extractUsername(token);
-            final String tokenType = extractTokenType(token);
-            
-            return username.equals(userDetails.getUsername()) 
-                && !isTokenExpired(token)
-                && !isTokenRevoked(token)
-                && "access".equals(tokenType);
-        } catch (JwtException e) {
-            return false;
-        }
+        return verifyAccessToken(token)
+                .map(verified -> verified.getUsername().equals(userDetails.getUsername()))
+                .orElse(false);
     }
 
     // Validar Refresh Token
     public Boolean validateRefreshToken(String token) {
-        try {
-            String username = extractUsername(token);
-            String tokenType = extractTokenType(token);
-            
-            String storedToken = validRefreshTokens.get(username);
-            
-            return "refresh".equals(tokenType)
-                && !isTokenExpired(token)
-                && !isTokenRevoked(token)
-                && token.equals(storedToken);
-        } catch (JwtException e) {
-            return false;
-        }
+        return verifyToken(token)
+                .filter(VerifiedToken::isRefreshToken)
+                .map(verified -> tokenStateStore.isRefreshTokenValid(familyOf(verified), verified.getJti()))
+                .orElse(false);
     }
 
     // Validar token (genérico)
@@ -175,15 +320,7 @@ public class JwtService {
 
     // Validar token sin UserDetails
     public Boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return !isTokenExpired(token) && !isTokenRevoked(token);
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return verifyToken(token).isPresent();
     }
 
     // Refrescar Access Token usando Refresh Token
@@ -196,36 +333,26 @@ public class JwtService {
         return generateAccessToken(userDetails);
     }
 
-    // Revocar token (logout)
+    // Revocar token (logout). Se parsea una sola vez para obtener jti y expiración
     public void revokeToken(String token) {
-        revokedTokens.add(token);
-        
-        // Limpiar tokens expirados periódicamente
-        cleanupExpiredTokens();
+        verifiedTokenCache.invalidate(token);
+        try {
+            VerifiedToken verified = parseToken(token);
+            tokenStateStore.revoke(verified.getJti(), verified.getExpiresAtMillis());
+        } catch (JwtException | IllegalArgumentException e) {
+            // Token inválido o ya expirado: no hace falta revocarlo
+        }
     }
 
-    // Revocar todos los tokens de un usuario
+    // Revocar todos los tokens de un usuario (todas sus sesiones)
     public void revokeAllUserTokens(String username) {
-        validRefreshTokens.remove(username);
-    }
-
-    // Limpiar tokens expirados del conjunto de revocados
-    private void cleanupExpiredTokens() {
-        revokedTokens.removeIf(token -> {
-            try {
-                return isTokenExpired(token);
-            } catch (Exception e) {
-                return true; // Remover tokens inválidos
-            }
-        });
+        tokenStateStore.removeRefreshTokens(username);
     }
 
     // Obtener tiempo restante hasta expiración
     public Long getRemainingTime(String token) {
         try {
-            Date expiration = extractExpiration(token);
-            long remaining = expiration.getTime() - System.currentTimeMillis();
-            return remaining > 0 ? remaining : 0L;
+            return parseToken(token).getRemainingTime(System.currentTimeMillis());
         } catch (Exception e) {
             return 0L;
         }
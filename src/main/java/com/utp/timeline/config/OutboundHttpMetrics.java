@@ -0,0 +1,85 @@
+package com.utp.timeline.config;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Métricas de las llamadas HTTP salientes: latencia y errores por host,
+ * y estado del pool de conexiones.
+ */
+public class OutboundHttpMetrics implements ClientHttpRequestInterceptor {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    // host -> métricas
+    private final ConcurrentHashMap<String, HostMetrics> hosts = new ConcurrentHashMap<>();
+
+    public OutboundHttpMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        HostMetrics metrics = hosts.computeIfAbsent(String.valueOf(request.getURI().getHost()), h -> new HostMetrics());
+        long start = System.nanoTime();
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            if (response.getStatusCode().is5xxServerError()) {
+                metrics.errors.increment();
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            metrics.errors.increment();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            metrics.requests.increment();
+            metrics.totalNanos.add(elapsed);
+            metrics.maxNanos.accumulate(elapsed);
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        PoolStats pool = connectionManager.getTotalStats();
+        Map<String, Object> poolStats = new HashMap<>();
+        poolStats.put("enUso", pool.getLeased());
+        poolStats.put("disponibles", pool.getAvailable());
+        poolStats.put("enEspera", pool.getPending());
+        poolStats.put("maximo", pool.getMax());
+
+        Map<String, Object> hostStats = new HashMap<>();
+        hosts.forEach((host, metrics) -> {
+            long total = metrics.requests.sum();
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("peticiones", total);
+            stats.put("errores", metrics.errors.sum());
+            stats.put("latenciaMediaMs", total > 0 ? metrics.totalNanos.sum() / total / 1_000_000.0 : 0.0);
+            stats.put("latenciaMaximaMs", metrics.maxNanos.get() / 1_000_000.0);
+            hostStats.put(host, stats);
+        });
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pool", poolStats);
+        stats.put("hosts", hostStats);
+        return stats;
+    }
+
+    private static final class HostMetrics {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0L);
+    }
+}
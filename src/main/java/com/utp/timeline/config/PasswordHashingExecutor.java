@@ -0,0 +1,130 @@
+package com.utp.timeline.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pool acotado para el trabajo con BCrypt (login y registro). Los hilos de
+ * Tomcat solo encolan la tarea y quedan libres; si la cola está llena la
+ * tarea se rechaza al momento con {@link RejectedExecutionException}, que se
+ * responde como 503.
+ *
+ * Lo que sigue al hash (consultas, emisión de tokens) no debe ocupar estos
+ * hilos: se encadena con {@code thenApplyAsync(..., getContinuationExecutor())}.
+ */
+@Component
+public class PasswordHashingExecutor {
+
+    @Value("${app.password-hashing.threads:0}")
+    private int threads;
+
+    @Value("${app.password-hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    // Ejecutor de tareas de Spring (el mismo de las peticiones asíncronas de MVC)
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private Executor continuationExecutor;
+
+    // Métricas
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder totalQueueWaitNanos = new LongAdder();
+    private final LongAdder totalExecutionNanos = new LongAdder();
+    private final LongAccumulator maxExecutionNanos = new LongAccumulator(Long::max, 0L);
+
+    @PostConstruct
+    void init() {
+        // Por defecto, un hilo por núcleo: BCrypt es puramente CPU
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Ejecuta la tarea en el pool. Lanza {@link RejectedExecutionException}
+     * de forma síncrona si la cola está llena.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                totalQueueWaitNanos.add(startedAt - enqueuedAt);
+                try {
+                    future.complete(task.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    long elapsed = System.nanoTime() - startedAt;
+                    totalExecutionNanos.add(elapsed);
+                    maxExecutionNanos.accumulate(elapsed);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+        submitted.increment();
+        return future;
+    }
+
+    /**
+     * Ejecutor para continuar tras el hash, fuera del pool de BCrypt.
+     */
+    public Executor getContinuationExecutor() {
+        return continuationExecutor;
+    }
+
+    // Métricas del pool (profundidad de cola, latencia de hash...)
+    public Map<String, Object> getStatistics() {
+        long totalCompleted = completed.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hilos", executor.getPoolSize());
+        stats.put("activos", executor.getActiveCount());
+        stats.put("enCola", executor.getQueue().size());
+        stats.put("capacidadCola", queueCapacity);
+        stats.put("enviadas", submitted.sum());
+        stats.put("rechazadas", rejected.sum());
+        stats.put("completadas", totalCompleted);
+        stats.put("esperaMediaMs", totalCompleted > 0 ? totalQueueWaitNanos.sum() / totalCompleted / 1_000_000.0 : 0.0);
+        stats.put("latenciaMediaMs", totalCompleted > 0 ? totalExecutionNanos.sum() / totalCompleted / 1_000_000.0 : 0.0);
+        stats.put("latenciaMaximaMs", maxExecutionNanos.get() / 1_000_000.0);
+        return stats;
+    }
+}
@@ -0,0 +1,329 @@
+package com.utp.timeline.config;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Estado de tokens compartido en Redis para despliegues con varios nodos.
+ * Las revocaciones se guardan con TTL hasta la expiración del token y se
+ * publican por pub/sub. Cada nodo mantiene un near-cache: las revocaciones
+ * conocidas (válidas hasta su exp) y, durante un TTL corto, los jtis que Redis
+ * confirmó como no revocados. El mensaje pub/sub corrige al instante esa
+ * caché negativa en el resto de nodos.
+ *
+ * Las versiones de seguridad (cambio de rol o plan, cierre de sesión forzado)
+ * siguen el mismo esquema: clave en Redis con TTL, mensaje pub/sub y
+ * near-cache con caché negativa corta, para que ningún nodo siga aceptando los
+ * claims stateless anteriores.
+ */
+@Component
+@ConditionalOnProperty(name = "app.token-store.tipo", havingValue = "redis")
+public class RedisTokenStateStore implements TokenStateStore, MessageListener {
+
+    static final String REVOKED_PREFIX = "jwt:revocado:";
+    static final String REFRESH_PREFIX = "jwt:refresh:";
+    static final String REFRESH_FAMILIES_PREFIX = "jwt:refresh-familias:";
+    static final String REVOCATION_CHANNEL = "jwt:revocaciones";
+    static final String VERSION_PREFIX = "jwt:version:";
+    static final String VERSION_CHANNEL = "jwt:versiones";
+
+    // Borra el refresh token solo si sigue siendo el jti indicado
+    private static final RedisScript<Long> CONSUME_REFRESH_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    // Guarda el jti de la familia y la apunta en el conjunto de familias del
+    // usuario, que vive tanto como el último refresh token emitido
+    private static final RedisScript<Long> SAVE_REFRESH_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[3]) "
+                    + "redis.call('SADD', KEYS[2], ARGV[2]) "
+                    + "redis.call('PEXPIRE', KEYS[2], ARGV[3]) return 1",
+            Long.class);
+
+    // Borra todas las familias del usuario y el conjunto que las indexa. KEYS[2]
+    // es la clave de un solo refresh token por usuario, anterior a las familias
+    private static final RedisScript<Long> REMOVE_FAMILIES_SCRIPT = new DefaultRedisScript<>(
+            "local familias = redis.call('SMEMBERS', KEYS[1]) "
+                    + "for i = 1, #familias do redis.call('DEL', ARGV[1] .. familias[i]) end "
+                    + "return redis.call('DEL', KEYS[1], KEYS[2])",
+            Long.class);
+
+    // Guarda la versión solo si es mayor que la actual (nunca retrocede)
+    private static final RedisScript<Long> MAX_VERSION_SCRIPT = new DefaultRedisScript<>(
+            "local actual = tonumber(redis.call('GET', KEYS[1]) or '-1') "
+                    + "if tonumber(ARGV[1]) > actual then redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) return 1 end "
+                    + "return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisConnectionFactory connectionFactory;
+    private final long negativeTtlMs;
+    private final int maxNegativeEntries;
+
+    // Near-cache de revocaciones conocidas
+    private final RevokedTokenStore nearCache;
+
+    // jti -> instante hasta el que se considera no revocado sin consultar Redis
+    private final ConcurrentHashMap<String, Long> negativeCache = new ConcurrentHashMap<>();
+
+    // id de usuario -> versión de seguridad conocida (o 0) y hasta cuándo vale sin consultar Redis
+    private final ConcurrentHashMap<Long, InMemoryTokenStateStore.VersionEntry> versionCache = new ConcurrentHashMap<>();
+
+    private RedisMessageListenerContainer listenerContainer;
+
+    // Métricas
+    private final LongAdder nearCacheHits = new LongAdder();
+    private final LongAdder redisLookups = new LongAdder();
+    private final LongAdder revocationsReceived = new LongAdder();
+    private final LongAdder versionsReceived = new LongAdder();
+
+    @Autowired
+    public RedisTokenStateStore(StringRedisTemplate redisTemplate,
+                                RedisConnectionFactory connectionFactory,
+                                @Value("${app.token-store.redis.negative-ttl-ms:1000}") long negativeTtlMs,
+                                @Value("${app.token-store.redis.max-negative-entries:100000}") int maxNegativeEntries,
+                                @Value("${jwt.revocation.bloom-bits:1048576}") int bloomBits) {
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = connectionFactory;
+        this.negativeTtlMs = negativeTtlMs;
+        this.maxNegativeEntries = maxNegativeEntries;
+        this.nearCache = new RevokedTokenStore(bloomBits);
+    }
+
+    @PostConstruct
+    public void start() {
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener(this, new ChannelTopic(REVOCATION_CHANNEL));
+        listenerContainer.addMessageListener(this, new ChannelTopic(VERSION_CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    @Override
+    public void revoke(String jti, long expiresAtMillis) {
+        long ttl = expiresAtMillis - System.currentTimeMillis();
+        if (jti == null || ttl <= 0) {
+            return;
+        }
+        nearCache.revoke(jti, expiresAtMillis);
+        negativeCache.remove(jti);
+        redisTemplate.opsForValue().set(REVOKED_PREFIX + jti, Long.toString(expiresAtMillis), Duration.ofMillis(ttl));
+        redisTemplate.convertAndSend(REVOCATION_CHANNEL, jti + ":" + expiresAtMillis);
+    }
+
+    @Override
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        if (nearCache.isRevoked(jti)) {
+            nearCacheHits.increment();
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Long notRevokedUntil = negativeCache.get(jti);
+        if (notRevokedUntil != null && notRevokedUntil > now) {
+            nearCacheHits.increment();
+            return false;
+        }
+
+        redisLookups.increment();
+        String expiresAt = redisTemplate.opsForValue().get(REVOKED_PREFIX + jti);
+        if (expiresAt != null) {
+            nearCache.revoke(jti, Long.parseLong(expiresAt));
+            negativeCache.remove(jti);
+            return true;
+        }
+        rememberNotRevoked(jti, now);
+        return false;
+    }
+
+    @Override
+    public void saveRefreshToken(String username, String family, String jti, long expiresAtMillis) {
+        long ttl = expiresAtMillis - System.currentTimeMillis();
+        if (ttl <= 0) {
+            return;
+        }
+        redisTemplate.execute(SAVE_REFRESH_SCRIPT,
+                Arrays.asList(REFRESH_PREFIX + family, REFRESH_FAMILIES_PREFIX + username),
+                jti, family, Long.toString(ttl));
+    }
+
+    @Override
+    public boolean isRefreshTokenValid(String family, String jti) {
+        return jti != null && jti.equals(redisTemplate.opsForValue().get(REFRESH_PREFIX + family));
+    }
+
+    @Override
+    public boolean consumeRefreshToken(String family, String jti) {
+        if (jti == null) {
+            return false;
+        }
+        Long deleted = redisTemplate.execute(CONSUME_REFRESH_SCRIPT,
+                Collections.singletonList(REFRESH_PREFIX + family), jti);
+        return deleted != null && deleted > 0;
+    }
+
+    @Override
+    public void removeRefreshFamily(String username, String family) {
+        redisTemplate.delete(REFRESH_PREFIX + family);
+        redisTemplate.opsForSet().remove(REFRESH_FAMILIES_PREFIX + username, family);
+    }
+
+    @Override
+    public void removeRefreshTokens(String username) {
+        redisTemplate.execute(REMOVE_FAMILIES_SCRIPT,
+                Arrays.asList(REFRESH_FAMILIES_PREFIX + username, REFRESH_PREFIX + username),
+                REFRESH_PREFIX);
+    }
+
+    @Override
+    public void registerSecurityVersion(Long userId, int version, long expiresAtMillis) {
+        long ttl = expiresAtMillis - System.currentTimeMillis();
+        if (userId == null || ttl <= 0) {
+            return;
+        }
+        rememberVersion(userId, version, expiresAtMillis);
+        redisTemplate.execute(MAX_VERSION_SCRIPT, Collections.singletonList(VERSION_PREFIX + userId),
+                Integer.toString(version), Long.toString(ttl));
+        redisTemplate.convertAndSend(VERSION_CHANNEL, userId + ":" + version + ":" + expiresAtMillis);
+    }
+
+    @Override
+    public int getSecurityVersion(Long userId) {
+        long now = System.currentTimeMillis();
+        InMemoryTokenStateStore.VersionEntry cached = versionCache.get(userId);
+        if (cached != null && cached.expiresAtMillis > now) {
+            nearCacheHits.increment();
+            return cached.version;
+        }
+
+        redisLookups.increment();
+        String key = VERSION_PREFIX + userId;
+        String version = redisTemplate.opsForValue().get(key);
+        if (version == null) {
+            // Sin incremento reciente; se vuelve a mirar pasado el TTL negativo
+            rememberVersion(userId, 0, now + negativeTtlMs);
+            return 0;
+        }
+        Long ttl = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+        int actual = Integer.parseInt(version);
+        rememberVersion(userId, actual, now + (ttl != null && ttl > 0 ? ttl : negativeTtlMs));
+        return actual;
+    }
+
+    private void rememberVersion(Long userId, int version, long validUntilMillis) {
+        versionCache.merge(userId, new InMemoryTokenStateStore.VersionEntry(version, validUntilMillis),
+                (actual, nueva) -> nueva.version > actual.version
+                        || (nueva.version == actual.version && nueva.expiresAtMillis > actual.expiresAtMillis)
+                        || actual.expiresAtMillis <= System.currentTimeMillis() ? nueva : actual);
+    }
+
+    // Revocación o versión de seguridad publicada por otro nodo (o por este mismo)
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (VERSION_CHANNEL.equals(new String(message.getChannel(), StandardCharsets.UTF_8))) {
+            onVersionMessage(body);
+            return;
+        }
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0) {
+            return;
+        }
+        try {
+            String jti = body.substring(0, separator);
+            long expiresAt = Long.parseLong(body.substring(separator + 1));
+            nearCache.revoke(jti, expiresAt);
+            negativeCache.remove(jti);
+            revocationsReceived.increment();
+        } catch (NumberFormatException e) {
+            // Mensaje mal formado: se ignora
+        }
+    }
+
+    // "userId:version:expiresAt"
+    private void onVersionMessage(String body) {
+        String[] parts = body.split(":");
+        if (parts.length != 3) {
+            return;
+        }
+        try {
+            rememberVersion(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+            versionsReceived.increment();
+        } catch (NumberFormatException e) {
+            // Mensaje mal formado: se ignora
+        }
+    }
+
+    private void rememberNotRevoked(String jti, long now) {
+        if (negativeCache.size() >= maxNegativeEntries) {
+            purgeNegativeCache(now);
+            if (negativeCache.size() >= maxNegativeEntries) {
+                return;
+            }
+        }
+        negativeCache.put(jti, now + negativeTtlMs);
+    }
+
+    private void purgeNegativeCache(long now) {
+        negativeCache.values().removeIf(until -> until <= now);
+    }
+
+    /**
+     * Descarta las entradas expiradas del near-cache.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms:30000}")
+    public void purgeExpired() {
+        nearCache.purgeExpired();
+        long now = System.currentTimeMillis();
+        purgeNegativeCache(now);
+        versionCache.values().removeIf(entry -> entry.expiresAtMillis <= now);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tipo", "redis");
+        stats.put("nearCacheRevocados", nearCache.size());
+        stats.put("nearCacheNoRevocados", negativeCache.size());
+        stats.put("nearCacheHits", nearCacheHits.sum());
+        stats.put("consultasRedis", redisLookups.sum());
+        stats.put("revocacionesRecibidas", revocationsReceived.sum());
+        stats.put("versionesSeguridadEnCache", versionCache.size());
+        stats.put("versionesSeguridadRecibidas", versionsReceived.sum());
+        return stats;
+    }
+}
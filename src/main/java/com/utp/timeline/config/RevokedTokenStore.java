@@ -0,0 +1,157 @@
+package com.utp.timeline.config;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tokens revocados indexados por {@code jti}. Las entradas se guardan también
+ * ordenadas por expiración (en cubetas de un segundo), de modo que las ya
+ * expiradas se descartan desde la cabeza sin recorrer ni re-verificar el resto.
+ * Delante hay un filtro de Bloom: la comprobación de un token no revocado no
+ * reserva memoria y casi nunca toca el mapa.
+ * Lo usan los {@link TokenStateStore}: como almacén principal en memoria y
+ * como near-cache de revocaciones en la implementación Redis.
+ */
+public class RevokedTokenStore {
+
+    private static final int HASHES = 4;
+
+    // jti -> expiración (ms)
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    // segundo de expiración -> jtis que expiran en ese segundo
+    private final ConcurrentSkipListMap<Long, Set<String>> byExpiry = new ConcurrentSkipListMap<>();
+
+    private volatile AtomicLongArray bloom;
+    private final int bloomMask;
+
+    // Inserciones en el Bloom desde la última reconstrucción
+    private final AtomicInteger bloomInsertions = new AtomicInteger();
+
+    public RevokedTokenStore(int bloomBits) {
+        // Redondear a potencia de dos para indexar con máscara
+        int bits = Integer.highestOneBit(Math.max(bloomBits, 1024));
+        this.bloomMask = bits - 1;
+        this.bloom = new AtomicLongArray(bits >>> 6);
+    }
+
+    /**
+     * Marca el jti como revocado hasta su expiración.
+     */
+    public void revoke(String jti, long expiresAtMillis) {
+        long now = System.currentTimeMillis();
+        purgeExpired(now);
+        if (jti == null || expiresAtMillis <= now) {
+            return;
+        }
+        if (revoked.put(jti, expiresAtMillis) == null) {
+            byExpiry.computeIfAbsent(expiresAtMillis / 1000, k -> ConcurrentHashMap.newKeySet()).add(jti);
+            AtomicLongArray bits = bloom;
+            addToBloom(bits, jti);
+            if (bits != bloom) {
+                // Se reconstruyó el Bloom mientras tanto
+                addToBloom(bloom, jti);
+            }
+            bloomInsertions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Indica si el jti está revocado. Sin reservas de memoria cuando el filtro
+     * de Bloom descarta el jti (el caso habitual).
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !mightContain(bloom, jti)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Descarta los jtis ya expirados (coste proporcional a los descartados).
+     */
+    public void purgeExpired() {
+        purgeExpired(System.currentTimeMillis());
+    }
+
+    private void purgeExpired(long now) {
+        long currentSecond = now / 1000;
+        Map.Entry<Long, Set<String>> head;
+        while ((head = byExpiry.firstEntry()) != null && head.getKey() < currentSecond) {
+            if (byExpiry.remove(head.getKey(), head.getValue())) {
+                for (String jti : head.getValue()) {
+                    revoked.remove(jti);
+                }
+            }
+        }
+
+        // Con muchos jtis ya expirados el Bloom acumula falsos positivos: se reconstruye
+        if (bloomInsertions.get() > 2 * revoked.size() + 1024) {
+            rebuildBloom();
+        }
+    }
+
+    private synchronized void rebuildBloom() {
+        if (bloomInsertions.get() <= 2 * revoked.size() + 1024) {
+            return;
+        }
+        AtomicLongArray nuevo = new AtomicLongArray(bloom.length());
+        for (String jti : revoked.keySet()) {
+            addToBloom(nuevo, jti);
+        }
+        bloomInsertions.set(revoked.size());
+        bloom = nuevo;
+        // Un revoke concurrente pudo marcar solo el Bloom anterior
+        for (String jti : revoked.keySet()) {
+            addToBloom(nuevo, jti);
+        }
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    private void addToBloom(AtomicLongArray bits, String jti) {
+        int h1 = jti.hashCode();
+        int h2 = secondaryHash(jti);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & bloomMask;
+            int word = bit >>> 6;
+            long mask = 1L << (bit & 63);
+            long actual;
+            do {
+                actual = bits.get(word);
+                if ((actual & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, actual, actual | mask));
+        }
+    }
+
+    private boolean mightContain(AtomicLongArray bits, String jti) {
+        int h1 = jti.hashCode();
+        int h2 = secondaryHash(jti);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & bloomMask;
+            if ((bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a sobre los caracteres (impar para recorrer todas las posiciones)
+    private static int secondaryHash(String value) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x01000193;
+        }
+        return hash | 1;
+    }
+}
@@ -0,0 +1,175 @@
+package com.utp.timeline.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Tabla de autorización por ruta, compilada una vez al arrancar. La misma
+ * búsqueda decide si la petición se salta el filtro JWT y qué acceso exige;
+ * el resultado se guarda en la request para no repetirla en el
+ * {@code AuthorizationFilter}.
+ */
+@Component
+public class RouteAuthorizationTable implements AuthorizationManager<RequestAuthorizationContext> {
+
+    private static final String DECISION_ATTRIBUTE = RouteAuthorizationTable.class.getName() + ".DECISION";
+
+    private static final String ADMIN = "ROLE_ADMIN";
+    private static final String PREMIUM = "PREMIUM";
+
+    // Sin regla aplicable: anyRequest().authenticated()
+    private static final AuthorizationManager<RequestAuthorizationContext> DEFAULT_ACCESS =
+            AuthenticatedAuthorizationManager.authenticated();
+
+    private final RouteRuleTrie trie;
+    private final Map<RouteRule, AuthorizationManager<RequestAuthorizationContext>> managers = new IdentityHashMap<>();
+
+    public RouteAuthorizationTable() {
+        this.trie = RouteRuleTrie.compile(rules());
+        for (RouteRule rule : trie.getRules()) {
+            if (rule.getKind() == RouteRule.Kind.ACCESS) {
+                managers.put(rule, managerFor(rule));
+            }
+        }
+    }
+
+    /**
+     * Reglas en orden de prioridad (gana la primera que coincide), equivalentes
+     * a la antigua cadena de requestMatchers de {@link SecurityConfig}.
+     */
+    static List<RouteRule> rules() {
+        return List.of(
+                // Rutas que no pasan por el filtro JWT
+                RouteRule.skipJwtPrefix("/api/auth/"),
+                RouteRule.skipJwtPrefix("/public/"),
+                RouteRule.skipJwtPrefix("/api/publico/public/"),
+                RouteRule.skipJwtPrefix("/api/publico/info/"),
+                RouteRule.skipJwtPrefix("/api/publico/validar/"),
+                RouteRule.skipJwtExact("/error"),
+
+                // Endpoints públicos
+                RouteRule.permitAll(null, "/api/auth/**"),
+                RouteRule.permitAll(null, "/public/**"),
+                RouteRule.permitAll(null, "/api/publico/public/**"),
+                RouteRule.permitAll(null, "/api/publico/info/**"),
+                RouteRule.permitAll(null, "/api/publico/validar/**"),
+                RouteRule.permitAll(null, "/api/plantillas/publicas"),
+                RouteRule.permitAll(null, "/api/archivos/**"),
+                RouteRule.permitAll("GET", "/api/plantillas/*"),
+                RouteRule.permitAll("GET", "/api/plantillas/populares"),
+                RouteRule.permitAll("GET", "/api/categorias"),
+
+                // Endpoints de administración - solo ADMIN
+                RouteRule.hasAnyAuthority(null, "/api/admin/**", ADMIN),
+                RouteRule.hasAnyAuthority(null, "/api/plantillas/admin/**", ADMIN),
+                RouteRule.hasAnyAuthority(null, "/api/favoritos/admin/**", ADMIN),
+                RouteRule.hasAnyAuthority(null, "/api/publico/admin/**", ADMIN),
+                RouteRule.hasAnyAuthority(null, "/api/estadisticas/**", ADMIN),
+                RouteRule.hasAnyAuthority(null, "/api/categorias/**", ADMIN),
+
+                // Endpoints que requieren ser PREMIUM o ADMIN
+                RouteRule.hasAnyAuthority("POST", "/api/plantillas", PREMIUM, ADMIN),
+                RouteRule.hasAnyAuthority("PUT", "/api/plantillas/*", PREMIUM, ADMIN),
+                RouteRule.hasAnyAuthority("DELETE", "/api/plantillas/*", PREMIUM, ADMIN),
+                RouteRule.hasAnyAuthority("PATCH", "/api/plantillas/*/visibilidad", PREMIUM, ADMIN),
+                RouteRule.hasAnyAuthority("POST", "/api/plantillas/*/duplicar", PREMIUM, ADMIN),
+                RouteRule.hasAnyAuthority(null, "/api/plantillas/mis-plantillas", PREMIUM, ADMIN),
+
+                // Endpoints de lectura para todos autenticados
+                RouteRule.authenticated("GET", "/api/plantillas/mas-usadas"),
+                RouteRule.authenticated("GET", "/api/plantillas/recientes"),
+                RouteRule.authenticated("GET", "/api/plantillas/buscar"),
+                RouteRule.authenticated("GET", "/api/plantillas/*/permisos"),
+
+                // Otros endpoints
+                RouteRule.authenticated(null, "/api/proyectos/**"),
+                RouteRule.authenticated(null, "/api/favoritos/**"),
+                RouteRule.authenticated(null, "/api/publico/proyecto/**"),
+                RouteRule.authenticated(null, "/api/usuarios/perfil/**"),
+                RouteRule.authenticated(null, "/api/usuarios/upgrade-premium"),
+
+                // Swagger
+                RouteRule.permitAll(null, "/v3/api-docs/**"),
+                RouteRule.permitAll(null, "/swagger-ui/**"),
+                RouteRule.permitAll(null, "/swagger-ui.html")
+        );
+    }
+
+    // Decisión para la petición (calculada una sola vez por método y ruta)
+    public RouteRuleTrie.Decision resolve(HttpServletRequest request) {
+        String method = request.getMethod();
+        String path = pathOf(request);
+
+        Object cached = request.getAttribute(DECISION_ATTRIBUTE);
+        if (cached instanceof CachedDecision) {
+            CachedDecision previous = (CachedDecision) cached;
+            // Un forward/error dispatch cambia la ruta: entonces se vuelve a buscar
+            if (previous.path.equals(path) && previous.method.equals(method)) {
+                return previous.decision;
+            }
+        }
+
+        RouteRuleTrie.Decision decision = trie.lookup(method, path);
+        request.setAttribute(DECISION_ATTRIBUTE, new CachedDecision(method, path, decision));
+        return decision;
+    }
+
+    public boolean shouldSkipJwt(HttpServletRequest request) {
+        return resolve(request).isSkipJwt();
+    }
+
+    @Override
+    public AuthorizationResult authorize(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        RouteRule rule = resolve(context.getRequest()).getAccessRule();
+        AuthorizationManager<RequestAuthorizationContext> manager = rule != null ? managers.get(rule) : DEFAULT_ACCESS;
+        return manager.authorize(authentication, context);
+    }
+
+    // Abstracto (y deprecado) en AuthorizationManager; el AuthorizationFilter llama a authorize
+    @Deprecated
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        AuthorizationResult result = authorize(authentication, context);
+        return result != null ? new AuthorizationDecision(result.isGranted()) : null;
+    }
+
+    private static AuthorizationManager<RequestAuthorizationContext> managerFor(RouteRule rule) {
+        switch (rule.getAccess()) {
+            case PERMIT_ALL:
+                return (authentication, context) -> new AuthorizationDecision(true);
+            case HAS_ANY_AUTHORITY:
+                return AuthorityAuthorizationManager.hasAnyAuthority(rule.getAuthorities().toArray(new String[0]));
+            default:
+                return AuthenticatedAuthorizationManager.authenticated();
+        }
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        return pathInfo != null ? request.getServletPath() + pathInfo : request.getServletPath();
+    }
+
+    private static final class CachedDecision {
+        final String method;
+        final String path;
+        final RouteRuleTrie.Decision decision;
+
+        CachedDecision(String method, String path, RouteRuleTrie.Decision decision) {
+            this.method = method;
+            this.path = path;
+            this.decision = decision;
+        }
+    }
+}
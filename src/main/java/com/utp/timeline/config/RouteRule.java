@@ -0,0 +1,73 @@
+package com.utp.timeline.config;
+
+import java.util.Set;
+
+/**
+ * Regla de acceso para una ruta: método HTTP (o cualquiera), patrón y qué
+ * decide: el nivel de acceso requerido o si la petición se salta el filtro JWT.
+ * Patrones admitidos: segmentos literales, {@code *} (un segmento) y
+ * {@code /**} al final (cero o más segmentos), con la semántica de PathPattern.
+ */
+public final class RouteRule {
+
+    public enum Access { PERMIT_ALL, AUTHENTICATED, HAS_ANY_AUTHORITY }
+
+    public enum Kind {
+        // Decide el acceso (primera regla que coincide, en orden)
+        ACCESS,
+        // La ruta no pasa por el filtro JWT (path.startsWith(prefijo))
+        SKIP_JWT_PREFIX,
+        // La ruta no pasa por el filtro JWT (path.equals(ruta))
+        SKIP_JWT_EXACT
+    }
+
+    private final Kind kind;
+    private final String method;
+    private final String pattern;
+    private final Access access;
+    private final Set<String> authorities;
+
+    private RouteRule(Kind kind, String method, String pattern, Access access, Set<String> authorities) {
+        this.kind = kind;
+        this.method = method;
+        this.pattern = pattern;
+        this.access = access;
+        this.authorities = authorities;
+    }
+
+    public static RouteRule permitAll(String method, String pattern) {
+        return new RouteRule(Kind.ACCESS, method, pattern, Access.PERMIT_ALL, Set.of());
+    }
+
+    public static RouteRule authenticated(String method, String pattern) {
+        return new RouteRule(Kind.ACCESS, method, pattern, Access.AUTHENTICATED, Set.of());
+    }
+
+    public static RouteRule hasAnyAuthority(String method, String pattern, String... authorities) {
+        return new RouteRule(Kind.ACCESS, method, pattern, Access.HAS_ANY_AUTHORITY, Set.of(authorities));
+    }
+
+    public static RouteRule skipJwtPrefix(String prefix) {
+        if (!prefix.endsWith("/")) {
+            throw new IllegalArgumentException("El prefijo debe terminar en '/': " + prefix);
+        }
+        return new RouteRule(Kind.SKIP_JWT_PREFIX, null, prefix, null, Set.of());
+    }
+
+    public static RouteRule skipJwtExact(String path) {
+        return new RouteRule(Kind.SKIP_JWT_EXACT, null, path, null, Set.of());
+    }
+
+    // Getters
+    public Kind getKind() { return kind; }
+    public String getMethod() { return method; }
+    public String getPattern() { return pattern; }
+    public Access getAccess() { return access; }
+    public Set<String> getAuthorities() { return authorities; }
+
+    @Override
+    public String toString() {
+        return kind + " " + (method != null ? method + " " : "") + pattern
+                + (access != null ? " " + access + (authorities.isEmpty() ? "" : authorities) : "");
+    }
+}
@@ -0,0 +1,230 @@
+package com.utp.timeline.config;
+
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reglas de {@link RouteRule} compiladas en un trie por segmentos de ruta.
+ * Cada nodo guarda, por método HTTP, la primera regla (en orden de
+ * declaración) que termina en él, de modo que una sola búsqueda resuelve a
+ * la vez si la petición se salta el filtro JWT y qué acceso requiere, con el
+ * mismo resultado que recorrer las reglas en orden.
+ */
+public final class RouteRuleTrie {
+
+    private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "TRACE"};
+
+    // Métodos no estándar: solo aplican las reglas sin método
+    private static final int OTHER_METHOD = METHODS.length;
+    private static final int METHOD_SLOTS = METHODS.length + 1;
+
+    private static final int ACCESS = 0;
+    private static final int SKIP = 1;
+
+    private final Node root = new Node();
+    private final List<RouteRule> rules;
+
+    private RouteRuleTrie(List<RouteRule> rules) {
+        this.rules = List.copyOf(rules);
+    }
+
+    public static RouteRuleTrie compile(List<RouteRule> rules) {
+        RouteRuleTrie trie = new RouteRuleTrie(rules);
+        for (int order = 0; order < trie.rules.size(); order++) {
+            trie.insert(trie.rules.get(order), order);
+        }
+        return trie;
+    }
+
+    public List<RouteRule> getRules() {
+        return rules;
+    }
+
+    // Una búsqueda por petición: regla de acceso (null si ninguna coincide) y si se salta el JWT
+    public Decision lookup(String method, String path) {
+        int[] best = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+        if (path != null && path.startsWith("/")) {
+            search(root, splitSegments(path), 0, methodSlot(method), best);
+        }
+
+        RouteRule access = best[ACCESS] != Integer.MAX_VALUE ? rules.get(best[ACCESS]) : null;
+        return new Decision(access, best[SKIP] != Integer.MAX_VALUE);
+    }
+
+    private void insert(RouteRule rule, int order) {
+        String pattern = rule.getPattern();
+        if (!pattern.startsWith("/")) {
+            throw new IllegalArgumentException("El patrón debe empezar por '/': " + rule);
+        }
+        String[] segments = splitSegments(pattern);
+        int channel = rule.getKind() == RouteRule.Kind.ACCESS ? ACCESS : SKIP;
+
+        Node node = root;
+        int end = segments.length;
+        Terminal terminal = Terminal.EXACT;
+
+        switch (rule.getKind()) {
+            case SKIP_JWT_PREFIX:
+                // "/api/auth/" -> segmentos [api, auth, ""]: al menos un segmento más, sea cual sea
+                end = segments.length - 1;
+                terminal = Terminal.PREFIX;
+                break;
+            case ACCESS:
+                if ("**".equals(segments[end - 1])) {
+                    end--;
+                    terminal = Terminal.REST;
+                }
+                break;
+            default:
+                break;
+        }
+
+        for (int i = 0; i < end; i++) {
+            String segment = segments[i];
+            if (rule.getKind() == RouteRule.Kind.ACCESS && "*".equals(segment)) {
+                if (node.star == null) {
+                    node.star = new Node();
+                }
+                node = node.star;
+            } else {
+                if (segment.isEmpty() || (rule.getKind() == RouteRule.Kind.ACCESS && segment.contains("*"))) {
+                    throw new IllegalArgumentException("Segmento no soportado en " + rule + ": '" + segment + "'");
+                }
+                node = node.literals.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+
+        int[][] slots = node.slots(terminal);
+        for (int slot = 0; slot < METHOD_SLOTS; slot++) {
+            if (appliesTo(rule, slot) && order < slots[channel][slot]) {
+                slots[channel][slot] = order;
+            }
+        }
+    }
+
+    private static boolean appliesTo(RouteRule rule, int slot) {
+        if (rule.getMethod() == null) {
+            return true;
+        }
+        return slot < OTHER_METHOD && METHODS[slot].equals(rule.getMethod());
+    }
+
+    private static void search(Node node, String[] segments, int index, int slot, int[] best) {
+        int remaining = segments.length - index;
+
+        // "/**" acepta cero o más segmentos restantes; un prefijo "/x/" exige al menos uno
+        offer(node.rest, slot, best);
+        if (remaining > 0) {
+            offer(node.prefix, slot, best);
+        }
+        if (remaining == 0) {
+            offer(node.exact, slot, best);
+            return;
+        }
+
+        String value = valueToMatch(segments[index]);
+
+        if (!node.literals.isEmpty()) {
+            Node child = node.literals.get(value);
+            if (child != null) {
+                search(child, segments, index + 1, slot, best);
+            }
+        }
+
+        Node star = node.star;
+        if (star != null) {
+            if (!value.isEmpty()) {
+                search(star, segments, index + 1, slot, best);
+            } else if (remaining == 1) {
+                // Como en PathPattern: un '*' final acepta la barra final ("/x/"), uno intermedio no
+                offer(star.exact, slot, best);
+            }
+        }
+    }
+
+    private static void offer(int[][] slots, int slot, int[] best) {
+        if (slots == null) {
+            return;
+        }
+        best[ACCESS] = Math.min(best[ACCESS], slots[ACCESS][slot]);
+        best[SKIP] = Math.min(best[SKIP], slots[SKIP][slot]);
+    }
+
+    // "/a/b/" -> [a, b, ""]; "/" -> [""]
+    private static String[] splitSegments(String path) {
+        return StringUtils.delimitedListToStringArray(path.substring(1), "/");
+    }
+
+    // Igual que PathContainer: se ignoran los parámetros ";clave=valor" y se decodifica el segmento
+    private static String valueToMatch(String segment) {
+        int semicolon = segment.indexOf(';');
+        String value = semicolon >= 0 ? segment.substring(0, semicolon) : segment;
+        return value.indexOf('%') >= 0 ? StringUtils.uriDecode(value, StandardCharsets.UTF_8) : value;
+    }
+
+    private static int methodSlot(String method) {
+        if (method != null) {
+            for (int i = 0; i < METHODS.length; i++) {
+                if (METHODS[i].equals(method)) {
+                    return i;
+                }
+            }
+        }
+        return OTHER_METHOD;
+    }
+
+    private enum Terminal { EXACT, REST, PREFIX }
+
+    private static final class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        Node star;
+
+        // [canal][método] -> orden de la primera regla; null si ninguna termina aquí
+        int[][] exact;
+        int[][] rest;
+        int[][] prefix;
+
+        int[][] slots(Terminal terminal) {
+            switch (terminal) {
+                case REST:
+                    return rest != null ? rest : (rest = emptySlots());
+                case PREFIX:
+                    return prefix != null ? prefix : (prefix = emptySlots());
+                default:
+                    return exact != null ? exact : (exact = emptySlots());
+            }
+        }
+
+        private static int[][] emptySlots() {
+            int[][] slots = new int[2][METHOD_SLOTS];
+            for (int[] channel : slots) {
+                Arrays.fill(channel, Integer.MAX_VALUE);
+            }
+            return slots;
+        }
+    }
+
+    /** Resultado de la búsqueda: regla de acceso aplicable y si la ruta se salta el filtro JWT. */
+    public static final class Decision {
+        private final RouteRule accessRule;
+        private final boolean skipJwt;
+
+        Decision(RouteRule accessRule, boolean skipJwt) {
+            this.accessRule = accessRule;
+            this.skipJwt = skipJwt;
+        }
+
+        public RouteRule getAccessRule() { return accessRule; }
+        public boolean isSkipJwt() { return skipJwt; }
+    }
+
+    // Métodos con reglas propias (para las pruebas)
+    static List<String> methods() {
+        return List.of(METHODS);
+    }
+}
@@ -1,10 +1,10 @@
 package com.utp.timeline.config;
 
+import com.utp.timeline.config_seguridad.RateLimitFilter;
 import com.utp.timeline.service.CustomUserDetailsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -33,6 +33,12 @@ public class SecurityConfig {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private RouteAuthorizationTable routeAuthorizationTable;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -57,64 +63,14 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                // Reglas de acceso compiladas en RouteAuthorizationTable (una búsqueda por petición)
                 .authorizeHttpRequests(authz -> authz
-                        // Endpoints públicos
-                        .requestMatchers("/api/auth/**").permitAll()
-                        .requestMatchers("/public/**").permitAll()
-                        .requestMatchers("/api/publico/public/**").permitAll()
-                        .requestMatchers("/api/publico/info/**").permitAll()
-                        .requestMatchers("/api/publico/validar/**").permitAll()
-                        .requestMatchers("/api/plantillas/publicas").permitAll()
-                        .requestMatchers("/api/archivos/**").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/plantillas/*").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/plantillas/populares").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/categorias").permitAll()
-
-
-
-
-                        // Endpoints de administración - solo ADMIN
-                        .requestMatchers("/api/admin/**").hasAuthority("ROLE_ADMIN")
-                        .requestMatchers("/api/plantillas/admin/**").hasAuthority("ROLE_ADMIN")
-                        .requestMatchers("/api/favoritos/admin/**").hasAuthority("ROLE_ADMIN")
-                        .requestMatchers("/api/publico/admin/**").hasAuthority("ROLE_ADMIN")
-                        .requestMatchers("/api/estadisticas/**").hasAuthority("ROLE_ADMIN")
-                        //.requestMatchers(HttpMethod.POST, "/api/categorias/**").hasAuthority("ROLE_ADMIN")
-                        .requestMatchers("/api/categorias/**").hasAuthority("ROLE_ADMIN")
-
-                        // Endpoints que requieren ser PREMIUM o ADMIN
-
-                        .requestMatchers(HttpMethod.POST, "/api/plantillas").hasAnyAuthority("PREMIUM", "ROLE_ADMIN")
-                        .requestMatchers(HttpMethod.PUT, "/api/plantillas/*").hasAnyAuthority("PREMIUM", "ROLE_ADMIN")
-                        .requestMatchers(HttpMethod.DELETE, "/api/plantillas/*").hasAnyAuthority("PREMIUM", "ROLE_ADMIN")
-                        .requestMatchers(HttpMethod.PATCH, "/api/plantillas/*/visibilidad").hasAnyAuthority("PREMIUM", "ROLE_ADMIN")
-                        .requestMatchers(HttpMethod.POST, "/api/plantillas/*/duplicar").hasAnyAuthority("PREMIUM", "ROLE_ADMIN")
-                        .requestMatchers("/api/plantillas/mis-plantillas").hasAnyAuthority("PREMIUM", "ROLE_ADMIN")
-
-                        // Endpoints de lectura para todos autenticados
-
-                        //.requestMatchers(HttpMethod.GET, "/api/plantillas/*").authenticated()
-                        //.requestMatchers(HttpMethod.GET, "/api/plantillas/populares").authenticated()
-                        .requestMatchers(HttpMethod.GET, "/api/plantillas/mas-usadas").authenticated()
-                        .requestMatchers(HttpMethod.GET, "/api/plantillas/recientes").authenticated()
-                        .requestMatchers(HttpMethod.GET, "/api/plantillas/buscar").authenticated()
-                        .requestMatchers(HttpMethod.GET, "/api/plantillas/*/permisos").authenticated()
-
-
-                        // Otros endpoints
-                        .requestMatchers("/api/proyectos/**").authenticated()
-                        .requestMatchers("/api/favoritos/**").authenticated()
-                        .requestMatchers("/api/publico/proyecto/**").authenticated()
-                        .requestMatchers("/api/usuarios/perfil/**").authenticated()
-                        .requestMatchers("/api/usuarios/upgrade-premium").authenticated()
-
-                        // Swagger
-                        .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
-
-                        .anyRequest().authenticated()
+                        .anyRequest().access(routeAuthorizationTable)
                 )
                 .authenticationProvider(authenticationProvider())
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                // Límites de @RateLimited antes de llegar a MVC (después del JWT, para los límites por usuario)
+                .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
@@ -126,7 +82,7 @@ public class SecurityConfig {
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
         configuration.setAllowCredentials(true);
-        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "ETag"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
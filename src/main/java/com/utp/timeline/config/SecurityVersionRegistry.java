@@ -0,0 +1,47 @@
+package com.utp.timeline.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Última versión de seguridad conocida por usuario, para el modo stateless.
+ * Solo se guardan los usuarios cuya versión se incrementó recientemente: un
+ * access token con una versión menor debe contrastarse con la base de datos.
+ * Pasado el tiempo de vida del access token ya no queda ningún token anterior
+ * vivo, así que la entrada caduca.
+ *
+ * Las versiones viven en el {@link TokenStateStore}: con Redis, un incremento
+ * en un nodo deja de aceptar los claims anteriores en todos los nodos.
+ */
+@Component
+public class SecurityVersionRegistry {
+
+    @Value("${jwt.expiration}")
+    private long accessTokenTtlMs;
+
+    private final TokenStateStore tokenStateStore;
+
+    @Autowired
+    public SecurityVersionRegistry(TokenStateStore tokenStateStore) {
+        this.tokenStateStore = tokenStateStore;
+    }
+
+    /**
+     * Registra la nueva versión de seguridad de un usuario (nunca retrocede).
+     */
+    public void register(Long userId, int version) {
+        if (userId == null) {
+            return;
+        }
+        tokenStateStore.registerSecurityVersion(userId, version, System.currentTimeMillis() + accessTokenTtlMs);
+    }
+
+    /**
+     * Indica si un token emitido con la versión indicada sigue vigente. Si no
+     * hay incremento reciente, el token se acepta.
+     */
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        return tokenVersion >= tokenStateStore.getSecurityVersion(userId);
+    }
+}
@@ -0,0 +1,65 @@
+package com.utp.timeline.config;
+
+import java.util.Map;
+
+/**
+ * Estado compartido de los tokens: jtis revocados, refresh tokens vigentes
+ * de cada sesión y versiones de seguridad incrementadas recientemente. Por defecto vive en memoria ({@code app.token-store.tipo=memoria});
+ * con {@code app.token-store.tipo=redis} se comparte entre todos los nodos.
+ */
+public interface TokenStateStore {
+
+    /**
+     * Marca el jti como revocado hasta su expiración.
+     */
+    void revoke(String jti, long expiresAtMillis);
+
+    /**
+     * Indica si el jti está revocado.
+     */
+    boolean isRevoked(String jti);
+
+    /**
+     * Guarda el jti vigente de una familia de refresh tokens del usuario (una
+     * familia por inicio de sesión); reemplaza al jti anterior de esa familia.
+     */
+    void saveRefreshToken(String username, String family, String jti, long expiresAtMillis);
+
+    /**
+     * Indica si el jti es el vigente de su familia.
+     */
+    boolean isRefreshTokenValid(String family, String jti);
+
+    /**
+     * Consume de forma atómica el jti vigente de la familia: devuelve true solo
+     * si lo era, y en ese caso deja de serlo (rotación).
+     */
+    boolean consumeRefreshToken(String family, String jti);
+
+    /**
+     * Elimina una familia de refresh tokens (cierre de esa sesión o reutilización detectada).
+     */
+    void removeRefreshFamily(String username, String family);
+
+    /**
+     * Elimina todas las familias de refresh tokens del usuario.
+     */
+    void removeRefreshTokens(String username);
+
+    /**
+     * Registra la nueva versión de seguridad de un usuario (nunca retrocede)
+     * hasta el instante indicado, cuando ya no quedan access tokens anteriores.
+     */
+    void registerSecurityVersion(Long userId, int version, long expiresAtMillis);
+
+    /**
+     * Versión de seguridad mínima que deben llevar los access tokens stateless
+     * del usuario; 0 si no se incrementó recientemente.
+     */
+    int getSecurityVersion(Long userId);
+
+    /**
+     * Métricas del almacén para el endpoint de administración.
+     */
+    Map<String, Object> getStatistics();
+}
@@ -0,0 +1,97 @@
+package com.utp.timeline.config;
+
+import java.util.Date;
+
+import com.utp.timeline.entity.Usuario;
+
+/**
+ * Token JWT ya verificado (firma y expiración comprobadas una sola vez).
+ * El filtro y el resto de la aplicación leen los claims desde aquí en lugar
+ * de volver a parsear el token.
+ */
+public final class VerifiedToken {
+
+    private final String username;
+    private final String type;
+    private final String jti;
+    private final long issuedAtMillis;
+    private final long expiresAtMillis;
+
+    // Familia del refresh token (una por inicio de sesión); null en access tokens
+    private final String family;
+
+    // Claims del modo stateless (null si el token no los lleva)
+    private final Long userId;
+    private final String nombre;
+    private final Usuario.Rol rol;
+    private final Usuario.Plan plan;
+    private final Integer securityVersion;
+
+    public VerifiedToken(String username, String type, String jti, Date issuedAt, Date expiration) {
+        this(username, type, jti, issuedAt, expiration, null, null, null, null, null, null);
+    }
+
+    public VerifiedToken(String username, String type, String jti, Date issuedAt, Date expiration,
+                         String family, Long userId, String nombre, Usuario.Rol rol, Usuario.Plan plan,
+                         Integer securityVersion) {
+        this.username = username;
+        this.type = type;
+        this.jti = jti;
+        this.issuedAtMillis = issuedAt != null ? issuedAt.getTime() : 0L;
+        this.expiresAtMillis = expiration != null ? expiration.getTime() : Long.MAX_VALUE;
+        this.family = family;
+        this.userId = userId;
+        this.nombre = nombre;
+        this.rol = rol;
+        this.plan = plan;
+        this.securityVersion = securityVersion;
+    }
+
+    // Getters
+    public String getUsername() { return username; }
+    public String getType() { return type; }
+    public String getJti() { return jti; }
+    public long getIssuedAtMillis() { return issuedAtMillis; }
+    public long getExpiresAtMillis() { return expiresAtMillis; }
+    public String getFamily() { return family; }
+    public Long getUserId() { return userId; }
+    public String getNombre() { return nombre; }
+    public Usuario.Rol getRol() { return rol; }
+    public Usuario.Plan getPlan() { return plan; }
+    public Integer getSecurityVersion() { return securityVersion; }
+
+    public boolean isAccessToken() {
+        return "access".equals(type);
+    }
+
+    public boolean isRefreshToken() {
+        return "refresh".equals(type);
+    }
+
+    // El token lleva todo lo necesario para autenticar sin ir a la BD
+    public boolean hasPrincipalClaims() {
+        return userId != null && rol != null && plan != null && securityVersion != null;
+    }
+
+    // Usuario reconstruido a partir de los claims (sin contraseña ni fechas)
+    public Usuario toUsuario() {
+        Usuario usuario = new Usuario();
+        usuario.setId(userId);
+        usuario.setEmail(username);
+        usuario.setNombre(nombre);
+        usuario.setRol(rol);
+        usuario.setPlan(plan);
+        usuario.setVersionSeguridad(securityVersion);
+        return usuario;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+
+    // Tiempo restante hasta la expiración (ms)
+    public long getRemainingTime(long nowMillis) {
+        long remaining = expiresAtMillis - nowMillis;
+        return remaining > 0 ? remaining : 0L;
+    }
+}
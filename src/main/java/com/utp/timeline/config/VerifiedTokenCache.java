@@ -0,0 +1,88 @@
+package com.utp.timeline.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caché acotada de tokens ya verificados, indexada por el SHA-256 del token.
+ * Una petición repetida con el mismo bearer token evita volver a comprobar la
+ * firma HMAC y a parsear los claims. Cada entrada se descarta cuando pasa su
+ * {@code exp} y cuando el token se revoca.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    });
+
+    @Value("${jwt.cache.max-entries:10000}")
+    private int maxEntries;
+
+    // digest del token -> token verificado
+    private final ConcurrentHashMap<String, VerifiedToken> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Devuelve el token verificado si está en caché y no ha expirado.
+     */
+    public VerifiedToken get(String token) {
+        String key = digest(token);
+        VerifiedToken cached = entries.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, cached);
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * Guarda un token recién verificado. Si la caché está llena simplemente no
+     * se guarda: las expiradas las libera {@link #purgeExpired()} en segundo
+     * plano, nunca el hilo de la petición.
+     */
+    public void put(String token, VerifiedToken verified) {
+        if (verified.isExpired(System.currentTimeMillis()) || entries.size() >= maxEntries) {
+            return;
+        }
+        entries.put(digest(token), verified);
+    }
+
+    /**
+     * Elimina el token de la caché (logout / revocación).
+     */
+    public void invalidate(String token) {
+        entries.remove(digest(token));
+    }
+
+    /**
+     * Descarta las entradas cuyo exp ya pasó.
+     */
+    @Scheduled(fixedDelayString = "${jwt.cache.purge-interval-ms:30000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(verified -> verified.isExpired(now));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private String digest(String token) {
+        byte[] hash = SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+}
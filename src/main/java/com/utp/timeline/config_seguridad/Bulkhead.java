@@ -0,0 +1,44 @@
+package com.utp.timeline.config_seguridad;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limita cuántas llamadas al método se ejecutan a la vez. A diferencia de
+ * {@link RateLimited} no cuenta peticiones por ventana: protege recursos
+ * escasos (conexiones del pool) frente a consultas lentas que se acumulan.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+
+    /**
+     * Llamadas concurrentes permitidas
+     */
+    int maxConcurrent() default 5;
+
+    /**
+     * Espera máxima por un hueco (0: rechazar enseguida)
+     */
+    long maxWait() default 0;
+
+    /**
+     * Unidad de maxWait
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+    /**
+     * Compartimento compartido entre métodos con la misma clave (vacío: uno
+     * por método). Si varios métodos comparten clave, manda el primero que se
+     * ejecuta.
+     */
+    String key() default "";
+
+    /**
+     * Mensaje de error personalizado
+     */
+    String message() default "Servidor ocupado, inténtalo de nuevo en unos segundos";
+}
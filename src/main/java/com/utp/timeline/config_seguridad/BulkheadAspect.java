@@ -0,0 +1,126 @@
+package com.utp.timeline.config_seguridad;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aplica {@link Bulkhead} con un semáforo por método (o por clave).
+ *
+ * Se ejecuta antes que {@code @Transactional}: las llamadas que esperan un
+ * hueco no tienen todavía una conexión del pool.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class BulkheadAspect {
+
+    private final ConcurrentHashMap<String, Compartment> compartments = new ConcurrentHashMap<>();
+
+    // Nombre del compartimento de cada método, para no construirlo en cada llamada
+    private final ConcurrentHashMap<Method, String> names = new ConcurrentHashMap<>();
+
+    @Around("@annotation(com.utp.timeline.config_seguridad.Bulkhead)")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Bulkhead bulkhead = method.getAnnotation(Bulkhead.class);
+        String name = names.computeIfAbsent(method, m -> bulkhead.key().isEmpty()
+                ? m.getDeclaringClass().getSimpleName() + "." + m.getName()
+                : bulkhead.key());
+        Compartment compartment = compartments.computeIfAbsent(name, n -> new Compartment(bulkhead.maxConcurrent()));
+
+        if (!compartment.enter(bulkhead.maxWait(), bulkhead.unit())) {
+            // Reintentar antes de lo que ya se esperó aquí no sirve de nada
+            int retryAfter = (int) Math.max(1, (bulkhead.unit().toMillis(bulkhead.maxWait()) + 999) / 1000);
+            throw new BulkheadFullException(name, bulkhead.message(), retryAfter);
+        }
+        try {
+            return joinPoint.proceed();
+        } finally {
+            compartment.exit();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new TreeMap<>();
+        compartments.forEach((name, compartment) -> stats.put(name, compartment.getStatistics()));
+        return stats;
+    }
+
+    private static final class Compartment {
+        final int maxConcurrent;
+        final Semaphore permits;
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger waiting = new AtomicInteger();
+        final AtomicInteger peakInFlight = new AtomicInteger();
+        final LongAdder accepted = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+
+        Compartment(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+            this.permits = new Semaphore(maxConcurrent, true);
+        }
+
+        // Un hilo interrumpido mientras espera se rechaza (y conserva la interrupción)
+        boolean enter(long maxWait, TimeUnit unit) {
+            if (!permits.tryAcquire()) {
+                if (maxWait <= 0) {
+                    rejected.increment();
+                    return false;
+                }
+                long start = System.nanoTime();
+                waiting.incrementAndGet();
+                boolean acquired;
+                try {
+                    acquired = permits.tryAcquire(maxWait, unit);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    acquired = false;
+                } finally {
+                    waiting.decrementAndGet();
+                    waitNanos.add(System.nanoTime() - start);
+                }
+                if (!acquired) {
+                    rejected.increment();
+                    return false;
+                }
+            }
+            accepted.increment();
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return true;
+        }
+
+        void exit() {
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+
+        Map<String, Object> getStatistics() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrentes", maxConcurrent);
+            stats.put("enCurso", inFlight.get());
+            stats.put("enEspera", waiting.get());
+            stats.put("picoEnCurso", peakInFlight.get());
+            stats.put("aceptadas", accepted.sum());
+            stats.put("rechazadas", rejected.sum());
+            stats.put("esperaTotalMs", TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()));
+            return stats;
+        }
+    }
+}
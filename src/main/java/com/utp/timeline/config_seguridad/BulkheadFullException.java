@@ -0,0 +1,21 @@
+package com.utp.timeline.config_seguridad;
+
+public class BulkheadFullException extends RuntimeException {
+
+    private final String bulkhead;
+    private final int retryAfterSeconds;
+
+    public BulkheadFullException(String bulkhead, String message, int retryAfterSeconds) {
+        super(message);
+        this.bulkhead = bulkhead;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getBulkhead() {
+        return bulkhead;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,214 @@
+package com.utp.timeline.config_seguridad;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch con los K elementos más frecuentes. La memoria es fija
+ * (depth × width contadores más K entradas) sin importar cuántas claves
+ * distintas se vean.
+ *
+ * El conteo es lock-free, también para las claves que ya están en el top
+ * (índice hash → posición y CAS sobre su cuenta). Solo se toma el lock para
+ * meter una clave nueva en el top, cuando su estimación supera a la menor.
+ * Las estimaciones pueden pasarse por arriba (colisiones, o una cuenta que se
+ * actualiza justo cuando su posición pasa a otra clave), nunca por abajo.
+ */
+final class HeavyHitterSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    // Top-K: claves y etiquetas protegidas por el lock del objeto; las cuentas admiten CAS sin lock
+    private final long[] topHashes;
+    private final Object[] topLabels;
+    private final AtomicLongArray topCounts;
+    private int topSize;
+
+    // Índice inmutable de las claves del top; se reemplaza cuando cambian
+    private volatile TopIndex index;
+
+    // Menor estimación del top cuando está lleno (0 mientras haya hueco); puede quedarse
+    // corta porque las cuentas suben sin lock, y se corrige en offer
+    private volatile long topMin;
+
+    HeavyHitterSketch(int width, int depth, int topK) {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counters = new AtomicLongArray(size * depth);
+        this.topHashes = new long[topK];
+        this.topLabels = new Object[topK];
+        this.topCounts = new AtomicLongArray(topK);
+        this.index = TopIndex.of(topHashes, 0);
+    }
+
+    /**
+     * Cuenta una aparición de la clave. {@code label} solo se guarda si la
+     * clave entra en el top; su {@code toString()} se llama al consultarlo.
+     */
+    void add(long keyHash, Object label) {
+        int h1 = (int) keyHash;
+        int h2 = (int) (keyHash >>> 32) | 1;
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = row * (mask + 1) + ((h1 + row * h2) & mask);
+            long value = counters.incrementAndGet(cell);
+            if (value < estimate) {
+                estimate = value;
+            }
+        }
+
+        int slot = index.slotOf(keyHash);
+        if (slot >= 0) {
+            raise(slot, estimate);
+        } else if (estimate > topMin) {
+            offer(keyHash, label, estimate);
+        }
+    }
+
+    private void raise(int slot, long estimate) {
+        for (;;) {
+            long current = topCounts.get(slot);
+            if (current >= estimate || topCounts.compareAndSet(slot, current, estimate)) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void offer(long keyHash, Object label, long estimate) {
+        // Otro hilo pudo meterla mientras se esperaba el lock
+        int existing = index.slotOf(keyHash);
+        if (existing >= 0) {
+            raise(existing, estimate);
+            return;
+        }
+        int slot;
+        if (topSize < topHashes.length) {
+            slot = topSize++;
+        } else {
+            slot = minIndex();
+            if (topCounts.get(slot) >= estimate) {
+                updateMin();
+                return;
+            }
+        }
+        topHashes[slot] = keyHash;
+        topLabels[slot] = label;
+        topCounts.set(slot, estimate);
+        index = TopIndex.of(topHashes, topSize);
+        updateMin();
+    }
+
+    private int minIndex() {
+        int min = 0;
+        for (int i = 1; i < topSize; i++) {
+            if (topCounts.get(i) < topCounts.get(min)) {
+                min = i;
+            }
+        }
+        return min;
+    }
+
+    private void updateMin() {
+        topMin = topSize < topHashes.length ? 0 : topCounts.get(minIndex());
+    }
+
+    /**
+     * Divide todos los contadores entre dos, para que el top refleje el
+     * tráfico reciente y no el acumulado desde el arranque.
+     */
+    void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            long value = counters.get(i);
+            if (value != 0) {
+                counters.getAndAdd(i, -(value - (value >> 1)));
+            }
+        }
+        synchronized (this) {
+            int kept = 0;
+            for (int i = 0; i < topSize; i++) {
+                long halved = topCounts.get(i) >> 1;
+                if (halved > 0) {
+                    topHashes[kept] = topHashes[i];
+                    topLabels[kept] = topLabels[i];
+                    topCounts.set(kept, halved);
+                    kept++;
+                }
+            }
+            for (int i = kept; i < topSize; i++) {
+                topLabels[i] = null;
+            }
+            topSize = kept;
+            index = TopIndex.of(topHashes, topSize);
+            updateMin();
+        }
+    }
+
+    /**
+     * Los {@code limit} elementos más frecuentes, de mayor a menor.
+     */
+    List<Map<String, Object>> top(int limit) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < topSize; i++) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("clave", String.valueOf(topLabels[i]));
+                entry.put("peticiones", topCounts.get(i));
+                result.add(entry);
+            }
+        }
+        result.sort(Comparator.comparingLong((Map<String, Object> e) -> (Long) e.get("peticiones")).reversed());
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    /**
+     * Tabla hash abierta (hash → posición en el top) de solo lectura.
+     */
+    private static final class TopIndex {
+        private final long[] hashes;
+        private final int[] slots;
+        private final int mask;
+
+        private TopIndex(int capacity) {
+            this.hashes = new long[capacity];
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(slots, -1);
+        }
+
+        static TopIndex of(long[] topHashes, int size) {
+            TopIndex index = new TopIndex(Integer.highestOneBit(Math.max(2, topHashes.length * 2 - 1)) << 1);
+            for (int slot = 0; slot < size; slot++) {
+                int i = index.start(topHashes[slot]);
+                while (index.slots[i] >= 0) {
+                    i = (i + 1) & index.mask;
+                }
+                index.hashes[i] = topHashes[slot];
+                index.slots[i] = slot;
+            }
+            return index;
+        }
+
+        // Posición en el top, o -1 si la clave no está
+        int slotOf(long hash) {
+            for (int i = start(hash); slots[i] >= 0; i = (i + 1) & mask) {
+                if (hashes[i] == hash) {
+                    return slots[i];
+                }
+            }
+            return -1;
+        }
+
+        private int start(long hash) {
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.utp.timeline.config_seguridad;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.RequestPath;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utp.timeline.entity.Usuario;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Rate limiting antes del DispatcherServlet: una petición rechazada no llega
+ * a resolver el handler ni a deserializar el body. La tabla de rutas se
+ * construye una vez al arrancar a partir de los métodos anotados con
+ * {@link RateLimited}; la clave de cada petición se obtiene combinando hashes
+ * precalculados (ruta) con el hash de la IP o del usuario, sin crear Strings.
+ *
+ * Va detrás de {@code JwtAuthenticationFilter} para que los límites por
+ * usuario vean la autenticación.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter implements SmartInitializingSingleton {
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RateLimitHotKeys hotKeys;
+
+    private volatile List<Route> routes = Collections.emptyList();
+
+    // Construye la tabla de rutas cuando ya están registrados todos los handlers
+    @Override
+    public void afterSingletonsInstantiated() {
+        buildRoutes(applicationContext.getBeansOfType(RequestMappingHandlerMapping.class).values());
+    }
+
+    void buildRoutes(Collection<RequestMappingHandlerMapping> mappings) {
+        List<Route> table = new ArrayList<>();
+        for (RequestMappingHandlerMapping mapping : mappings) {
+            for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : mapping.getHandlerMethods().entrySet()) {
+                Method method = entry.getValue().getMethod();
+                RateLimited[] rateLimits = method.getAnnotationsByType(RateLimited.class);
+                if (rateLimits.length > 0) {
+                    table.addAll(routesFor(entry.getKey(), method, rateLimits));
+                }
+            }
+        }
+        // Primero el patrón más específico, como el DispatcherServlet: con patrones
+        // solapados ("/x/nuevo" y "/x/{id}") se aplica el límite del handler real
+        table.sort(Comparator.comparing((Route route) -> route.pattern, PathPattern.SPECIFICITY_COMPARATOR)
+                .thenComparing(route -> route.methods == null));
+        this.routes = List.copyOf(table);
+    }
+
+    List<Route> getRoutes() {
+        return routes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Route route = match(request);
+        if (route == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        Usuario usuario = auth != null && auth.getPrincipal() instanceof Usuario ? (Usuario) auth.getPrincipal() : null;
+        int tier = Limit.tierOf(usuario);
+        String ip = clientIp(request);
+        long ipHash = RateLimitService.hash(ip);
+
+        hotKeys.record(ipHash, ip, usuario != null ? usuario.getId() : null, route.hash, route.label);
+
+        // Todos los límites de la ruta deben admitir la petición; las cabeceras muestran el más ajustado
+        Limit tightest = null;
+        long tightestRemaining = Long.MAX_VALUE;
+        for (int i = 0; i < route.limits.length; i++) {
+            Limit limit = route.limits[i];
+            int maxRequests = limit.maxByTier[tier];
+            if (maxRequests == Limit.UNLIMITED) {
+                continue;
+            }
+            long result = rateLimiter.acquire(limit.keyFor(ipHash, usuario, tier), maxRequests, limit.durationMs);
+            if (result < 0) {
+                // Rechazada: los límites anteriores recuperan su token
+                for (int j = 0; j < i; j++) {
+                    Limit admitted = route.limits[j];
+                    if (admitted.maxByTier[tier] != Limit.UNLIMITED) {
+                        rateLimiter.release(admitted.keyFor(ipHash, usuario, tier), admitted.maxByTier[tier],
+                                admitted.durationMs);
+                    }
+                }
+                rejectRequest(response, limit, Math.max(1, (-result + 999) / 1000));
+                return;
+            }
+            if (result < tightestRemaining) {
+                tightest = limit;
+                tightestRemaining = result;
+            }
+        }
+
+        if (tightest != null) {
+            // El reset se deduce de los tokens restantes, sin otra consulta
+            int maxRequests = tightest.maxByTier[tier];
+            long resetSeconds = (tightest.durationMs - tightestRemaining * tightest.durationMs / maxRequests) / 1000;
+            response.setHeader("X-RateLimit-Limit", tightest.limitHeaders[tier]);
+            response.setHeader("X-RateLimit-Remaining", Long.toString(tightestRemaining));
+            response.setHeader("X-RateLimit-Reset", Long.toString(Math.max(0, resetSeconds)));
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private Route match(HttpServletRequest request) {
+        List<Route> table = routes;
+        if (table.isEmpty()) {
+            return null;
+        }
+        String method = request.getMethod();
+        // Misma ruta que ve MVC: segmentos decodificados y sin parámetros ";..."
+        // (si no, "/api/auth/%6Cogin" o "/api/auth/login;jsessionid=x" esquivan el límite)
+        PathContainer container = RequestPath.parse(request.getRequestURI(), request.getContextPath())
+                .pathWithinApplication();
+        String path = lookupPath(container);
+
+        for (int i = 0; i < table.size(); i++) {
+            Route route = table.get(i);
+            if (!route.acceptsMethod(method) || !path.startsWith(route.literalPrefix)) {
+                continue;
+            }
+            if (route.exact) {
+                if (path.length() == route.literalPrefix.length()) {
+                    return route;
+                }
+                continue;
+            }
+            // Solo las rutas candidatas con variables pasan por PathPattern
+            if (route.pattern.matches(container)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private void rejectRequest(HttpServletResponse response, Limit limit, long retryAfterSeconds) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        // Mismo cuerpo que RateLimitExceptionHandler, escrito sin pasar por MVC
+        response.getWriter().write("{\"timestamp\":\"" + LocalDateTime.now()
+                + "\",\"status\":429,\"error\":\"Too Many Requests\",\"message\":\""
+                + limit.messageJson + " Intenta de nuevo en " + retryAfterSeconds + " segundos."
+                + "\",\"retryAfter\":" + retryAfterSeconds + "}");
+    }
+
+    private List<Route> routesFor(RequestMappingInfo info, Method method, RateLimited[] rateLimits) {
+        Set<PathPattern> patterns = info.getPathPatternsCondition() != null
+                ? info.getPathPatternsCondition().getPatterns()
+                : parse(info.getPatternValues());
+        Set<RequestMethod> methods = info.getMethodsCondition().getMethods();
+
+        Limit[] limits = new Limit[rateLimits.length];
+        for (int i = 0; i < rateLimits.length; i++) {
+            RateLimited rateLimited = rateLimits[i];
+            long routeHash = RateLimitService.hash("ratelimit:" + rateLimited.type() + ":"
+                    + method.getDeclaringClass().getName() + "#" + method.getName() + ":" + i);
+            limits[i] = new Limit(rateLimited, routeHash, jsonContent(rateLimited.message()));
+        }
+
+        List<Route> result = new ArrayList<>();
+        for (PathPattern pattern : patterns) {
+            result.add(new Route(pattern, methods.isEmpty() ? null : EnumSet.copyOf(methods), limits));
+        }
+        return result;
+    }
+
+    private static Set<PathPattern> parse(Set<String> values) {
+        Set<PathPattern> patterns = new LinkedHashSet<>();
+        for (String value : values) {
+            patterns.add(PathPatternParser.defaultInstance.parse(value));
+        }
+        return patterns;
+    }
+
+    // Mensaje ya escapado para JSON, sin las comillas
+    private String jsonContent(String message) {
+        try {
+            String quoted = objectMapper.writeValueAsString(message);
+            return quoted.substring(1, quoted.length() - 1);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String clientIp(HttpServletRequest request) {
+        String ip = request.getHeader("X-Forwarded-For");
+        if (ip == null || ip.isEmpty()) {
+            ip = request.getRemoteAddr();
+        }
+        return ip;
+    }
+
+    // Ruta decodificada; sin '%' ni ';' es el propio texto, sin copias
+    static String lookupPath(PathContainer container) {
+        String raw = container.value();
+        if (raw.indexOf('%') < 0 && raw.indexOf(';') < 0) {
+            return raw;
+        }
+        StringBuilder path = new StringBuilder(raw.length());
+        for (PathContainer.Element element : container.elements()) {
+            path.append(element instanceof PathContainer.PathSegment
+                    ? ((PathContainer.PathSegment) element).valueToMatch()
+                    : element.value());
+        }
+        return path.toString();
+    }
+
+    /**
+     * Ruta limitada: patrón, métodos HTTP y sus límites.
+     */
+    static final class Route {
+        final PathPattern pattern;
+        final Set<RequestMethod> methods;
+        final Limit[] limits;
+
+        // Nombre legible ("POST /api/...") y su hash, para el top de endpoints
+        final String label;
+        final long hash;
+
+        // Parte literal inicial del patrón (hasta la primera variable o comodín)
+        final String literalPrefix;
+        final boolean exact;
+
+        Route(PathPattern pattern, Set<RequestMethod> methods, Limit[] limits) {
+            this.pattern = pattern;
+            this.methods = methods;
+            this.limits = limits;
+            this.label = (methods == null ? "*" : methods.stream().map(Enum::name).sorted()
+                    .collect(Collectors.joining(","))) + " " + pattern.getPatternString();
+            this.hash = RateLimitService.hash(label);
+
+            String text = pattern.getPatternString();
+            int variable = indexOfAny(text, "{*");
+            this.literalPrefix = variable < 0 ? text : text.substring(0, variable);
+            this.exact = variable < 0;
+        }
+
+        boolean acceptsMethod(String method) {
+            if (methods == null) {
+                return true;
+            }
+            RequestMethod requestMethod = RequestMethod.resolve(method);
+            return requestMethod != null && methods.contains(requestMethod);
+        }
+
+        private static int indexOfAny(String text, String chars) {
+            for (int i = 0; i < text.length(); i++) {
+                if (chars.indexOf(text.charAt(i)) >= 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Un {@link RateLimited} precalculado: máximo por nivel (FREE, PREMIUM,
+     * ADMIN), ventana y hash de la ruta.
+     */
+    static final class Limit {
+        static final int FREE = 0;
+        static final int PREMIUM = 1;
+        static final int ADMIN = 2;
+        static final int UNLIMITED = 0;
+
+        final RateLimited.LimitType type;
+        final long routeHash;
+        final int[] maxByTier;
+        final String[] limitHeaders;
+        final long durationMs;
+        final String messageJson;
+
+        Limit(RateLimited rateLimited, long routeHash, String messageJson) {
+            this.type = rateLimited.type();
+            this.routeHash = routeHash;
+            this.durationMs = rateLimited.unit().toMillis(rateLimited.duration());
+            this.messageJson = messageJson;
+
+            int free = rateLimited.maxRequests();
+            int premium = rateLimited.maxRequestsPremium() >= 0 ? rateLimited.maxRequestsPremium() : free;
+            int admin = rateLimited.maxRequestsAdmin() >= 0 ? rateLimited.maxRequestsAdmin() : premium;
+            this.maxByTier = new int[] {free, premium, admin};
+            this.limitHeaders = new String[] {Integer.toString(free), Integer.toString(premium), Integer.toString(admin)};
+        }
+
+        static int tierOf(Usuario usuario) {
+            if (usuario == null) {
+                return FREE;
+            }
+            if (usuario.getRol() == Usuario.Rol.ADMIN) {
+                return ADMIN;
+            }
+            return usuario.getPlan() == Usuario.Plan.PREMIUM ? PREMIUM : FREE;
+        }
+
+        // Clave del bucket: hash de la ruta combinado con la IP, el usuario o el nivel (PLAN).
+        // GLOBAL es un único bucket: cada nivel gasta según su máximo, sin multiplicar el cupo total
+        long keyFor(long ipHash, Usuario usuario, int tier) {
+            if (type == RateLimited.LimitType.GLOBAL) {
+                return routeHash;
+            }
+            long base = RateLimitService.combine(routeHash, tier);
+            switch (type) {
+                case USER:
+                    if (usuario != null && usuario.getId() != null) {
+                        return RateLimitService.combine(base, usuario.getId());
+                    }
+                    // Anónimo: por IP, para no compartir un único bucket entre todos
+                    return RateLimitService.combine(base, ipHash);
+                case IP:
+                    return RateLimitService.combine(base, ipHash);
+                default:
+                    // PLAN: un bucket por nivel
+                    return base;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.utp.timeline.config_seguridad;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quién genera la carga en las rutas limitadas: IPs, usuarios y endpoints
+ * con más peticiones, estimados con un {@link HeavyHitterSketch} por
+ * dimensión. Lo alimenta {@link RateLimitFilter} con los mismos hashes que
+ * usa para las claves de rate limiting.
+ */
+@Component
+public class RateLimitHotKeys {
+
+    private static final long USER_SEED = RateLimitService.hash("usuario");
+
+    private final HeavyHitterSketch ips;
+    private final HeavyHitterSketch users;
+    private final HeavyHitterSketch endpoints;
+
+    public RateLimitHotKeys(@Value("${app.rate-limit.hot-keys.width:2048}") int width,
+                            @Value("${app.rate-limit.hot-keys.depth:4}") int depth,
+                            @Value("${app.rate-limit.hot-keys.top:50}") int topK) {
+        this.ips = new HeavyHitterSketch(width, depth, topK);
+        this.users = new HeavyHitterSketch(width, depth, topK);
+        this.endpoints = new HeavyHitterSketch(width, depth, topK);
+    }
+
+    void record(long ipHash, String ip, Long userId, long routeHash, String route) {
+        ips.add(ipHash, ip);
+        if (userId != null) {
+            users.add(RateLimitService.combine(USER_SEED, userId), userId);
+        }
+        endpoints.add(routeHash, route);
+    }
+
+    /**
+     * Reduce a la mitad los contadores cada intervalo: el top muestra el
+     * tráfico de los últimos minutos.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.hot-keys.decay-interval-ms:60000}")
+    public void decay() {
+        ips.decay();
+        users.decay();
+        endpoints.decay();
+    }
+
+    public Map<String, Object> getTop(int limit) {
+        Map<String, Object> top = new LinkedHashMap<>();
+        top.put("ips", ips.top(limit));
+        top.put("usuarios", users.top(limit));
+        top.put("endpoints", endpoints.top(limit));
+        return top;
+    }
+}
@@ -1,100 +1,366 @@
 package com.utp.timeline.config_seguridad;
 
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Rate limiting con GCRA (token bucket equivalente): por cada clave se guarda
+ * un solo long, el "theoretical arrival time" (TAT) en nanos. Una petición se
+ * admite si {@code max(TAT, ahora) + T - ahora <= ventana}, con
+ * {@code T = ventana / maxRequests}; eso permite ráfagas de hasta maxRequests
+ * y recarga un token cada T.
+ *
+ * El estado vive en una {@link RateLimitTable} (longs primitivos, CAS, sin
+ * locks ni objetos por petición). Un hilo de fondo reconstruye la tabla
+ * cuando se llena, descartando las claves cuyo TAT ya pasó (equivalen a un
+ * bucket lleno), así que el coste por petición no depende del número de
+ * clientes.
+ */
 @Service
-public class RateLimitService {
-    // Estructura: key -> {timestamp, count}
-    private final ConcurrentHashMap<String, RequestCounter> requests = new ConcurrentHashMap<>();
+public class RateLimitService implements RateLimiter {
+
+    private final int initialCapacity;
+    private final boolean offHeap;
+
+    // Origen del reloj: los TAT son siempre > 0 (0 = sin estado)
+    private final long origin = System.nanoTime() - 1;
+
+    private volatile RateLimitTable table;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService sweeper;
+
+    // Métricas
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile int lastLiveEntries;
+
+    public RateLimitService(@Value("${app.rate-limit.initial-capacity:16384}") int initialCapacity,
+                            @Value("${app.rate-limit.off-heap:false}") boolean offHeap,
+                            @Value("${app.rate-limit.sweep-interval-ms:30000}") long sweepIntervalMs) {
+        this.initialCapacity = tableSize(initialCapacity);
+        this.offHeap = offHeap;
+        this.table = new RateLimitTable(this.initialCapacity, offHeap);
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sweeper.shutdownNow();
+    }
 
     /**
      * Verifica si una petición está permitida.
-     * 
+     *
      * @param key Identificador único (IP, userId, etc.)
      * @param maxRequests Máximo de peticiones permitidas
      * @param durationMs Ventana de tiempo en milisegundos
      * @return true si la petición está permitida
      */
     public boolean isAllowed(String key, int maxRequests, long durationMs) {
-        long now = System.currentTimeMillis();
-        
-        requests.compute(key, (k, counter) -> {
-            // Primera petición o ventana expirada
-            if (counter == null || now - counter.windowStart > durationMs) {
-                return new RequestCounter(now, 1);
+        return acquire(hash(key), maxRequests, durationMs) >= 0;
+    }
+
+    public boolean isAllowed(long keyHash, int maxRequests, long durationMs) {
+        return acquire(keyHash, maxRequests, durationMs) >= 0;
+    }
+
+    /**
+     * Consume un token de la clave. Devuelve las peticiones restantes (>= 0)
+     * si se admite, o {@code -milisegundos} hasta el próximo token si no.
+     */
+    @Override
+    public long acquire(long keyHash, int maxRequests, long durationMs) {
+        long window = TimeUnit.MILLISECONDS.toNanos(durationMs);
+        long interval = Math.max(1, window / maxRequests);
+
+        RateLimitTable current = table;
+        for (;;) {
+            int index = current.find(keyHash, true);
+            if (index == RateLimitTable.FULL) {
+                current = rebuildNow(current);
+                continue;
             }
-            
-            // Incrementar contador en la ventana actual
-            counter.count++;
-            return counter;
-        });
-        
-        RequestCounter counter = requests.get(key);
-        
-        // Limpiar entradas antiguas periódicamente
-        cleanupExpiredEntries(now, durationMs);
-        
-        return counter.count <= maxRequests;
+
+            long tat = current.stateAt(index);
+            if (tat == RateLimitTable.MOVED) {
+                current = current.next;
+                continue;
+            }
+            if (current.occupied() > current.loadLimit()) {
+                scheduleRebuild();
+            }
+
+            long now = now();
+            long newTat = Math.max(tat, now) + interval;
+            if (newTat - now > window) {
+                long waitNanos = newTat - window - now;
+                return -Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999));
+            }
+            if (current.casState(index, tat, newTat)) {
+                return (window - (newTat - now)) / interval;
+            }
+            // Otro hilo actualizó el mismo bucket: se reintenta con el valor nuevo
+        }
+    }
+
+    @Override
+    public void release(long keyHash, int maxRequests, long durationMs) {
+        long interval = Math.max(1, TimeUnit.MILLISECONDS.toNanos(durationMs) / maxRequests);
+
+        RateLimitTable current = table;
+        for (;;) {
+            int index = current.find(keyHash, false);
+            if (index == RateLimitTable.FULL) {
+                if (current.next == null) {
+                    return;
+                }
+                current = current.next;
+                continue;
+            }
+            long tat = current.stateAt(index);
+            if (tat == RateLimitTable.MOVED) {
+                current = current.next;
+                continue;
+            }
+            long now = now();
+            // Bucket ya lleno: no hay nada que devolver
+            if (tat <= now || current.casState(index, tat, Math.max(now, tat - interval))) {
+                return;
+            }
+        }
     }
 
     /**
      * Obtiene el número de peticiones restantes.
      */
     public int getRemainingRequests(String key, int maxRequests, long durationMs) {
-        long now = System.currentTimeMillis();
-        RequestCounter counter = requests.get(key);
-        
-        if (counter == null || now - counter.windowStart > durationMs) {
-            return maxRequests;
-        }
-        
-        return Math.max(0, maxRequests - counter.count);
+        return getRemainingRequests(hash(key), maxRequests, durationMs);
+    }
+
+    public int getRemainingRequests(long keyHash, int maxRequests, long durationMs) {
+        long window = TimeUnit.MILLISECONDS.toNanos(durationMs);
+        long interval = Math.max(1, window / maxRequests);
+        long tat = readState(keyHash);
+        long backlog = Math.max(0, tat - now());
+        return (int) Math.min(maxRequests, Math.max(0, (window - backlog) / interval));
     }
 
     /**
      * Obtiene el tiempo restante hasta el reset (en segundos).
      */
     public long getResetTime(String key, long durationMs) {
-        RequestCounter counter = requests.get(key);
-        
-        if (counter == null) {
-            return 0;
+        return getResetTime(hash(key), durationMs);
+    }
+
+    @Override
+    public long getResetTime(long keyHash, long durationMs) {
+        long backlog = readState(keyHash) - now();
+        return Math.max(0, TimeUnit.NANOSECONDS.toSeconds(backlog));
+    }
+
+    /**
+     * Resetea el contador para una key específica (útil para testing).
+     */
+    public void reset(String key) {
+        reset(hash(key));
+    }
+
+    public void reset(long keyHash) {
+        RateLimitTable current = table;
+        for (;;) {
+            int index = current.find(keyHash, false);
+            if (index == RateLimitTable.FULL) {
+                // Puede estar ya en la tabla nueva si esta se está reconstruyendo
+                if (current.next == null) {
+                    return;
+                }
+                current = current.next;
+                continue;
+            }
+            long tat = current.stateAt(index);
+            if (tat == RateLimitTable.MOVED) {
+                current = current.next;
+            } else if (current.casState(index, tat, RateLimitTable.EMPTY)) {
+                return;
+            }
         }
-        
-        long elapsed = System.currentTimeMillis() - counter.windowStart;
-        return Math.max(0, (durationMs - elapsed) / 1000);
     }
 
     /**
-     * Limpia entradas expiradas para evitar memory leaks.
+     * Hash de 64 bits (FNV-1a + mezcla final) de una clave; nunca 0. Los
+     * llamadores pueden precalcularlo y usar las sobrecargas con long.
      */
-    private void cleanupExpiredEntries(long now, long durationMs) {
-        if (requests.size() > 10000) { // Solo limpiar si hay muchas entradas
-            requests.entrySet().removeIf(entry -> 
-                now - entry.getValue().windowStart > durationMs * 2
-            );
+    public static long hash(CharSequence key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
         }
+        return mix(h);
+    }
+
+    // Combina un hash ya calculado con otro componente (p. ej. ruta + IP) sin crear Strings
+    public static long combine(long hash, long other) {
+        return mix(hash * 31 + other);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == RateLimitTable.EMPTY ? 1 : h;
+    }
+
+    private long readState(long keyHash) {
+        RateLimitTable current = table;
+        for (;;) {
+            int index = current.find(keyHash, false);
+            if (index == RateLimitTable.FULL) {
+                if (current.next == null) {
+                    return 0;
+                }
+                current = current.next;
+                continue;
+            }
+            long tat = current.stateAt(index);
+            if (tat != RateLimitTable.MOVED) {
+                return tat;
+            }
+            current = current.next;
+        }
+    }
+
+    private long now() {
+        return System.nanoTime() - origin;
     }
 
     /**
-     * Resetea el contador para una key específica (útil para testing).
+     * Barrido periódico: si la tabla pasa de media carga, se reconstruye
+     * solo con las claves vigentes (creciendo si hace falta).
      */
-    public void reset(String key) {
-        requests.remove(key);
+    void sweep() {
+        RateLimitTable current = table;
+        int live = countLive(current);
+        lastLiveEntries = live;
+
+        if (current.occupied() > current.loadLimit() / 2) {
+            rebuild(current, targetCapacity(live));
+        }
     }
 
-    // Clase interna para almacenar contador
-    private static class RequestCounter {
-        long windowStart;
-        int count;
+    // Reconstrucción en el hilo de fondo al pasar la carga máxima
+    private void scheduleRebuild() {
+        if (!rebuildScheduled.get() && rebuildScheduled.compareAndSet(false, true)) {
+            sweeper.execute(() -> {
+                try {
+                    RateLimitTable latest = table;
+                    if (latest.occupied() > latest.loadLimit()) {
+                        rebuild(latest, targetCapacity(countLive(latest)));
+                    }
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    // Caso extremo (tabla llena antes de que actúe el hilo de fondo, o reservada para una
+    // copia en curso): se espera a la copia y, si sigue llena, se reconstruye en línea
+    private RateLimitTable rebuildNow(RateLimitTable full) {
+        synchronized (this) {
+            if (full == table && full.next == null && full.isFull()) {
+                rebuild(full, Math.max(full.capacity() * 2, targetCapacity(countLive(full))));
+            }
+        }
+        return full.next != null ? full.next : table;
+    }
 
-        RequestCounter(long windowStart, int count) {
-            this.windowStart = windowStart;
-            this.count = count;
+    private synchronized void rebuild(RateLimitTable old, int capacity) {
+        if (old != table) {
+            return;
         }
+        // La tabla no encoge: así todas las entradas de la vieja caben siempre en la nueva
+        RateLimitTable replacement = new RateLimitTable(Math.max(capacity, old.capacity()), offHeap);
+        replacement.reserve(old.capacity());
+        old.next = replacement;
+
+        long now = now();
+        int live = 0;
+        for (int index = 0; index < old.capacity(); index++) {
+            for (;;) {
+                long tat = old.stateAt(index);
+                long key = old.keyAt(index);
+                boolean vigente = key != RateLimitTable.EMPTY && tat > now;
+                if (vigente) {
+                    // Se copia antes de marcar: nadie usa la tabla nueva para esta clave hasta verla MOVED
+                    replacement.putState(key, tat);
+                }
+                if (old.casState(index, tat, RateLimitTable.MOVED)) {
+                    if (vigente) {
+                        live++;
+                    }
+                    break;
+                }
+            }
+        }
+
+        replacement.release();
+        table = replacement;
+        lastLiveEntries = live;
+        rebuilds.incrementAndGet();
+    }
+
+    private int countLive(RateLimitTable current) {
+        long now = now();
+        int live = 0;
+        for (int index = 0; index < current.capacity(); index++) {
+            long tat = current.stateAt(index);
+            if (tat != RateLimitTable.MOVED && tat > now && current.keyAt(index) != RateLimitTable.EMPTY) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    // Tras reconstruir, las claves vigentes ocupan como mucho un 25% de la tabla
+    private int targetCapacity(int live) {
+        return tableSize(Math.max(initialCapacity, live * 4));
+    }
+
+    // Potencia de 2 >= n (mínimo 16)
+    private static int tableSize(int n) {
+        return n <= 16 ? 16 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        RateLimitTable current = table;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tipo", "memoria");
+        stats.put("capacidad", current.capacity());
+        stats.put("ocupadas", current.occupied());
+        stats.put("vigentes", lastLiveEntries);
+        stats.put("reconstrucciones", rebuilds.get());
+        stats.put("offHeap", current.isOffHeap());
+        return stats;
     }
-    
 }
@@ -0,0 +1,194 @@
+package com.utp.timeline.config_seguridad;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tabla hash de direccionamiento abierto (sondeo lineal) sobre longs
+ * primitivos: cada entrada son dos longs, el hash de 64 bits de la clave y
+ * su estado (un único long empaquetado). Todo se actualiza con CAS, sin
+ * locks ni objetos por entrada; el almacenamiento puede estar en el heap o
+ * fuera de él (buffer directo).
+ *
+ * Las entradas no se borran: al reconstruir la tabla solo se copian las
+ * vigentes. Durante la copia cada estado copiado se marca {@link #MOVED} y
+ * quien lo encuentra sigue en {@link #next}.
+ */
+final class RateLimitTable {
+
+    // Clave: 0 = hueco libre. Estado: 0 = sin estado, MOVED = copiado a la tabla siguiente
+    static final long EMPTY = 0L;
+    static final long MOVED = Long.MIN_VALUE;
+
+    // Resultado de find() cuando la tabla está llena
+    static final int FULL = -1;
+
+    private final Storage storage;
+    private final int capacity;
+    private final int mask;
+    // Ocupación a partir de la cual conviene reconstruir (75%)
+    private final int loadLimit;
+    private final AtomicInteger occupied = new AtomicInteger();
+
+    // Huecos que pueden reclamar las peticiones (el resto queda reservado para la copia)
+    private volatile int insertLimit;
+
+    // Tabla que sustituye a esta (se publica antes de marcar la primera entrada)
+    volatile RateLimitTable next;
+
+    RateLimitTable(int capacity, boolean offHeap) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser potencia de 2: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.loadLimit = capacity - (capacity >>> 2);
+        this.insertLimit = capacity;
+        this.storage = offHeap ? new DirectStorage(capacity * 2) : new HeapStorage(capacity * 2);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int loadLimit() {
+        return loadLimit;
+    }
+
+    int occupied() {
+        return occupied.get();
+    }
+
+    // Mientras se copia otra tabla en esta, se reservan huecos para todas sus entradas
+    void reserve(int slots) {
+        insertLimit = capacity - slots;
+    }
+
+    void release() {
+        insertLimit = capacity;
+    }
+
+    boolean isFull() {
+        return occupied.get() >= insertLimit;
+    }
+
+    boolean isOffHeap() {
+        return storage instanceof DirectStorage;
+    }
+
+    /**
+     * Índice de la entrada de la clave; si {@code insert} y no existe, reclama
+     * un hueco libre. Devuelve {@link #FULL} si no existe (o no cabe).
+     */
+    int find(long keyHash, boolean insert) {
+        return probe(keyHash, insert, insertLimit);
+    }
+
+    private int probe(long keyHash, boolean insert, int limit) {
+        int index = (int) (keyHash ^ (keyHash >>> 32)) & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            long key = storage.get(index * 2);
+            if (key == keyHash) {
+                return index;
+            }
+            if (key == EMPTY) {
+                if (!insert || occupied.get() >= limit) {
+                    return FULL;
+                }
+                if (storage.compareAndSet(index * 2, EMPTY, keyHash)) {
+                    occupied.incrementAndGet();
+                    return index;
+                }
+                // Otro hilo reclamó el hueco: se vuelve a mirar el mismo índice
+                probes--;
+                continue;
+            }
+            index = (index + 1) & mask;
+        }
+        return FULL;
+    }
+
+    long keyAt(int index) {
+        return storage.get(index * 2);
+    }
+
+    long stateAt(int index) {
+        return storage.get(index * 2 + 1);
+    }
+
+    boolean casState(int index, long expected, long value) {
+        return storage.compareAndSet(index * 2 + 1, expected, value);
+    }
+
+    // Escritura directa del estado (solo en la tabla nueva, antes de que nadie la use para esa clave)
+    void putState(long keyHash, long state) {
+        int index = probe(keyHash, true, capacity);
+        if (index == FULL) {
+            throw new IllegalStateException("Tabla de rate limit llena al copiar");
+        }
+        storage.set(index * 2 + 1, state);
+    }
+
+    private interface Storage {
+        long get(int slot);
+
+        void set(int slot, long value);
+
+        boolean compareAndSet(int slot, long expected, long value);
+    }
+
+    private static final class HeapStorage implements Storage {
+        private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+        private final long[] slots;
+
+        HeapStorage(int size) {
+            this.slots = new long[size];
+        }
+
+        @Override
+        public long get(int slot) {
+            return (long) SLOTS.getVolatile(slots, slot);
+        }
+
+        @Override
+        public void set(int slot, long value) {
+            SLOTS.setVolatile(slots, slot, value);
+        }
+
+        @Override
+        public boolean compareAndSet(int slot, long expected, long value) {
+            return SLOTS.compareAndSet(slots, slot, expected, value);
+        }
+    }
+
+    // Fuera del heap: no cuenta para el GC aunque haya millones de clientes
+    private static final class DirectStorage implements Storage {
+        private static final VarHandle SLOTS =
+                MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+        private final ByteBuffer buffer;
+
+        DirectStorage(int size) {
+            this.buffer = ByteBuffer.allocateDirect(size * Long.BYTES).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        public long get(int slot) {
+            return (long) SLOTS.getVolatile(buffer, slot * Long.BYTES);
+        }
+
+        @Override
+        public void set(int slot, long value) {
+            SLOTS.setVolatile(buffer, slot * Long.BYTES, value);
+        }
+
+        @Override
+        public boolean compareAndSet(int slot, long expected, long value) {
+            return SLOTS.compareAndSet(buffer, slot * Long.BYTES, expected, value);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.utp.timeline.config_seguridad;
 
 import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
@@ -8,12 +9,22 @@ import java.util.concurrent.TimeUnit;
 
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
-
+@Repeatable(RateLimits.class)
 public @interface RateLimited {
      /**
      * Número máximo de peticiones permitidas
      */
     int maxRequests() default 10;
+
+    /**
+     * Máximo para usuarios PREMIUM (-1: igual que maxRequests, 0: sin límite)
+     */
+    int maxRequestsPremium() default -1;
+
+    /**
+     * Máximo para ADMIN (-1: igual que el de PREMIUM, 0: sin límite)
+     */
+    int maxRequestsAdmin() default -1;
     
     /**
      * Duración de la ventana de tiempo
@@ -33,13 +44,20 @@ public @interface RateLimited {
     /**
      * Tipo de limitación:
      * - IP: Por dirección IP
-     * - USER: Por usuario autenticado
+     * - USER: Por usuario autenticado (por IP si es anónimo)
      * - GLOBAL: Global para todos
+     * - PLAN: Un cupo compartido por todos los usuarios del mismo plan/rol
+     *
+     * GLOBAL y PLAN protegen el servicio, no reparten el cupo: unos pocos
+     * clientes pueden agotarlo para todos los demás. Van siempre acompañados
+     * de un límite USER o IP en la misma ruta, que acota lo que puede gastar
+     * cada cliente (el cupo compartido admite al menos máximo / límite USER
+     * clientes a pleno ritmo).
      */
     LimitType type() default LimitType.IP;
     
     enum LimitType {
-        IP, USER, GLOBAL
+        IP, USER, GLOBAL, PLAN
     }
     
 }
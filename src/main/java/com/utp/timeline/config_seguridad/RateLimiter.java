@@ -0,0 +1,31 @@
+package com.utp.timeline.config_seguridad;
+
+import java.util.Map;
+
+/**
+ * Limitador de peticiones por clave (hash de 64 bits, ver
+ * {@link RateLimitService#hash(CharSequence)}). La implementación local
+ * ({@link RateLimitService}) limita por JVM; {@link RedisRateLimiter} comparte
+ * el límite entre todos los nodos.
+ */
+public interface RateLimiter {
+
+    /**
+     * Consume un token de la clave. Devuelve las peticiones restantes (>= 0)
+     * si se admite, o {@code -milisegundos} hasta el próximo token si no.
+     */
+    long acquire(long keyHash, int maxRequests, long durationMs);
+
+    /**
+     * Devuelve un token obtenido con {@link #acquire}: una petición con varios
+     * límites que rechaza uno de ellos no gasta cupo en los demás.
+     */
+    void release(long keyHash, int maxRequests, long durationMs);
+
+    /**
+     * Segundos hasta que el bucket de la clave vuelva a estar lleno.
+     */
+    long getResetTime(long keyHash, long durationMs);
+
+    Map<String, Object> getStatistics();
+}
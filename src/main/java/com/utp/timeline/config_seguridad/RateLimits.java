@@ -0,0 +1,17 @@
+package com.utp.timeline.config_seguridad;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Contenedor para aplicar varios {@link RateLimited} al mismo endpoint
+ * (p. ej. un límite por usuario y otro agregado por plan).
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimits {
+
+    RateLimited[] value();
+}
@@ -0,0 +1,293 @@
+package com.utp.timeline.config_seguridad;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.utp.timeline.config.CircuitBreaker;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Rate limiting compartido entre nodos: el bucket GCRA de cada clave vive en
+ * Redis y se actualiza con un script Lua atómico (reloj de Redis, no del nodo).
+ *
+ * Para no ir a Redis en cada petición, cada nodo pide un pequeño lote de
+ * tokens ("lease") y los gasta localmente durante como mucho
+ * {@code lease-ttl-ms}. Los tokens del lote ya están descontados en Redis,
+ * así que la suma de todos los nodos nunca supera {@code maxRequests}; los
+ * que caducan sin usarse solo hacen el límite algo más estricto. Los
+ * rechazos también se recuerdan localmente hasta el próximo token.
+ *
+ * Si Redis falla se usa el limitador local ({@link RateLimitService}). Para
+ * que un Redis colgado no retenga las peticiones, los comandos van por una
+ * conexión propia con timeout corto ({@code timeout-ms}, en vez de los 60 s
+ * de Lettuce) y por un circuit breaker: tras {@code failure-threshold} fallos
+ * seguidos se usa el límite local sin intentar Redis durante
+ * {@code open-duration-ms}.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "app.rate-limit.tipo", havingValue = "redis")
+public class RedisRateLimiter implements RateLimiter {
+
+    static final String KEY_PREFIX = "ratelimit:";
+
+    // KEYS[1] = bucket; ARGV = intervalo (µs), ventana (µs), tokens pedidos.
+    // Devuelve {concedidos, restantes | espera en µs si 0 concedidos, µs hasta bucket lleno}
+    private static final RedisScript<List> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.replicate_commands then redis.replicate_commands() end\n" +
+            "local t = redis.call('TIME')\n" +
+            "local now = tonumber(t[1]) * 1000000 + tonumber(t[2])\n" +
+            "local interval = tonumber(ARGV[1])\n" +
+            "local window = tonumber(ARGV[2])\n" +
+            "local wanted = tonumber(ARGV[3])\n" +
+            "local tat = tonumber(redis.call('GET', KEYS[1]) or '0')\n" +
+            "if tat < now then tat = now end\n" +
+            "local granted = math.floor((window - (tat - now)) / interval)\n" +
+            "if granted > wanted then granted = wanted end\n" +
+            "if granted <= 0 then return {0, tat + interval - window - now, tat - now} end\n" +
+            "tat = tat + granted * interval\n" +
+            "redis.call('SET', KEYS[1], string.format('%.0f', tat), 'PX', math.max(1, math.ceil((tat - now) / 1000)))\n" +
+            "return {granted, math.floor((window - (tat - now)) / interval), tat - now}",
+            List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final LettuceConnectionFactory ownConnectionFactory;
+    private final CircuitBreaker circuitBreaker;
+    private final RateLimitService fallback;
+    private final double leaseFraction;
+    private final int leaseMax;
+    private final long leaseTtlMs;
+
+    // Tokens concedidos por Redis pendientes de gastar en este nodo
+    private final ConcurrentHashMap<Long, Lease> leases = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder localRejections = new LongAdder();
+    private final LongAdder redisCalls = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    @Autowired
+    public RedisRateLimiter(StringRedisTemplate redisTemplate,
+                            RateLimitService fallback,
+                            @Value("${app.rate-limit.redis.lease-fraction:0.1}") double leaseFraction,
+                            @Value("${app.rate-limit.redis.lease-max:20}") int leaseMax,
+                            @Value("${app.rate-limit.redis.lease-ttl-ms:1000}") long leaseTtlMs,
+                            @Value("${app.rate-limit.redis.timeout-ms:100}") long commandTimeoutMs,
+                            @Value("${app.rate-limit.redis.failure-threshold:5}") int failureThreshold,
+                            @Value("${app.rate-limit.redis.open-duration-ms:5000}") long openDurationMs) {
+        this.ownConnectionFactory = withCommandTimeout(redisTemplate.getConnectionFactory(), commandTimeoutMs);
+        if (ownConnectionFactory != null) {
+            this.redisTemplate = new StringRedisTemplate(ownConnectionFactory);
+            this.redisTemplate.afterPropertiesSet();
+        } else {
+            this.redisTemplate = redisTemplate;
+        }
+        // Cualquier error de Redis (timeout, conexión) cuenta como caída
+        this.circuitBreaker = new CircuitBreaker("Redis", failureThreshold, openDurationMs, e -> true);
+        this.fallback = fallback;
+        this.leaseFraction = leaseFraction;
+        this.leaseMax = leaseMax;
+        this.leaseTtlMs = leaseTtlMs;
+    }
+
+    @Override
+    public long acquire(long keyHash, int maxRequests, long durationMs) {
+        long now = System.currentTimeMillis();
+
+        Lease lease = leases.get(keyHash);
+        if (lease != null && lease.expiresAt > now) {
+            int left = lease.take();
+            if (left >= 0) {
+                localHits.increment();
+                return left;
+            }
+            if (lease.denied) {
+                localRejections.increment();
+                return -Math.max(1, lease.expiresAt - now);
+            }
+        }
+
+        long window = durationMs * 1000;
+        long interval = Math.max(1, window / maxRequests);
+        int wanted = leaseSize(maxRequests);
+
+        List<?> result;
+        try {
+            result = circuitBreaker.execute(() -> {
+                redisCalls.increment();
+                return redisTemplate.execute(ACQUIRE_SCRIPT,
+                        Collections.singletonList(KEY_PREFIX + Long.toHexString(keyHash)),
+                        Long.toString(interval), Long.toString(window), Integer.toString(wanted));
+            });
+        } catch (CircuitBreaker.CircuitBreakerOpenException e) {
+            return fallback.acquire(keyHash, maxRequests, durationMs);
+        } catch (RuntimeException e) {
+            // Redis no disponible: límite por nodo mientras tanto
+            redisErrors.increment();
+            return fallback.acquire(keyHash, maxRequests, durationMs);
+        }
+
+        long granted = ((Number) result.get(0)).longValue();
+        long resetAt = now + microsToMillis(((Number) result.get(2)).longValue());
+
+        if (granted <= 0) {
+            long waitMs = Math.max(1, microsToMillis(((Number) result.get(1)).longValue()));
+            // Se recuerda el rechazo hasta el próximo token (acotado por el TTL del lease)
+            leases.put(keyHash, new Lease(0, now + Math.min(waitMs, leaseTtlMs), resetAt, true));
+            return -waitMs;
+        }
+
+        // Un token para esta petición; el resto queda para las siguientes (si otro hilo
+        // guarda su lote a la vez, uno de los dos se pierde: el límite solo se endurece)
+        int leftover = (int) granted - 1;
+        leases.put(keyHash, new Lease(leftover, now + leaseTtlMs, resetAt, false));
+        return leftover + ((Number) result.get(1)).longValue();
+    }
+
+    // El token vuelve al lote del nodo (todo acquire concedido por Redis deja uno)
+    @Override
+    public void release(long keyHash, int maxRequests, long durationMs) {
+        Lease lease = leases.get(keyHash);
+        if (lease != null && !lease.denied && lease.expiresAt > System.currentTimeMillis()) {
+            lease.tokens.incrementAndGet();
+        } else {
+            fallback.release(keyHash, maxRequests, durationMs);
+        }
+    }
+
+    @Override
+    public long getResetTime(long keyHash, long durationMs) {
+        Lease lease = leases.get(keyHash);
+        if (lease == null) {
+            return 0;
+        }
+        return Math.max(0, (lease.resetAt - System.currentTimeMillis()) / 1000);
+    }
+
+    // Tamaño del lote: una fracción del límite (1 para límites pequeños como el login)
+    int leaseSize(int maxRequests) {
+        return (int) Math.max(1, Math.min(leaseMax, (long) (maxRequests * leaseFraction)));
+    }
+
+    /**
+     * Copia de la conexión Lettuce compartida con otro timeout de comando; null
+     * si la factoría no es de Lettuce (se usa tal cual, solo con el circuit breaker).
+     */
+    static LettuceConnectionFactory withCommandTimeout(RedisConnectionFactory shared, long commandTimeoutMs) {
+        if (!(shared instanceof LettuceConnectionFactory)) {
+            return null;
+        }
+        LettuceConnectionFactory lettuce = (LettuceConnectionFactory) shared;
+        LettuceClientConfiguration current = lettuce.getClientConfiguration();
+
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder();
+        if (current.isUseSsl()) {
+            LettuceClientConfiguration.LettuceSslClientConfigurationBuilder ssl =
+                    builder.useSsl().verifyPeer(current.getVerifyMode());
+            builder = current.isStartTls() ? ssl.startTls().and() : ssl.and();
+        }
+        current.getClientResources().ifPresent(builder::clientResources);
+        current.getClientOptions().ifPresent(builder::clientOptions);
+        current.getClientName().ifPresent(builder::clientName);
+        current.getReadFrom().ifPresent(builder::readFrom);
+        current.getRedisCredentialsProviderFactory().ifPresent(builder::redisCredentialsProviderFactory);
+        LettuceClientConfiguration configuration = builder
+                .commandTimeout(Duration.ofMillis(commandTimeoutMs))
+                .shutdownTimeout(current.getShutdownTimeout())
+                .build();
+
+        LettuceConnectionFactory factory;
+        if (lettuce.isClusterAware()) {
+            factory = new LettuceConnectionFactory(lettuce.getClusterConfiguration(), configuration);
+        } else if (lettuce.isRedisSentinelAware()) {
+            factory = new LettuceConnectionFactory(lettuce.getSentinelConfiguration(), configuration);
+        } else {
+            factory = new LettuceConnectionFactory(lettuce.getStandaloneConfiguration(), configuration);
+        }
+        factory.afterPropertiesSet();
+        factory.start();
+        return factory;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (ownConnectionFactory != null) {
+            ownConnectionFactory.destroy();
+        }
+    }
+
+    private static long microsToMillis(long micros) {
+        return (micros + 999) / 1000;
+    }
+
+    /**
+     * Descarta los leases caducados.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.redis.lease-purge-interval-ms:30000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        leases.values().removeIf(lease -> lease.expiresAt <= now);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tipo", "redis");
+        stats.put("leases", leases.size());
+        stats.put("aciertosLocales", localHits.sum());
+        stats.put("rechazosLocales", localRejections.sum());
+        stats.put("consultasRedis", redisCalls.sum());
+        stats.put("erroresRedis", redisErrors.sum());
+        stats.put("circuito", circuitBreaker.getStatistics());
+        stats.put("local", fallback.getStatistics());
+        return stats;
+    }
+
+    private static final class Lease {
+        final AtomicInteger tokens;
+        final long expiresAt;
+        final long resetAt;
+        final boolean denied;
+
+        Lease(int tokens, long expiresAt, long resetAt, boolean denied) {
+            this.tokens = new AtomicInteger(tokens);
+            this.expiresAt = expiresAt;
+            this.resetAt = resetAt;
+            this.denied = denied;
+        }
+
+        // Tokens que quedan tras gastar uno, o -1 si no quedaba ninguno
+        int take() {
+            for (;;) {
+                int current = tokens.get();
+                if (current <= 0) {
+                    return -1;
+                }
+                if (tokens.compareAndSet(current, current - 1)) {
+                    return current - 1;
+                }
+            }
+        }
+    }
+}
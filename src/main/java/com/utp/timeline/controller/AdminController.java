@@ -0,0 +1,118 @@
+package com.utp.timeline.controller;
+
+import com.utp.timeline.config.CircuitBreaker;
+import com.utp.timeline.config.OutboundHttpMetrics;
+import com.utp.timeline.config.PasswordHashingExecutor;
+import com.utp.timeline.config.TokenStateStore;
+import com.utp.timeline.config.VerifiedTokenCache;
+import com.utp.timeline.config_seguridad.BulkheadAspect;
+import com.utp.timeline.config_seguridad.RateLimitHotKeys;
+import com.utp.timeline.config_seguridad.RateLimiter;
+import com.utp.timeline.service.GuardadoDiferidoService;
+import com.utp.timeline.service.PrincipalCacheService;
+import com.utp.timeline.service.RecodificadorDatos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final PrincipalCacheService principalCacheService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenStateStore tokenStateStore;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final OutboundHttpMetrics outboundHttpMetrics;
+    private final CircuitBreaker googleCircuitBreaker;
+    private final RateLimiter rateLimiter;
+    private final RateLimitHotKeys rateLimitHotKeys;
+    private final BulkheadAspect bulkheadAspect;
+    private final GuardadoDiferidoService guardadoDiferidoService;
+    private final RecodificadorDatos recodificadorDatos;
+
+    @Autowired
+    public AdminController(PrincipalCacheService principalCacheService,
+                           VerifiedTokenCache verifiedTokenCache,
+                           TokenStateStore tokenStateStore,
+                           PasswordHashingExecutor passwordHashingExecutor,
+                           OutboundHttpMetrics outboundHttpMetrics,
+                           CircuitBreaker googleCircuitBreaker,
+                           RateLimiter rateLimiter,
+                           RateLimitHotKeys rateLimitHotKeys,
+                           BulkheadAspect bulkheadAspect,
+                           GuardadoDiferidoService guardadoDiferidoService,
+                           RecodificadorDatos recodificadorDatos) {
+        this.principalCacheService = principalCacheService;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenStateStore = tokenStateStore;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.outboundHttpMetrics = outboundHttpMetrics;
+        this.googleCircuitBreaker = googleCircuitBreaker;
+        this.rateLimiter = rateLimiter;
+        this.rateLimitHotKeys = rateLimitHotKeys;
+        this.bulkheadAspect = bulkheadAspect;
+        this.guardadoDiferidoService = guardadoDiferidoService;
+        this.recodificadorDatos = recodificadorDatos;
+    }
+
+    // GET /api/admin/cache/estadisticas - Métricas de las cachés de autenticación
+    @GetMapping("/cache/estadisticas")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasCache() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("principales", principalCacheService.obtenerEstadisticas());
+        estadisticas.put("tokensVerificados", Map.of("tamano", verifiedTokenCache.size()));
+        estadisticas.put("estadoTokens", tokenStateStore.getStatistics());
+        return ResponseEntity.ok(estadisticas);
+    }
+
+    // GET /api/admin/hashing/estadisticas - Cola y latencia del pool de BCrypt
+    @GetMapping("/hashing/estadisticas")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasHashing() {
+        return ResponseEntity.ok(passwordHashingExecutor.getStatistics());
+    }
+
+    // GET /api/admin/http/estadisticas - Pool HTTP saliente, latencias y circuit breaker de Google
+    @GetMapping("/http/estadisticas")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasHttp() {
+        Map<String, Object> estadisticas = new HashMap<>(outboundHttpMetrics.getStatistics());
+        estadisticas.put("circuitoGoogle", googleCircuitBreaker.getStatistics());
+        return ResponseEntity.ok(estadisticas);
+    }
+
+    // GET /api/admin/rate-limit/estadisticas - Tabla local de rate limiting y uso de Redis
+    @GetMapping("/rate-limit/estadisticas")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasRateLimit() {
+        return ResponseEntity.ok(rateLimiter.getStatistics());
+    }
+
+    // GET /api/admin/rate-limit/top - IPs, usuarios y endpoints con más peticiones recientes
+    @GetMapping("/rate-limit/top")
+    public ResponseEntity<Map<String, Object>> obtenerTopRateLimit(@RequestParam(defaultValue = "10") int limite) {
+        return ResponseEntity.ok(rateLimitHotKeys.getTop(Math.max(1, limite)));
+    }
+
+    // GET /api/admin/bulkhead/estadisticas - Llamadas en curso, en espera y rechazadas por compartimento
+    @GetMapping("/bulkhead/estadisticas")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasBulkhead() {
+        return ResponseEntity.ok(bulkheadAspect.getStatistics());
+    }
+
+    // GET /api/admin/autosave/estadisticas - Guardados diferidos pendientes, lotes y conflictos
+    @GetMapping("/autosave/estadisticas")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasAutosave() {
+        return ResponseEntity.ok(guardadoDiferidoService.getStatistics());
+    }
+
+    // GET /api/admin/datos/compresion/estadisticas - Ratio de compresión, diccionarios y filas recodificadas
+    @GetMapping("/datos/compresion/estadisticas")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasCompresion() {
+        return ResponseEntity.ok(recodificadorDatos.getStatistics());
+    }
+}
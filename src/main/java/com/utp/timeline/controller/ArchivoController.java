@@ -1,5 +1,6 @@
 package com.utp.timeline.controller;
 
+import com.utp.timeline.config_seguridad.RateLimited;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -10,6 +11,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.UUID;
 
 @RestController
@@ -23,6 +25,15 @@ public class ArchivoController {
 
     // POST /api/archivos/subir
     @PostMapping("/subir")
+    @RateLimited(
+        maxRequests = 10,
+        maxRequestsPremium = 60,
+        maxRequestsAdmin = 0,
+        duration = 1,
+        unit = TimeUnit.MINUTES,
+        type = RateLimited.LimitType.USER,
+        message = "Demasiadas subidas de archivos"
+    )
     public ResponseEntity<?> subirArchivo(
             @RequestParam("archivo") MultipartFile archivo,
             @RequestParam("usuarioId") Long usuarioId,
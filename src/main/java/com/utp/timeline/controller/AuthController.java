@@ -2,23 +2,26 @@ package com.utp.timeline.controller;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.utp.timeline.config.JwtService;
+import com.utp.timeline.config.PasswordHashingExecutor;
+import com.utp.timeline.config.VerifiedToken;
 import com.utp.timeline.config_seguridad.RateLimited;
 import com.utp.timeline.entity.Usuario;
-import com.utp.timeline.service.CustomUserDetailsService;
+import com.utp.timeline.service.AuthService;
 import com.utp.timeline.service.GoogleAuthService;
+import com.utp.timeline.service.PrincipalCacheService;
 import com.utp.timeline.service.UsuarioService;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -30,20 +33,26 @@ import jakarta.servlet.http.HttpServletRequest;
 public class AuthController {
 
     @Autowired
-    private AuthenticationManager authenticationManager;
+    private AuthService authService;
 
     @Autowired
     private JwtService jwtService;
 
-    @Autowired
-    private CustomUserDetailsService userDetailsService;
-
     @Autowired
     private UsuarioService usuarioService;
 
     @Autowired
     private GoogleAuthService googleAuthService;
 
+    @Autowired
+    private PrincipalCacheService principalCacheService;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     // Login tradicional
     @PostMapping("/login")
     @RateLimited(
@@ -53,38 +62,27 @@ public class AuthController {
         type = RateLimited.LimitType.IP,
         message = "Demasiados intentos"
     )
-    public ResponseEntity<Map<String, Object>> login(@RequestBody LoginRequest loginRequest) {
-        // Autenticar usuario
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        loginRequest.getEmail(),
-                        loginRequest.getPassword()
-                )
-        );
-
-        // Cargar detalles del usuario
-        UserDetails userDetails = userDetailsService.loadUserByUsername(loginRequest.getEmail());
-        Usuario usuario = usuarioService.obtenerUsuarioPorEmail(loginRequest.getEmail());
-
-        // Generar token
-        String token = jwtService.generateToken(userDetails);
-
-        // Calcular tiempo de expiración
-        Long expiraEn = jwtService.getRemainingTime(token);
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("token", token);
-        response.put("tipo", "Bearer");
-        response.put("expiraEn", expiraEn);
-        response.put("usuario", Map.of(
-                "id", usuario.getId(),
-                "nombre", usuario.getNombre(),
-                "email", usuario.getEmail(),
-                "rol", usuario.getRol(),
-                "plan", usuario.getPlan()
-        ));
-
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> login(@RequestBody LoginRequest loginRequest) {
+        // Una sola consulta del usuario; BCrypt en el pool de hashing
+        return authService.autenticar(loginRequest.getEmail(), loginRequest.getPassword())
+                .thenApply(sesion -> {
+                    Usuario usuario = sesion.getUsuario();
+
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("token", sesion.getAccessToken());
+                    response.putAll(sesion.getTokens());
+                    response.put("tipo", "Bearer");
+                    response.put("expiraEn", sesion.getExpiraEn());
+                    response.put("usuario", Map.of(
+                            "id", usuario.getId(),
+                            "nombre", usuario.getNombre(),
+                            "email", usuario.getEmail(),
+                            "rol", usuario.getRol(),
+                            "plan", usuario.getPlan()
+                    ));
+
+                    return ResponseEntity.ok(response);
+                });
     }
 
     // Login con Google
@@ -152,13 +150,13 @@ public class AuthController {
                 ));
             }
 
-            UserDetails userDetails = userDetailsService.loadUserByUsername(usuario.getEmail());
-            String token = jwtService.generateToken(userDetails);
+            AuthService.SesionAutenticada sesion = authService.iniciarSesion(usuario);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("token", token);
+            response.put("token", sesion.getAccessToken());
+            response.putAll(sesion.getTokens());
             response.put("tipo", "Bearer");
-            response.put("expiraEn", jwtService.getRemainingTime(token));
+            response.put("expiraEn", sesion.getExpiraEn());
             response.put("usuario", Map.of(
                     "id", usuario.getId(),
                     "nombre", usuario.getNombre(),
@@ -181,46 +179,55 @@ public class AuthController {
 
     // Registro de nuevo usuario
     @PostMapping("/registro")
-    public ResponseEntity<Map<String, Object>> registro(@RequestBody RegistroRequest registroRequest) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> registro(@RequestBody RegistroRequest registroRequest) {
+        // Un email repetido se rechaza sin gastar un BCrypt (crearUsuario lo vuelve a comprobar)
+        if (usuarioService.existeEmail(registroRequest.getEmail())) {
+            throw new RuntimeException("El email ya está registrado");
+        }
+
         // Crear nuevo usuario
         Usuario nuevoUsuario = new Usuario();
         nuevoUsuario.setNombre(registroRequest.getNombre());
         nuevoUsuario.setEmail(registroRequest.getEmail());
-        nuevoUsuario.setContrasena(registroRequest.getPassword());
 
-        Usuario usuarioCreado = usuarioService.crearUsuario(nuevoUsuario);
+        // Cifrar la contraseña (BCrypt) en el pool de hashing; el guardado y los tokens, fuera de él
+        String contrasena = registroRequest.getPassword();
+        return passwordHashingExecutor.submit(() -> passwordEncoder.encode(contrasena)).thenApplyAsync(hash -> {
+            nuevoUsuario.setContrasena(hash);
+            Usuario usuarioCreado = usuarioService.crearUsuarioConContrasenaCifrada(nuevoUsuario);
 
-        // Autenticar y generar token
-        UserDetails userDetails = userDetailsService.loadUserByUsername(usuarioCreado.getEmail());
-        String token = jwtService.generateToken(userDetails);
+            // Sesión a partir del usuario recién guardado (sin volver a consultarlo)
+            AuthService.SesionAutenticada sesion = authService.iniciarSesion(usuarioCreado);
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("token", token);
-        response.put("tipo", "Bearer");
-        response.put("expiraEn", jwtService.getRemainingTime(token));
-        response.put("usuario", Map.of(
-                "id", usuarioCreado.getId(),
-                "nombre", usuarioCreado.getNombre(),
-                "email", usuarioCreado.getEmail(),
-                "rol", usuarioCreado.getRol(),
-                "plan", usuarioCreado.getPlan()
-        ));
+            Map<String, Object> response = new HashMap<>();
+            response.put("token", sesion.getAccessToken());
+            response.putAll(sesion.getTokens());
+            response.put("tipo", "Bearer");
+            response.put("expiraEn", sesion.getExpiraEn());
+            response.put("usuario", Map.of(
+                    "id", usuarioCreado.getId(),
+                    "nombre", usuarioCreado.getNombre(),
+                    "email", usuarioCreado.getEmail(),
+                    "rol", usuarioCreado.getRol(),
+                    "plan", usuarioCreado.getPlan()
+            ));
 
-        return ResponseEntity.ok(response);
+            return ResponseEntity.ok(response);
+        }, passwordHashingExecutor.getContinuationExecutor());
     }
 
     // Verificar token
     @PostMapping("/verificar")
     public ResponseEntity<Map<String, Object>> verificarToken(@RequestBody Map<String, String> request) {
         String token = request.get("token");
-        boolean esValido = jwtService.validateToken(token);
+        VerifiedToken verificado = jwtService.verifyToken(token).orElse(null);
+        boolean esValido = verificado != null;
 
         Map<String, Object> response = new HashMap<>();
         response.put("valido", esValido);
 
         if (esValido) {
-            String email = jwtService.extractUsername(token);
-            Usuario usuario = usuarioService.obtenerUsuarioPorEmail(email);
+            Usuario usuario = usuarioService.obtenerUsuarioPorEmail(verificado.getUsername());
             response.put("usuario", Map.of(
                     "id", usuario.getId(),
                     "nombre", usuario.getNombre(),
@@ -228,50 +235,80 @@ public class AuthController {
                     "rol", usuario.getRol(),
                     "plan", usuario.getPlan()
             ));
-            response.put("tiempoRestante", jwtService.getRemainingTime(token));
+            response.put("tiempoRestante", verificado.getRemainingTime(System.currentTimeMillis()));
         }
 
         return ResponseEntity.ok(response);
     }
 
-    // Refrescar token
+    // Refrescar token: rota el refresh token y emite un nuevo par (sin BCrypt)
     @PostMapping("/refresh")
     public ResponseEntity<Map<String, Object>> refreshToken(@RequestBody Map<String, String> request) {
-        String token = request.get("token");
-
-        try {
-            String nuevoToken = jwtService.refreshToken(token);
-            String email = jwtService.extractUsername(nuevoToken);
-            Usuario usuario = usuarioService.obtenerUsuarioPorEmail(email);
+        String refreshToken = request.get("refreshToken");
+        if (refreshToken == null) {
+            refreshToken = request.get("token");
+        }
+        if (refreshToken == null || refreshToken.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Refresh token requerido"));
+        }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("token", nuevoToken);
-            response.put("tipo", "Bearer");
-            response.put("expiraEn", jwtService.getRemainingTime(nuevoToken));
-            response.put("usuario", Map.of(
-                    "id", usuario.getId(),
-                    "nombre", usuario.getNombre(),
-                    "email", usuario.getEmail(),
-                    "rol", usuario.getRol(),
-                    "plan", usuario.getPlan()
-            ));
+        VerifiedToken verificado = jwtService.consumeRefreshToken(refreshToken).orElse(null);
+        if (verificado == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Refresh token inválido o expirado"));
+        }
 
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Token inválido"));
+        // Usuario desde la caché de principales (con el plan y rol actuales)
+        Usuario usuario = principalCacheService.obtener(verificado.getUsername())
+                .map(PrincipalCacheService.PrincipalUsuario::getUsuario)
+                .orElse(null);
+        if (usuario == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Usuario no encontrado"));
         }
+
+        // El nuevo refresh token sigue en la familia (sesión) del consumido
+        Map<String, String> tokens = jwtService.generateTokenPair(usuario, jwtService.familyOf(verificado));
+        String nuevoToken = tokens.get("accessToken");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", nuevoToken);
+        response.putAll(tokens);
+        response.put("tipo", "Bearer");
+        response.put("expiraEn", jwtService.getRemainingTime(nuevoToken));
+        response.put("usuario", Map.of(
+                "id", usuario.getId(),
+                "nombre", usuario.getNombre(),
+                "email", usuario.getEmail(),
+                "rol", usuario.getRol(),
+                "plan", usuario.getPlan()
+        ));
+
+        return ResponseEntity.ok(response);
     }
 
-    // LOGOUT básico
+    // LOGOUT: revoca el access token y el refresh token del usuario
     @PostMapping("/logout")
-    public ResponseEntity<Map<String, String>> logout(HttpServletRequest request) {
+    public ResponseEntity<Map<String, String>> logout(HttpServletRequest request,
+                                                      @RequestBody(required = false) Map<String, String> body) {
         try {
+            // Con el refresh token se cierra solo la sesión de este dispositivo;
+            // sin él no se sabe cuál es y se cierran todas las del usuario
+            String refreshToken = body != null ? body.get("refreshToken") : null;
+
             String authHeader = request.getHeader("Authorization");
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 String token = authHeader.substring(7);
+                jwtService.verifyAccessToken(token).ifPresent(verificado -> {
+                    jwtService.revokeToken(token);
+                    if (refreshToken == null) {
+                        jwtService.revokeAllUserTokens(verificado.getUsername());
+                    }
+                });
+            }
 
-                // Log para debugging
-                System.out.println("Usuario hizo logout - Token: " + token.substring(0, 10) + "...");
+            if (refreshToken != null) {
+                jwtService.revokeRefreshFamily(refreshToken);
             }
 
             Map<String, String> response = new HashMap<>();
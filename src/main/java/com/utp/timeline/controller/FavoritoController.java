@@ -198,30 +198,26 @@ public class FavoritoController {
     // GET /api/favoritos/admin/estadisticas - Estadísticas de favoritos
     @GetMapping("/admin/estadisticas")
     public ResponseEntity<?> obtenerEstadisticasFavoritos() {
+        Usuario usuario;
         try {
-            Usuario usuario = currentUserService.getCurrentUser();
-
-            if (usuario.getRol() != Usuario.Rol.ADMIN) {
-                Map<String, String> error = new HashMap<>();
-                error.put("error", "Acceso denegado. Se requiere rol ADMIN");
-                return ResponseEntity.status(403).body(error);
-            }
-
-            Map<String, Object> estadisticas = favoritoService.obtenerEstadisticasFavoritos();
-            return ResponseEntity.ok(estadisticas);
-
+            usuario = currentUserService.getCurrentUser();
         } catch (RuntimeException e) {
             // Error de autenticación (usuario no encontrado, etc.)
             Map<String, String> error = new HashMap<>();
             error.put("error", "Error de autenticación: " + e.getMessage());
             return ResponseEntity.status(401).body(error);
-        } catch (Exception e) {
-            // Error general del servidor
+        }
+
+        if (usuario.getRol() != Usuario.Rol.ADMIN) {
             Map<String, String> error = new HashMap<>();
-            error.put("error", "Error interno del servidor");
-            e.printStackTrace(); // Para debugging
-            return ResponseEntity.status(500).body(error);
+            error.put("error", "Acceso denegado. Se requiere rol ADMIN");
+            return ResponseEntity.status(403).body(error);
         }
+
+        // Los fallos del servicio no son de autenticación: el handler global devuelve
+        // 503 si el bulkhead está lleno y 500 en otro caso
+        Map<String, Object> estadisticas = favoritoService.obtenerEstadisticasFavoritos();
+        return ResponseEntity.ok(estadisticas);
     }
 
     // GET /api/favoritos/admin/populares - Plantillas más populares (global)
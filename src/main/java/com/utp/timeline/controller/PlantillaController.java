@@ -4,7 +4,9 @@ import com.utp.timeline.dto.PlantillaEstadisticaDTO;
 import com.utp.timeline.entity.Plantilla;
 import com.utp.timeline.entity.Usuario;
 import com.utp.timeline.repository.PlantillaRepository;
+import com.utp.timeline.service.ConflictoVersionException;
 import com.utp.timeline.service.PlantillaService;
+import com.utp.timeline.config_seguridad.RateLimited;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -20,6 +22,7 @@ import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/plantillas")
@@ -42,17 +45,13 @@ public class PlantillaController {
 
     @GetMapping("/publicas")
     public ResponseEntity<List<PlantillaResponseDTO>> obtenerPlantillasPublicas() {
-        List<Plantilla> plantillas = plantillaRepository.findPublicasActivas();
-        List<PlantillaResponseDTO> plantillasDTO = plantillaMapper.toDtoList(plantillas);
-        return ResponseEntity.ok(plantillasDTO);
+        return ResponseEntity.ok(plantillaService.obtenerPlantillasPublicas());
     }
 
     @GetMapping
     public ResponseEntity<List<PlantillaResponseDTO>> obtenerPlantillasParaUsuario() {
         Usuario usuario = currentUserService.getCurrentUser();
-        List<Plantilla> plantillas = plantillaService.obtenerPlantillasDisponibles(usuario);
-        List<PlantillaResponseDTO> plantillasDTO = plantillaMapper.toDtoList(plantillas);
-        return ResponseEntity.ok(plantillasDTO);
+        return ResponseEntity.ok(plantillaService.obtenerPlantillasDisponibles(usuario));
     }
 
 
@@ -62,9 +61,7 @@ public class PlantillaController {
     public ResponseEntity<List<PlantillaResponseDTO>> obtenerMisPlantillas() {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
-            List<Plantilla> plantillas = plantillaService.obtenerMisPlantillas(usuario);
-            List<PlantillaResponseDTO> plantillasDTO = plantillaMapper.toDtoList(plantillas);
-            return ResponseEntity.ok(plantillasDTO);
+            return ResponseEntity.ok(plantillaService.obtenerMisPlantillas(usuario));
         } catch (Exception e) {
             return ResponseEntity.status(401).build();
         }
@@ -117,7 +114,7 @@ public class PlantillaController {
 
             Plantilla plantilla = plantillaService.obtenerPlantillaPorId(id, usuario);
             PlantillaResponseDTO plantillaDTO = plantillaMapper.toDto(plantilla);
-            return ResponseEntity.ok(plantillaDTO);
+            return ResponseEntity.ok().eTag(Long.toString(plantillaDTO.getVersion())).body(plantillaDTO);
         } catch (RuntimeException e) {
 
             return ResponseEntity.notFound().build();
@@ -129,9 +126,7 @@ public class PlantillaController {
     public ResponseEntity<List<PlantillaResponseDTO>> obtenerPlantillasPorCategoria(@PathVariable Integer idCategoria) {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
-            List<Plantilla> plantillas = plantillaService.obtenerPlantillasPorCategoria(idCategoria, usuario);
-            List<PlantillaResponseDTO> plantillasDTO = plantillaMapper.toDtoList(plantillas);
-            return ResponseEntity.ok(plantillasDTO);
+            return ResponseEntity.ok(plantillaService.obtenerPlantillasPorCategoria(idCategoria, usuario));
         } catch (Exception e) {
             return ResponseEntity.status(401).build();
         }
@@ -152,12 +147,18 @@ public class PlantillaController {
 
     // PUT /api/plantillas/{id} - Actualizar plantilla
     @PutMapping("/{id}")
-    public ResponseEntity<PlantillaResponseDTO> actualizarPlantilla(@PathVariable Long id, @RequestBody Plantilla plantilla) {
+    public ResponseEntity<?> actualizarPlantilla(@PathVariable Long id, @RequestBody Plantilla plantilla,
+                                                 @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
-            Plantilla plantillaActualizada = plantillaService.actualizarPlantilla(id, plantilla, usuario);
+            Plantilla plantillaActualizada = plantillaService.actualizarPlantilla(id, plantilla,
+                    PrecondicionVersion.versionIfMatch(ifMatch, () -> plantillaService.obtenerVersion(id, usuario)), usuario);
             PlantillaResponseDTO plantillaDTO = plantillaMapper.toDto(plantillaActualizada);
-            return ResponseEntity.ok(plantillaDTO);
+            return ResponseEntity.ok().eTag(Long.toString(plantillaDTO.getVersion())).body(plantillaDTO);
+        } catch (ConflictoVersionException e) {
+            return PrecondicionVersion.conflicto(e, true);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -207,6 +208,15 @@ public class PlantillaController {
 
     // POST /api/plantillas/{id}/duplicar - Duplicar plantilla
     @PostMapping("/{id}/duplicar")
+    @RateLimited(
+        maxRequests = 5,
+        maxRequestsPremium = 30,
+        maxRequestsAdmin = 0,
+        duration = 1,
+        unit = TimeUnit.MINUTES,
+        type = RateLimited.LimitType.USER,
+        message = "Demasiadas duplicaciones de plantillas"
+    )
     public ResponseEntity<PlantillaResponseDTO> duplicarPlantilla(@PathVariable Long id) {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
@@ -246,17 +256,20 @@ public class PlantillaController {
     // GET /api/plantillas/admin/estadisticas - Estadísticas para admin
     @GetMapping("/admin/estadisticas")
     public ResponseEntity<?> obtenerEstadisticasAdmin() {
+        // El 401 es solo para fallos de autenticación; los errores de las estadísticas
+        // (incluido el bulkhead lleno) los resuelve el handler global
+        Usuario usuario;
         try {
-            Usuario usuario = currentUserService.getCurrentUser();
-            if (usuario.getRol() != Usuario.Rol.ADMIN) {
-                return ResponseEntity.status(403).build();
-            }
-
-            Map<String, Object> estadisticas = plantillaService.obtenerEstadisticasAdmin();
-            return ResponseEntity.ok(estadisticas);
-        } catch (Exception e) {
+            usuario = currentUserService.getCurrentUser();
+        } catch (RuntimeException e) {
             return ResponseEntity.status(401).build();
         }
+        if (usuario.getRol() != Usuario.Rol.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+
+        Map<String, Object> estadisticas = plantillaService.obtenerEstadisticasAdmin();
+        return ResponseEntity.ok(estadisticas);
     }
 
     // GET /api/plantillas/admin/todas - Obtener todas las plantillas (admin only)
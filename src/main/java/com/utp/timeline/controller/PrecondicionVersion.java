@@ -0,0 +1,91 @@
+package com.utp.timeline.controller;
+
+import com.utp.timeline.service.ConflictoVersionException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * If-Match / ETag de los recursos versionados (proyectos y plantillas).
+ * El ETag es la versión entre comillas: "7".
+ */
+final class PrecondicionVersion {
+
+    private PrecondicionVersion() {}
+
+    // Versión que nunca coincide (empiezan en 0): el UPDATE condicionado no escribe y se responde 412
+    static final long NINGUNA = -1L;
+
+    /**
+     * Versión del If-Match; null si falta o es "*" (sin comprobación). La
+     * comparación es fuerte (RFC 9110): una etiqueta débil W/"7" nunca
+     * coincide. Con una lista ("6", "7") vale la versión vigente si está en
+     * ella; {@code versionActual} solo se consulta en ese caso.
+     */
+    static Long versionIfMatch(String ifMatch, LongSupplier versionActual) {
+        if (!tieneIfMatch(ifMatch)) {
+            return null;
+        }
+        Set<Long> versiones = new LinkedHashSet<>();
+        for (String parte : ifMatch.split(",")) {
+            String etiqueta = parte.trim();
+            boolean debil = etiqueta.startsWith("W/");
+            Long version = versionDeEtiqueta(debil ? etiqueta.substring(2) : etiqueta, ifMatch);
+            if (!debil && version != null) {
+                versiones.add(version);
+            }
+        }
+        if (versiones.isEmpty()) {
+            return NINGUNA;
+        }
+        if (versiones.size() == 1) {
+            return versiones.iterator().next();
+        }
+        long actual = versionActual.getAsLong();
+        return versiones.contains(actual) ? actual : NINGUNA;
+    }
+
+    // Sin If-Match o con "*" no hay precondición de versión
+    static boolean tieneIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return false;
+        }
+        for (String parte : ifMatch.split(",")) {
+            if (parte.trim().equals("*")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // "7" (o 7 sin comillas, como se aceptaba antes); null si es una etiqueta que no es nuestra
+    private static Long versionDeEtiqueta(String etiqueta, String ifMatch) {
+        boolean entreComillas = etiqueta.length() >= 2 && etiqueta.startsWith("\"") && etiqueta.endsWith("\"");
+        String valor = entreComillas ? etiqueta.substring(1, etiqueta.length() - 1) : etiqueta;
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            if (entreComillas && valor.indexOf('"') < 0) {
+                return null;
+            }
+            throw new IllegalArgumentException("If-Match inválido: " + ifMatch);
+        }
+    }
+
+    /**
+     * 412 si el cliente mandó If-Match (su versión ya no es la vigente);
+     * 409 si no lo mandó y otro guardado se cruzó con el suyo.
+     */
+    static ResponseEntity<?> conflicto(ConflictoVersionException e, boolean conIfMatch) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        error.put("versionActual", e.getVersionActual());
+        HttpStatus status = conIfMatch ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).eTag(Long.toString(e.getVersionActual())).body(error);
+    }
+}
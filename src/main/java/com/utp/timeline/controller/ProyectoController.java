@@ -6,8 +6,11 @@ import com.utp.timeline.dto.ProyectoResponseDTO;
 import com.utp.timeline.entity.Plantilla;
 import com.utp.timeline.entity.Proyecto;
 import com.utp.timeline.entity.Usuario;
+import com.utp.timeline.service.ConflictoVersionException;
 import com.utp.timeline.service.CurrentUserService;
 import com.utp.timeline.service.ProyectoService;
+import com.utp.timeline.config_seguridad.RateLimited;
+import com.utp.timeline.config_seguridad.BulkheadFullException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -15,6 +18,7 @@ import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/proyectos")
@@ -38,9 +42,7 @@ public class ProyectoController {
     public ResponseEntity<List<ProyectoResponseDTO>> obtenerProyectosUsuario() {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
-            List<Proyecto> proyectos = proyectoService.obtenerProyectosUsuario(usuario);
-            List<ProyectoResponseDTO> proyectosDTO = proyectoMapper.toDtoList(proyectos);
-            return ResponseEntity.ok(proyectosDTO);
+            return ResponseEntity.ok(proyectoService.obtenerProyectosUsuario(usuario));
         } catch (Exception e) {
             return ResponseEntity.status(401).build();
         }
@@ -51,9 +53,7 @@ public class ProyectoController {
     public ResponseEntity<List<ProyectoResponseDTO>> obtenerProyectosRecientes() {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
-            List<Proyecto> proyectos = proyectoService.obtenerProyectosRecientes(usuario);
-            List<ProyectoResponseDTO> proyectosDTO = proyectoMapper.toDtoList(proyectos);
-            return ResponseEntity.ok(proyectosDTO);
+            return ResponseEntity.ok(proyectoService.obtenerProyectosRecientes(usuario));
         } catch (Exception e) {
             return ResponseEntity.status(401).build();
         }
@@ -66,7 +66,7 @@ public class ProyectoController {
             Usuario usuario = currentUserService.getCurrentUser();
             Proyecto proyecto = proyectoService.obtenerProyectoPorId(id, usuario);
             ProyectoResponseDTO responseDTO = proyectoMapper.toDto(proyecto);
-            return ResponseEntity.ok(responseDTO);
+            return ResponseEntity.ok().eTag(Long.toString(responseDTO.getVersion())).body(responseDTO);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -95,13 +95,19 @@ public class ProyectoController {
 
     // PUT /api/proyectos/{id} - Actualizar proyecto
     @PutMapping("/{id}")
-    public ResponseEntity<?> actualizarProyecto(@PathVariable Long id, @RequestBody ProyectoDTO proyectoDTO) {
+    public ResponseEntity<?> actualizarProyecto(@PathVariable Long id, @RequestBody ProyectoDTO proyectoDTO,
+                                                @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
             Proyecto proyectoActualizado = convertirDtoAEntidad(proyectoDTO);
-            Proyecto proyecto = proyectoService.actualizarProyecto(id, proyectoActualizado, usuario);
+            Proyecto proyecto = proyectoService.actualizarProyecto(id, proyectoActualizado,
+                    PrecondicionVersion.versionIfMatch(ifMatch, () -> proyectoService.obtenerVersion(id, usuario)), usuario);
             ProyectoResponseDTO responseDTO = proyectoMapper.toDto(proyecto);
-            return ResponseEntity.ok(responseDTO);
+            return ResponseEntity.ok().eTag(Long.toString(responseDTO.getVersion())).body(responseDTO);
+        } catch (ConflictoVersionException e) {
+            return PrecondicionVersion.conflicto(e, true);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -109,14 +115,80 @@ public class ProyectoController {
 
     // PATCH /api/proyectos/{id}/data - Actualizar solo los datos
     @PatchMapping("/{id}/data")
-    public ResponseEntity<?> actualizarDatosProyecto(@PathVariable Long id, @RequestBody Map<String, String> data) {
+    @RateLimited(
+        maxRequests = 30,
+        maxRequestsPremium = 120,
+        maxRequestsAdmin = 0,
+        duration = 1,
+        unit = TimeUnit.MINUTES,
+        type = RateLimited.LimitType.USER,
+        message = "Demasiados guardados seguidos"
+    )
+    @RateLimited(
+        maxRequests = 3000,
+        maxRequestsPremium = 3000,
+        maxRequestsAdmin = 0,
+        duration = 1,
+        unit = TimeUnit.MINUTES,
+        type = RateLimited.LimitType.PLAN,
+        message = "El servicio de guardado está saturado"
+    )
+    public ResponseEntity<?> actualizarDatosProyecto(@PathVariable Long id,
+                                                     @RequestBody Map<String, String> data,
+                                                     @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
-            proyectoService.actualizarDatosProyecto(id, data.get("data"), usuario);
+            long version = proyectoService.actualizarDatosProyecto(id, data.get("data"),
+                    PrecondicionVersion.versionIfMatch(ifMatch, () -> proyectoService.obtenerVersion(id, usuario)), usuario);
 
-            Map<String, String> response = new HashMap<>();
+            Map<String, Object> response = new HashMap<>();
             response.put("message", "Datos actualizados correctamente");
-            return ResponseEntity.ok(response);
+            response.put("version", version);
+            return ResponseEntity.ok().eTag(Long.toString(version)).body(response);
+        } catch (ConflictoVersionException e) {
+            return PrecondicionVersion.conflicto(e, PrecondicionVersion.tieneIfMatch(ifMatch));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // PATCH /api/proyectos/{id}/data con JSON Patch (RFC 6902) sobre la versión del If-Match.
+    // Comparte los límites de arriba: el filtro de rate limit no distingue por Content-Type
+    @PatchMapping(value = "/{id}/data", consumes = "application/json-patch+json")
+    public ResponseEntity<?> aplicarJsonPatchDatos(@PathVariable Long id,
+                                                   @RequestBody String parche,
+                                                   @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        return aplicarParcheDatos(id, parche, false, ifMatch);
+    }
+
+    // PATCH /api/proyectos/{id}/data con JSON Merge Patch (RFC 7386) sobre la versión del If-Match
+    @PatchMapping(value = "/{id}/data", consumes = "application/merge-patch+json")
+    public ResponseEntity<?> aplicarMergePatchDatos(@PathVariable Long id,
+                                                    @RequestBody String parche,
+                                                    @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        return aplicarParcheDatos(id, parche, true, ifMatch);
+    }
+
+    private ResponseEntity<?> aplicarParcheDatos(Long id, String parche, boolean mergePatch, String ifMatch) {
+        try {
+            Usuario usuario = currentUserService.getCurrentUser();
+            Long versionBase = PrecondicionVersion.versionIfMatch(ifMatch, () -> proyectoService.obtenerVersion(id, usuario));
+            if (versionBase == null) {
+                // Un parche sin versión base podría aplicarse sobre un documento distinto
+                return ResponseEntity.status(428).body(Map.of("error", "Se requiere If-Match con la versión base"));
+            }
+            long version = proyectoService.aplicarParcheDatos(id, parche, mergePatch, versionBase, usuario);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Datos actualizados correctamente");
+            response.put("version", version);
+            return ResponseEntity.ok().eTag(Long.toString(version)).body(response);
+        } catch (ConflictoVersionException e) {
+            return PrecondicionVersion.conflicto(e, true);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -142,9 +214,7 @@ public class ProyectoController {
     public ResponseEntity<List<ProyectoResponseDTO>> buscarProyectos(@RequestParam String titulo) {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
-            List<Proyecto> proyectos = proyectoService.buscarProyectosPorTitulo(titulo, usuario);
-            List<ProyectoResponseDTO> proyectosDTO = proyectoMapper.toDtoList(proyectos);
-            return ResponseEntity.ok(proyectosDTO);
+            return ResponseEntity.ok(proyectoService.buscarProyectosPorTitulo(titulo, usuario));
         } catch (Exception e) {
             return ResponseEntity.status(401).build();
         }
@@ -152,6 +222,15 @@ public class ProyectoController {
 
     // POST /api/proyectos/{id}/duplicar - Duplicar proyecto
     @PostMapping("/{id}/duplicar")
+    @RateLimited(
+        maxRequests = 5,
+        maxRequestsPremium = 30,
+        maxRequestsAdmin = 0,
+        duration = 1,
+        unit = TimeUnit.MINUTES,
+        type = RateLimited.LimitType.USER,
+        message = "Demasiadas duplicaciones de proyectos"
+    )
     public ResponseEntity<?> duplicarProyecto(@PathVariable Long id) {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
@@ -168,6 +247,10 @@ public class ProyectoController {
         try {
             Map<String, Object> estadisticas = proyectoService.obtenerEstadisticasAdmin();
             return ResponseEntity.ok(estadisticas);
+        } catch (BulkheadFullException e) {
+            // Bulkhead lleno: es una sobrecarga temporal, no un fallo. Que el handler global
+            // responda 503 con Retry-After en lugar del 500 de abajo
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error al obtener estadísticas: " + e.getMessage());
         }
@@ -179,12 +262,12 @@ public class ProyectoController {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
             Long totalProyectos = proyectoService.contarProyectosUsuario(usuario);
-            List<Proyecto> proyectosRecientes = proyectoService.obtenerProyectosRecientes(usuario);
+            List<ProyectoResponseDTO> proyectosRecientes = proyectoService.obtenerProyectosRecientes(usuario);
 
             Map<String, Object> estadisticas = new HashMap<>();
             estadisticas.put("totalProyectos", totalProyectos);
             estadisticas.put("proyectosRecientes", proyectosRecientes.size());
-            estadisticas.put("ultimosProyectos", proyectoMapper.toDtoList(proyectosRecientes));
+            estadisticas.put("ultimosProyectos", proyectosRecientes);
 
             return ResponseEntity.ok(estadisticas);
         } catch (Exception e) {
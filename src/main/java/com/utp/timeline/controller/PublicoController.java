@@ -12,7 +12,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -136,9 +135,7 @@ public class PublicoController {
     public ResponseEntity<?> obtenerMisCompartidos() {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
-            List<Publico> compartidos = publicoService.obtenerProyectosCompartidos(usuario);
-            List<PublicoResponseDTO> compartidosDTO = publicoMapper.toDtoList(compartidos);
-            return ResponseEntity.ok(compartidosDTO);
+            return ResponseEntity.ok(publicoService.obtenerProyectosCompartidos(usuario));
         } catch (Exception e) {
             return ResponseEntity.status(401).build();
         }
@@ -148,9 +145,7 @@ public class PublicoController {
     public ResponseEntity<?> obtenerMisCompartidosActivos() {
         try {
             Usuario usuario = currentUserService.getCurrentUser();
-            List<Publico> compartidos = publicoService.obtenerProyectosCompartidosActivos(usuario);
-            List<PublicoResponseDTO> compartidosDTO = publicoMapper.toDtoList(compartidos);
-            return ResponseEntity.ok(compartidosDTO);
+            return ResponseEntity.ok(publicoService.obtenerProyectosCompartidosActivos(usuario));
         } catch (Exception e) {
             return ResponseEntity.status(401).build();
         }
@@ -182,17 +177,19 @@ public class PublicoController {
 
     @GetMapping("/admin/estadisticas")
     public ResponseEntity<?> obtenerEstadisticas() {
+        Usuario usuario;
         try {
-            Usuario usuario = currentUserService.getCurrentUser();
-            if (usuario.getRol() != Usuario.Rol.ADMIN) {
-                return ResponseEntity.status(403).build();
-            }
-
-            Map<String, Object> estadisticas = publicoService.obtenerEstadisticasCompartidos();
-            return ResponseEntity.ok(estadisticas);
-        } catch (Exception e) {
+            usuario = currentUserService.getCurrentUser();
+        } catch (RuntimeException e) {
             return ResponseEntity.status(401).build();
         }
+        if (usuario.getRol() != Usuario.Rol.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+
+        // Fuera del try: un BulkheadFullException llega al handler global como 503
+        Map<String, Object> estadisticas = publicoService.obtenerEstadisticasCompartidos();
+        return ResponseEntity.ok(estadisticas);
     }
 
     @PostMapping("/admin/limpiar-expirados")
@@ -218,9 +215,7 @@ public class PublicoController {
                 return ResponseEntity.status(403).build();
             }
 
-            List<Publico> todos = publicoService.obtenerTodosCompartidos();
-            List<PublicoResponseDTO> todosDTO = publicoMapper.toDtoList(todos);
-            return ResponseEntity.ok(todosDTO);
+            return ResponseEntity.ok(publicoService.obtenerTodosCompartidos());
         } catch (Exception e) {
             return ResponseEntity.status(401).build();
         }
@@ -106,6 +106,13 @@ public class UsuarioController {
         return ResponseEntity.ok().body(Map.of("message", "Usuario eliminado correctamente"));
     }
 
+    // POST /api/usuarios/{id}/cerrar-sesiones - Forzar cierre de sesión (admin o propio usuario)
+    @PostMapping("/{id}/cerrar-sesiones")
+    public ResponseEntity<?> forzarCierreSesion(@PathVariable Long id, @AuthenticationPrincipal Usuario usuario) {
+        usuarioService.forzarCierreSesion(id, usuario);
+        return ResponseEntity.ok().body(Map.of("message", "Sesiones cerradas correctamente"));
+    }
+
     // GET /api/usuarios/estadisticas - Estadísticas de usuarios (admin only)
     @GetMapping("/estadisticas")
     public ResponseEntity<Map<String, Object>> obtenerEstadisticas(@AuthenticationPrincipal Usuario usuario) {
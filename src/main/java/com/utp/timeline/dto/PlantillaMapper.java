@@ -19,6 +19,7 @@ public class PlantillaMapper {
         dto.setEstado(plantilla.getEstado());
         dto.setEsPublica(plantilla.getEsPublica());
         dto.setFechaCreacion(plantilla.getFechaCreacion());
+        dto.setVersion(plantilla.getVersion() != null ? plantilla.getVersion() : 0L);
 
         // Información del creador
         if (plantilla.getCreadoPor() != null) {
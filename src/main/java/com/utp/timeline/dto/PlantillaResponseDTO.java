@@ -14,10 +14,29 @@ public class PlantillaResponseDTO {
     private Integer categoriaId;        // Nuevo campo
     private String categoriaNombre;
     private LocalDateTime fechaCreacion;
+    private Long version;
 
     // Constructores, getters y setters
     public PlantillaResponseDTO() {}
 
+    // Resumen para listados (consultas con constructor JPQL): sin data
+    public PlantillaResponseDTO(Long id, String nombre, String descripcion, String estado,
+                                Boolean esPublica, Long creadoPorId, String creadoPorNombre,
+                                Integer categoriaId, String categoriaNombre,
+                                LocalDateTime fechaCreacion, Long version) {
+        this.id = id;
+        this.nombre = nombre;
+        this.descripcion = descripcion;
+        this.estado = estado;
+        this.esPublica = esPublica;
+        this.creadoPorId = creadoPorId;
+        this.creadoPorNombre = creadoPorNombre;
+        this.categoriaId = categoriaId;
+        this.categoriaNombre = categoriaNombre;
+        this.fechaCreacion = fechaCreacion;
+        this.version = version;
+    }
+
     // Getters y setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -52,4 +71,7 @@ public class PlantillaResponseDTO {
     public String getCategoriaNombre() { return categoriaNombre; }
     public void setCategoriaNombre(String categoriaNombre) { this.categoriaNombre = categoriaNombre; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
 }
@@ -1,6 +1,7 @@
 package com.utp.timeline.dto;
 
 import com.utp.timeline.entity.Proyecto;
+import com.utp.timeline.service.GuardadoDiferidoService;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -9,7 +10,15 @@ import java.util.stream.Collectors;
 @Service
 public class ProyectoMapper {
 
+    private final GuardadoDiferidoService guardadoDiferido;
+
+    public ProyectoMapper(GuardadoDiferidoService guardadoDiferido) {
+        this.guardadoDiferido = guardadoDiferido;
+    }
+
     public ProyectoResponseDTO toDto(Proyecto proyecto) {
+        // Con write-behind, la data y versión pendientes aún no escritas
+        proyecto = guardadoDiferido.conPendiente(proyecto);
         ProyectoResponseDTO dto = new ProyectoResponseDTO();
         dto.setId(proyecto.getId());
         dto.setTitulo(proyecto.getTitulo());
@@ -17,6 +26,7 @@ public class ProyectoMapper {
         dto.setData(proyecto.getData());
         dto.setFechaCreacion(proyecto.getFechaCreacion());
         dto.setFechaModificacion(proyecto.getFechaModificacion());
+        dto.setVersion(proyecto.getVersion() != null ? proyecto.getVersion() : 0L);
 
         // Información del usuario (sin proxy de Hibernate)
         if (proyecto.getUsuario() != null) {
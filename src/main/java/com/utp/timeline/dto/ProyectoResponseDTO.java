@@ -13,6 +13,7 @@ public class ProyectoResponseDTO {
     private String plantillaBaseNombre;
     private LocalDateTime fechaCreacion;
     private LocalDateTime fechaModificacion;
+    private Long version;
 
     // Constructores, getters y setters
     public ProyectoResponseDTO() {}
@@ -33,6 +34,16 @@ public class ProyectoResponseDTO {
         this.fechaModificacion = fechaModificacion;
     }
 
+    // Resumen para listados (consultas con constructor JPQL): sin data
+    public ProyectoResponseDTO(Long id, String titulo, String descripcion,
+                               Long usuarioId, String usuarioNombre, Long plantillaBaseId,
+                               String plantillaBaseNombre, LocalDateTime fechaCreacion,
+                               LocalDateTime fechaModificacion, Long version) {
+        this(id, titulo, descripcion, null, usuarioId, usuarioNombre, plantillaBaseId,
+                plantillaBaseNombre, fechaCreacion, fechaModificacion);
+        this.version = version;
+    }
+
     // Getters y Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -63,4 +74,7 @@ public class ProyectoResponseDTO {
 
     public LocalDateTime getFechaModificacion() { return fechaModificacion; }
     public void setFechaModificacion(LocalDateTime fechaModificacion) { this.fechaModificacion = fechaModificacion; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
@@ -0,0 +1,61 @@
+package com.utp.timeline.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Diccionario de compresión (preset dictionary de Deflate) entrenado con la
+ * data de una plantilla y de los proyectos creados a partir de ella.
+ *
+ * Es inmutable: cada blob comprimido guarda el id del diccionario con el que
+ * se escribió, así que un diccionario no se modifica ni se borra mientras
+ * haya filas que lo usen. Reentrenar = crear uno nuevo.
+ */
+@Entity
+@Table(name = "diccionario_datos")
+public class DiccionarioDatos {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_diccionario")
+    private Long id;
+
+    @Column(name = "id_plantilla", nullable = false)
+    private Long plantillaId;
+
+    @Column(name = "diccionario", nullable = false, columnDefinition = "BLOB")
+    private byte[] diccionario;
+
+    // Número de documentos (plantilla + proyectos) usados para entrenarlo
+    @Column(name = "muestras")
+    private Integer muestras;
+
+    @Column(name = "fecha_creacion")
+    private LocalDateTime fechaCreacion;
+
+    // Constructores
+    public DiccionarioDatos() {}
+
+    public DiccionarioDatos(Long plantillaId, byte[] diccionario, int muestras) {
+        this.plantillaId = plantillaId;
+        this.diccionario = diccionario;
+        this.muestras = muestras;
+        this.fechaCreacion = LocalDateTime.now();
+    }
+
+    // Getters y Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getPlantillaId() { return plantillaId; }
+    public void setPlantillaId(Long plantillaId) { this.plantillaId = plantillaId; }
+
+    public byte[] getDiccionario() { return diccionario; }
+    public void setDiccionario(byte[] diccionario) { this.diccionario = diccionario; }
+
+    public Integer getMuestras() { return muestras; }
+    public void setMuestras(Integer muestras) { this.muestras = muestras; }
+
+    public LocalDateTime getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+}
@@ -1,10 +1,13 @@
 package com.utp.timeline.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.utp.timeline.service.CompresionDatosListener;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "plantilla")
+@EntityListeners(CompresionDatosListener.class)
 public class Plantilla {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -17,9 +20,23 @@ public class Plantilla {
     @Column(name = "descripcion", columnDefinition = "TEXT")
     private String descripcion;
 
-    @Column(name = "data", columnDefinition = "LONGTEXT")
+    // JSON de la plantilla. Se guarda comprimido en data_comprimida (CompresionDatosListener)
+    @Transient
     private String data;
 
+    // Filas antiguas: JSON en claro. Se leen tal cual y el re-codificador las comprime
+    @JsonIgnore
+    @Column(name = "data", columnDefinition = "LONGTEXT")
+    private String dataLegado;
+
+    @JsonIgnore
+    @Column(name = "data_comprimida", columnDefinition = "LONGBLOB")
+    private byte[] dataComprimida;
+
+    @JsonIgnore
+    @Transient
+    private boolean datosModificados;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "creado_por", nullable = false)
     private Usuario creadoPor;
@@ -37,13 +54,17 @@ public class Plantilla {
     @Column(name = "es_publica")
     private Boolean esPublica = true;
 
+    // Se incrementa en cada modificación; es el ETag y la base del If-Match
+    @Column(name = "version")
+    private Long version;
+
     // Constructores
     public Plantilla() {}
 
     public Plantilla(String nombre, String descripcion, String data, Usuario creadoPor) {
         this.nombre = nombre;
         this.descripcion = descripcion;
-        this.data = data;
+        setData(data);
         this.creadoPor = creadoPor;
         this.fechaCreacion = LocalDateTime.now();
     }
@@ -59,7 +80,30 @@ public class Plantilla {
     public void setDescripcion(String descripcion) { this.descripcion = descripcion; }
 
     public String getData() { return data; }
-    public void setData(String data) { this.data = data; }
+
+    // Sin blob la entidad queda sucia y el listener vuelve a comprimir al escribir
+    public void setData(String data) {
+        this.data = data;
+        this.datosModificados = true;
+        this.dataComprimida = null;
+    }
+
+    // Data leída de la base de datos (no cuenta como modificación)
+    public void cargarData(String data) {
+        this.data = data;
+        this.datosModificados = false;
+    }
+
+    public boolean isDatosModificados() { return datosModificados; }
+
+    public void guardarComprimida(byte[] dataComprimida) {
+        this.dataComprimida = dataComprimida;
+        this.dataLegado = null;
+        this.datosModificados = false;
+    }
+
+    public String getDataLegado() { return dataLegado; }
+    public byte[] getDataComprimida() { return dataComprimida; }
 
     public Usuario getCreadoPor() { return creadoPor; }
     public void setCreadoPor(Usuario creadoPor) { this.creadoPor = creadoPor; }
@@ -75,4 +119,7 @@ public class Plantilla {
 
     public Boolean getEsPublica() { return esPublica; }
     public void setEsPublica(Boolean esPublica) { this.esPublica = esPublica; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
\ No newline at end of file
@@ -1,10 +1,17 @@
 package com.utp.timeline.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.utp.timeline.service.CompresionDatosListener;
 import jakarta.persistence.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.Base64;
 
 @Entity
 @Table(name = "proyecto")
+@EntityListeners(CompresionDatosListener.class)
 public class Proyecto {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,22 +32,58 @@ public class Proyecto {
     @Column(name = "descripcion", columnDefinition = "TEXT")
     private String descripcion;
 
-    @Column(name = "data", columnDefinition = "LONGTEXT")
+    // JSON del proyecto. Se guarda comprimido en data_comprimida (CompresionDatosListener)
+    @Transient
     private String data;
 
+    // Filas antiguas: JSON en claro. Se leen tal cual y el re-codificador las comprime
+    @JsonIgnore
+    @Column(name = "data", columnDefinition = "LONGTEXT")
+    private String dataLegado;
+
+    @JsonIgnore
+    @Column(name = "data_comprimida", columnDefinition = "LONGBLOB")
+    private byte[] dataComprimida;
+
+    // Diccionario de la plantilla con el que se comprimió (null = sin diccionario)
+    @JsonIgnore
+    @Column(name = "id_diccionario_datos")
+    private Long diccionarioDatos;
+
+    @JsonIgnore
+    @Transient
+    private boolean datosModificados;
+
+    // SHA-256 de data: un autosave con la misma data se confirma sin reescribirla
+    @JsonIgnore
+    @Column(name = "data_hash", length = 43)
+    private String dataHash;
+
+    // Se incrementa en cada guardado de data; base de los parches y del If-Match
+    @Column(name = "version")
+    private Long version;
+
     @Column(name = "fecha_creacion")
     private LocalDateTime fechaCreacion;
 
     @Column(name = "fecha_modificacion")
     private LocalDateTime fechaModificacion;
 
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    });
+
     // Constructores
     public Proyecto() {}
 
     public Proyecto(Usuario usuario, String titulo, String data) {
         this.usuario = usuario;
         this.titulo = titulo;
-        this.data = data;
+        setData(data);
         this.fechaCreacion = LocalDateTime.now();
         this.fechaModificacion = LocalDateTime.now();
     }
@@ -62,11 +105,57 @@ public class Proyecto {
     public void setDescripcion(String descripcion) { this.descripcion = descripcion; }
 
     public String getData() { return data; }
-    public void setData(String data) { this.data = data; }
+
+    // La huella es persistente: si la data cambia la entidad queda sucia y se escribe
+    public void setData(String data) {
+        this.data = data;
+        this.datosModificados = true;
+        this.dataHash = huellaDe(data);
+    }
+
+    // Data leída de la base de datos (no cuenta como modificación)
+    public void cargarData(String data) {
+        this.data = data;
+        this.datosModificados = false;
+    }
+
+    public boolean isDatosModificados() { return datosModificados; }
+
+    public void guardarComprimida(byte[] dataComprimida, Long diccionarioDatos) {
+        this.dataComprimida = dataComprimida;
+        this.diccionarioDatos = diccionarioDatos;
+        this.dataLegado = null;
+        this.datosModificados = false;
+    }
+
+    public String getDataLegado() { return dataLegado; }
+    public byte[] getDataComprimida() { return dataComprimida; }
+    public Long getDiccionarioDatos() { return diccionarioDatos; }
+
+    public String getDataHash() { return dataHash; }
+    public void setDataHash(String dataHash) { this.dataHash = dataHash; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 
     public LocalDateTime getFechaCreacion() { return fechaCreacion; }
     public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
 
     public LocalDateTime getFechaModificacion() { return fechaModificacion; }
     public void setFechaModificacion(LocalDateTime fechaModificacion) { this.fechaModificacion = fechaModificacion; }
-}
\ No newline at end of file
+
+    // Los UPDATE masivos del repositorio no pasan por aquí: calculan la huella ellos
+    @PrePersist
+    @PreUpdate
+    void actualizarHuella() {
+        this.dataHash = huellaDe(data);
+    }
+
+    public static String huellaDe(String data) {
+        if (data == null) {
+            return null;
+        }
+        byte[] hash = SHA256.get().digest(data.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+}
@@ -35,6 +35,11 @@ public class Usuario {
     @Column(name = "fecha_registro")
     private LocalDateTime fechaRegistro;
 
+    // Se incrementa al cambiar plan/rol o al forzar cierre de sesión;
+    // invalida los access tokens que llevan los claims anteriores
+    @Column(name = "version_seguridad", nullable = false, columnDefinition = "INT DEFAULT 0")
+    private Integer versionSeguridad = 0;
+
     public enum Rol {
         ADMIN, USUARIO
     }
@@ -79,4 +84,7 @@ public class Usuario {
 
     public LocalDateTime getFechaRegistro() { return fechaRegistro; }
     public void setFechaRegistro(LocalDateTime fechaRegistro) { this.fechaRegistro = fechaRegistro; }
+
+    public Integer getVersionSeguridad() { return versionSeguridad; }
+    public void setVersionSeguridad(Integer versionSeguridad) { this.versionSeguridad = versionSeguridad; }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.utp.timeline.repository;
+
+import com.utp.timeline.entity.DiccionarioDatos;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface DiccionarioDatosRepository extends JpaRepository<DiccionarioDatos, Long> {
+
+    // Diccionarios creados después del último que se cargó en memoria
+    List<DiccionarioDatos> findByIdGreaterThanOrderByIdAsc(Long id);
+}
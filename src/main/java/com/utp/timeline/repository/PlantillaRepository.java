@@ -1,5 +1,6 @@
 package com.utp.timeline.repository;
 
+import com.utp.timeline.dto.PlantillaResponseDTO;
 import com.utp.timeline.entity.Categoria;
 import com.utp.timeline.entity.Plantilla;
 import com.utp.timeline.entity.Usuario;
@@ -48,6 +49,46 @@ public interface PlantillaRepository extends JpaRepository<Plantilla, Long> {
     @Query("SELECT p FROM Plantilla p WHERE p.estado = 'ACTIVA' AND p.esPublica = true")
     List<Plantilla> findPublicasActivas();
 
+    // ===== Resúmenes para listados: nunca seleccionan la data =====
+
+    @Query("SELECT new com.utp.timeline.dto.PlantillaResponseDTO(p.id, p.nombre, p.descripcion, p.estado, p.esPublica, " +
+            "u.id, u.nombre, c.idCategoria, c.nombre, p.fechaCreacion, COALESCE(p.version, 0L)) " +
+            "FROM Plantilla p LEFT JOIN p.creadoPor u LEFT JOIN p.categoria c " +
+            "WHERE p.estado = 'ACTIVA' AND p.esPublica = true ORDER BY p.id")
+    List<PlantillaResponseDTO> findResumenesPublicasActivas();
+
+    @Query("SELECT new com.utp.timeline.dto.PlantillaResponseDTO(p.id, p.nombre, p.descripcion, p.estado, p.esPublica, " +
+            "u.id, u.nombre, c.idCategoria, c.nombre, p.fechaCreacion, COALESCE(p.version, 0L)) " +
+            "FROM Plantilla p LEFT JOIN p.creadoPor u LEFT JOIN p.categoria c " +
+            "WHERE p.estado = :estado ORDER BY p.id")
+    List<PlantillaResponseDTO> findResumenesByEstado(@Param("estado") String estado);
+
+    // Públicas y propias (premium); todas si esAdmin
+    @Query("SELECT new com.utp.timeline.dto.PlantillaResponseDTO(p.id, p.nombre, p.descripcion, p.estado, p.esPublica, " +
+            "u.id, u.nombre, c.idCategoria, c.nombre, p.fechaCreacion, COALESCE(p.version, 0L)) " +
+            "FROM Plantilla p LEFT JOIN p.creadoPor u LEFT JOIN p.categoria c " +
+            "WHERE p.estado = 'ACTIVA' " +
+            "AND (:esAdmin = true OR p.esPublica = true OR u.id = :usuarioId) ORDER BY p.id")
+    List<PlantillaResponseDTO> findResumenesDisponibles(@Param("usuarioId") Long usuarioId,
+                                                        @Param("esAdmin") boolean esAdmin);
+
+    @Query("SELECT new com.utp.timeline.dto.PlantillaResponseDTO(p.id, p.nombre, p.descripcion, p.estado, p.esPublica, " +
+            "u.id, u.nombre, c.idCategoria, c.nombre, p.fechaCreacion, COALESCE(p.version, 0L)) " +
+            "FROM Plantilla p LEFT JOIN p.creadoPor u LEFT JOIN p.categoria c " +
+            "WHERE u.id = :usuarioId AND p.estado = :estado ORDER BY p.id")
+    List<PlantillaResponseDTO> findResumenesByCreadoPor(@Param("usuarioId") Long usuarioId,
+                                                        @Param("estado") String estado);
+
+    // Misma regla que PlantillaService.tieneAccesoAPlantilla
+    @Query("SELECT new com.utp.timeline.dto.PlantillaResponseDTO(p.id, p.nombre, p.descripcion, p.estado, p.esPublica, " +
+            "u.id, u.nombre, c.idCategoria, c.nombre, p.fechaCreacion, COALESCE(p.version, 0L)) " +
+            "FROM Plantilla p LEFT JOIN p.creadoPor u LEFT JOIN p.categoria c " +
+            "WHERE c.idCategoria = :idCategoria AND p.estado = 'ACTIVA' " +
+            "AND (:esAdmin = true OR p.esPublica = true OR u.id = :usuarioId) ORDER BY p.id")
+    List<PlantillaResponseDTO> findResumenesByCategoria(@Param("idCategoria") Integer idCategoria,
+                                                        @Param("usuarioId") Long usuarioId,
+                                                        @Param("esAdmin") boolean esAdmin);
+
     // Plantillas más populares (con más favoritos)
     @Query("SELECT p, COUNT(f) as favoritosCount FROM Plantilla p LEFT JOIN Favorito f ON p.id = f.plantilla.id " +
             "WHERE p.estado = 'ACTIVA' GROUP BY p.id ORDER BY favoritosCount DESC")
@@ -72,14 +113,84 @@ public interface PlantillaRepository extends JpaRepository<Plantilla, Long> {
     @Query("SELECT COUNT(p) FROM Plantilla p WHERE p.esPublica = :esPublica AND p.estado = 'ACTIVA'")
     Long countByEsPublicaAndEstadoActiva(@Param("esPublica") boolean esPublica);
 
+    // Actualización con If-Match en un solo UPDATE: los campos null se conservan y solo
+    // se escribe si la versión es la esperada y el usuario es el creador (o admin).
+    // 0 filas = no existe, sin permisos o conflicto de versión
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Plantilla p SET p.nombre = COALESCE(:nombre, p.nombre), " +
+            "p.descripcion = COALESCE(:descripcion, p.descripcion), " +
+            "p.dataComprimida = COALESCE(:datos, p.dataComprimida), " +
+            "p.dataLegado = CASE WHEN :datos IS NULL THEN p.dataLegado ELSE NULL END, " +
+            "p.esPublica = COALESCE(:esPublica, p.esPublica), p.version = :versionBase + 1 " +
+            "WHERE p.id = :id AND COALESCE(p.version, 0) = :versionBase " +
+            "AND (p.creadoPor.id = :usuarioId OR :admin = true)")
+    int actualizarSiVersion(@Param("id") Long id,
+                            @Param("nombre") String nombre,
+                            @Param("descripcion") String descripcion,
+                            @Param("datos") byte[] datos,
+                            @Param("esPublica") Boolean esPublica,
+                            @Param("versionBase") long versionBase,
+                            @Param("usuarioId") Long usuarioId,
+                            @Param("admin") boolean admin);
+
+    // Igual que actualizarSiVersion, cambiando además la categoría (null = sin categoría)
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Plantilla p SET p.nombre = COALESCE(:nombre, p.nombre), " +
+            "p.descripcion = COALESCE(:descripcion, p.descripcion), " +
+            "p.dataComprimida = COALESCE(:datos, p.dataComprimida), " +
+            "p.dataLegado = CASE WHEN :datos IS NULL THEN p.dataLegado ELSE NULL END, " +
+            "p.esPublica = COALESCE(:esPublica, p.esPublica), p.categoria = :categoria, " +
+            "p.version = :versionBase + 1 " +
+            "WHERE p.id = :id AND COALESCE(p.version, 0) = :versionBase " +
+            "AND (p.creadoPor.id = :usuarioId OR :admin = true)")
+    int actualizarConCategoriaSiVersion(@Param("id") Long id,
+                                        @Param("nombre") String nombre,
+                                        @Param("descripcion") String descripcion,
+                                        @Param("datos") byte[] datos,
+                                        @Param("esPublica") Boolean esPublica,
+                                        @Param("categoria") Categoria categoria,
+                                        @Param("versionBase") long versionBase,
+                                        @Param("usuarioId") Long usuarioId,
+                                        @Param("admin") boolean admin);
+
+    // Versión vigente de una plantilla que el usuario puede editar (sin leer la data)
+    @Query("SELECT COALESCE(p.version, 0) FROM Plantilla p " +
+            "WHERE p.id = :id AND (p.creadoPor.id = :usuarioId OR :admin = true)")
+    Optional<Long> obtenerVersionEditable(@Param("id") Long id,
+                                          @Param("usuarioId") Long usuarioId,
+                                          @Param("admin") boolean admin);
+
+    // Re-codificador: plantillas con la data todavía en claro
+    @Query("SELECT p.id AS id, COALESCE(p.version, 0) AS version, p.dataLegado AS dataLegado FROM Plantilla p " +
+            "WHERE p.id > :desdeId AND p.dataComprimida IS NULL AND p.dataLegado IS NOT NULL ORDER BY p.id")
+    List<DataLegado> findConDataLegado(@Param("desdeId") Long desdeId,
+                                       org.springframework.data.domain.Pageable pageable);
+
+    // Comprime la data en claro si nadie la cambió desde que se leyó (la versión no cambia)
+    @Modifying
+    @Query("UPDATE Plantilla p SET p.dataComprimida = :datos, p.dataLegado = NULL " +
+            "WHERE p.id = :id AND COALESCE(p.version, 0) = :version AND p.dataComprimida IS NULL")
+    int recodificarDatos(@Param("id") Long id, @Param("datos") byte[] datos, @Param("version") long version);
+
+    // Plantillas con data y sin diccionario de compresión entrenado
+    @Query("SELECT p.id FROM Plantilla p WHERE (p.dataComprimida IS NOT NULL OR p.dataLegado IS NOT NULL) " +
+            "AND NOT EXISTS (SELECT d.id FROM DiccionarioDatos d WHERE d.plantillaId = p.id) ORDER BY p.id")
+    List<Long> findSinDiccionario(org.springframework.data.domain.Pageable pageable);
+
+    interface DataLegado {
+        Long getId();
+        Long getVersion();
+        String getDataLegado();
+    }
+
     // Actualizar estado de plantilla
     @Modifying
-    @Query("UPDATE Plantilla p SET p.estado = :estado WHERE p.id = :id")
+    @Query("UPDATE Plantilla p SET p.estado = :estado, p.version = COALESCE(p.version, 0) + 1 WHERE p.id = :id")
     void actualizarEstado(@Param("id") Long id, @Param("estado") String estado);
 
     // Actualizar visibilidad (pública/privada)
     @Modifying
-    @Query("UPDATE Plantilla p SET p.esPublica = :esPublica WHERE p.id = :id")
+    @Query("UPDATE Plantilla p SET p.esPublica = :esPublica, p.version = COALESCE(p.version, 0) + 1 WHERE p.id = :id")
     void actualizarVisibilidad(@Param("id") Long id, @Param("esPublica") boolean esPublica);
 
     // Buscar plantillas por categoría (ejemplo usando like en descripción)
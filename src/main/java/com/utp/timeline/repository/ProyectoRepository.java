@@ -1,5 +1,7 @@
 package com.utp.timeline.repository;
 
+import com.utp.timeline.dto.ProyectoResponseDTO;
+import com.utp.timeline.entity.Plantilla;
 import com.utp.timeline.entity.Proyecto;
 import com.utp.timeline.entity.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -35,10 +37,167 @@ public interface ProyectoRepository extends JpaRepository<Proyecto, Long> {
     @Query("UPDATE Proyecto p SET p.fechaModificacion = CURRENT_TIMESTAMP WHERE p.id = :id")
     void actualizarFechaModificacion(@Param("id") Long id);
 
+    // Guardar data solo si el proyecto es del usuario, la versión es la esperada y la data
+    // cambia. 0 filas = no existe, conflicto o misma data (se distingue con obtenerHuella).
+    // La data va comprimida (CompresorDatos) y la columna antigua en claro se vacía
+    @Modifying
+    @Query("UPDATE Proyecto p SET p.dataComprimida = :datos, p.diccionarioDatos = :diccionario, " +
+            "p.dataLegado = NULL, p.dataHash = :huella, p.version = :versionBase + 1, " +
+            "p.fechaModificacion = :fecha WHERE p.id = :id AND p.usuario.id = :usuarioId " +
+            "AND COALESCE(p.version, 0) = :versionBase " +
+            "AND (p.dataHash IS NULL OR :huella IS NULL OR p.dataHash <> :huella)")
+    int actualizarDatosSiVersion(@Param("id") Long id,
+                                 @Param("usuarioId") Long usuarioId,
+                                 @Param("datos") byte[] datos,
+                                 @Param("diccionario") Long diccionario,
+                                 @Param("huella") String huella,
+                                 @Param("versionBase") long versionBase,
+                                 @Param("fecha") LocalDateTime fecha);
+
+    // PUT con If-Match en un solo UPDATE (0 filas = no existe o conflicto de versión)
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Proyecto p SET p.titulo = :titulo, p.descripcion = :descripcion, " +
+            "p.dataComprimida = :datos, p.diccionarioDatos = :diccionario, p.dataLegado = NULL, " +
+            "p.dataHash = :huella, p.version = :versionBase + 1, p.fechaModificacion = :fecha " +
+            "WHERE p.id = :id AND p.usuario.id = :usuarioId AND COALESCE(p.version, 0) = :versionBase")
+    int actualizarSiVersion(@Param("id") Long id,
+                            @Param("usuarioId") Long usuarioId,
+                            @Param("titulo") String titulo,
+                            @Param("descripcion") String descripcion,
+                            @Param("datos") byte[] datos,
+                            @Param("diccionario") Long diccionario,
+                            @Param("huella") String huella,
+                            @Param("versionBase") long versionBase,
+                            @Param("fecha") LocalDateTime fecha);
+
+    // Igual que actualizarSiVersion, cambiando además la plantilla base
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Proyecto p SET p.titulo = :titulo, p.descripcion = :descripcion, " +
+            "p.dataComprimida = :datos, p.diccionarioDatos = :diccionario, p.dataLegado = NULL, " +
+            "p.dataHash = :huella, p.plantillaBase = :plantilla, p.version = :versionBase + 1, " +
+            "p.fechaModificacion = :fecha " +
+            "WHERE p.id = :id AND p.usuario.id = :usuarioId AND COALESCE(p.version, 0) = :versionBase")
+    int actualizarConPlantillaSiVersion(@Param("id") Long id,
+                                        @Param("usuarioId") Long usuarioId,
+                                        @Param("titulo") String titulo,
+                                        @Param("descripcion") String descripcion,
+                                        @Param("datos") byte[] datos,
+                                        @Param("diccionario") Long diccionario,
+                                        @Param("huella") String huella,
+                                        @Param("plantilla") Plantilla plantilla,
+                                        @Param("versionBase") long versionBase,
+                                        @Param("fecha") LocalDateTime fecha);
+
+    // PUT con la misma data: título, descripción y plantilla, sin tocar la data ni la versión
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Proyecto p SET p.titulo = :titulo, p.descripcion = :descripcion, " +
+            "p.plantillaBase = :plantilla, p.fechaModificacion = :fecha " +
+            "WHERE p.id = :id AND p.usuario.id = :usuarioId")
+    int actualizarMetadatos(@Param("id") Long id,
+                            @Param("usuarioId") Long usuarioId,
+                            @Param("titulo") String titulo,
+                            @Param("descripcion") String descripcion,
+                            @Param("plantilla") Plantilla plantilla,
+                            @Param("fecha") LocalDateTime fecha);
+
+    // Volcado del guardado diferido: la versión en BD debe seguir entre la base del
+    // pendiente y la anterior a la suya (un volcado previo pudo adelantar la base)
+    @Modifying
+    @Query("UPDATE Proyecto p SET p.dataComprimida = :datos, p.diccionarioDatos = :diccionario, " +
+            "p.dataLegado = NULL, p.dataHash = :huella, p.version = :version, p.fechaModificacion = :fecha " +
+            "WHERE p.id = :id AND COALESCE(p.version, 0) >= :versionBase AND COALESCE(p.version, 0) < :version")
+    int volcarDatos(@Param("id") Long id,
+                    @Param("datos") byte[] datos,
+                    @Param("diccionario") Long diccionario,
+                    @Param("huella") String huella,
+                    @Param("versionBase") long versionBase,
+                    @Param("version") long version,
+                    @Param("fecha") LocalDateTime fecha);
+
+    // Re-codificador: filas en claro, o comprimidas sin el diccionario que ya tiene su plantilla
+    @Query("SELECT p.id AS id, COALESCE(p.version, 0) AS version, p.dataLegado AS dataLegado, " +
+            "p.dataComprimida AS dataComprimida, pb.id AS plantillaId FROM Proyecto p LEFT JOIN p.plantillaBase pb " +
+            "WHERE p.id > :desdeId AND ((p.dataComprimida IS NULL AND p.dataLegado IS NOT NULL) " +
+            "OR (p.dataComprimida IS NOT NULL AND p.diccionarioDatos IS NULL " +
+            "AND EXISTS (SELECT d.id FROM DiccionarioDatos d WHERE d.plantillaId = pb.id))) " +
+            "ORDER BY p.id")
+    List<DatosPorRecodificar> findPorRecodificar(@Param("desdeId") Long desdeId,
+                                                 org.springframework.data.domain.Pageable pageable);
+
+    // Reescribe la data recodificada si nadie la cambió desde que se leyó (la versión no cambia)
+    @Modifying
+    @Query("UPDATE Proyecto p SET p.dataComprimida = :datos, p.diccionarioDatos = :diccionario, " +
+            "p.dataLegado = NULL WHERE p.id = :id AND COALESCE(p.version, 0) = :version")
+    int recodificarDatos(@Param("id") Long id,
+                         @Param("datos") byte[] datos,
+                         @Param("diccionario") Long diccionario,
+                         @Param("version") long version);
+
+    // Muestras para entrenar el diccionario de una plantilla (los proyectos más recientes)
+    @Query("SELECT p.id AS id, COALESCE(p.version, 0) AS version, p.dataLegado AS dataLegado, " +
+            "p.dataComprimida AS dataComprimida, p.plantillaBase.id AS plantillaId FROM Proyecto p " +
+            "WHERE p.plantillaBase.id = :plantillaId ORDER BY p.fechaModificacion DESC")
+    List<DatosPorRecodificar> findMuestrasDePlantilla(@Param("plantillaId") Long plantillaId,
+                                                      org.springframework.data.domain.Pageable pageable);
+
+    interface DatosPorRecodificar {
+        Long getId();
+        Long getVersion();
+        String getDataLegado();
+        byte[] getDataComprimida();
+        Long getPlantillaId();
+    }
+
+    // Versión y huella de la data del proyecto del usuario, sin leer la data
+    @Query("SELECT COALESCE(p.version, 0) AS version, p.dataHash AS dataHash FROM Proyecto p " +
+            "WHERE p.id = :id AND p.usuario.id = :usuarioId")
+    Optional<HuellaDatos> obtenerHuella(@Param("id") Long id, @Param("usuarioId") Long usuarioId);
+
+    interface HuellaDatos {
+        Long getVersion();
+        String getDataHash();
+    }
+
+    // Lo que compara un PUT para saber si hay cambios, sin leer la data
+    @Query("SELECT COALESCE(p.version, 0) AS version, p.dataHash AS dataHash, p.titulo AS titulo, " +
+            "p.descripcion AS descripcion, pb.id AS plantillaId, pb.nombre AS plantillaNombre, " +
+            "p.fechaCreacion AS fechaCreacion, p.fechaModificacion AS fechaModificacion " +
+            "FROM Proyecto p LEFT JOIN p.plantillaBase pb WHERE p.id = :id AND p.usuario.id = :usuarioId")
+    Optional<EstadoProyecto> obtenerEstado(@Param("id") Long id, @Param("usuarioId") Long usuarioId);
+
+    interface EstadoProyecto extends HuellaDatos {
+        String getTitulo();
+        String getDescripcion();
+        Long getPlantillaId();
+        String getPlantillaNombre();
+        LocalDateTime getFechaCreacion();
+        LocalDateTime getFechaModificacion();
+    }
+
     // Proyectos recientes de un usuario (ordenados por fecha de modificación)
     @Query("SELECT p FROM Proyecto p WHERE p.usuario = :usuario ORDER BY p.fechaModificacion DESC")
     List<Proyecto> findRecentByUsuario(@Param("usuario") Usuario usuario, org.springframework.data.domain.Pageable pageable);
 
+    // ===== Resúmenes para listados: nunca seleccionan la data =====
+
+    @Query("SELECT new com.utp.timeline.dto.ProyectoResponseDTO(p.id, p.titulo, p.descripcion, u.id, u.nombre, " +
+            "pb.id, pb.nombre, p.fechaCreacion, p.fechaModificacion, COALESCE(p.version, 0L)) " +
+            "FROM Proyecto p JOIN p.usuario u LEFT JOIN p.plantillaBase pb WHERE u.id = :usuarioId ORDER BY p.id")
+    List<ProyectoResponseDTO> findResumenesByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    @Query("SELECT new com.utp.timeline.dto.ProyectoResponseDTO(p.id, p.titulo, p.descripcion, u.id, u.nombre, " +
+            "pb.id, pb.nombre, p.fechaCreacion, p.fechaModificacion, COALESCE(p.version, 0L)) " +
+            "FROM Proyecto p JOIN p.usuario u LEFT JOIN p.plantillaBase pb WHERE u.id = :usuarioId " +
+            "ORDER BY p.fechaModificacion DESC")
+    List<ProyectoResponseDTO> findResumenesRecientes(@Param("usuarioId") Long usuarioId,
+                                                     org.springframework.data.domain.Pageable pageable);
+
+    @Query("SELECT new com.utp.timeline.dto.ProyectoResponseDTO(p.id, p.titulo, p.descripcion, u.id, u.nombre, " +
+            "pb.id, pb.nombre, p.fechaCreacion, p.fechaModificacion, COALESCE(p.version, 0L)) " +
+            "FROM Proyecto p JOIN p.usuario u LEFT JOIN p.plantillaBase pb WHERE u.id = :usuarioId " +
+            "AND LOWER(p.titulo) LIKE LOWER(CONCAT('%', :titulo, '%')) ORDER BY p.id")
+    List<ProyectoResponseDTO> buscarResumenesPorTitulo(@Param("usuarioId") Long usuarioId, @Param("titulo") String titulo);
+
     // Verificar si un usuario es propietario del proyecto
     @Query("SELECT CASE WHEN COUNT(p) > 0 THEN true ELSE false END FROM Proyecto p WHERE p.id = :proyectoId AND p.usuario.id = :usuarioId")
     boolean existsByIdAndUsuarioId(@Param("proyectoId") Long proyectoId, @Param("usuarioId") Long usuarioId);
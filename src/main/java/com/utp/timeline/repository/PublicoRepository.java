@@ -1,5 +1,6 @@
 package com.utp.timeline.repository;
 
+import com.utp.timeline.dto.PublicoResponseDTO;
 import com.utp.timeline.entity.Proyecto;
 import com.utp.timeline.entity.Publico;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -39,6 +40,21 @@ public interface PublicoRepository extends JpaRepository<Publico, Long> {
     @Query("SELECT p FROM Publico p WHERE p.proyecto.usuario.id = :usuarioId")
     List<Publico> findByUsuarioId(@Param("usuarioId") Long usuarioId);
 
+    // Resúmenes para listados: solo id y título del proyecto, sin su data
+    @Query("SELECT new com.utp.timeline.dto.PublicoResponseDTO(p.id, p.token, p.expiraEn, p.fechaCreacion, pr.id, pr.titulo) " +
+            "FROM Publico p JOIN p.proyecto pr WHERE pr.usuario.id = :usuarioId ORDER BY p.id")
+    List<PublicoResponseDTO> findResumenesByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    @Query("SELECT new com.utp.timeline.dto.PublicoResponseDTO(p.id, p.token, p.expiraEn, p.fechaCreacion, pr.id, pr.titulo) " +
+            "FROM Publico p JOIN p.proyecto pr WHERE pr.usuario.id = :usuarioId " +
+            "AND (p.expiraEn IS NULL OR p.expiraEn > :fechaActual) ORDER BY p.id")
+    List<PublicoResponseDTO> findResumenesActivosByUsuarioId(@Param("usuarioId") Long usuarioId,
+                                                             @Param("fechaActual") LocalDateTime fechaActual);
+
+    @Query("SELECT new com.utp.timeline.dto.PublicoResponseDTO(p.id, p.token, p.expiraEn, p.fechaCreacion, pr.id, pr.titulo) " +
+            "FROM Publico p JOIN p.proyecto pr ORDER BY p.id")
+    List<PublicoResponseDTO> findTodosResumenes();
+
     // Contar compartidos activos por usuario
     @Query("SELECT COUNT(p) FROM Publico p WHERE p.proyecto.usuario.id = :usuarioId AND (p.expiraEn IS NULL OR p.expiraEn > CURRENT_TIMESTAMP)")
     Long countActiveSharesByUsuario(@Param("usuarioId") Long usuarioId);
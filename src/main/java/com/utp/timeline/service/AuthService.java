@@ -0,0 +1,97 @@
+package com.utp.timeline.service;
+
+import com.utp.timeline.config.JwtService;
+import com.utp.timeline.config.PasswordHashingExecutor;
+import com.utp.timeline.entity.Usuario;
+import com.utp.timeline.repository.UsuarioRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Autenticación con una sola consulta del usuario: la fila cargada sirve para
+ * comprobar la contraseña, construir las authorities, emitir los tokens y
+ * precargar la caché de principales.
+ */
+@Service
+public class AuthService {
+
+    private final UsuarioRepository usuarioRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final JwtService jwtService;
+    private final PrincipalCacheService principalCacheService;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    // Hash de referencia para usuarios inexistentes (mismo coste que un login real)
+    private final String hashFicticio;
+
+    @Autowired
+    public AuthService(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder,
+                       JwtService jwtService, PrincipalCacheService principalCacheService,
+                       PasswordHashingExecutor passwordHashingExecutor) {
+        this.usuarioRepository = usuarioRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.jwtService = jwtService;
+        this.principalCacheService = principalCacheService;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.hashFicticio = passwordEncoder.encode("usuario-inexistente");
+    }
+
+    // Login con email y contraseña: una consulta y BCrypt en el pool de hashing
+    public CompletableFuture<SesionAutenticada> autenticar(String email, String contrasena) {
+        Optional<Usuario> usuario = usuarioRepository.findByEmail(email);
+
+        return passwordHashingExecutor.submit(() -> {
+            // Si el usuario no existe se compara igual, para no revelarlo por el tiempo de respuesta
+            String hash = usuario.map(Usuario::getContrasena).orElse(hashFicticio);
+            boolean coincide = contrasena != null && passwordEncoder.matches(contrasena, hash);
+            if (usuario.isEmpty() || !coincide) {
+                throw new BadCredentialsException("Credenciales inválidas");
+            }
+            return usuario.get();
+        }).thenApplyAsync(this::iniciarSesion, passwordHashingExecutor.getContinuationExecutor());
+    }
+
+    // Emitir la sesión de un usuario ya autenticado (registro, Google)
+    public SesionAutenticada iniciarSesion(Usuario usuario) {
+        List<GrantedAuthority> authorities = CustomUserDetailsService.construirAuthorities(usuario);
+        Map<String, String> tokens = jwtService.generateTokenPair(usuario);
+
+        // La primera petición autenticada no necesita volver a consultar la BD
+        principalCacheService.guardar(usuario);
+
+        return new SesionAutenticada(usuario, authorities, tokens,
+                jwtService.getRemainingTime(tokens.get("accessToken")));
+    }
+
+    // Resultado de la autenticación: usuario, authorities y tokens emitidos
+    public static class SesionAutenticada {
+        private final Usuario usuario;
+        private final List<GrantedAuthority> authorities;
+        private final Map<String, String> tokens;
+        private final Long expiraEn;
+
+        public SesionAutenticada(Usuario usuario, List<GrantedAuthority> authorities,
+                                 Map<String, String> tokens, Long expiraEn) {
+            this.usuario = usuario;
+            this.authorities = List.copyOf(authorities);
+            this.tokens = Map.copyOf(tokens);
+            this.expiraEn = expiraEn;
+        }
+
+        // Getters
+        public Usuario getUsuario() { return usuario; }
+        public List<GrantedAuthority> getAuthorities() { return authorities; }
+        public Map<String, String> getTokens() { return tokens; }
+        public String getAccessToken() { return tokens.get("accessToken"); }
+        public String getRefreshToken() { return tokens.get("refreshToken"); }
+        public Long getExpiraEn() { return expiraEn; }
+    }
+}
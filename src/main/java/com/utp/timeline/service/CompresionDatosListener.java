@@ -0,0 +1,65 @@
+package com.utp.timeline.service;
+
+import com.utp.timeline.entity.Plantilla;
+import com.utp.timeline.entity.Proyecto;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compresión transparente de la data de {@link Proyecto} y {@link Plantilla}:
+ * al cargar se descomprime (o se toma la columna antigua en claro) y al
+ * escribir se comprime. Para los proyectos se usa el diccionario de su
+ * plantilla base, que el listener sí conoce; un AttributeConverter solo vería
+ * el texto.
+ *
+ * Hibernate lo crea a través del contenedor de Spring. El compresor se pide
+ * al usarlo: el listener se instancia mientras se construye el
+ * EntityManagerFactory del que depende el compresor.
+ */
+@Component
+public class CompresionDatosListener {
+
+    private final ObjectProvider<CompresorDatos> compresor;
+
+    public CompresionDatosListener(ObjectProvider<CompresorDatos> compresor) {
+        this.compresor = compresor;
+    }
+
+    @PostLoad
+    public void descomprimir(Object entidad) {
+        if (entidad instanceof Proyecto proyecto) {
+            proyecto.cargarData(proyecto.getDataComprimida() != null
+                    ? compresor.getObject().descomprimir(proyecto.getDataComprimida())
+                    : proyecto.getDataLegado());
+            compresor.getObject().recordarPlantilla(proyecto.getId(), plantillaDe(proyecto));
+        } else if (entidad instanceof Plantilla plantilla) {
+            plantilla.cargarData(plantilla.getDataComprimida() != null
+                    ? compresor.getObject().descomprimir(plantilla.getDataComprimida())
+                    : plantilla.getDataLegado());
+        }
+    }
+
+    // También comprime las filas antiguas que se escriben por otro motivo
+    @PrePersist
+    @PreUpdate
+    public void comprimir(Object entidad) {
+        if (entidad instanceof Proyecto proyecto) {
+            if (proyecto.isDatosModificados() || (proyecto.getDataComprimida() == null && proyecto.getData() != null)) {
+                CompresorDatos.Comprimido comprimido = compresor.getObject().comprimir(proyecto.getData(), plantillaDe(proyecto));
+                proyecto.guardarComprimida(comprimido.getBytes(), comprimido.getDiccionarioId());
+            }
+        } else if (entidad instanceof Plantilla plantilla) {
+            if (plantilla.isDatosModificados() || (plantilla.getDataComprimida() == null && plantilla.getData() != null)) {
+                plantilla.guardarComprimida(compresor.getObject().comprimir(plantilla.getData(), null).getBytes());
+            }
+        }
+    }
+
+    // El id de un proxy LAZY se lee sin inicializarlo
+    private static Long plantillaDe(Proyecto proyecto) {
+        return proyecto.getPlantillaBase() != null ? proyecto.getPlantillaBase().getId() : null;
+    }
+}
@@ -0,0 +1,272 @@
+package com.utp.timeline.service;
+
+import com.utp.timeline.entity.DiccionarioDatos;
+import com.utp.timeline.repository.DiccionarioDatosRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresión de la data JSON de proyectos y plantillas (columna data_comprimida).
+ *
+ * Formato del blob: versión del formato (1 byte), id del diccionario
+ * (8 bytes, 0 = sin diccionario), longitud original en UTF-8 (4 bytes) y el
+ * stream zlib. El blob se describe solo: para leerlo basta con él, aunque la
+ * plantilla del proyecto haya cambiado o tenga un diccionario más nuevo.
+ *
+ * Los proyectos se comprimen con el diccionario de su plantilla base
+ * ({@link EntrenadorDiccionario}). Se piden desde los callbacks de JPA, en
+ * mitad de una carga o de un flush, así que comprimir nunca va a la base de
+ * datos: los diccionarios se cargan al arrancar y se refrescan en segundo
+ * plano, y una plantilla cuyo diccionario aún no se conoce se comprime sin él
+ * (el re-codificador la recomprime después).
+ */
+@Service
+public class CompresorDatos implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(CompresorDatos.class);
+
+    static final byte FORMATO_DEFLATE = 1;
+    private static final int CABECERA = 1 + 8 + 4;
+
+    private final DiccionarioDatosRepository diccionarioRepository;
+    private final int nivel;
+    private final int maxProyectos;
+
+    // id -> bytes del diccionario (inmutables)
+    private final ConcurrentHashMap<Long, byte[]> diccionarios = new ConcurrentHashMap<>();
+    // plantilla -> diccionario vigente (el de mayor id)
+    private final ConcurrentHashMap<Long, Long> vigentes = new ConcurrentHashMap<>();
+    // Mayor id de diccionario ya cargado: el refresco solo lee los posteriores
+    private final AtomicLong ultimoCargado = new AtomicLong();
+    // proyecto -> plantilla base, para los UPDATE que no leen el proyecto
+    private final ConcurrentHashMap<Long, Long> plantillaPorProyecto = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final LongAdder compresiones = new LongAdder();
+    private final LongAdder conDiccionario = new LongAdder();
+    private final LongAdder bytesTexto = new LongAdder();
+    private final LongAdder bytesComprimidos = new LongAdder();
+    private final LongAdder descompresiones = new LongAdder();
+
+    @Autowired
+    public CompresorDatos(DiccionarioDatosRepository diccionarioRepository,
+                          @Value("${app.datos.compresion.nivel:6}") int nivel,
+                          @Value("${app.datos.compresion.max-proyectos:50000}") int maxProyectos) {
+        this.diccionarioRepository = diccionarioRepository;
+        this.nivel = nivel;
+        this.maxProyectos = maxProyectos;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        refrescarDiccionarios();
+    }
+
+    /**
+     * Carga los diccionarios creados desde la última vez (en otro nodo, o
+     * todos al arrancar). Fuera de los callbacks de JPA, con su propia consulta.
+     */
+    @Scheduled(initialDelayString = "${app.datos.compresion.refresco-ms:30000}",
+               fixedDelayString = "${app.datos.compresion.refresco-ms:30000}")
+    public void refrescarDiccionarios() {
+        try {
+            for (DiccionarioDatos diccionario : diccionarioRepository.findByIdGreaterThanOrderByIdAsc(ultimoCargado.get())) {
+                registrarDiccionario(diccionario);
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se pudieron cargar los diccionarios de compresión", e);
+        }
+    }
+
+    /**
+     * Comprime con el diccionario vigente de la plantilla (si la hay y ya
+     * tiene uno). Con data null devuelve un Comprimido vacío (bytes null).
+     */
+    public Comprimido comprimir(String data, Long plantillaId) {
+        if (data == null) {
+            return new Comprimido(null, null);
+        }
+        Long diccionarioId = plantillaId == null ? null : diccionarioVigente(plantillaId);
+        byte[] diccionario = diccionarioId == null ? null : diccionario(diccionarioId);
+
+        byte[] texto = data.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(CABECERA + texto.length / 4 + 64);
+        salida.writeBytes(ByteBuffer.allocate(CABECERA)
+                .put(FORMATO_DEFLATE)
+                .putLong(diccionarioId == null ? 0L : diccionarioId)
+                .putInt(texto.length)
+                .array());
+
+        Deflater deflater = new Deflater(nivel);
+        try {
+            if (diccionario != null) {
+                deflater.setDictionary(diccionario);
+            }
+            deflater.setInput(texto);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                salida.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        byte[] bytes = salida.toByteArray();
+        compresiones.increment();
+        if (diccionarioId != null) {
+            conDiccionario.increment();
+        }
+        bytesTexto.add(texto.length);
+        bytesComprimidos.add(bytes.length);
+        return new Comprimido(bytes, diccionarioId);
+    }
+
+    /**
+     * Comprime la data de un proyecto con el diccionario de su plantilla base,
+     * si se conoce (el proyecto se leyó antes en este nodo). Si no, sin
+     * diccionario: el re-codificador la pasará al diccionario más tarde.
+     */
+    public Comprimido comprimirProyecto(Long proyectoId, String data) {
+        return comprimir(data, proyectoId == null ? null : plantillaPorProyecto.get(proyectoId));
+    }
+
+    public String descomprimir(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length < CABECERA || bytes[0] != FORMATO_DEFLATE) {
+            throw new IllegalStateException("Formato de data comprimida desconocido");
+        }
+        ByteBuffer cabecera = ByteBuffer.wrap(bytes, 1, CABECERA - 1);
+        long diccionarioId = cabecera.getLong();
+        int longitud = cabecera.getInt();
+
+        byte[] texto = new byte[longitud];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, CABECERA, bytes.length - CABECERA);
+            int leidos = 0;
+            while (leidos < longitud) {
+                int n = inflater.inflate(texto, leidos, longitud - leidos);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(diccionario(diccionarioId));
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IllegalStateException("Data comprimida truncada");
+                    }
+                }
+                leidos += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Data comprimida corrupta", e);
+        } finally {
+            inflater.end();
+        }
+        descompresiones.increment();
+        return new String(texto, StandardCharsets.UTF_8);
+    }
+
+    // Id del diccionario con el que se escribió un blob (null = sin diccionario)
+    public static Long diccionarioDe(byte[] bytes) {
+        if (bytes == null || bytes.length < CABECERA) {
+            return null;
+        }
+        long id = ByteBuffer.wrap(bytes, 1, 8).getLong();
+        return id == 0 ? null : id;
+    }
+
+    public void recordarPlantilla(Long proyectoId, Long plantillaId) {
+        if (proyectoId == null) {
+            return;
+        }
+        if (plantillaId == null) {
+            plantillaPorProyecto.remove(proyectoId);
+        } else if (plantillaPorProyecto.size() < maxProyectos || plantillaPorProyecto.containsKey(proyectoId)) {
+            plantillaPorProyecto.put(proyectoId, plantillaId);
+        }
+    }
+
+    public void olvidarProyecto(Long proyectoId) {
+        plantillaPorProyecto.remove(proyectoId);
+    }
+
+    // Un diccionario recién entrenado (o recién cargado) pasa a ser el vigente de su plantilla
+    public void registrarDiccionario(DiccionarioDatos diccionario) {
+        diccionarios.put(diccionario.getId(), diccionario.getDiccionario());
+        vigentes.merge(diccionario.getPlantillaId(), diccionario.getId(), Math::max);
+        ultimoCargado.accumulateAndGet(diccionario.getId(), Math::max);
+    }
+
+    // Solo la caché: null si la plantilla no tiene diccionario o aún no se cargó
+    public Long diccionarioVigente(Long plantillaId) {
+        return vigentes.get(plantillaId);
+    }
+
+    private byte[] diccionario(long diccionarioId) {
+        byte[] diccionario = diccionarios.get(diccionarioId);
+        if (diccionario != null) {
+            return diccionario;
+        }
+        // Solo al descomprimir un blob de un diccionario creado en otro nodo antes del
+        // refresco. Sin transacción nueva: se une a la de la carga en curso, si la hay,
+        // y usa su conexión
+        DiccionarioDatos cargado = diccionarioRepository.findById(diccionarioId).orElse(null);
+        if (cargado == null) {
+            throw new IllegalStateException("No existe el diccionario de compresión " + diccionarioId);
+        }
+        diccionarios.put(diccionarioId, cargado.getDiccionario());
+        return cargado.getDiccionario();
+    }
+
+    public Map<String, Object> getStatistics() {
+        long texto = bytesTexto.sum();
+        long comprimidos = bytesComprimidos.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("compresiones", compresiones.sum());
+        stats.put("compresionesConDiccionario", conDiccionario.sum());
+        stats.put("descompresiones", descompresiones.sum());
+        stats.put("bytesTexto", texto);
+        stats.put("bytesComprimidos", comprimidos);
+        stats.put("ratio", comprimidos == 0 ? 0.0 : Math.round(texto * 10.0 / comprimidos) / 10.0);
+        stats.put("diccionariosEnCache", diccionarios.size());
+        stats.put("proyectosConPlantillaConocida", plantillaPorProyecto.size());
+        return stats;
+    }
+
+    /**
+     * Blob comprimido y el diccionario usado (null = ninguno), que se guarda
+     * también en su columna para que el re-codificador encuentre las filas
+     * que aún no usan el diccionario de su plantilla.
+     */
+    public static final class Comprimido {
+        private final byte[] bytes;
+        private final Long diccionarioId;
+
+        Comprimido(byte[] bytes, Long diccionarioId) {
+            this.bytes = bytes;
+            this.diccionarioId = diccionarioId;
+        }
+
+        public byte[] getBytes() { return bytes; }
+        public Long getDiccionarioId() { return diccionarioId; }
+    }
+}
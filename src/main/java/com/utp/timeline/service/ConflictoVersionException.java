@@ -0,0 +1,23 @@
+package com.utp.timeline.service;
+
+/**
+ * La versión sobre la que el cliente hizo sus cambios ya no es la vigente:
+ * otro guardado se adelantó y el cliente debe recargar (o rebasar) sus cambios.
+ */
+public class ConflictoVersionException extends RuntimeException {
+
+    private final long versionActual;
+
+    public ConflictoVersionException(long versionActual) {
+        this("El proyecto", versionActual);
+    }
+
+    public ConflictoVersionException(String recurso, long versionActual) {
+        super(recurso + " fue modificado (versión actual " + versionActual + ")");
+        this.versionActual = versionActual;
+    }
+
+    public long getVersionActual() {
+        return versionActual;
+    }
+}
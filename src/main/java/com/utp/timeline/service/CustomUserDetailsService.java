@@ -27,6 +27,15 @@ public class CustomUserDetailsService implements UserDetailsService {
         Usuario usuario = usuarioRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + email));
 
+        return User.builder()
+                .username(usuario.getEmail())
+                .password(usuario.getContrasena())
+                .authorities(construirAuthorities(usuario))
+                .build();
+    }
+
+    // Authorities a partir del rol y el plan del usuario
+    public static List<GrantedAuthority> construirAuthorities(Usuario usuario) {
         List<GrantedAuthority> authorities = new ArrayList<>();
 
         // Rol principal basado en el campo 'rol'
@@ -35,11 +44,7 @@ public class CustomUserDetailsService implements UserDetailsService {
         // Authority adicional basado en el plan
         authorities.add(new SimpleGrantedAuthority(usuario.getPlan().name()));
 
-        return User.builder()
-                .username(usuario.getEmail())
-                .password(usuario.getContrasena())
-                .authorities(authorities)
-                .build();
+        return authorities;
     }
 
     public Usuario loadUsuarioByEmail(String email) {
@@ -0,0 +1,242 @@
+package com.utp.timeline.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Diario append-only de los guardados pendientes de {@link GuardadoDiferidoService}.
+ *
+ * Cada registro lleva su CRC: al recuperar se descarta un registro final a
+ * medio escribir (caída durante el append). Tras cada volcado periódico el
+ * diario se compacta a los pendientes que queden, así que no crece sin límite.
+ * El volcado de un solo proyecto (PUT, duplicar) o su descarte no reescribe
+ * el diario: añade un registro de volcado y al recuperar se ignoran los
+ * guardados de ese proyecto hasta esa versión.
+ *
+ * Con {@code sync} el guardado no se confirma hasta que su registro está en
+ * disco, con group commit: los appends no esperan al fsync y un solo
+ * {@code force()} cubre todos los registros escritos hasta ese momento, así
+ * que los guardados concurrentes comparten fsync en vez de hacer cola. Sin
+ * {@code sync} ({@code journal-sync=false}) una caída del sistema operativo
+ * puede perder los últimos guardados confirmados; una caída solo del proceso no.
+ */
+final class DiarioGuardados {
+
+    // Longitud de data de un registro de volcado, que no lleva data
+    private static final int VOLCADO = -2;
+
+    private final Path path;
+    private final boolean sync;
+    private volatile FileChannel channel;
+
+    // Bytes añadidos desde que se abrió (no se reinicia al compactar) y hasta dónde hay fsync
+    private volatile long escrito;
+    private final Object syncLock = new Object();
+    private long sincronizado;
+
+    DiarioGuardados(Path path, boolean sync) throws IOException {
+        this.path = path;
+        this.sync = sync;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = abrir(path);
+    }
+
+    private static FileChannel abrir(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    void registrar(GuardadoDiferidoService.Pendiente pendiente) throws IOException {
+        long posicion = append(serializar(pendiente));
+        if (sync) {
+            esperarDisco(posicion);
+        }
+    }
+
+    /**
+     * Anota que el proyecto ya está en la base de datos hasta {@code version}
+     * (Long.MAX_VALUE si se descartó): al recuperar no se vuelve a aplicar.
+     */
+    void registrarVolcado(long proyectoId, long version) throws IOException {
+        long posicion = append(serializar(proyectoId, 0L, 0L, version, null, VOLCADO));
+        if (sync) {
+            esperarDisco(posicion);
+        }
+    }
+
+    private synchronized long append(byte[] bytes) throws IOException {
+        ByteBuffer registro = ByteBuffer.wrap(bytes);
+        while (registro.hasRemaining()) {
+            channel.write(registro);
+        }
+        escrito += bytes.length;
+        return escrito;
+    }
+
+    // Group commit: quien llega sin fsync pendiente lo hace para todos los escritos hasta ahora
+    private void esperarDisco(long posicion) throws IOException {
+        synchronized (syncLock) {
+            if (sincronizado >= posicion) {
+                return;
+            }
+            long objetivo = escrito;
+            channel.force(false);
+            sincronizado = objetivo;
+        }
+    }
+
+    /**
+     * Reescribe el diario con solo los pendientes que haya en el momento
+     * (vacío si no hay ninguno). La lista se toma con el diario bloqueado: un
+     * guardado posterior se añade después de la compactación y no se pierde.
+     * Se escribe a un fichero temporal y se renombra: una caída a mitad deja
+     * el diario anterior intacto.
+     */
+    synchronized void compactar(Supplier<Collection<GuardadoDiferidoService.Pendiente>> pendientesActuales)
+            throws IOException {
+        Collection<GuardadoDiferidoService.Pendiente> pendientes = pendientesActuales.get();
+        if (pendientes.isEmpty()) {
+            synchronized (syncLock) {
+                channel.truncate(0);
+                if (sync) {
+                    channel.force(true);
+                }
+                sincronizado = escrito;
+            }
+            return;
+        }
+        Path temporal = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel salida = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (GuardadoDiferidoService.Pendiente pendiente : pendientes) {
+                ByteBuffer registro = ByteBuffer.wrap(serializar(pendiente));
+                while (registro.hasRemaining()) {
+                    salida.write(registro);
+                }
+            }
+            salida.force(true);
+        }
+        // Todo lo escrito antes está en el fichero nuevo (ya en disco) o volcado a la base de datos
+        synchronized (syncLock) {
+            channel.close();
+            Files.move(temporal, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = abrir(path);
+            sincronizado = escrito;
+        }
+    }
+
+    /**
+     * Último registro (el de mayor versión) de cada proyecto, salvo los ya
+     * cubiertos por un registro de volcado.
+     */
+    synchronized List<GuardadoDiferidoService.Pendiente> recuperar() throws IOException {
+        Map<Long, GuardadoDiferidoService.Pendiente> ultimos = new HashMap<>();
+        Map<Long, Long> volcados = new HashMap<>();
+        try (InputStream entrada = Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+             DataInputStream datos = new DataInputStream(new BufferedInputStream(entrada))) {
+            for (;;) {
+                if (!leer(datos, ultimos, volcados)) {
+                    break;
+                }
+            }
+        }
+        ultimos.values().removeIf(pendiente ->
+                pendiente.getVersion() <= volcados.getOrDefault(pendiente.getProyectoId(), Long.MIN_VALUE));
+        return new ArrayList<>(ultimos.values());
+    }
+
+    synchronized long tamano() throws IOException {
+        return channel.size();
+    }
+
+    synchronized void cerrar() throws IOException {
+        channel.close();
+    }
+
+    private static byte[] serializar(GuardadoDiferidoService.Pendiente pendiente) throws IOException {
+        byte[] data = pendiente.getData() == null ? null : pendiente.getData().getBytes(StandardCharsets.UTF_8);
+        return serializar(pendiente.getProyectoId(), pendiente.getUsuarioId(), pendiente.getVersionBase(),
+                pendiente.getVersion(), data, data == null ? -1 : data.length);
+    }
+
+    private static byte[] serializar(long proyectoId, long usuarioId, long versionBase, long version,
+                                     byte[] data, int longitud) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(44 + (data == null ? 0 : data.length));
+        DataOutputStream salida = new DataOutputStream(bytes);
+        salida.writeLong(proyectoId);
+        salida.writeLong(usuarioId);
+        salida.writeLong(versionBase);
+        salida.writeLong(version);
+        salida.writeInt(longitud);
+        if (data != null) {
+            salida.write(data);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        salida.writeInt((int) crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    // Lee un registro en ultimos (guardado) o volcados (registro de volcado).
+    // false al llegar al final o a un registro incompleto/corrupto
+    private static boolean leer(DataInputStream entrada, Map<Long, GuardadoDiferidoService.Pendiente> ultimos,
+                                Map<Long, Long> volcados) throws IOException {
+        try {
+            long proyectoId = entrada.readLong();
+            long usuarioId = entrada.readLong();
+            long versionBase = entrada.readLong();
+            long version = entrada.readLong();
+            int longitud = entrada.readInt();
+            if (longitud < VOLCADO) {
+                return false;
+            }
+            byte[] data = longitud < 0 ? null : entrada.readNBytes(longitud);
+            if (data != null && data.length < longitud) {
+                return false;
+            }
+            int crcLeido = entrada.readInt();
+
+            ByteBuffer cabecera = ByteBuffer.allocate(36);
+            cabecera.putLong(proyectoId).putLong(usuarioId).putLong(versionBase).putLong(version).putInt(longitud);
+            CRC32 crc = new CRC32();
+            crc.update(cabecera.array());
+            if (data != null) {
+                crc.update(data);
+            }
+            if ((int) crc.getValue() != crcLeido) {
+                return false;
+            }
+            if (longitud == VOLCADO) {
+                volcados.merge(proyectoId, version, Math::max);
+                return true;
+            }
+            GuardadoDiferidoService.Pendiente pendiente = new GuardadoDiferidoService.Pendiente(proyectoId, usuarioId,
+                    versionBase, version, data == null ? null : new String(data, StandardCharsets.UTF_8), 0L);
+            ultimos.merge(proyectoId, pendiente, (a, b) -> b.getVersion() >= a.getVersion() ? b : a);
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.utp.timeline.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Construye el diccionario de Deflate de una plantilla.
+ *
+ * Deflate solo referencia los últimos 32 KB, y las referencias cortas
+ * (cercanas al final del diccionario) son las más baratas. El diccionario se
+ * arma así: primero los fragmentos JSON (claves y valores de texto) que más
+ * se repiten entre los proyectos de la plantilla, de menor a mayor
+ * puntuación, y al final la propia data de la plantilla, que es el esqueleto
+ * del que parten los proyectos.
+ */
+final class EntrenadorDiccionario {
+
+    static final int TAMANO_MAXIMO = 32 * 1024;
+
+    // "clave": y "valor" (con escapes), de 3 a 200 caracteres
+    private static final Pattern FRAGMENTO = Pattern.compile("\"(?:[^\"\\\\]|\\\\.){3,200}\"\\s*:?");
+
+    private EntrenadorDiccionario() {}
+
+    static byte[] entrenar(String plantilla, List<String> proyectos, int tamano) {
+        int limite = Math.min(tamano, TAMANO_MAXIMO);
+        byte[] esqueleto = plantilla == null ? new byte[0] : plantilla.getBytes(StandardCharsets.UTF_8);
+        // La plantilla ocupa como mucho la mitad si hay proyectos con los que completar
+        int maxEsqueleto = proyectos.isEmpty() ? limite : limite / 2;
+        if (esqueleto.length > maxEsqueleto) {
+            esqueleto = Arrays.copyOfRange(esqueleto, esqueleto.length - maxEsqueleto, esqueleto.length);
+        }
+
+        List<byte[]> fragmentos = fragmentosFrecuentes(proyectos, limite - esqueleto.length);
+        byte[] diccionario = new byte[limite];
+        int posicion = 0;
+        for (byte[] fragmento : fragmentos) {
+            System.arraycopy(fragmento, 0, diccionario, posicion, fragmento.length);
+            posicion += fragmento.length;
+        }
+        System.arraycopy(esqueleto, 0, diccionario, posicion, esqueleto.length);
+        return Arrays.copyOf(diccionario, posicion + esqueleto.length);
+    }
+
+    // Fragmentos presentes en al menos dos proyectos, por (proyectos que lo contienen × longitud)
+    private static List<byte[]> fragmentosFrecuentes(List<String> proyectos, int presupuesto) {
+        if (proyectos.size() < 2 || presupuesto <= 0) {
+            return List.of();
+        }
+        Map<String, Integer> apariciones = new HashMap<>();
+        for (String proyecto : proyectos) {
+            Set<String> vistos = new HashSet<>();
+            Matcher matcher = FRAGMENTO.matcher(proyecto);
+            while (matcher.find()) {
+                if (vistos.add(matcher.group())) {
+                    apariciones.merge(matcher.group(), 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> candidatos = new ArrayList<>();
+        for (Map.Entry<String, Integer> entrada : apariciones.entrySet()) {
+            if (entrada.getValue() >= 2) {
+                candidatos.add(entrada);
+            }
+        }
+        // Mejor puntuación primero para elegir; luego se invierte para que quede al final
+        candidatos.sort((a, b) -> Long.compare(puntuacion(b), puntuacion(a)));
+
+        List<byte[]> elegidos = new ArrayList<>();
+        int usado = 0;
+        for (Map.Entry<String, Integer> candidato : candidatos) {
+            byte[] bytes = candidato.getKey().getBytes(StandardCharsets.UTF_8);
+            if (usado + bytes.length > presupuesto) {
+                continue;
+            }
+            elegidos.add(bytes);
+            usado += bytes.length;
+        }
+        Collections.reverse(elegidos);
+        return elegidos;
+    }
+
+    private static long puntuacion(Map.Entry<String, Integer> entrada) {
+        return (long) entrada.getValue() * entrada.getKey().length();
+    }
+}
@@ -6,6 +6,7 @@ import com.utp.timeline.entity.Plantilla;
 import com.utp.timeline.entity.Usuario;
 import com.utp.timeline.repository.FavoritoRepository;
 import com.utp.timeline.repository.PlantillaRepository;
+import com.utp.timeline.config_seguridad.Bulkhead;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
@@ -14,6 +15,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Transactional
@@ -229,6 +231,7 @@ public class FavoritoService {
     }
 
     // Obtener estadísticas de favoritos para admin
+    @Bulkhead(maxConcurrent = 2, maxWait = 2, unit = TimeUnit.SECONDS)
     public Map<String, Object> obtenerEstadisticasFavoritos() {
         Map<String, Object> estadisticas = new HashMap<>();
 
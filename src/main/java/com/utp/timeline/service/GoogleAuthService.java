@@ -1,4 +1,11 @@
 package com.utp.timeline.service;
+import com.utp.timeline.config.CircuitBreaker;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -8,8 +15,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
+import java.security.Key;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class GoogleAuthService {
@@ -23,10 +32,35 @@ public class GoogleAuthService {
     @Value("${google.redirect.uri}")
     private String redirectUri;
 
+    // Emisores válidos de los ID tokens de Google
+    private static final Set<String> ISSUERS = Set.of("accounts.google.com", "https://accounts.google.com");
+
     private final RestTemplate restTemplate;
+    private final GoogleJwksService googleJwksService;
+    private final CircuitBreaker googleCircuitBreaker;
+
+    // Parser de ID tokens: la clave se resuelve por kid desde el JWKS cacheado
+    private JwtParser idTokenParser;
 
-    public GoogleAuthService(RestTemplate restTemplate) {
+    public GoogleAuthService(RestTemplate restTemplate, GoogleJwksService googleJwksService,
+                             CircuitBreaker googleCircuitBreaker) {
         this.restTemplate = restTemplate;
+        this.googleJwksService = googleJwksService;
+        this.googleCircuitBreaker = googleCircuitBreaker;
+    }
+
+    @PostConstruct
+    void init() {
+        this.idTokenParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return googleJwksService.obtenerClave(header.getKeyId());
+                    }
+                })
+                .requireAudience(clientId)
+                .setAllowedClockSkewSeconds(60)
+                .build();
     }
 
     public Map<String, String> exchangeCodeForTokens(String code) {
@@ -45,7 +79,9 @@ public class GoogleAuthService {
 
             HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(body, headers);
 
-            ResponseEntity<Map> response = restTemplate.postForEntity(tokenUrl, request, Map.class);
+            // Si Google está caído, el circuit breaker corta antes de ocupar el hilo
+            ResponseEntity<Map> response = googleCircuitBreaker.execute(
+                    () -> restTemplate.postForEntity(tokenUrl, request, Map.class));
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 Map<String, String> tokens = new HashMap<>();
@@ -60,30 +96,24 @@ public class GoogleAuthService {
         }
     }
 
+    // Verificar el ID token localmente (firma RS256 con el JWKS de Google, exp, aud e iss)
     public GoogleUserInfo verifyToken(String idToken) {
         try {
-            String verifyUrl = "https://oauth2.googleapis.com/tokeninfo?id_token=" + idToken;
+            Claims claims = idTokenParser.parseClaimsJws(idToken).getBody();
 
-            ResponseEntity<Map> response = restTemplate.getForEntity(verifyUrl, Map.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                Map<String, Object> tokenInfo = response.getBody();
-
-                // Verificar que el token es para nuestra aplicación
-                if (!clientId.equals(tokenInfo.get("aud"))) {
-                    throw new RuntimeException("Token no válido para esta aplicación");
-                }
-
-                return new GoogleUserInfo(
-                        (String) tokenInfo.get("sub"),
-                        (String) tokenInfo.get("email"),
-                        (String) tokenInfo.get("name"),
-                        (String) tokenInfo.get("picture"),
-                        "true".equals(tokenInfo.get("email_verified"))
-                );
-            } else {
-                throw new RuntimeException("Token de Google inválido");
+            // Verificar que el token lo emitió Google
+            if (!ISSUERS.contains(claims.getIssuer())) {
+                throw new RuntimeException("Emisor del token no válido");
             }
+
+            Object emailVerified = claims.get("email_verified");
+            return new GoogleUserInfo(
+                    claims.getSubject(),
+                    claims.get("email", String.class),
+                    claims.get("name", String.class),
+                    claims.get("picture", String.class),
+                    Boolean.TRUE.equals(emailVerified) || "true".equals(emailVerified)
+            );
         } catch (Exception e) {
             throw new RuntimeException("Error al verificar token: " + e.getMessage());
         }
@@ -0,0 +1,135 @@
+package com.utp.timeline.service;
+
+import com.utp.timeline.config.CircuitBreaker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Claves públicas de Google (JWKS) para verificar ID tokens localmente.
+ * Las claves se cachean durante el {@code max-age} de la respuesta; un
+ * {@code kid} desconocido fuerza una recarga (rotación de claves), como mucho
+ * una vez por intervalo mínimo.
+ */
+@Service
+public class GoogleJwksService {
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    // TTL si la respuesta no trae Cache-Control
+    private static final long DEFAULT_TTL_MS = 60 * 60 * 1000L;
+
+    private final RestTemplate restTemplate;
+    private final CircuitBreaker googleCircuitBreaker;
+    private final String jwksUri;
+    private final long minRefreshIntervalMs;
+
+    // Snapshot inmutable de las claves vigentes
+    private volatile KeySet keySet = new KeySet(Map.of(), 0L, 0L);
+
+    @Autowired
+    public GoogleJwksService(RestTemplate restTemplate,
+                             CircuitBreaker googleCircuitBreaker,
+                             @Value("${google.jwks.uri:https://www.googleapis.com/oauth2/v3/certs}") String jwksUri,
+                             @Value("${google.jwks.min-refresh-interval-ms:30000}") long minRefreshIntervalMs) {
+        this.restTemplate = restTemplate;
+        this.googleCircuitBreaker = googleCircuitBreaker;
+        this.jwksUri = jwksUri;
+        this.minRefreshIntervalMs = minRefreshIntervalMs;
+    }
+
+    // Obtener la clave pública por kid (recarga el JWKS si expiró o si el kid es nuevo)
+    public PublicKey obtenerClave(String kid) {
+        long ahora = System.currentTimeMillis();
+        KeySet actual = keySet;
+
+        if (actual.expiraEn <= ahora) {
+            actual = recargar(actual, ahora);
+        }
+
+        PublicKey clave = actual.claves.get(kid);
+        if (clave == null && ahora - actual.cargadoEn >= minRefreshIntervalMs) {
+            actual = recargar(actual, ahora);
+            clave = actual.claves.get(kid);
+        }
+
+        if (clave == null) {
+            throw new RuntimeException("Clave de Google desconocida: " + kid);
+        }
+        return clave;
+    }
+
+    // Una sola recarga a la vez; el resto de hilos reutiliza el resultado
+    private synchronized KeySet recargar(KeySet anterior, long ahora) {
+        if (keySet != anterior) {
+            return keySet;
+        }
+
+        ResponseEntity<Map> response = googleCircuitBreaker.execute(
+                () -> restTemplate.exchange(jwksUri, HttpMethod.GET, null, Map.class));
+        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+            throw new RuntimeException("No se pudieron obtener las claves de Google");
+        }
+
+        Map<String, PublicKey> claves = new HashMap<>();
+        Object keys = response.getBody().get("keys");
+        if (keys instanceof List) {
+            for (Object key : (List<?>) keys) {
+                if (key instanceof Map) {
+                    Map<?, ?> jwk = (Map<?, ?>) key;
+                    if ("RSA".equals(jwk.get("kty")) && jwk.get("kid") != null) {
+                        claves.put((String) jwk.get("kid"), construirClaveRsa((String) jwk.get("n"), (String) jwk.get("e")));
+                    }
+                }
+            }
+        }
+
+        long ttl = DEFAULT_TTL_MS;
+        String cacheControl = response.getHeaders().getCacheControl();
+        if (cacheControl != null) {
+            Matcher matcher = MAX_AGE.matcher(cacheControl);
+            if (matcher.find()) {
+                ttl = Long.parseLong(matcher.group(1)) * 1000L;
+            }
+        }
+
+        keySet = new KeySet(claves, ahora, ahora + ttl);
+        return keySet;
+    }
+
+    private static PublicKey construirClaveRsa(String modulo, String exponente) {
+        try {
+            BigInteger n = new BigInteger(1, Base64.getUrlDecoder().decode(modulo));
+            BigInteger e = new BigInteger(1, Base64.getUrlDecoder().decode(exponente));
+            return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(n, e));
+        } catch (Exception ex) {
+            throw new RuntimeException("Clave RSA de Google inválida: " + ex.getMessage());
+        }
+    }
+
+    private static class KeySet {
+        final Map<String, PublicKey> claves;
+        final long cargadoEn;
+        final long expiraEn;
+
+        KeySet(Map<String, PublicKey> claves, long cargadoEn, long expiraEn) {
+            this.claves = claves;
+            this.cargadoEn = cargadoEn;
+            this.expiraEn = expiraEn;
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package com.utp.timeline.service;
+
+import com.utp.timeline.entity.Proyecto;
+import com.utp.timeline.entity.Usuario;
+import com.utp.timeline.repository.ProyectoRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Write-behind del autosave de proyectos ({@code app.autosave.write-behind.enabled=true}).
+ *
+ * Cada guardado reemplaza en memoria el pendiente del proyecto (con su
+ * versión lógica) y se anota en un diario en disco; un hilo vuelca los
+ * pendientes en lotes, cada lote en una transacción, cuando superan
+ * {@code delay-ms} de antigüedad o hay más de {@code max-pending}. Mientras
+ * un usuario edita, N guardados seguidos acaban en una sola escritura.
+ *
+ * Las lecturas ven el pendiente ({@link #conPendiente}, ProyectoMapper).
+ * Al parar la aplicación se vuelca todo; si el proceso cae, el diario se
+ * recupera al arrancar.
+ *
+ * Pensado para un único nodo (o sesiones fijas por proyecto): si otro nodo
+ * escribe el mismo proyecto, el volcado detecta el conflicto por versión y
+ * gana la escritura de la base de datos. El guardado pendiente ya se confirmó
+ * al cliente, así que no se pierde: se conserva como un proyecto nuevo
+ * "(copia en conflicto)" del mismo usuario.
+ */
+@Service
+public class GuardadoDiferidoService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(GuardadoDiferidoService.class);
+
+    private final ProyectoRepository proyectoRepository;
+    private final CompresorDatos compresor;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long delayMs;
+    private final int maxPending;
+    private final int batchSize;
+
+    private final ConcurrentHashMap<Long, Pendiente> pendientes = new ConcurrentHashMap<>();
+    private final DiarioGuardados diario;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean volcadoProgramado = new AtomicBoolean();
+
+    // Un solo volcado a la vez: dos volcados del mismo pendiente se verían como conflicto
+    private final Object volcadoLock = new Object();
+
+    // Métricas
+    private final LongAdder guardados = new LongAdder();
+    private final LongAdder sinCambios = new LongAdder();
+    private final LongAdder escrituras = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private final LongAdder conflictos = new LongAdder();
+    private final LongAdder yaVolcados = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder copiasConflicto = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+
+    @Autowired
+    public GuardadoDiferidoService(ProyectoRepository proyectoRepository,
+                                   CompresorDatos compresor,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${app.autosave.write-behind.enabled:false}") boolean enabled,
+                                   @Value("${app.autosave.write-behind.delay-ms:5000}") long delayMs,
+                                   @Value("${app.autosave.write-behind.max-pending:500}") int maxPending,
+                                   @Value("${app.autosave.write-behind.batch-size:50}") int batchSize,
+                                   @Value("${app.autosave.write-behind.journal:autosave/guardados.journal}") String journal,
+                                   @Value("${app.autosave.write-behind.journal-sync:true}") boolean journalSync) throws IOException {
+        this.proyectoRepository = proyectoRepository;
+        this.compresor = compresor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.delayMs = delayMs;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+
+        if (enabled) {
+            this.diario = new DiarioGuardados(Paths.get(journal), journalSync);
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "autosave-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalo = Math.max(100, delayMs / 2);
+            flusher.scheduleWithFixedDelay(this::volcarVencidos, intervalo, intervalo, TimeUnit.MILLISECONDS);
+        } else {
+            this.diario = null;
+            this.flusher = null;
+        }
+    }
+
+    // Recupera del diario los guardados que no llegaron a la base de datos
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<Pendiente> recuperados = diario.recuperar();
+            for (Pendiente pendiente : recuperados) {
+                pendientes.merge(pendiente.getProyectoId(), pendiente.conCreacion(System.currentTimeMillis() - delayMs),
+                        (a, b) -> b.getVersion() >= a.getVersion() ? b : a);
+            }
+            if (!recuperados.isEmpty()) {
+                log.info("Recuperados {} guardados pendientes del diario", recuperados.size());
+                volcarTodo();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el diario de guardados", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registra un guardado. {@code cambio} recibe la data vigente (pendiente o
+     * de la base de datos) y devuelve la nueva; {@code cargar} obtiene el
+     * proyecto verificando el propietario cuando no hay pendiente en memoria.
+     * Devuelve la nueva versión.
+     */
+    public long guardar(Long proyectoId, Usuario usuario, Long versionEsperada,
+                        UnaryOperator<String> cambio, Supplier<Proyecto> cargar) {
+        Pendiente actual = pendientes.get(proyectoId);
+        Proyecto cargado = actual != null && actual.getUsuarioId() == usuario.getId() ? null : cargar.get();
+
+        for (;;) {
+            Proyecto base = cargado;
+            Pendiente nuevo = pendientes.compute(proyectoId, (id, pendiente) -> {
+                if (pendiente == null && base == null) {
+                    // Se volcó entre la lectura y el compute: hay que cargar de la base de datos
+                    return null;
+                }
+                String data = pendiente != null ? pendiente.getData() : base.getData();
+                long version = pendiente != null ? pendiente.getVersion() : versionDe(base);
+                long versionBase = pendiente != null ? pendiente.getVersionBase() : version;
+                long creado = pendiente != null ? pendiente.getCreado() : System.currentTimeMillis();
+                if (versionEsperada != null && versionEsperada != version) {
+                    throw new ConflictoVersionException(version);
+                }
+                return new Pendiente(id, usuario.getId(), versionBase, version + 1, cambio.apply(data), creado);
+            });
+            if (nuevo == null) {
+                cargado = cargar.get();
+                continue;
+            }
+
+            guardados.increment();
+            try {
+                diario.registrar(nuevo);
+            } catch (IOException e) {
+                // Sin diario no hay durabilidad: se escribe ya en la base de datos
+                log.warn("No se pudo escribir el diario de guardados, se vuelca el proyecto {}", proyectoId, e);
+                volcar(proyectoId);
+            }
+            if (pendientes.size() >= maxPending && volcadoProgramado.compareAndSet(false, true)) {
+                flusher.execute(() -> {
+                    volcadoProgramado.set(false);
+                    volcarTodo();
+                });
+            }
+            return nuevo.getVersion();
+        }
+    }
+
+    /**
+     * Cuenta un autosave que no cambiaba la data y se confirmó sin escribir
+     * (lo detecta ProyectoService, con o sin write-behind).
+     */
+    public void registrarSinCambios() {
+        sinCambios.increment();
+    }
+
+    /**
+     * Guardado pendiente del proyecto, o null.
+     */
+    public Pendiente obtener(Long proyectoId) {
+        return enabled ? pendientes.get(proyectoId) : null;
+    }
+
+    /**
+     * El proyecto con la data y versión pendientes. Si hay pendiente devuelve
+     * una copia: modificar la entidad gestionada la escribiría al hacer commit.
+     */
+    public Proyecto conPendiente(Proyecto proyecto) {
+        Pendiente pendiente = proyecto == null ? null : obtener(proyecto.getId());
+        if (pendiente == null) {
+            return proyecto;
+        }
+        Proyecto copia = new Proyecto();
+        copia.setId(proyecto.getId());
+        copia.setUsuario(proyecto.getUsuario());
+        copia.setPlantillaBase(proyecto.getPlantillaBase());
+        copia.setTitulo(proyecto.getTitulo());
+        copia.setDescripcion(proyecto.getDescripcion());
+        copia.setData(pendiente.getData());
+        copia.setVersion(pendiente.getVersion());
+        copia.setFechaCreacion(proyecto.getFechaCreacion());
+        copia.setFechaModificacion(proyecto.getFechaModificacion());
+        return copia;
+    }
+
+    /**
+     * Vuelca ya el pendiente del proyecto (antes de operaciones que leen o
+     * reemplazan la data en la base de datos: duplicar, actualizar).
+     */
+    public void volcar(Long proyectoId) {
+        if (!enabled || !pendientes.containsKey(proyectoId)) {
+            return;
+        }
+        synchronized (volcadoLock) {
+            Pendiente pendiente = pendientes.get(proyectoId);
+            if (pendiente != null && volcarLote(List.of(pendiente)) && pendientes.get(proyectoId) != pendiente) {
+                // Sin compactar, que reescribiría el diario en cada PUT: el registro de
+                // volcado evita que el guardado se vuelva a aplicar al recuperar
+                registrarVolcado(proyectoId, pendiente.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Descarta el pendiente (el proyecto se va a eliminar).
+     */
+    public void descartar(Long proyectoId) {
+        if (enabled && pendientes.remove(proyectoId) != null) {
+            registrarVolcado(proyectoId, Long.MAX_VALUE);
+        }
+    }
+
+    // Si no se puede anotar, al recuperar el volcado detecta que la data ya está escrita
+    private void registrarVolcado(Long proyectoId, long version) {
+        try {
+            diario.registrarVolcado(proyectoId, version);
+        } catch (IOException e) {
+            log.warn("No se pudo anotar en el diario el volcado del proyecto {}", proyectoId, e);
+        }
+    }
+
+    private void volcarVencidos() {
+        long limite = System.currentTimeMillis() - delayMs;
+        List<Pendiente> vencidos = new ArrayList<>();
+        for (Pendiente pendiente : pendientes.values()) {
+            if (pendiente.getCreado() <= limite) {
+                vencidos.add(pendiente);
+            }
+        }
+        if (!vencidos.isEmpty()) {
+            volcar(vencidos);
+        }
+    }
+
+    void volcarTodo() {
+        volcar(new ArrayList<>(pendientes.values()));
+    }
+
+    private void volcar(List<Pendiente> lista) {
+        synchronized (volcadoLock) {
+            for (int desde = 0; desde < lista.size(); desde += batchSize) {
+                volcarLote(lista.subList(desde, Math.min(lista.size(), desde + batchSize)));
+            }
+            try {
+                diario.compactar(() -> new ArrayList<>(pendientes.values()));
+            } catch (IOException e) {
+                log.warn("No se pudo compactar el diario de guardados", e);
+            }
+        }
+    }
+
+    // Un lote = una transacción; si falla, los pendientes se quedan para el siguiente intento (false)
+    private boolean volcarLote(List<Pendiente> lote) {
+        List<Pendiente> sinFilas = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime ahora = LocalDateTime.now();
+                for (Pendiente pendiente : lote) {
+                    CompresorDatos.Comprimido comprimido =
+                            compresor.comprimirProyecto(pendiente.getProyectoId(), pendiente.getData());
+                    int filas = proyectoRepository.volcarDatos(pendiente.getProyectoId(), comprimido.getBytes(),
+                            comprimido.getDiccionarioId(), Proyecto.huellaDe(pendiente.getData()),
+                            pendiente.getVersionBase(), pendiente.getVersion(), ahora);
+                    if (filas == 0) {
+                        sinFilas.add(pendiente);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            errores.increment();
+            log.warn("Error al volcar {} guardados pendientes", lote.size(), e);
+            return false;
+        }
+        lotes.increment();
+        escrituras.add(lote.size() - sinFilas.size());
+
+        for (Pendiente volcado : lote) {
+            if (sinFilas.contains(volcado)) {
+                if (resolverSinFilas(volcado)) {
+                    pendientes.remove(volcado.getProyectoId(), volcado);
+                }
+                continue;
+            }
+            // Si llegó otro guardado mientras tanto, su base pasa a ser lo recién escrito
+            pendientes.computeIfPresent(volcado.getProyectoId(),
+                    (id, actual) -> actual == volcado ? null : actual.conBase(volcado.getVersion()));
+        }
+        return true;
+    }
+
+    /**
+     * El volcado no escribió ninguna fila. No siempre es un conflicto: un
+     * guardado recuperado del diario puede estar ya en la base de datos (misma
+     * huella con su versión o una posterior), o el proyecto pudo eliminarse.
+     * Devuelve false si no se pudo comprobar y el pendiente debe quedarse.
+     */
+    private boolean resolverSinFilas(Pendiente pendiente) {
+        Optional<ProyectoRepository.HuellaDatos> huella;
+        try {
+            huella = proyectoRepository.obtenerHuella(pendiente.getProyectoId(), pendiente.getUsuarioId());
+        } catch (RuntimeException e) {
+            errores.increment();
+            log.warn("No se pudo comprobar el guardado diferido del proyecto {}", pendiente.getProyectoId(), e);
+            return false;
+        }
+        if (huella.isEmpty()) {
+            descartados.increment();
+            log.info("El proyecto {} ya no existe, se descarta su guardado diferido (versión {})",
+                    pendiente.getProyectoId(), pendiente.getVersion());
+            return true;
+        }
+        if (huella.get().getVersion() >= pendiente.getVersion()
+                && Objects.equals(huella.get().getDataHash(), Proyecto.huellaDe(pendiente.getData()))) {
+            yaVolcados.increment();
+            return true;
+        }
+        conflictos.increment();
+        guardarCopiaEnConflicto(pendiente);
+        return true;
+    }
+
+    /**
+     * El proyecto cambió en la base de datos después del guardado: se guarda
+     * la data pendiente como copia del proyecto para que el usuario decida.
+     * Si ni eso es posible, la data queda en el log de error.
+     */
+    private void guardarCopiaEnConflicto(Pendiente pendiente) {
+        try {
+            Long copiaId = transactionTemplate.execute(status -> {
+                Proyecto original = proyectoRepository.findById(pendiente.getProyectoId())
+                        .orElseThrow(() -> new IllegalStateException("El proyecto ya no existe"));
+                Proyecto copia = new Proyecto(original.getUsuario(),
+                        original.getTitulo() + " (copia en conflicto)", pendiente.getData());
+                copia.setDescripcion(original.getDescripcion());
+                copia.setPlantillaBase(original.getPlantillaBase());
+                return proyectoRepository.save(copia).getId();
+            });
+            copiasConflicto.increment();
+            log.warn("Guardado diferido del proyecto {} (versión {}) en conflicto: la versión en la base de datos "
+                    + "cambió, se guardó como el proyecto {}", pendiente.getProyectoId(), pendiente.getVersion(), copiaId);
+        } catch (RuntimeException e) {
+            errores.increment();
+            log.error("Guardado diferido del proyecto {} (versión {}) perdido por conflicto de versión, data: {}",
+                    pendiente.getProyectoId(), pendiente.getVersion(), pendiente.getData(), e);
+        }
+    }
+
+    private static long versionDe(Proyecto proyecto) {
+        return proyecto.getVersion() != null ? proyecto.getVersion() : 0L;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        volcarTodo();
+        try {
+            diario.cerrar();
+        } catch (IOException e) {
+            log.warn("No se pudo cerrar el diario de guardados", e);
+        }
+        if (!pendientes.isEmpty()) {
+            log.warn("{} guardados siguen pendientes en el diario al parar", pendientes.size());
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("activo", enabled);
+        stats.put("pendientes", pendientes.size());
+        stats.put("guardados", guardados.sum());
+        stats.put("sinCambios", sinCambios.sum());
+        stats.put("escrituras", escrituras.sum());
+        stats.put("lotes", lotes.sum());
+        stats.put("conflictos", conflictos.sum());
+        stats.put("yaVolcados", yaVolcados.sum());
+        stats.put("descartados", descartados.sum());
+        stats.put("copiasConflicto", copiasConflicto.sum());
+        stats.put("errores", errores.sum());
+        if (enabled) {
+            try {
+                stats.put("bytesDiario", diario.tamano());
+            } catch (IOException e) {
+                stats.put("bytesDiario", -1);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Guardado pendiente de un proyecto: data y versión lógica, y la versión
+     * de la base de datos sobre la que se volcará.
+     */
+    public static final class Pendiente {
+        private final long proyectoId;
+        private final long usuarioId;
+        private final long versionBase;
+        private final long version;
+        private final String data;
+        private final long creado;
+
+        Pendiente(long proyectoId, long usuarioId, long versionBase, long version, String data, long creado) {
+            this.proyectoId = proyectoId;
+            this.usuarioId = usuarioId;
+            this.versionBase = versionBase;
+            this.version = version;
+            this.data = data;
+            this.creado = creado;
+        }
+
+        Pendiente conBase(long nuevaBase) {
+            return new Pendiente(proyectoId, usuarioId, nuevaBase, version, data, creado);
+        }
+
+        Pendiente conCreacion(long nuevoCreado) {
+            return new Pendiente(proyectoId, usuarioId, versionBase, version, data, nuevoCreado);
+        }
+
+        public long getProyectoId() { return proyectoId; }
+        public long getUsuarioId() { return usuarioId; }
+        public long getVersionBase() { return versionBase; }
+        public long getVersion() { return version; }
+        public String getData() { return data; }
+        public long getCreado() { return creado; }
+    }
+}
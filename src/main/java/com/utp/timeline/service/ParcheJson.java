@@ -0,0 +1,215 @@
+package com.utp.timeline.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aplicación de parches sobre el JSON de un proyecto:
+ * JSON Patch (RFC 6902) y JSON Merge Patch (RFC 7386).
+ *
+ * Los parches no modifican el documento recibido: devuelven uno nuevo. Un
+ * parche mal formado, una ruta inexistente o una operación "test" que no
+ * se cumple lanzan {@link IllegalArgumentException} y no se aplica nada.
+ */
+public final class ParcheJson {
+
+    // Igualdad de "test" (RFC 6902, 4.6): los números se comparan por valor, así que
+    // 1 y 1.0 son iguales. Objetos y arrays la aplican a cada miembro
+    private static final Comparator<JsonNode> IGUAL_VALOR = (a, b) -> {
+        if (a.isNumber() && b.isNumber()) {
+            return a.decimalValue().compareTo(b.decimalValue());
+        }
+        return a.equals(b) ? 0 : 1;
+    };
+
+    private ParcheJson() {}
+
+    // ===== RFC 6902 =====
+
+    public static JsonNode aplicarJsonPatch(JsonNode documento, JsonNode operaciones) {
+        if (operaciones == null || !operaciones.isArray()) {
+            throw new IllegalArgumentException("El JSON Patch debe ser un array de operaciones");
+        }
+        JsonNode resultado = documento == null ? JsonNodeFactory.instance.nullNode() : documento.deepCopy();
+        for (JsonNode operacion : operaciones) {
+            resultado = aplicarOperacion(resultado, operacion);
+        }
+        return resultado;
+    }
+
+    private static JsonNode aplicarOperacion(JsonNode documento, JsonNode operacion) {
+        String op = texto(operacion, "op");
+        List<String> ruta = parsearPuntero(texto(operacion, "path"));
+
+        switch (op) {
+            case "add":
+                return agregar(documento, ruta, valor(operacion).deepCopy());
+            case "remove":
+                quitar(documento, ruta);
+                return ruta.isEmpty() ? JsonNodeFactory.instance.nullNode() : documento;
+            case "replace":
+                obtener(documento, ruta);
+                if (ruta.isEmpty()) {
+                    return valor(operacion).deepCopy();
+                }
+                quitar(documento, ruta);
+                return agregar(documento, ruta, valor(operacion).deepCopy());
+            case "move": {
+                List<String> desde = parsearPuntero(texto(operacion, "from"));
+                if (esPrefijo(desde, ruta) && desde.size() < ruta.size()) {
+                    throw new IllegalArgumentException("No se puede mover un nodo dentro de sí mismo");
+                }
+                JsonNode nodo = obtener(documento, desde);
+                if (desde.equals(ruta)) {
+                    return documento;
+                }
+                quitar(documento, desde);
+                return agregar(documento, ruta, nodo);
+            }
+            case "copy": {
+                JsonNode nodo = obtener(documento, parsearPuntero(texto(operacion, "from")));
+                return agregar(documento, ruta, nodo.deepCopy());
+            }
+            case "test":
+                if (!obtener(documento, ruta).equals(IGUAL_VALOR, valor(operacion))) {
+                    throw new IllegalArgumentException("La operación test no se cumple en " + operacion.get("path").asText());
+                }
+                return documento;
+            default:
+                throw new IllegalArgumentException("Operación de JSON Patch desconocida: " + op);
+        }
+    }
+
+    private static JsonNode agregar(JsonNode documento, List<String> ruta, JsonNode valor) {
+        if (ruta.isEmpty()) {
+            return valor;
+        }
+        JsonNode padre = obtener(documento, ruta.subList(0, ruta.size() - 1));
+        String clave = ruta.get(ruta.size() - 1);
+        if (padre.isObject()) {
+            ((ObjectNode) padre).set(clave, valor);
+        } else if (padre.isArray()) {
+            ArrayNode array = (ArrayNode) padre;
+            if ("-".equals(clave)) {
+                array.add(valor);
+            } else {
+                int indice = indice(clave, array.size() + 1);
+                array.insert(indice, valor);
+            }
+        } else {
+            throw new IllegalArgumentException("La ruta no apunta a un objeto ni a un array");
+        }
+        return documento;
+    }
+
+    private static void quitar(JsonNode documento, List<String> ruta) {
+        if (ruta.isEmpty()) {
+            return;
+        }
+        JsonNode padre = obtener(documento, ruta.subList(0, ruta.size() - 1));
+        String clave = ruta.get(ruta.size() - 1);
+        if (padre.isObject()) {
+            if (((ObjectNode) padre).remove(clave) == null) {
+                throw new IllegalArgumentException("No existe la clave '" + clave + "'");
+            }
+        } else if (padre.isArray()) {
+            ((ArrayNode) padre).remove(indice(clave, padre.size()));
+        } else {
+            throw new IllegalArgumentException("La ruta no apunta a un objeto ni a un array");
+        }
+    }
+
+    private static JsonNode obtener(JsonNode documento, List<String> ruta) {
+        JsonNode actual = documento;
+        for (String clave : ruta) {
+            if (actual.isObject()) {
+                actual = actual.get(clave);
+            } else if (actual.isArray()) {
+                actual = actual.get(indice(clave, actual.size()));
+            } else {
+                actual = null;
+            }
+            if (actual == null) {
+                throw new IllegalArgumentException("La ruta no existe en el documento");
+            }
+        }
+        return actual;
+    }
+
+    // Índice de array válido en [0, limite)
+    private static int indice(String clave, int limite) {
+        if (clave.isEmpty() || (clave.length() > 1 && clave.charAt(0) == '0')) {
+            throw new IllegalArgumentException("Índice de array inválido: " + clave);
+        }
+        int indice;
+        try {
+            indice = Integer.parseInt(clave);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Índice de array inválido: " + clave);
+        }
+        if (indice < 0 || indice >= limite) {
+            throw new IllegalArgumentException("Índice de array fuera de rango: " + clave);
+        }
+        return indice;
+    }
+
+    // JSON Pointer (RFC 6901): "/a/b~1c" -> [a, b/c]
+    private static List<String> parsearPuntero(String puntero) {
+        List<String> partes = new ArrayList<>();
+        if (puntero.isEmpty()) {
+            return partes;
+        }
+        if (puntero.charAt(0) != '/') {
+            throw new IllegalArgumentException("Ruta JSON Pointer inválida: " + puntero);
+        }
+        for (String parte : puntero.substring(1).split("/", -1)) {
+            partes.add(parte.replace("~1", "/").replace("~0", "~"));
+        }
+        return partes;
+    }
+
+    private static boolean esPrefijo(List<String> prefijo, List<String> ruta) {
+        return ruta.size() >= prefijo.size() && ruta.subList(0, prefijo.size()).equals(prefijo);
+    }
+
+    private static String texto(JsonNode operacion, String campo) {
+        JsonNode nodo = operacion.get(campo);
+        if (nodo == null || !nodo.isTextual()) {
+            throw new IllegalArgumentException("Falta '" + campo + "' en la operación");
+        }
+        return nodo.asText();
+    }
+
+    private static JsonNode valor(JsonNode operacion) {
+        if (!operacion.has("value")) {
+            throw new IllegalArgumentException("Falta 'value' en la operación");
+        }
+        return operacion.get("value");
+    }
+
+    // ===== RFC 7386 =====
+
+    public static JsonNode aplicarMergePatch(JsonNode documento, JsonNode parche) {
+        if (parche == null || !parche.isObject()) {
+            return parche == null ? JsonNodeFactory.instance.nullNode() : parche.deepCopy();
+        }
+        ObjectNode resultado = documento != null && documento.isObject()
+                ? ((ObjectNode) documento).deepCopy()
+                : JsonNodeFactory.instance.objectNode();
+        for (Map.Entry<String, JsonNode> campo : parche.properties()) {
+            if (campo.getValue().isNull()) {
+                resultado.remove(campo.getKey());
+            } else {
+                resultado.set(campo.getKey(), aplicarMergePatch(resultado.get(campo.getKey()), campo.getValue()));
+            }
+        }
+        return resultado;
+    }
+}
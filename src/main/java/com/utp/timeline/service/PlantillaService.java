@@ -1,11 +1,13 @@
 package com.utp.timeline.service;
 
 import com.utp.timeline.dto.PlantillaEstadisticaDTO;
+import com.utp.timeline.dto.PlantillaResponseDTO;
 import com.utp.timeline.dto.PlantillaMapper;
 import com.utp.timeline.entity.Categoria;
 import com.utp.timeline.entity.Plantilla;
 import com.utp.timeline.entity.Usuario;
 import com.utp.timeline.repository.PlantillaRepository;
+import com.utp.timeline.config_seguridad.Bulkhead;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
@@ -14,6 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Transactional
@@ -22,10 +25,13 @@ public class PlantillaService {
     private final PlantillaRepository plantillaRepository;
     private final PlantillaMapper plantillaMapper;
     private final CategoriaService categoriaService;
+    private final CompresorDatos compresor;
 
     @Autowired
-    public PlantillaService(PlantillaRepository plantillaRepository,PlantillaMapper plantillaMapper, CategoriaService categoriaService) {
+    public PlantillaService(PlantillaRepository plantillaRepository,PlantillaMapper plantillaMapper, CategoriaService categoriaService,
+                            CompresorDatos compresor) {
         this.categoriaService = categoriaService;
+        this.compresor = compresor;
         this.plantillaRepository = plantillaRepository;
         this.plantillaMapper = plantillaMapper;
     }
@@ -75,19 +81,24 @@ public class PlantillaService {
     }
 
     // Obtener plantillas disponibles para un usuario
-    public List<Plantilla> obtenerPlantillasDisponibles(Usuario usuario) {
+    public List<PlantillaResponseDTO> obtenerPlantillasDisponibles(Usuario usuario) {
         if (usuario.getRol() == Usuario.Rol.ADMIN) {
             // Admin ve todas las plantillas activas
-            return plantillaRepository.findByEstado("ACTIVA");
+            return plantillaRepository.findResumenesByEstado("ACTIVA");
         } else if (usuario.getPlan() == Usuario.Plan.PREMIUM) {
             // Premium ve plantillas públicas + sus propias plantillas
-            return plantillaRepository.findDisponiblesParaUsuario(usuario);
+            return plantillaRepository.findResumenesDisponibles(usuario.getId(), false);
         } else {
             // Free solo ve plantillas públicas activas
-            return plantillaRepository.findPublicasActivas();
+            return plantillaRepository.findResumenesPublicasActivas();
         }
     }
 
+    // Plantillas públicas activas (resúmenes sin data)
+    public List<PlantillaResponseDTO> obtenerPlantillasPublicas() {
+        return plantillaRepository.findResumenesPublicasActivas();
+    }
+
     // Obtener plantilla por ID con verificación de permisos
     /*public Plantilla obtenerPlantillaPorId(Long id, Usuario usuario) {
         Plantilla plantilla = plantillaRepository.findById(id)
@@ -126,6 +137,14 @@ public class PlantillaService {
 
     // Actualizar plantilla
     public Plantilla actualizarPlantilla(Long id, Plantilla plantillaActualizada, Usuario usuario) {
+        return actualizarPlantilla(id, plantillaActualizada, null, usuario);
+    }
+
+    // Con versionEsperada (If-Match) la escritura es un UPDATE condicionado, sin leer antes la plantilla
+    public Plantilla actualizarPlantilla(Long id, Plantilla plantillaActualizada, Long versionEsperada, Usuario usuario) {
+        if (versionEsperada != null) {
+            return actualizarPlantillaSiVersion(id, plantillaActualizada, versionEsperada, usuario);
+        }
         Plantilla plantillaExistente = obtenerPlantillaPorId(id, usuario);
 
         // Verificar que el usuario es el creador o admin
@@ -178,9 +197,68 @@ public class PlantillaService {
             plantillaExistente.setEsPublica(plantillaActualizada.getEsPublica());
         }
 
+        plantillaExistente.setVersion(versionDe(plantillaExistente) + 1);
         return plantillaRepository.save(plantillaExistente);
     }
 
+    private Plantilla actualizarPlantillaSiVersion(Long id, Plantilla plantillaActualizada, long versionBase, Usuario usuario) {
+        boolean admin = usuario.getRol() == Usuario.Rol.ADMIN;
+
+        // Verificar nombre único para el mismo usuario (otra plantilla, no esta)
+        if (plantillaActualizada.getNombre() != null) {
+            plantillaRepository.findByNombreAndCreadoPor(plantillaActualizada.getNombre(), usuario)
+                    .filter(otra -> !otra.getId().equals(id))
+                    .ifPresent(otra -> {
+                        throw new RuntimeException("Ya tienes una plantilla con ese nombre");
+                    });
+        }
+
+        // Solo premium y admin pueden cambiar visibilidad
+        Boolean esPublica = usuario.getPlan() == Usuario.Plan.PREMIUM || admin
+                ? plantillaActualizada.getEsPublica()
+                : null;
+
+        // Las plantillas se comprimen sin diccionario (los diccionarios son para sus proyectos)
+        byte[] datos = compresor.comprimir(plantillaActualizada.getData(), null).getBytes();
+
+        int filas;
+        if (plantillaActualizada.getCategoria() != null) {
+            Categoria categoria = null;
+            if (plantillaActualizada.getCategoria().getIdCategoria() != null) {
+                categoria = categoriaService.obtenerCategoriaPorId(plantillaActualizada.getCategoria().getIdCategoria());
+                if (!"ACTIVA".equals(categoria.getEstado())) {
+                    throw new RuntimeException("La categoría seleccionada no está disponible");
+                }
+            }
+            filas = plantillaRepository.actualizarConCategoriaSiVersion(id, plantillaActualizada.getNombre(),
+                    plantillaActualizada.getDescripcion(), datos, esPublica, categoria,
+                    versionBase, usuario.getId(), admin);
+        } else {
+            filas = plantillaRepository.actualizarSiVersion(id, plantillaActualizada.getNombre(),
+                    plantillaActualizada.getDescripcion(), datos, esPublica,
+                    versionBase, usuario.getId(), admin);
+        }
+
+        if (filas == 0) {
+            // Solo en el caso raro se averigua por qué no se escribió
+            long versionActual = plantillaRepository.obtenerVersionEditable(id, usuario.getId(), admin)
+                    .orElseThrow(() -> new RuntimeException("Solo el creador o un administrador pueden editar esta plantilla"));
+            throw new ConflictoVersionException("La plantilla", versionActual);
+        }
+        return plantillaRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Plantilla no encontrada"));
+    }
+
+    // Versión vigente de una plantilla editable por el usuario, sin leer la data
+    public long obtenerVersion(Long id, Usuario usuario) {
+        return plantillaRepository.obtenerVersionEditable(id, usuario.getId(), usuario.getRol() == Usuario.Rol.ADMIN)
+                .orElseThrow(() -> new RuntimeException("Solo el creador o un administrador pueden editar esta plantilla"));
+    }
+
+    private static long versionDe(Plantilla plantilla) {
+        return plantilla.getVersion() != null ? plantilla.getVersion() : 0L;
+    }
+
     // Eliminar plantilla (archivar en lugar de eliminar)
     public void eliminarPlantilla(Long id, Usuario usuario) {
         Plantilla plantilla = obtenerPlantillaPorId(id, usuario);
@@ -193,15 +271,16 @@ public class PlantillaService {
 
         // Archivar en lugar de eliminar (soft delete)
         plantilla.setEstado("ARCHIVADA");
+        plantilla.setVersion(versionDe(plantilla) + 1);
         plantillaRepository.save(plantilla);
     }
 
     // Obtener plantillas del usuario actual
-    public List<Plantilla> obtenerMisPlantillas(Usuario usuario) {
+    public List<PlantillaResponseDTO> obtenerMisPlantillas(Usuario usuario) {
         if (usuario.getPlan() == Usuario.Plan.FREE && usuario.getRol() != Usuario.Rol.ADMIN) {
             throw new RuntimeException("Los usuarios free no tienen plantillas propias");
         }
-        return plantillaRepository.findByCreadoPorAndEstado(usuario, "ACTIVA");
+        return plantillaRepository.findResumenesByCreadoPor(usuario.getId(), "ACTIVA");
     }
 
 
@@ -301,6 +380,7 @@ public class PlantillaService {
         }
 
         plantilla.setEsPublica(esPublica);
+        plantilla.setVersion(versionDe(plantilla) + 1);
         return plantillaRepository.save(plantilla);
     }
 
@@ -343,6 +423,7 @@ public class PlantillaService {
     }
 
     // Obtener estadísticas para admin
+    @Bulkhead(maxConcurrent = 2, maxWait = 2, unit = TimeUnit.SECONDS)
     public Map<String, Object> obtenerEstadisticasAdmin() {
         Map<String, Object> estadisticas = new HashMap<>();
 
@@ -392,15 +473,13 @@ public class PlantillaService {
     }
 
     // Obtener plantillas por categoría
-    public List<Plantilla> obtenerPlantillasPorCategoria(Integer idCategoria, Usuario usuario) {
+    public List<PlantillaResponseDTO> obtenerPlantillasPorCategoria(Integer idCategoria, Usuario usuario) {
         try {
             Categoria categoria = categoriaService.obtenerCategoriaPorId(idCategoria);
-            List<Plantilla> plantillas = plantillaRepository.findByCategoriaAndEstado(categoria, "ACTIVA");
 
-            // Filtrar según permisos del usuario
-            return plantillas.stream()
-                    .filter(plantilla -> tieneAccesoAPlantilla(plantilla, usuario))
-                    .collect(Collectors.toList());
+            // Filtro de permisos en la consulta (misma regla que tieneAccesoAPlantilla)
+            return plantillaRepository.findResumenesByCategoria(categoria.getIdCategoria(), usuario.getId(),
+                    usuario.getRol() == Usuario.Rol.ADMIN);
         } catch (Exception e) {
             e.printStackTrace();
             return new ArrayList<>();
@@ -0,0 +1,164 @@
+package com.utp.timeline.service;
+
+import com.utp.timeline.entity.Usuario;
+import com.utp.timeline.repository.UsuarioRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché con TTL del principal autenticado (snapshot de Usuario + authorities).
+ * Evita las dos consultas a la tabla usuario que hacía el filtro JWT en cada
+ * petición. UsuarioService la invalida cuando cambia un usuario.
+ */
+@Service
+public class PrincipalCacheService {
+
+    private final UsuarioRepository usuarioRepository;
+
+    @Value("${app.auth.principal-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${app.auth.principal-cache.max-entries:10000}")
+    private int maxEntries;
+
+    // email -> principal cacheado
+    private final ConcurrentHashMap<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    // Métricas
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    @Autowired
+    public PrincipalCacheService(UsuarioRepository usuarioRepository) {
+        this.usuarioRepository = usuarioRepository;
+    }
+
+    // Obtener principal por email (consulta la BD solo si no está en caché o expiró)
+    public Optional<PrincipalUsuario> obtener(String email) {
+        long ahora = System.currentTimeMillis();
+        Entrada entrada = entradas.get(email);
+        if (entrada != null && entrada.expiraEn > ahora) {
+            hits.increment();
+            return Optional.of(entrada.principal.copia());
+        }
+
+        misses.increment();
+        Optional<Usuario> usuario = usuarioRepository.findByEmail(email);
+        usuario.ifPresent(this::guardar);
+        return usuario.map(u -> new PrincipalUsuario(copiar(u), CustomUserDetailsService.construirAuthorities(u)));
+    }
+
+    // Guardar un usuario recién cargado (por ejemplo, tras el login). Con la caché
+    // llena no se guarda: las expiradas las libera purgarExpirados en segundo plano
+    public void guardar(Usuario usuario) {
+        if (usuario == null || usuario.getEmail() == null) {
+            return;
+        }
+        if (entradas.size() >= maxEntries && !entradas.containsKey(usuario.getEmail())) {
+            return;
+        }
+        PrincipalUsuario principal = new PrincipalUsuario(copiar(usuario),
+                CustomUserDetailsService.construirAuthorities(usuario));
+        entradas.put(usuario.getEmail(), new Entrada(principal, System.currentTimeMillis() + ttlMs));
+    }
+
+    // Invalidar por email
+    public void invalidar(String email) {
+        if (email != null && entradas.remove(email) != null) {
+            invalidaciones.increment();
+        }
+    }
+
+    // Invalidar por ID de usuario
+    public void invalidarPorId(Long usuarioId) {
+        if (usuarioId == null) {
+            return;
+        }
+        entradas.entrySet().removeIf(e -> {
+            boolean coincide = usuarioId.equals(e.getValue().principal.getUsuario().getId());
+            if (coincide) {
+                invalidaciones.increment();
+            }
+            return coincide;
+        });
+    }
+
+    // Limpiar entradas expiradas
+    @Scheduled(fixedDelayString = "${app.auth.principal-cache.purge-interval-ms:60000}")
+    public void purgarExpirados() {
+        long ahora = System.currentTimeMillis();
+        entradas.values().removeIf(e -> e.expiraEn <= ahora);
+    }
+
+    // Estadísticas de la caché (hits, misses, ratio...)
+    public Map<String, Object> obtenerEstadisticas() {
+        long totalHits = hits.sum();
+        long totalMisses = misses.sum();
+        long total = totalHits + totalMisses;
+
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("hits", totalHits);
+        estadisticas.put("misses", totalMisses);
+        estadisticas.put("hitRatio", total > 0 ? Math.round(totalHits * 10000.0 / total) / 10000.0 : 0.0);
+        estadisticas.put("invalidaciones", invalidaciones.sum());
+        estadisticas.put("tamano", entradas.size());
+        estadisticas.put("maxEntradas", maxEntries);
+        estadisticas.put("ttlMs", ttlMs);
+        return estadisticas;
+    }
+
+    // Copia defensiva: cada petición recibe su propia instancia de Usuario
+    private static Usuario copiar(Usuario origen) {
+        Usuario copia = new Usuario();
+        copia.setId(origen.getId());
+        copia.setNombre(origen.getNombre());
+        copia.setEmail(origen.getEmail());
+        copia.setContrasena(origen.getContrasena());
+        copia.setGoogleId(origen.getGoogleId());
+        copia.setRol(origen.getRol());
+        copia.setPlan(origen.getPlan());
+        copia.setFechaRegistro(origen.getFechaRegistro());
+        copia.setVersionSeguridad(origen.getVersionSeguridad());
+        return copia;
+    }
+
+    private static class Entrada {
+        final PrincipalUsuario principal;
+        final long expiraEn;
+
+        Entrada(PrincipalUsuario principal, long expiraEn) {
+            this.principal = principal;
+            this.expiraEn = expiraEn;
+        }
+    }
+
+    // Principal cacheado: snapshot de Usuario y sus authorities
+    public static class PrincipalUsuario {
+        private final Usuario usuario;
+        private final List<GrantedAuthority> authorities;
+
+        public PrincipalUsuario(Usuario usuario, List<GrantedAuthority> authorities) {
+            this.usuario = usuario;
+            this.authorities = List.copyOf(authorities);
+        }
+
+        PrincipalUsuario copia() {
+            return new PrincipalUsuario(copiar(usuario), authorities);
+        }
+
+        // Getters
+        public Usuario getUsuario() { return usuario; }
+        public List<GrantedAuthority> getAuthorities() { return authorities; }
+    }
+}
@@ -1,20 +1,30 @@
 package com.utp.timeline.service;
 
+import com.utp.timeline.dto.ProyectoResponseDTO;
 import com.utp.timeline.entity.Plantilla;
 import com.utp.timeline.entity.Proyecto;
 import com.utp.timeline.entity.Usuario;
 import com.utp.timeline.repository.PlantillaRepository;
 import com.utp.timeline.repository.ProyectoRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utp.timeline.config_seguridad.Bulkhead;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Transactional
@@ -22,11 +32,24 @@ public class ProyectoService {
 
     private final ProyectoRepository proyectoRepository;
     private final PlantillaRepository plantillaRepository;
+    private final ObjectMapper objectMapper;
+    private final GuardadoDiferidoService guardadoDiferido;
+    private final CompresorDatos compresor;
+    private final TransactionTemplate transactionTemplate;
+
+    // Reintentos de un PUT sin If-Match que pierde la carrera con otro guardado
+    private static final int MAX_INTENTOS_SIN_VERSION = 3;
 
     @Autowired
-    public ProyectoService(ProyectoRepository proyectoRepository, PlantillaRepository plantillaRepository) {
+    public ProyectoService(ProyectoRepository proyectoRepository, PlantillaRepository plantillaRepository,
+                           ObjectMapper objectMapper, GuardadoDiferidoService guardadoDiferido,
+                           CompresorDatos compresor, PlatformTransactionManager transactionManager) {
         this.proyectoRepository = proyectoRepository;
         this.plantillaRepository = plantillaRepository;
+        this.objectMapper = objectMapper;
+        this.guardadoDiferido = guardadoDiferido;
+        this.compresor = compresor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     // Crear nuevo proyecto
@@ -51,9 +74,9 @@ public class ProyectoService {
         return proyectoRepository.save(proyecto);
     }
 
-    // Obtener todos los proyectos del usuario
-    public List<Proyecto> obtenerProyectosUsuario(Usuario usuario) {
-        return proyectoRepository.findByUsuario(usuario);
+    // Obtener todos los proyectos del usuario (resúmenes sin data)
+    public List<ProyectoResponseDTO> obtenerProyectosUsuario(Usuario usuario) {
+        return conVersionPendiente(proyectoRepository.findResumenesByUsuarioId(usuario.getId()));
     }
 
     // Obtener proyecto por ID (con verificación de permisos)
@@ -64,38 +87,144 @@ public class ProyectoService {
 
     // Actualizar proyecto
     public Proyecto actualizarProyecto(Long id, Proyecto proyectoActualizado, Usuario usuario) {
-        Proyecto proyectoExistente = obtenerProyectoPorId(id, usuario);
+        return actualizarProyecto(id, proyectoActualizado, null, usuario);
+    }
 
-        // Actualizar campos permitidos
-        proyectoExistente.setTitulo(proyectoActualizado.getTitulo());
-        proyectoExistente.setDescripcion(proyectoActualizado.getDescripcion());
-        proyectoExistente.setData(proyectoActualizado.getData());
-        proyectoExistente.setFechaModificacion(LocalDateTime.now());
+    // Con versionEsperada (If-Match) la escritura es un UPDATE condicionado, sin leer antes el proyecto.
+    // Sin transacción propia: cada intento abre la suya (ver actualizarSinVersion)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Proyecto actualizarProyecto(Long id, Proyecto proyectoActualizado, Long versionEsperada, Usuario usuario) {
+        // Un autosave pendiente se escribe antes, para que la versión siga en orden
+        guardadoDiferido.volcar(id);
+        if (versionEsperada != null) {
+            return transactionTemplate.execute(status -> {
+                // Plantilla inexistente: mismo error que sin If-Match, no una violación de la clave foránea
+                Plantilla base = proyectoActualizado.getPlantillaBase();
+                if (base != null && !plantillaRepository.existsById(base.getId())) {
+                    throw new RuntimeException("Plantilla no encontrada");
+                }
+                return actualizarProyectoSiVersion(id, proyectoActualizado, versionEsperada, usuario);
+            });
+        }
+        // Sin If-Match gana la última escritura, pero siempre como UPDATE condicionado a la
+        // versión leída: con un guardado concurrente se relee y se reintenta. Cada intento va
+        // en una transacción nueva; con REPEATABLE READ, releer en la misma transacción
+        // devolvería la versión de la primera lectura y el reintento volvería a fallar
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(status -> actualizarSinVersion(id, proyectoActualizado, usuario));
+            } catch (ConflictoVersionException e) {
+                if (intento == MAX_INTENTOS_SIN_VERSION) {
+                    throw e;
+                }
+            }
+        }
+    }
 
-        // Actualizar plantilla base si se proporciona
-        if (proyectoActualizado.getPlantillaBase() != null) {
-            Plantilla plantilla = plantillaRepository.findById(proyectoActualizado.getPlantillaBase().getId())
-                    .orElseThrow(() -> new RuntimeException("Plantilla no encontrada"));
-            proyectoExistente.setPlantillaBase(plantilla);
+    // Un intento de PUT sin If-Match sobre la versión vigente
+    private Proyecto actualizarSinVersion(Long id, Proyecto proyectoActualizado, Usuario usuario) {
+        // Solo versión, huella y metadatos: la data no se lee ni se descomprime
+        ProyectoRepository.EstadoProyecto actual = proyectoRepository.obtenerEstado(id, usuario.getId())
+                .orElseThrow(() -> new RuntimeException("Proyecto no encontrado o no tienes permisos"));
+
+        // Filas antiguas sin huella: se reescriben (y quedan con huella)
+        boolean mismaData = actual.getDataHash() != null
+                && actual.getDataHash().equals(Proyecto.huellaDe(proyectoActualizado.getData()));
+        boolean mismaPlantilla = proyectoActualizado.getPlantillaBase() == null
+                || Objects.equals(actual.getPlantillaId(), proyectoActualizado.getPlantillaBase().getId());
+
+        // Nada cambia: no se toca la fila (ni fecha ni versión)
+        if (mismaData && mismaPlantilla
+                && Objects.equals(actual.getTitulo(), proyectoActualizado.getTitulo())
+                && Objects.equals(actual.getDescripcion(), proyectoActualizado.getDescripcion())) {
+            guardadoDiferido.registrarSinCambios();
+            return sinCambios(id, actual, proyectoActualizado.getData(), usuario);
+        }
+
+        if (!mismaPlantilla && !plantillaRepository.existsById(proyectoActualizado.getPlantillaBase().getId())) {
+            throw new RuntimeException("Plantilla no encontrada");
+        }
+
+        // Misma data: solo título, descripción y plantilla, sin tocar data ni versión
+        if (mismaData) {
+            Long plantillaId = mismaPlantilla ? actual.getPlantillaId() : proyectoActualizado.getPlantillaBase().getId();
+            Plantilla plantilla = plantillaId != null ? plantillaRepository.getReferenceById(plantillaId) : null;
+            proyectoRepository.actualizarMetadatos(id, usuario.getId(), proyectoActualizado.getTitulo(),
+                    proyectoActualizado.getDescripcion(), plantilla, LocalDateTime.now());
+            return obtenerProyectoPorId(id, usuario);
+        }
+
+        return actualizarProyectoSiVersion(id, proyectoActualizado, actual.getVersion(), usuario);
+    }
+
+    // Respuesta de un PUT sin cambios: la data enviada (que es la guardada) y el estado leído
+    private static Proyecto sinCambios(Long id, ProyectoRepository.EstadoProyecto actual, String data, Usuario usuario) {
+        Proyecto proyecto = new Proyecto(usuario, actual.getTitulo(), data);
+        proyecto.setId(id);
+        proyecto.setDescripcion(actual.getDescripcion());
+        proyecto.setVersion(actual.getVersion());
+        proyecto.setFechaCreacion(actual.getFechaCreacion());
+        proyecto.setFechaModificacion(actual.getFechaModificacion());
+        if (actual.getPlantillaId() != null) {
+            Plantilla plantilla = new Plantilla();
+            plantilla.setId(actual.getPlantillaId());
+            plantilla.setNombre(actual.getPlantillaNombre());
+            proyecto.setPlantillaBase(plantilla);
         }
+        return proyecto;
+    }
 
-        return proyectoRepository.save(proyectoExistente);
+    private Proyecto actualizarProyectoSiVersion(Long id, Proyecto proyectoActualizado, long versionBase, Usuario usuario) {
+        String data = proyectoActualizado.getData();
+        LocalDateTime ahora = LocalDateTime.now();
+        int filas;
+        if (proyectoActualizado.getPlantillaBase() != null) {
+            Long plantillaId = proyectoActualizado.getPlantillaBase().getId();
+            CompresorDatos.Comprimido comprimido = compresor.comprimir(data, plantillaId);
+            // Referencia sin consulta: quien llama ya comprobó que la plantilla existe
+            Plantilla plantilla = plantillaRepository.getReferenceById(plantillaId);
+            filas = proyectoRepository.actualizarConPlantillaSiVersion(id, usuario.getId(), proyectoActualizado.getTitulo(),
+                    proyectoActualizado.getDescripcion(), comprimido.getBytes(), comprimido.getDiccionarioId(),
+                    Proyecto.huellaDe(data), plantilla, versionBase, ahora);
+        } else {
+            CompresorDatos.Comprimido comprimido = compresor.comprimirProyecto(id, data);
+            filas = proyectoRepository.actualizarSiVersion(id, usuario.getId(), proyectoActualizado.getTitulo(),
+                    proyectoActualizado.getDescripcion(), comprimido.getBytes(), comprimido.getDiccionarioId(),
+                    Proyecto.huellaDe(data), versionBase, ahora);
+        }
+        if (filas == 0) {
+            throw new ConflictoVersionException(huellaDe(id, usuario).getVersion());
+        }
+        return obtenerProyectoPorId(id, usuario);
     }
 
     // Eliminar proyecto
     public void eliminarProyecto(Long id, Usuario usuario) {
         Proyecto proyecto = obtenerProyectoPorId(id, usuario);
+        guardadoDiferido.descartar(id);
+        compresor.olvidarProyecto(id);
         proyectoRepository.delete(proyecto);
     }
 
-    // Buscar proyectos por título
-    public List<Proyecto> buscarProyectosPorTitulo(String titulo, Usuario usuario) {
-        return proyectoRepository.findByTituloContainingIgnoreCaseAndUsuario(titulo, usuario);
+    // Buscar proyectos por título (resúmenes sin data)
+    public List<ProyectoResponseDTO> buscarProyectosPorTitulo(String titulo, Usuario usuario) {
+        return conVersionPendiente(proyectoRepository.buscarResumenesPorTitulo(usuario.getId(), titulo));
+    }
+
+    // Obtener proyectos recientes (últimos 5, resúmenes sin data)
+    public List<ProyectoResponseDTO> obtenerProyectosRecientes(Usuario usuario) {
+        return conVersionPendiente(proyectoRepository.findResumenesRecientes(usuario.getId(), PageRequest.of(0, 5)));
     }
 
-    // Obtener proyectos recientes (últimos 5)
-    public List<Proyecto> obtenerProyectosRecientes(Usuario usuario) {
-        return proyectoRepository.findRecentByUsuario(usuario, PageRequest.of(0, 5));
+    // Con write-behind, la versión del autosave pendiente (la data no viaja en los listados)
+    private List<ProyectoResponseDTO> conVersionPendiente(List<ProyectoResponseDTO> resumenes) {
+        for (ProyectoResponseDTO resumen : resumenes) {
+            GuardadoDiferidoService.Pendiente pendiente = guardadoDiferido.obtener(resumen.getId());
+            if (pendiente != null) {
+                resumen.setVersion(pendiente.getVersion());
+            }
+        }
+        return resumenes;
     }
 
     // Contar proyectos del usuario
@@ -105,7 +234,7 @@ public class ProyectoService {
 
     // Duplicar proyecto
     public Proyecto duplicarProyecto(Long id, Usuario usuario) {
-        Proyecto proyectoOriginal = obtenerProyectoPorId(id, usuario);
+        Proyecto proyectoOriginal = guardadoDiferido.conPendiente(obtenerProyectoPorId(id, usuario));
 
         Proyecto proyectoDuplicado = new Proyecto();
         proyectoDuplicado.setUsuario(usuario);
@@ -128,15 +257,148 @@ public class ProyectoService {
     }
 
     // Actualizar solo los datos del proyecto (para guardado automático)
-    public void actualizarDatosProyecto(Long id, String data, Usuario usuario) {
+    public long actualizarDatosProyecto(Long id, String data, Usuario usuario) {
+        return actualizarDatosProyecto(id, data, null, usuario);
+    }
+
+    // Reemplazar data completa; con versionEsperada (If-Match) falla si otro guardado se adelantó
+    public long actualizarDatosProyecto(Long id, String data, Long versionEsperada, Usuario usuario) {
+        if (guardadoDiferido.isEnabled()) {
+            Long versionSinCambios = versionSiSinCambios(id, data, versionEsperada, usuario);
+            if (versionSinCambios != null) {
+                guardadoDiferido.registrarSinCambios();
+                return versionSinCambios;
+            }
+            return guardadoDiferido.guardar(id, usuario, versionEsperada, actual -> data,
+                    () -> obtenerProyectoPorId(id, usuario));
+        }
+        if (versionEsperada != null) {
+            // Con If-Match basta un UPDATE condicionado
+            return guardarDatos(id, data, versionEsperada, usuario);
+        }
+        // Sin If-Match la base es la versión vigente, leída sin la data
+        ProyectoRepository.HuellaDatos actual = huellaDe(id, usuario);
+        if (data != null && Proyecto.huellaDe(data).equals(actual.getDataHash())) {
+            guardadoDiferido.registrarSinCambios();
+            return actual.getVersion();
+        }
+        return guardarDatos(id, data, actual.getVersion(), usuario);
+    }
+
+    // Aplicar un JSON Patch (RFC 6902) o Merge Patch (RFC 7386) sobre la versión versionBase
+    public long aplicarParcheDatos(Long id, String parche, boolean mergePatch, long versionBase, Usuario usuario) {
+        if (guardadoDiferido.isEnabled()) {
+            return guardadoDiferido.guardar(id, usuario, versionBase, actual -> aplicarParche(actual, parche, mergePatch),
+                    () -> obtenerProyectoPorId(id, usuario));
+        }
         Proyecto proyecto = obtenerProyectoPorId(id, usuario);
-        proyecto.setData(data);
-        proyecto.setFechaModificacion(LocalDateTime.now());
-        proyectoRepository.save(proyecto);
+        if (versionDe(proyecto) != versionBase) {
+            throw new ConflictoVersionException(versionDe(proyecto));
+        }
+        String data = aplicarParche(proyecto.getData(), parche, mergePatch);
+        if (mismaData(proyecto, data)) {
+            guardadoDiferido.registrarSinCambios();
+            return versionBase;
+        }
+        return guardarDatos(id, data, versionBase, usuario);
+    }
+
+    /**
+     * Versión vigente si {@code data} es la que ya está guardada (el cliente
+     * reenvía lo mismo); null si hay que guardar. Se compara con el pendiente
+     * del write-behind o con la huella en la base de datos, sin leer la data.
+     * Con If-Match distinto de la versión vigente devuelve null y el guardado
+     * normal responde el conflicto.
+     */
+    private Long versionSiSinCambios(Long id, String data, Long versionEsperada, Usuario usuario) {
+        GuardadoDiferidoService.Pendiente pendiente = guardadoDiferido.obtener(id);
+        if (pendiente != null) {
+            boolean igual = pendiente.getUsuarioId() == usuario.getId() && Objects.equals(pendiente.getData(), data)
+                    && (versionEsperada == null || versionEsperada == pendiente.getVersion());
+            return igual ? pendiente.getVersion() : null;
+        }
+        if (data == null) {
+            return null;
+        }
+        return proyectoRepository.obtenerHuella(id, usuario.getId())
+                .filter(huella -> Proyecto.huellaDe(data).equals(huella.getDataHash()))
+                .map(ProyectoRepository.HuellaDatos::getVersion)
+                .filter(version -> versionEsperada == null || versionEsperada.equals(version))
+                .orElse(null);
+    }
+
+    // Filas antiguas sin huella: se compara la data directamente
+    private static boolean mismaData(Proyecto proyecto, String data) {
+        if (proyecto.getDataHash() != null && data != null) {
+            return proyecto.getDataHash().equals(Proyecto.huellaDe(data));
+        }
+        return Objects.equals(proyecto.getData(), data);
+    }
+
+    private String aplicarParche(String data, String parche, boolean mergePatch) {
+        JsonNode documento;
+        JsonNode cambios;
+        try {
+            documento = data == null || data.isBlank()
+                    ? objectMapper.createObjectNode()
+                    : objectMapper.readTree(data);
+            cambios = objectMapper.readTree(parche);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON inválido: " + e.getOriginalMessage());
+        }
+
+        JsonNode resultado = mergePatch
+                ? ParcheJson.aplicarMergePatch(documento, cambios)
+                : ParcheJson.aplicarJsonPatch(documento, cambios);
+        try {
+            return objectMapper.writeValueAsString(resultado);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // El proyecto con el autosave pendiente (write-behind) aplicado
+    public Proyecto conDatosPendientes(Proyecto proyecto) {
+        return guardadoDiferido.conPendiente(proyecto);
+    }
+
+    // UPDATE condicionado a la versión: dos guardados concurrentes no se pisan
+    private long guardarDatos(Long id, String data, long versionBase, Usuario usuario) {
+        String huella = Proyecto.huellaDe(data);
+        CompresorDatos.Comprimido comprimido = compresor.comprimirProyecto(id, data);
+        int filas = proyectoRepository.actualizarDatosSiVersion(id, usuario.getId(), comprimido.getBytes(),
+                comprimido.getDiccionarioId(), huella, versionBase, LocalDateTime.now());
+        if (filas == 1) {
+            return versionBase + 1;
+        }
+        // 0 filas: no existe, otra versión o la misma data (que no se reescribe)
+        ProyectoRepository.HuellaDatos actual = huellaDe(id, usuario);
+        if (actual.getVersion() == versionBase && huella != null && huella.equals(actual.getDataHash())) {
+            guardadoDiferido.registrarSinCambios();
+            return versionBase;
+        }
+        throw new ConflictoVersionException(actual.getVersion());
+    }
+
+    // Versión vigente (la del autosave pendiente si lo hay), sin leer la data
+    public long obtenerVersion(Long id, Usuario usuario) {
+        GuardadoDiferidoService.Pendiente pendiente = guardadoDiferido.obtener(id);
+        long version = huellaDe(id, usuario).getVersion();
+        return pendiente != null ? pendiente.getVersion() : version;
+    }
+
+    private ProyectoRepository.HuellaDatos huellaDe(Long id, Usuario usuario) {
+        return proyectoRepository.obtenerHuella(id, usuario.getId())
+                .orElseThrow(() -> new RuntimeException("Proyecto no encontrado o no tienes permisos"));
+    }
+
+    private static long versionDe(Proyecto proyecto) {
+        return proyecto.getVersion() != null ? proyecto.getVersion() : 0L;
     }
 
 
     //  Estadísticas para administradores
+    @Bulkhead(maxConcurrent = 2, maxWait = 2, unit = TimeUnit.SECONDS)
     public Map<String, Object> obtenerEstadisticasAdmin() {
         Long totalProyectos = proyectoRepository.count(); // Usando el método de JpaRepository
 
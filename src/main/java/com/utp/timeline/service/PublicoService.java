@@ -1,11 +1,13 @@
 package com.utp.timeline.service;
 
 
+import com.utp.timeline.dto.PublicoResponseDTO;
 import com.utp.timeline.entity.Proyecto;
 import com.utp.timeline.entity.Publico;
 import com.utp.timeline.entity.Usuario;
 import com.utp.timeline.repository.ProyectoRepository;
 import com.utp.timeline.repository.PublicoRepository;
+import com.utp.timeline.config_seguridad.Bulkhead;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -17,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Transactional
@@ -79,7 +82,8 @@ public class PublicoService {
             throw new RuntimeException("Este enlace ha expirado");
         }
 
-        return publico.getProyecto();
+        // Con write-behind, el último autosave aunque no esté escrito todavía
+        return proyectoService.conDatosPendientes(publico.getProyecto());
     }
 
     // Dejar de compartir proyecto
@@ -132,17 +136,13 @@ public class PublicoService {
     }
 
     // Obtener todos los proyectos compartidos por un usuario
-    public List<Publico> obtenerProyectosCompartidos(Usuario usuario) {
-        return publicoRepository.findByUsuarioId(usuario.getId());
+    public List<PublicoResponseDTO> obtenerProyectosCompartidos(Usuario usuario) {
+        return publicoRepository.findResumenesByUsuarioId(usuario.getId());
     }
 
     // Obtener proyectos compartidos activos de un usuario
-    public List<Publico> obtenerProyectosCompartidosActivos(Usuario usuario) {
-        List<Publico> todos = publicoRepository.findByUsuarioId(usuario.getId());
-        return todos.stream()
-                .filter(publico -> publico.getExpiraEn() == null ||
-                        publico.getExpiraEn().isAfter(LocalDateTime.now()))
-                .toList();
+    public List<PublicoResponseDTO> obtenerProyectosCompartidosActivos(Usuario usuario) {
+        return publicoRepository.findResumenesActivosByUsuarioId(usuario.getId(), LocalDateTime.now());
     }
 
     // Verificar si un proyecto está compartido
@@ -156,6 +156,7 @@ public class PublicoService {
     }
 
     // Obtener estadísticas de compartidos para admin
+    @Bulkhead(maxConcurrent = 2, maxWait = 2, unit = TimeUnit.SECONDS)
     public Map<String, Object> obtenerEstadisticasCompartidos() {
         Map<String, Object> estadisticas = new HashMap<>();
 
@@ -239,7 +240,7 @@ public class PublicoService {
         return publicoRepository.countActiveSharesByUsuario(usuario.getId());
     }
 
-    public List<Publico> obtenerTodosCompartidos() {
-        return publicoRepository.findAll();
+    public List<PublicoResponseDTO> obtenerTodosCompartidos() {
+        return publicoRepository.findTodosResumenes();
     }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package com.utp.timeline.service;
+
+import com.utp.timeline.entity.DiccionarioDatos;
+import com.utp.timeline.entity.Plantilla;
+import com.utp.timeline.repository.DiccionarioDatosRepository;
+import com.utp.timeline.repository.PlantillaRepository;
+import com.utp.timeline.repository.ProyectoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tarea en segundo plano de la compresión de data:
+ *
+ * 1. Entrena el diccionario de las plantillas que aún no tienen uno, con la
+ *    data de la plantilla y de sus proyectos más recientes.
+ * 2. Comprime las filas antiguas (data en claro en la columna LONGTEXT) y
+ *    recomprime con el diccionario de su plantilla los proyectos que se
+ *    comprimieron antes de que existiera.
+ *
+ * Cada fila se reescribe con un UPDATE condicionado a su versión: si un
+ * guardado se cruza, la fila se deja y se recorre en la siguiente vuelta.
+ * Recorre por id de menor a mayor y vuelve a empezar al llegar al final.
+ */
+@Service
+public class RecodificadorDatos {
+
+    private static final Logger log = LoggerFactory.getLogger(RecodificadorDatos.class);
+
+    private final ProyectoRepository proyectoRepository;
+    private final PlantillaRepository plantillaRepository;
+    private final DiccionarioDatosRepository diccionarioRepository;
+    private final CompresorDatos compresor;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.datos.recodificar.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.datos.recodificar.lote:100}")
+    private int lote;
+
+    @Value("${app.datos.recodificar.muestras:50}")
+    private int muestras;
+
+    @Value("${app.datos.recodificar.tamano-diccionario:32768}")
+    private int tamanoDiccionario;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private volatile long cursorProyectos;
+    private volatile long cursorPlantillas;
+
+    // Métricas
+    private final LongAdder diccionariosEntrenados = new LongAdder();
+    private final LongAdder proyectosRecodificados = new LongAdder();
+    private final LongAdder plantillasRecodificadas = new LongAdder();
+    private final LongAdder omitidos = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+
+    @Autowired
+    public RecodificadorDatos(ProyectoRepository proyectoRepository,
+                              PlantillaRepository plantillaRepository,
+                              DiccionarioDatosRepository diccionarioRepository,
+                              CompresorDatos compresor,
+                              PlatformTransactionManager transactionManager) {
+        this.proyectoRepository = proyectoRepository;
+        this.plantillaRepository = plantillaRepository;
+        this.diccionarioRepository = diccionarioRepository;
+        this.compresor = compresor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${app.datos.recodificar.initial-delay-ms:60000}",
+               fixedDelayString = "${app.datos.recodificar.intervalo-ms:30000}")
+    public void ejecutar() {
+        if (!enabled || !enCurso.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            entrenarDiccionarios();
+            recodificarPlantillas();
+            recodificarProyectos();
+        } catch (RuntimeException e) {
+            errores.increment();
+            log.warn("Error en el re-codificador de data", e);
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    void entrenarDiccionarios() {
+        for (Long plantillaId : plantillaRepository.findSinDiccionario(PageRequest.of(0, lote))) {
+            DiccionarioDatos diccionario = transactionTemplate.execute(status -> entrenar(plantillaId));
+            if (diccionario != null) {
+                compresor.registrarDiccionario(diccionario);
+                diccionariosEntrenados.increment();
+            }
+        }
+    }
+
+    private DiccionarioDatos entrenar(Long plantillaId) {
+        Plantilla plantilla = plantillaRepository.findById(plantillaId).orElse(null);
+        if (plantilla == null) {
+            return null;
+        }
+        List<String> proyectos = new ArrayList<>();
+        for (ProyectoRepository.DatosPorRecodificar muestra :
+                proyectoRepository.findMuestrasDePlantilla(plantillaId, PageRequest.of(0, muestras))) {
+            String data = texto(muestra.getDataComprimida(), muestra.getDataLegado());
+            if (data != null) {
+                proyectos.add(data);
+            }
+        }
+        byte[] bytes = EntrenadorDiccionario.entrenar(plantilla.getData(), proyectos, tamanoDiccionario);
+        if (bytes.length == 0) {
+            return null;
+        }
+        return diccionarioRepository.save(new DiccionarioDatos(plantillaId, bytes, proyectos.size() + 1));
+    }
+
+    void recodificarProyectos() {
+        List<ProyectoRepository.DatosPorRecodificar> filas =
+                proyectoRepository.findPorRecodificar(cursorProyectos, PageRequest.of(0, lote));
+        if (filas.isEmpty()) {
+            cursorProyectos = 0;
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (ProyectoRepository.DatosPorRecodificar fila : filas) {
+                try {
+                    String data = texto(fila.getDataComprimida(), fila.getDataLegado());
+                    CompresorDatos.Comprimido comprimido = compresor.comprimir(data, fila.getPlantillaId());
+                    if (fila.getDataComprimida() != null && comprimido.getDiccionarioId() == null) {
+                        // Todavía sin diccionario en este nodo: nada que ganar
+                        omitidos.increment();
+                        continue;
+                    }
+                    if (proyectoRepository.recodificarDatos(fila.getId(), comprimido.getBytes(),
+                            comprimido.getDiccionarioId(), fila.getVersion()) == 1) {
+                        proyectosRecodificados.increment();
+                    } else {
+                        omitidos.increment();
+                    }
+                } catch (IllegalStateException e) {
+                    errores.increment();
+                    log.warn("No se pudo recodificar la data del proyecto {}", fila.getId(), e);
+                }
+            }
+        });
+        cursorProyectos = filas.get(filas.size() - 1).getId();
+    }
+
+    void recodificarPlantillas() {
+        List<PlantillaRepository.DataLegado> filas =
+                plantillaRepository.findConDataLegado(cursorPlantillas, PageRequest.of(0, lote));
+        if (filas.isEmpty()) {
+            cursorPlantillas = 0;
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (PlantillaRepository.DataLegado fila : filas) {
+                byte[] datos = compresor.comprimir(fila.getDataLegado(), null).getBytes();
+                if (plantillaRepository.recodificarDatos(fila.getId(), datos, fila.getVersion()) == 1) {
+                    plantillasRecodificadas.increment();
+                } else {
+                    omitidos.increment();
+                }
+            }
+        });
+        cursorPlantillas = filas.get(filas.size() - 1).getId();
+    }
+
+    private String texto(byte[] comprimida, String legado) {
+        return comprimida != null ? compresor.descomprimir(comprimida) : legado;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>(compresor.getStatistics());
+        stats.put("recodificadorActivo", enabled);
+        stats.put("diccionariosEntrenados", diccionariosEntrenados.sum());
+        stats.put("proyectosRecodificados", proyectosRecodificados.sum());
+        stats.put("plantillasRecodificadas", plantillasRecodificadas.sum());
+        stats.put("omitidos", omitidos.sum());
+        stats.put("errores", errores.sum());
+        return stats;
+    }
+}
@@ -1,11 +1,15 @@
 package com.utp.timeline.service;
 
+import com.utp.timeline.config.JwtService;
+import com.utp.timeline.config.SecurityVersionRegistry;
 import com.utp.timeline.entity.Usuario;
 import com.utp.timeline.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -19,22 +23,40 @@ public class UsuarioService {
 
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCacheService principalCacheService;
+    private final SecurityVersionRegistry securityVersionRegistry;
+    private final JwtService jwtService;
 
     @Autowired
-    public UsuarioService(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder) {
+    public UsuarioService(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder,
+                          PrincipalCacheService principalCacheService,
+                          SecurityVersionRegistry securityVersionRegistry, JwtService jwtService) {
         this.usuarioRepository = usuarioRepository;
         this.passwordEncoder = passwordEncoder;
+        this.principalCacheService = principalCacheService;
+        this.securityVersionRegistry = securityVersionRegistry;
+        this.jwtService = jwtService;
     }
 
     // Crear nuevo usuario
     public Usuario crearUsuario(Usuario usuario) {
+        // Encriptar contraseña
+        usuario.setContrasena(passwordEncoder.encode(usuario.getContrasena()));
+        return crearUsuarioConContrasenaCifrada(usuario);
+    }
+
+    // Comprobación previa al registro (antes de calcular el hash de la contraseña)
+    public boolean existeEmail(String email) {
+        return usuarioRepository.existsByEmail(email);
+    }
+
+    // Crear nuevo usuario cuya contraseña ya viene cifrada (el hash se calcula fuera de la transacción)
+    public Usuario crearUsuarioConContrasenaCifrada(Usuario usuario) {
         // Verificar si el email ya existe
         if (usuarioRepository.existsByEmail(usuario.getEmail())) {
             throw new RuntimeException("El email ya está registrado");
         }
 
-        // Encriptar contraseña
-        usuario.setContrasena(passwordEncoder.encode(usuario.getContrasena()));
         usuario.setFechaRegistro(LocalDateTime.now());
 
         // Por defecto, nuevo usuario es FREE y USUARIO
@@ -105,6 +127,9 @@ public class UsuarioService {
             throw new RuntimeException("No tienes permisos para actualizar este usuario");
         }
 
+        // El principal cacheado queda obsoleto (también si cambia el email)
+        invalidarPrincipal(usuarioExistente.getEmail());
+
         // Actualizar campos permitidos
         if (usuarioActualizado.getNombre() != null) {
             usuarioExistente.setNombre(usuarioActualizado.getNombre());
@@ -130,6 +155,8 @@ public class UsuarioService {
 
         Usuario usuario = obtenerUsuarioPorId(id);
         usuario.setPlan(plan);
+        incrementarVersionSeguridad(usuario);
+        invalidarPrincipal(usuario.getEmail());
         return usuarioRepository.save(usuario);
     }
 
@@ -141,6 +168,8 @@ public class UsuarioService {
 
         Usuario usuario = obtenerUsuarioPorId(id);
         usuario.setRol(rol);
+        incrementarVersionSeguridad(usuario);
+        invalidarPrincipal(usuario.getEmail());
         return usuarioRepository.save(usuario);
     }
 
@@ -163,6 +192,7 @@ public class UsuarioService {
         }
 
         usuario.setContrasena(passwordEncoder.encode(nuevaContrasena));
+        invalidarPrincipal(usuario.getEmail());
         usuarioRepository.save(usuario);
     }
 
@@ -185,9 +215,29 @@ public class UsuarioService {
             }
         }
 
+        // Los access tokens stateless del usuario eliminado deben contrastarse con la BD
+        incrementarVersionSeguridad(usuario);
+        invalidarPrincipal(usuario.getEmail());
+        jwtService.revokeAllUserTokens(usuario.getEmail());
         usuarioRepository.delete(usuario);
     }
 
+    // Forzar cierre de sesión: invalida los access tokens emitidos y el refresh token
+    public void forzarCierreSesion(Long id, Usuario usuarioSolicitante) {
+        Usuario usuario = obtenerUsuarioPorId(id);
+
+        // Verificar permisos (solo admin o el propio usuario)
+        if (!usuarioSolicitante.getRol().equals(Usuario.Rol.ADMIN) &&
+                !usuarioSolicitante.getId().equals(id)) {
+            throw new RuntimeException("No tienes permisos para cerrar las sesiones de este usuario");
+        }
+
+        incrementarVersionSeguridad(usuario);
+        invalidarPrincipal(usuario.getEmail());
+        jwtService.revokeAllUserTokens(usuario.getEmail());
+        usuarioRepository.save(usuario);
+    }
+
     // Buscar usuarios por nombre
     public List<Usuario> buscarUsuariosPorNombre(String nombre) {
         return usuarioRepository.findByNombreContainingIgnoreCase(nombre);
@@ -245,6 +295,8 @@ public class UsuarioService {
     public Usuario upgradeAPremium(Long usuarioId) {
         Usuario usuario = obtenerUsuarioPorId(usuarioId);
         usuario.setPlan(Usuario.Plan.PREMIUM);
+        incrementarVersionSeguridad(usuario);
+        invalidarPrincipal(usuario.getEmail());
         return usuarioRepository.save(usuario);
     }
 
@@ -256,6 +308,41 @@ public class UsuarioService {
 
         Usuario usuario = obtenerUsuarioPorId(usuarioId);
         usuario.setPlan(Usuario.Plan.FREE);
+        incrementarVersionSeguridad(usuario);
+        invalidarPrincipal(usuario.getEmail());
         return usuarioRepository.save(usuario);
     }
+
+    // Incrementar la versión de seguridad; tras el commit se publica en el registro
+    // para que el filtro deje de aceptar los claims anteriores
+    private void incrementarVersionSeguridad(Usuario usuario) {
+        int nuevaVersion = (usuario.getVersionSeguridad() != null ? usuario.getVersionSeguridad() : 0) + 1;
+        usuario.setVersionSeguridad(nuevaVersion);
+
+        Long usuarioId = usuario.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    securityVersionRegistry.register(usuarioId, nuevaVersion);
+                }
+            });
+        } else {
+            securityVersionRegistry.register(usuarioId, nuevaVersion);
+        }
+    }
+
+    // Invalidar el principal cacheado ahora y otra vez tras el commit,
+    // para que una petición concurrente no vuelva a cachear el estado anterior
+    private void invalidarPrincipal(String email) {
+        principalCacheService.invalidar(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    principalCacheService.invalidar(email);
+                }
+            });
+        }
+    }
 }
\ No newline at end of file
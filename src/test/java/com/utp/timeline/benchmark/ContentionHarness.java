@@ -0,0 +1,179 @@
+package com.utp.timeline.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ejecuta una operación desde N hilos durante un tiempo fijo y mide
+ * throughput y latencias (p50, p99, p99.9, máximo).
+ *
+ * Cada hilo guarda una muestra de latencia por cada {@code sampleEvery}
+ * operaciones en su propio array: el registro no introduce contención
+ * adicional entre hilos.
+ */
+final class ContentionHarness {
+
+    /**
+     * Operación medida. Recibe el índice del hilo y el número de operación
+     * dentro del hilo; devuelve true si la operación fue "admitida".
+     */
+    @FunctionalInterface
+    interface Operation {
+        boolean run(int thread, long iteration) throws Exception;
+    }
+
+    static final class Result {
+        final String name;
+        final int threads;
+        final long operations;
+        final long admitted;
+        final long elapsedNanos;
+        final long[] sortedSamples;
+
+        Result(String name, int threads, long operations, long admitted, long elapsedNanos, long[] sortedSamples) {
+            this.name = name;
+            this.threads = threads;
+            this.operations = operations;
+            this.admitted = admitted;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedSamples = sortedSamples;
+        }
+
+        double opsPerSecond() {
+            return operations * 1e9 / elapsedNanos;
+        }
+
+        long percentileNanos(double percentile) {
+            if (sortedSamples.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedSamples.length) - 1;
+            return sortedSamples[Math.max(0, Math.min(index, sortedSamples.length - 1))];
+        }
+
+        String format(String extra) {
+            return String.format(Locale.ROOT, "%-34s %4d hilos %,14.0f ops/s  p50 %,9d ns  p99 %,9d ns  p99.9 %,10d ns  max %,11d ns%s",
+                    name, threads, opsPerSecond(),
+                    percentileNanos(50), percentileNanos(99), percentileNanos(99.9),
+                    sortedSamples.length == 0 ? 0 : sortedSamples[sortedSamples.length - 1],
+                    extra == null ? "" : "  " + extra);
+        }
+    }
+
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final int sampleEvery;
+
+    ContentionHarness(long durationMs, long warmupMs, int sampleEvery) {
+        this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMs);
+        this.warmupNanos = TimeUnit.MILLISECONDS.toNanos(warmupMs);
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Ejecuta la operación desde {@code threads} hilos. Si {@code maxOperationsPerThread}
+     * es positivo cada hilo se detiene al alcanzarlo (para contar admisiones
+     * sobre un total conocido); si no, se detiene al acabar el tiempo.
+     */
+    Result run(String name, int threads, long maxOperationsPerThread, Operation operation) throws InterruptedException {
+        if (warmupNanos > 0 && maxOperationsPerThread <= 0) {
+            execute(threads, warmupNanos, 0, operation, false);
+        }
+        return execute(threads, durationNanos, maxOperationsPerThread, operation, true).named(name, threads);
+    }
+
+    private Partial execute(int threads, long budgetNanos, long maxOperationsPerThread,
+                            Operation operation, boolean record) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        long[] operations = new long[threads];
+        long[] admitted = new long[threads];
+        long[][] samples = new long[threads][];
+        int[] sampleCounts = new int[threads];
+        Throwable[] failures = new Throwable[1];
+
+        List<Thread> workers = new ArrayList<>();
+        long[] window = new long[2];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Thread worker = new Thread(() -> {
+                long[] local = new long[1 << 16];
+                int localCount = 0;
+                long done = 0;
+                long ok = 0;
+                try {
+                    start.await();
+                    long deadline = window[0] + budgetNanos;
+                    while (maxOperationsPerThread > 0 ? done < maxOperationsPerThread : System.nanoTime() < deadline) {
+                        boolean sample = record && done % sampleEvery == 0;
+                        long before = sample ? System.nanoTime() : 0;
+                        if (operation.run(index, done)) {
+                            ok++;
+                        }
+                        if (sample) {
+                            if (localCount == local.length) {
+                                local = Arrays.copyOf(local, local.length * 2);
+                            }
+                            local[localCount++] = System.nanoTime() - before;
+                        }
+                        done++;
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures[0] = e;
+                    }
+                }
+                operations[index] = done;
+                admitted[index] = ok;
+                samples[index] = local;
+                sampleCounts[index] = localCount;
+            }, "benchmark-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+
+        window[0] = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - window[0];
+        if (failures[0] != null) {
+            throw new IllegalStateException("Fallo en el benchmark", failures[0]);
+        }
+
+        int total = 0;
+        for (int count : sampleCounts) {
+            total += count;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(samples[t], 0, merged, offset, sampleCounts[t]);
+            offset += sampleCounts[t];
+        }
+        Arrays.sort(merged);
+        return new Partial(Arrays.stream(operations).sum(), Arrays.stream(admitted).sum(), elapsed, merged);
+    }
+
+    private static final class Partial {
+        final long operations;
+        final long admitted;
+        final long elapsedNanos;
+        final long[] samples;
+
+        Partial(long operations, long admitted, long elapsedNanos, long[] samples) {
+            this.operations = operations;
+            this.admitted = admitted;
+            this.elapsedNanos = elapsedNanos;
+            this.samples = samples;
+        }
+
+        Result named(String name, int threads) {
+            return new Result(name, threads, operations, admitted, elapsedNanos, samples);
+        }
+    }
+}
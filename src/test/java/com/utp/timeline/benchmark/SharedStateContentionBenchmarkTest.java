@@ -0,0 +1,189 @@
+package com.utp.timeline.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.utp.timeline.config.InMemoryTokenStateStore;
+import com.utp.timeline.config.JwtService;
+import com.utp.timeline.config.VerifiedTokenCache;
+import com.utp.timeline.config_seguridad.RateLimitService;
+import com.utp.timeline.entity.Usuario;
+
+/**
+ * Contención sobre el estado compartido de RateLimitService y JwtService,
+ * de 1 a 64 hilos. No forma parte de {@code mvn test}; se ejecuta con
+ *
+ * <pre>
+ * mvn test -Pbenchmark [-Dbenchmark.threads=1,4,16] [-Dbenchmark.duration-ms=2000]
+ * </pre>
+ *
+ * Para cada operación imprime throughput y latencias; para isAllowed además
+ * las admisiones por encima de maxRequests (carreras entre leer y actualizar
+ * el bucket), que deben ser 0.
+ */
+@Tag("benchmark")
+class SharedStateContentionBenchmarkTest {
+
+    private static final int[] THREADS = parseThreads(System.getProperty("benchmark.threads", "1,2,4,8,16,32,64"));
+    private static final long DURATION_MS = Long.getLong("benchmark.duration-ms", 1_000);
+    private static final long WARMUP_MS = Long.getLong("benchmark.warmup-ms", 300);
+
+    private static final int KEYS_PER_THREAD = 1_024;
+    private static final int TOKENS = 4_096;
+    private static final int USERS = 256;
+
+    private static final ContentionHarness harness = new ContentionHarness(DURATION_MS, WARMUP_MS, 16);
+    private static final List<String> report = new ArrayList<>();
+
+    private static JwtService jwtService;
+    private static String[] accessTokens;
+    private static String[] refreshTokens;
+
+    @BeforeAll
+    static void prepararTokens() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "jwtSecret", "benchmark-secret-de-al-menos-32-caracteres!!");
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtService, "refreshExpiration", 86_400_000L);
+        ReflectionTestUtils.setField(jwtService, "tokenStateStore", new InMemoryTokenStateStore(1 << 20));
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(verifiedTokenCache, "maxEntries", 10_000);
+        ReflectionTestUtils.setField(jwtService, "verifiedTokenCache", verifiedTokenCache);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+
+        // Access tokens: generarlos no escribe nada en el store, la medida solo ve las revocaciones
+        accessTokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            Usuario usuario = new Usuario();
+            usuario.setEmail("revocado" + i + "@benchmark.local");
+            accessTokens[i] = jwtService.generateAccessToken(usuario);
+        }
+        refreshTokens = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            refreshTokens[i] = jwtService.generateRefreshToken("usuario" + i + "@benchmark.local");
+        }
+    }
+
+    @AfterAll
+    static void imprimirResumen() {
+        System.out.println();
+        System.out.println("===== Contención de estado compartido (" + DURATION_MS + " ms por medida, "
+                + Runtime.getRuntime().availableProcessors() + " CPUs) =====");
+        report.forEach(System.out::println);
+    }
+
+    @Test
+    void isAllowedSobreUnaClaveCompartida() throws InterruptedException {
+        for (int threads : THREADS) {
+            RateLimitService service = rateLimitService();
+            try {
+                ContentionHarness.Result result = harness.run("isAllowed clave compartida", threads, 0,
+                        (t, i) -> service.isAllowed("global", 1_000_000_000, 3_600_000));
+                report.add(result.format(null));
+            } finally {
+                shutdown(service);
+            }
+        }
+    }
+
+    @Test
+    void isAllowedConClavesPorHilo() throws InterruptedException {
+        for (int threads : THREADS) {
+            RateLimitService service = rateLimitService();
+            String[][] keys = new String[threads][KEYS_PER_THREAD];
+            for (int t = 0; t < threads; t++) {
+                for (int k = 0; k < KEYS_PER_THREAD; k++) {
+                    keys[t][k] = "ip:" + t + ":" + k;
+                }
+            }
+            try {
+                ContentionHarness.Result result = harness.run("isAllowed claves por hilo", threads, 0,
+                        (t, i) -> service.isAllowed(keys[t][(int) (i & (KEYS_PER_THREAD - 1))], 1_000_000_000, 3_600_000));
+                report.add(result.format(null));
+            } finally {
+                shutdown(service);
+            }
+        }
+    }
+
+    @Test
+    void isAllowedNoAdmiteMasDeMaxRequests() throws InterruptedException {
+        int maxRequests = 10_000;
+        for (int threads : THREADS) {
+            RateLimitService service = rateLimitService();
+            try {
+                // El doble de intentos que el límite, repartidos entre los hilos; sin recarga en la medida
+                long perThread = (2L * maxRequests + threads - 1) / threads;
+                ContentionHarness.Result result = harness.run("isAllowed sobreadmisión", threads, perThread,
+                        (t, i) -> service.isAllowed("login:1.2.3.4", maxRequests, 3_600_000));
+                long overAdmitted = Math.max(0, result.admitted - maxRequests);
+                report.add(result.format("admitidas " + result.admitted + "/" + maxRequests
+                        + "  sobreadmitidas " + overAdmitted));
+                assertTrue(overAdmitted == 0, "sobreadmitidas: " + overAdmitted);
+            } finally {
+                shutdown(service);
+            }
+        }
+    }
+
+    @Test
+    void getRemainingRequestsSobreUnaClaveCompartida() throws InterruptedException {
+        for (int threads : THREADS) {
+            RateLimitService service = rateLimitService();
+            service.isAllowed("global", 1_000, 60_000);
+            try {
+                ContentionHarness.Result result = harness.run("getRemainingRequests", threads, 0,
+                        (t, i) -> service.getRemainingRequests("global", 1_000, 60_000) > 0);
+                report.add(result.format(null));
+            } finally {
+                shutdown(service);
+            }
+        }
+    }
+
+    @Test
+    void revokeToken() throws InterruptedException {
+        for (int threads : THREADS) {
+            ContentionHarness.Result result = harness.run("JwtService.revokeToken", threads, 0, (t, i) -> {
+                jwtService.revokeToken(accessTokens[(int) ((t * 7_919L + i) % TOKENS)]);
+                return true;
+            });
+            report.add(result.format(null));
+        }
+    }
+
+    @Test
+    void validateRefreshToken() throws InterruptedException {
+        for (int threads : THREADS) {
+            ContentionHarness.Result result = harness.run("JwtService.validateRefreshToken", threads, 0,
+                    (t, i) -> jwtService.validateRefreshToken(refreshTokens[(int) ((t * 31L + i) % USERS)]));
+            report.add(result.format("válidos " + result.admitted + "/" + result.operations));
+            assertTrue(result.admitted == result.operations);
+        }
+    }
+
+    private static RateLimitService rateLimitService() {
+        return new RateLimitService(16_384, false, 60_000);
+    }
+
+    private static void shutdown(RateLimitService service) {
+        ReflectionTestUtils.invokeMethod(service, "shutdown");
+    }
+
+    private static int[] parseThreads(String value) {
+        String[] parts = value.split(",");
+        int[] threads = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            threads[i] = Integer.parseInt(parts[i].trim());
+        }
+        return threads;
+    }
+}
@@ -0,0 +1,27 @@
+package com.utp.timeline.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+    @Test
+    void unErrorEnLaLlamadaDePruebaNoDejaElCircuitoBloqueado() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("Prueba", 1, 1, e -> true);
+        assertThrows(IllegalStateException.class, () -> circuitBreaker.execute(() -> {
+            throw new IllegalStateException("caído");
+        }));
+        Thread.sleep(5);
+
+        // La llamada de prueba falla con un Error, no con una excepción del servicio
+        assertThrows(AssertionError.class, () -> circuitBreaker.execute(() -> {
+            throw new AssertionError("mock");
+        }));
+
+        // La siguiente llamada vuelve a ser de prueba y cierra el circuito
+        assertEquals("ok", circuitBreaker.execute(() -> "ok"));
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+}
@@ -0,0 +1,134 @@
+package com.utp.timeline.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.sun.net.httpserver.HttpServer;
+
+class HttpClientConfigTest {
+
+    private HttpServer servidor;
+    private final AtomicInteger peticiones = new AtomicInteger();
+
+    // Retraso inyectado en cada respuesta del stub
+    private volatile long retrasoMs;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private OutboundHttpMetrics metrics;
+    private RestTemplate restTemplate;
+    private CircuitBreaker circuitBreaker;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        servidor.setExecutor(Executors.newCachedThreadPool());
+        servidor.createContext("/token", exchange -> {
+            peticiones.incrementAndGet();
+            try {
+                Thread.sleep(retrasoMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"access_token\":\"abc\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        servidor.start();
+        url = "http://localhost:" + servidor.getAddress().getPort() + "/token";
+
+        HttpClientConfig config = new HttpClientConfig();
+        ReflectionTestUtils.setField(config, "maxTotal", 10);
+        ReflectionTestUtils.setField(config, "maxPerRoute", 2);
+        ReflectionTestUtils.setField(config, "connectTimeoutMs", 500L);
+        ReflectionTestUtils.setField(config, "readTimeoutMs", 300L);
+        ReflectionTestUtils.setField(config, "poolTimeoutMs", 200L);
+        ReflectionTestUtils.setField(config, "idleEvictMs", 30_000L);
+        ReflectionTestUtils.setField(config, "googleFailureThreshold", 3);
+        ReflectionTestUtils.setField(config, "googleOpenDurationMs", 500L);
+
+        connectionManager = config.httpConnectionManager();
+        httpClient = config.httpClient(connectionManager);
+        metrics = config.outboundHttpMetrics(connectionManager);
+        restTemplate = config.restTemplate(httpClient, metrics);
+        circuitBreaker = config.googleCircuitBreaker();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        httpClient.close();
+        connectionManager.close();
+        servidor.stop(0);
+    }
+
+    @Test
+    void respuestaLentaCortaPorTimeoutDeLectura() {
+        retrasoMs = 2_000;
+
+        long inicio = System.currentTimeMillis();
+        assertThrows(ResourceAccessException.class, () -> restTemplate.getForObject(url, Map.class));
+        assertTrue(System.currentTimeMillis() - inicio < 1_500);
+    }
+
+    @Test
+    void circuitoSeAbreTrasFallosSeguidosYSeRecupera() throws InterruptedException {
+        retrasoMs = 1_000;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ResourceAccessException.class,
+                    () -> circuitBreaker.execute(() -> restTemplate.getForObject(url, Map.class)));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // Abierto: se rechaza sin llegar al servidor
+        int antes = peticiones.get();
+        assertThrows(CircuitBreaker.CircuitBreakerOpenException.class,
+                () -> circuitBreaker.execute(() -> restTemplate.getForObject(url, Map.class)));
+        assertEquals(antes, peticiones.get());
+
+        // Pasado el plazo, una llamada de prueba correcta lo cierra
+        retrasoMs = 0;
+        Thread.sleep(600);
+        Map<?, ?> respuesta = circuitBreaker.execute(() -> restTemplate.getForObject(url, Map.class));
+        assertEquals("abc", respuesta.get("access_token"));
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void reutilizaConexionesYRegistraMetricas() {
+        retrasoMs = 0;
+        for (int i = 0; i < 5; i++) {
+            restTemplate.getForObject(url, Map.class);
+        }
+
+        Map<String, Object> estadisticas = metrics.getStatistics();
+        Map<?, ?> pool = (Map<?, ?>) estadisticas.get("pool");
+        Map<?, ?> host = (Map<?, ?>) ((Map<?, ?>) estadisticas.get("hosts")).get("localhost");
+
+        assertEquals(5L, host.get("peticiones"));
+        assertEquals(0L, host.get("errores"));
+        // Keep-alive: la conexión vuelve al pool en lugar de cerrarse
+        assertEquals(1, pool.get("disponibles"));
+        assertEquals(0, pool.get("enUso"));
+    }
+}
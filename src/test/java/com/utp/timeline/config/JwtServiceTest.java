@@ -0,0 +1,83 @@
+package com.utp.timeline.config;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.utp.timeline.entity.Usuario;
+
+class JwtServiceTest {
+
+    private JwtService jwtService;
+    private Usuario usuario;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "jwtSecret", "secreto-de-prueba-de-al-menos-32-caracteres");
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 60_000L);
+        ReflectionTestUtils.setField(jwtService, "refreshExpiration", 600_000L);
+        ReflectionTestUtils.setField(jwtService, "tokenStateStore", new InMemoryTokenStateStore(1 << 16));
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache();
+        ReflectionTestUtils.setField(verifiedTokenCache, "maxEntries", 100);
+        ReflectionTestUtils.setField(jwtService, "verifiedTokenCache", verifiedTokenCache);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+
+        usuario = new Usuario();
+        usuario.setEmail("ana@utp.edu.pe");
+    }
+
+    // Rota el refresh token como /api/auth/refresh; null si no se acepta
+    private String refrescar(String refreshToken) {
+        return jwtService.consumeRefreshToken(refreshToken)
+                .map(verificado -> jwtService.generateTokenPair(usuario, jwtService.familyOf(verificado)))
+                .map(tokens -> tokens.get("refreshToken"))
+                .orElse(null);
+    }
+
+    @Test
+    void dosDispositivosNoSeCierranLaSesionEntreSi() {
+        String movil = jwtService.generateTokenPair(usuario).get("refreshToken");
+        String portatil = jwtService.generateTokenPair(usuario).get("refreshToken");
+
+        String movilRotado = refrescar(movil);
+        String portatilRotado = refrescar(portatil);
+
+        assertTrue(jwtService.validateRefreshToken(movilRotado));
+        assertTrue(jwtService.validateRefreshToken(portatilRotado));
+        assertNotNull(refrescar(movilRotado));
+    }
+
+    @Test
+    void reutilizarUnRefreshTokenRotadoSoloCierraSuFamilia() {
+        String movil = jwtService.generateTokenPair(usuario).get("refreshToken");
+        Map<String, String> portatil = jwtService.generateTokenPair(usuario);
+
+        String movilRotado = refrescar(movil);
+
+        // El token ya rotado vuelve a presentarse: se invalida toda su familia
+        assertNull(refrescar(movil));
+        assertFalse(jwtService.validateRefreshToken(movilRotado));
+
+        // La sesión del otro dispositivo sigue abierta
+        assertTrue(jwtService.validateRefreshToken(portatil.get("refreshToken")));
+    }
+
+    @Test
+    void revocarTodasLasSesionesCierraTodasLasFamilias() {
+        String movil = jwtService.generateTokenPair(usuario).get("refreshToken");
+        String portatil = jwtService.generateTokenPair(usuario).get("refreshToken");
+
+        jwtService.revokeAllUserTokens(usuario.getEmail());
+
+        assertFalse(jwtService.validateRefreshToken(movil));
+        assertFalse(jwtService.validateRefreshToken(portatil));
+    }
+}
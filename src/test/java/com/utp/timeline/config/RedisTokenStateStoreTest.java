@@ -0,0 +1,175 @@
+package com.utp.timeline.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import redis.embedded.RedisServer;
+
+class RedisTokenStateStoreTest {
+
+    private static RedisServer redisServer;
+    private static int port;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+
+    // Dos "nodos" que comparten el mismo Redis
+    private RedisTokenStateStore nodoA;
+    private RedisTokenStateStore nodoB;
+
+    @BeforeAll
+    static void iniciarRedis() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+    }
+
+    @AfterAll
+    static void detenerRedis() throws IOException {
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+
+        // TTL negativo largo: solo el pub/sub puede corregir la caché negativa a tiempo
+        nodoA = new RedisTokenStateStore(redisTemplate, connectionFactory, 60_000L, 1000, 1 << 16);
+        nodoB = new RedisTokenStateStore(redisTemplate, connectionFactory, 60_000L, 1000, 1 << 16);
+        nodoA.start();
+        nodoB.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        nodoA.stop();
+        nodoB.stop();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void revocacionEnUnNodoSeVeEnElOtro() throws InterruptedException {
+        long expira = System.currentTimeMillis() + 60_000;
+
+        // El nodo B cachea el jti como no revocado
+        assertFalse(nodoB.isRevoked("jti-1"));
+
+        nodoA.revoke("jti-1", expira);
+        assertTrue(nodoA.isRevoked("jti-1"));
+        assertTrue(esperarRevocado(nodoB, "jti-1"));
+    }
+
+    @Test
+    void revocacionSinCachearSeConsultaEnRedis() {
+        nodoA.revoke("jti-2", System.currentTimeMillis() + 60_000);
+
+        RedisTokenStateStore nodoNuevo = new RedisTokenStateStore(redisTemplate, connectionFactory, 60_000L, 1000, 1 << 16);
+        assertTrue(nodoNuevo.isRevoked("jti-2"));
+        assertFalse(nodoNuevo.isRevoked("jti-3"));
+    }
+
+    @Test
+    void refreshTokenEsValidoEnTodosLosNodos() {
+        long expira = System.currentTimeMillis() + 60_000;
+        nodoA.saveRefreshToken("ana@utp.edu.pe", "familia-1", "refresh-1", expira);
+
+        assertTrue(nodoB.isRefreshTokenValid("familia-1", "refresh-1"));
+        assertFalse(nodoB.isRefreshTokenValid("familia-1", "otro"));
+
+        // Rotar dentro de la familia reemplaza al jti anterior
+        nodoB.saveRefreshToken("ana@utp.edu.pe", "familia-1", "refresh-2", expira);
+        assertFalse(nodoA.isRefreshTokenValid("familia-1", "refresh-1"));
+
+        nodoA.removeRefreshTokens("ana@utp.edu.pe");
+        assertFalse(nodoB.isRefreshTokenValid("familia-1", "refresh-2"));
+    }
+
+    @Test
+    void cadaDispositivoTieneSuPropiaFamilia() {
+        long expira = System.currentTimeMillis() + 60_000;
+        nodoA.saveRefreshToken("eva@utp.edu.pe", "movil", "refresh-m", expira);
+        nodoA.saveRefreshToken("eva@utp.edu.pe", "portatil", "refresh-p", expira);
+
+        // Un segundo inicio de sesión no invalida el primero
+        assertTrue(nodoB.isRefreshTokenValid("movil", "refresh-m"));
+        assertTrue(nodoB.isRefreshTokenValid("portatil", "refresh-p"));
+
+        // Cerrar una familia deja la otra
+        nodoB.removeRefreshFamily("eva@utp.edu.pe", "movil");
+        assertFalse(nodoA.isRefreshTokenValid("movil", "refresh-m"));
+        assertTrue(nodoA.isRefreshTokenValid("portatil", "refresh-p"));
+
+        nodoA.saveRefreshToken("eva@utp.edu.pe", "tablet", "refresh-t", expira);
+        nodoB.removeRefreshTokens("eva@utp.edu.pe");
+        assertFalse(nodoA.isRefreshTokenValid("portatil", "refresh-p"));
+        assertFalse(nodoA.isRefreshTokenValid("tablet", "refresh-t"));
+    }
+
+    @Test
+    void refreshTokenSoloSePuedeConsumirUnaVez() {
+        nodoA.saveRefreshToken("luis@utp.edu.pe", "familia-1", "refresh-1", System.currentTimeMillis() + 60_000);
+
+        assertFalse(nodoB.consumeRefreshToken("familia-1", "otro"));
+        assertTrue(nodoB.consumeRefreshToken("familia-1", "refresh-1"));
+        assertFalse(nodoA.consumeRefreshToken("familia-1", "refresh-1"));
+    }
+
+    @Test
+    void revocacionExpiraConElToken() throws InterruptedException {
+        nodoA.revoke("jti-4", System.currentTimeMillis() + 300);
+        Thread.sleep(1500);
+
+        RedisTokenStateStore nodoNuevo = new RedisTokenStateStore(redisTemplate, connectionFactory, 60_000L, 1000, 1 << 16);
+        assertFalse(nodoNuevo.isRevoked("jti-4"));
+        assertFalse(nodoA.isRevoked("jti-4"));
+    }
+
+    @Test
+    void versionDeSeguridadEnUnNodoSeVeEnElOtro() throws InterruptedException {
+        // El nodo B cachea que el usuario no tiene incrementos recientes
+        assertEquals(0, nodoB.getSecurityVersion(7L));
+
+        nodoA.registerSecurityVersion(7L, 3, System.currentTimeMillis() + 60_000);
+        long limite = System.currentTimeMillis() + 5_000;
+        while (nodoB.getSecurityVersion(7L) != 3 && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+        }
+        assertEquals(3, nodoB.getSecurityVersion(7L));
+
+        // Nunca retrocede, y un nodo nuevo la lee de Redis
+        nodoB.registerSecurityVersion(7L, 2, System.currentTimeMillis() + 60_000);
+        RedisTokenStateStore nodoNuevo = new RedisTokenStateStore(redisTemplate, connectionFactory, 60_000L, 1000, 1 << 16);
+        assertEquals(3, nodoNuevo.getSecurityVersion(7L));
+        assertEquals(0, nodoNuevo.getSecurityVersion(8L));
+    }
+
+    private static boolean esperarRevocado(RedisTokenStateStore nodo, String jti) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < limite) {
+            if (nodo.isRevoked(jti)) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+}
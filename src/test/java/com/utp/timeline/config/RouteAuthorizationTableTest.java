@@ -0,0 +1,177 @@
+package com.utp.timeline.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+/**
+ * Comprueba que el trie decide exactamente lo mismo que la antigua cadena de
+ * requestMatchers (evaluada en orden con PathPattern) y que el antiguo
+ * shouldNotFilter del filtro JWT.
+ */
+class RouteAuthorizationTableTest {
+
+    private static final String PUBLICO = "permitAll";
+    private static final String AUTENTICADO = "authenticated";
+    private static final String ADMIN = "[ROLE_ADMIN]";
+    private static final String PREMIUM_O_ADMIN = "[PREMIUM, ROLE_ADMIN]";
+
+    // Copia literal de las reglas que tenía SecurityConfig, en el mismo orden
+    private static final Object[][] REGLAS_ANTERIORES = {
+            {null, "/api/auth/**", PUBLICO},
+            {null, "/public/**", PUBLICO},
+            {null, "/api/publico/public/**", PUBLICO},
+            {null, "/api/publico/info/**", PUBLICO},
+            {null, "/api/publico/validar/**", PUBLICO},
+            {null, "/api/plantillas/publicas", PUBLICO},
+            {null, "/api/archivos/**", PUBLICO},
+            {"GET", "/api/plantillas/*", PUBLICO},
+            {"GET", "/api/plantillas/populares", PUBLICO},
+            {"GET", "/api/categorias", PUBLICO},
+            {null, "/api/admin/**", ADMIN},
+            {null, "/api/plantillas/admin/**", ADMIN},
+            {null, "/api/favoritos/admin/**", ADMIN},
+            {null, "/api/publico/admin/**", ADMIN},
+            {null, "/api/estadisticas/**", ADMIN},
+            {null, "/api/categorias/**", ADMIN},
+            {"POST", "/api/plantillas", PREMIUM_O_ADMIN},
+            {"PUT", "/api/plantillas/*", PREMIUM_O_ADMIN},
+            {"DELETE", "/api/plantillas/*", PREMIUM_O_ADMIN},
+            {"PATCH", "/api/plantillas/*/visibilidad", PREMIUM_O_ADMIN},
+            {"POST", "/api/plantillas/*/duplicar", PREMIUM_O_ADMIN},
+            {null, "/api/plantillas/mis-plantillas", PREMIUM_O_ADMIN},
+            {"GET", "/api/plantillas/mas-usadas", AUTENTICADO},
+            {"GET", "/api/plantillas/recientes", AUTENTICADO},
+            {"GET", "/api/plantillas/buscar", AUTENTICADO},
+            {"GET", "/api/plantillas/*/permisos", AUTENTICADO},
+            {null, "/api/proyectos/**", AUTENTICADO},
+            {null, "/api/favoritos/**", AUTENTICADO},
+            {null, "/api/publico/proyecto/**", AUTENTICADO},
+            {null, "/api/usuarios/perfil/**", AUTENTICADO},
+            {null, "/api/usuarios/upgrade-premium", AUTENTICADO},
+            {null, "/v3/api-docs/**", PUBLICO},
+            {null, "/swagger-ui/**", PUBLICO},
+            {null, "/swagger-ui.html", PUBLICO},
+    };
+
+    private static final String[] METODOS = {"GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "TRACE", "PROPFIND"};
+
+    private static final String[] SEGMENTOS = {
+            "api", "auth", "public", "publico", "info", "validar", "plantillas", "publicas", "archivos",
+            "populares", "categorias", "admin", "favoritos", "estadisticas", "mis-plantillas", "mas-usadas",
+            "recientes", "buscar", "permisos", "visibilidad", "duplicar", "proyectos", "proyecto", "usuarios",
+            "perfil", "upgrade-premium", "v3", "api-docs", "swagger-ui", "swagger-ui.html", "error", "42",
+            "authx", "", "plantillas;v=1", "%70ublicas", ";a=b"
+    };
+
+    private final RouteRuleTrie trie = RouteRuleTrie.compile(RouteAuthorizationTable.rules());
+    private final List<PathPattern> patrones = new ArrayList<>();
+
+    RouteAuthorizationTableTest() {
+        for (Object[] regla : REGLAS_ANTERIORES) {
+            patrones.add(PathPatternParser.defaultInstance.parse((String) regla[1]));
+        }
+    }
+
+    @Test
+    void coincideConLasReglasAnterioresEnTodasLasRutas() {
+        List<String> rutas = new ArrayList<>();
+        rutas.add("/");
+        rutas.add("");
+        rutas.add("api/auth/login");
+        for (String a : SEGMENTOS) {
+            rutas.add("/" + a);
+            for (String b : SEGMENTOS) {
+                rutas.add("/" + a + "/" + b);
+                for (String c : SEGMENTOS) {
+                    rutas.add("/" + a + "/" + b + "/" + c);
+                }
+            }
+        }
+        // Rutas bajo /api con tres segmentos más (p. ej. /api/plantillas/5/visibilidad)
+        for (String b : SEGMENTOS) {
+            for (String c : SEGMENTOS) {
+                for (String d : SEGMENTOS) {
+                    rutas.add("/api/" + b + "/" + c + "/" + d);
+                }
+            }
+        }
+
+        int comprobadas = 0;
+        for (String ruta : rutas) {
+            for (String metodo : METODOS) {
+                RouteRuleTrie.Decision decision = trie.lookup(metodo, ruta);
+                assertEquals(accesoAnterior(metodo, ruta), etiqueta(decision.getAccessRule()), metodo + " " + ruta);
+
+                // getServletPath() llega decodificado y sin parámetros ';'
+                if (ruta.indexOf(';') < 0 && ruta.indexOf('%') < 0) {
+                    assertEquals(omitirJwtAnterior(ruta), decision.isSkipJwt(), "skip " + ruta);
+                }
+                comprobadas++;
+            }
+        }
+        assertTrue(comprobadas > 900_000);
+    }
+
+    @Test
+    void casosLimiteDePathPattern() {
+        // '*' final acepta la barra final, pero exige que exista el segmento
+        assertEquals(PUBLICO, etiqueta(trie.lookup("GET", "/api/plantillas/").getAccessRule()));
+        assertEquals(PREMIUM_O_ADMIN, etiqueta(trie.lookup("POST", "/api/plantillas").getAccessRule()));
+        assertEquals(PREMIUM_O_ADMIN, etiqueta(trie.lookup("PATCH", "/api/plantillas/7/visibilidad").getAccessRule()));
+        // '*' intermedio no acepta un segmento vacío: cae en anyRequest
+        assertEquals(AUTENTICADO, etiqueta(trie.lookup("PATCH", "/api/plantillas//visibilidad").getAccessRule()));
+        // "/**" acepta cero segmentos
+        assertEquals(ADMIN, etiqueta(trie.lookup("GET", "/api/admin").getAccessRule()));
+        // Un literal no acepta la barra final
+        assertEquals(ADMIN, etiqueta(trie.lookup("GET", "/api/categorias/").getAccessRule()));
+
+        assertTrue(trie.lookup("POST", "/api/auth/login").isSkipJwt());
+        assertTrue(trie.lookup("GET", "/error").isSkipJwt());
+        assertFalse(trie.lookup("GET", "/api/auth").isSkipJwt());
+        assertFalse(trie.lookup("GET", "/api/authx/login").isSkipJwt());
+    }
+
+    private String accesoAnterior(String metodo, String ruta) {
+        PathContainer path = PathContainer.parsePath(ruta);
+        for (int i = 0; i < REGLAS_ANTERIORES.length; i++) {
+            Object metodoRegla = REGLAS_ANTERIORES[i][0];
+            if ((metodoRegla == null || metodoRegla.equals(metodo)) && patrones.get(i).matches(path)) {
+                return (String) REGLAS_ANTERIORES[i][2];
+            }
+        }
+        return AUTENTICADO;
+    }
+
+    // Antiguo JwtAuthenticationFilter.shouldNotFilter
+    private static boolean omitirJwtAnterior(String path) {
+        return path.startsWith("/api/auth/") ||
+                path.startsWith("/public/") ||
+                path.startsWith("/api/publico/public/") ||
+                path.startsWith("/api/publico/info/") ||
+                path.startsWith("/api/publico/validar/") ||
+                path.equals("/error");
+    }
+
+    private static String etiqueta(RouteRule regla) {
+        if (regla == null) {
+            return AUTENTICADO;
+        }
+        switch (regla.getAccess()) {
+            case PERMIT_ALL:
+                return PUBLICO;
+            case AUTHENTICATED:
+                return AUTENTICADO;
+            default:
+                return new java.util.TreeSet<>(regla.getAuthorities()).toString();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.utp.timeline.config_seguridad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.aop.framework.Advised;
+
+class BulkheadAspectTest {
+
+    // Un hilo por llamada: el pool común puede tener un solo hilo
+    private final ExecutorService hilos = Executors.newCachedThreadPool();
+    private BulkheadAspect aspect;
+    private ServicioLento servicio;
+
+    static class ServicioLento {
+        final CountDownLatch dentro = new CountDownLatch(1);
+        final CountDownLatch salir = new CountDownLatch(1);
+
+        @Bulkhead(maxConcurrent = 1)
+        public String sinEspera() throws InterruptedException {
+            dentro.countDown();
+            salir.await();
+            return "ok";
+        }
+
+        @Bulkhead(maxConcurrent = 1, maxWait = 5, unit = TimeUnit.SECONDS)
+        public String conEspera() throws InterruptedException {
+            dentro.countDown();
+            salir.await();
+            return "ok";
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        aspect = new BulkheadAspect();
+        AspectJProxyFactory factory = new AspectJProxyFactory(new ServicioLento());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        servicio = factory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        hilos.shutdownNow();
+    }
+
+    @Test
+    void rechazaCuandoNoHayHueco() throws Exception {
+        CompletableFuture<String> primera = CompletableFuture.supplyAsync(() -> llamar(true), hilos);
+        esperarDentro(primera);
+
+        BulkheadFullException ex = assertThrows(BulkheadFullException.class, servicio::sinEspera);
+        assertEquals("ServicioLento.sinEspera", ex.getBulkhead());
+        assertEquals(1, ex.getRetryAfterSeconds());
+
+        objetivo().salir.countDown();
+        assertEquals("ok", primera.get(5, TimeUnit.SECONDS));
+
+        Map<?, ?> stats = (Map<?, ?>) aspect.getStatistics().get("ServicioLento.sinEspera");
+        assertEquals(1L, stats.get("aceptadas"));
+        assertEquals(1L, stats.get("rechazadas"));
+        assertEquals(0, stats.get("enCurso"));
+    }
+
+    @Test
+    void esperaUnHuecoSiSeConfiguraMaxWait() throws Exception {
+        CompletableFuture<String> primera = CompletableFuture.supplyAsync(() -> llamar(false), hilos);
+        esperarDentro(primera);
+        CompletableFuture<String> segunda = CompletableFuture.supplyAsync(() -> llamar(false), hilos);
+
+        Map<?, ?> stats = (Map<?, ?>) aspect.getStatistics().get("ServicioLento.conEspera");
+        while ((Integer) stats.get("enEspera") == 0) {
+            Thread.sleep(5);
+            stats = (Map<?, ?>) aspect.getStatistics().get("ServicioLento.conEspera");
+        }
+        assertEquals(1, stats.get("enCurso"));
+
+        objetivo().salir.countDown();
+        assertEquals("ok", primera.get(5, TimeUnit.SECONDS));
+        assertEquals("ok", segunda.get(5, TimeUnit.SECONDS));
+
+        stats = (Map<?, ?>) aspect.getStatistics().get("ServicioLento.conEspera");
+        assertEquals(2L, stats.get("aceptadas"));
+        assertEquals(0L, stats.get("rechazadas"));
+        assertEquals(1, stats.get("picoEnCurso"));
+    }
+
+    @Test
+    void unaEsperaInterrumpidaSeRechazaSinPerderLaInterrupcion() throws Exception {
+        CompletableFuture<String> primera = CompletableFuture.supplyAsync(() -> llamar(false), hilos);
+        esperarDentro(primera);
+
+        Thread.currentThread().interrupt();
+        try {
+            BulkheadFullException ex = assertThrows(BulkheadFullException.class, servicio::conEspera);
+            assertEquals(5, ex.getRetryAfterSeconds());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        objetivo().salir.countDown();
+        assertEquals("ok", primera.get(5, TimeUnit.SECONDS));
+    }
+
+    private void esperarDentro(CompletableFuture<String> llamada) throws Exception {
+        if (!objetivo().dentro.await(5, TimeUnit.SECONDS)) {
+            llamada.get(1, TimeUnit.SECONDS);
+        }
+    }
+
+    private ServicioLento objetivo() throws Exception {
+        return (ServicioLento) ((Advised) servicio).getTargetSource().getTarget();
+    }
+
+    private String llamar(boolean sinEspera) {
+        try {
+            return sinEspera ? servicio.sinEspera() : servicio.conEspera();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
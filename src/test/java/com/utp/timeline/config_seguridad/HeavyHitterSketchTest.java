@@ -0,0 +1,55 @@
+package com.utp.timeline.config_seguridad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class HeavyHitterSketchTest {
+
+    @Test
+    void encuentraLasClavesPesadasEntreMuchasClavesUnicas() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(1024, 4, 20);
+
+        // 200.000 IPs con una petición cada una y 5 IPs que generan la mayor parte de la carga
+        for (int i = 0; i < 200_000; i++) {
+            String ip = "10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff);
+            sketch.add(RateLimitService.hash(ip), ip);
+            if (i % 20 == 0) {
+                String pesada = "6.6.6." + (i / 20 % 5);
+                sketch.add(RateLimitService.hash(pesada), pesada);
+            }
+        }
+
+        List<Map<String, Object>> top = sketch.top(5);
+        Set<Object> claves = new HashSet<>();
+        for (Map<String, Object> entrada : top) {
+            claves.add(entrada.get("clave"));
+            long peticiones = (Long) entrada.get("peticiones");
+            // 2.000 reales; el Count-Min solo sobreestima
+            assertTrue(peticiones >= 2_000 && peticiones < 2_000 + 200_000 / 1024 * 2, "peticiones: " + peticiones);
+        }
+        assertEquals(Set.of("6.6.6.0", "6.6.6.1", "6.6.6.2", "6.6.6.3", "6.6.6.4"), claves);
+    }
+
+    @Test
+    void elDecaimientoReduceLosContadores() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(64, 4, 4);
+        for (int i = 0; i < 100; i++) {
+            sketch.add(RateLimitService.hash("a"), "a");
+        }
+        sketch.add(RateLimitService.hash("b"), "b");
+
+        sketch.decay();
+
+        List<Map<String, Object>> top = sketch.top(10);
+        assertEquals(1, top.size());
+        assertEquals("a", top.get(0).get("clave"));
+        assertEquals(50L, top.get(0).get("peticiones"));
+    }
+}
@@ -0,0 +1,239 @@
+package com.utp.timeline.config_seguridad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utp.timeline.entity.Usuario;
+
+class RateLimitFilterTest {
+
+    private RateLimitService rateLimitService;
+    private RateLimitFilter filter;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @RestController
+    @RequestMapping("/api")
+    static class ControladorPrueba {
+
+        @PostMapping("/auth/login")
+        @RateLimited(maxRequests = 2, duration = 1, unit = TimeUnit.MINUTES, message = "Demasiados \"intentos\"")
+        public String login() {
+            return "ok";
+        }
+
+        @PatchMapping("/proyectos/{id}/data")
+        @RateLimited(maxRequests = 1, type = RateLimited.LimitType.GLOBAL)
+        public String guardar(@PathVariable Long id) {
+            return "ok";
+        }
+
+        @PostMapping("/proyectos/{id}/duplicar")
+        @RateLimited(maxRequests = 1, maxRequestsPremium = 3, maxRequestsAdmin = 0, type = RateLimited.LimitType.USER)
+        @RateLimited(maxRequests = 4, maxRequestsPremium = 4, type = RateLimited.LimitType.PLAN, message = "Cupo del plan agotado")
+        public String duplicar(@PathVariable Long id) {
+            return "ok";
+        }
+
+        @PostMapping("/proyectos/{id}/{accion}")
+        @RateLimited(maxRequests = 100, type = RateLimited.LimitType.IP)
+        public String accion(@PathVariable Long id, @PathVariable String accion) {
+            return "ok";
+        }
+
+        @GetMapping("/proyectos/{id}")
+        public String obtener(@PathVariable Long id) {
+            return "ok";
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        StaticWebApplicationContext context = new StaticWebApplicationContext();
+        context.registerSingleton("controladorPrueba", ControladorPrueba.class);
+        context.refresh();
+        RequestMappingHandlerMapping mapping = new RequestMappingHandlerMapping();
+        mapping.setApplicationContext(context);
+        mapping.afterPropertiesSet();
+
+        rateLimitService = new RateLimitService(64, false, 60_000);
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "rateLimiter", rateLimitService);
+        ReflectionTestUtils.setField(filter, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(filter, "hotKeys", new RateLimitHotKeys(256, 4, 10));
+        filter.buildRoutes(List.of(mapping));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        rateLimitService.shutdown();
+    }
+
+    @Test
+    void laTablaSeConstruyeSoloConLosMetodosAnotados() {
+        assertEquals(4, filter.getRoutes().size());
+    }
+
+    @Test
+    void rechazaConJsonAntesDeLlegarAlHandler() throws Exception {
+        assertNotNull(ejecutar("POST", "/api/auth/login", "1.1.1.1").getHeader("X-RateLimit-Remaining"));
+        MockHttpServletResponse segunda = ejecutar("POST", "/api/auth/login", "1.1.1.1");
+        assertEquals(200, segunda.getStatus());
+        assertEquals("0", segunda.getHeader("X-RateLimit-Remaining"));
+
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse rechazada = new MockHttpServletResponse();
+        filter.doFilter(peticion("POST", "/api/auth/login", "1.1.1.1"), rechazada, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(429, rechazada.getStatus());
+        assertEquals("30", rechazada.getHeader("Retry-After"));
+        Map<?, ?> body = objectMapper.readValue(rechazada.getContentAsString(), Map.class);
+        assertEquals(429, body.get("status"));
+        assertEquals(30, body.get("retryAfter"));
+        assertTrue(((String) body.get("message")).startsWith("Demasiados \"intentos\" Intenta de nuevo en 30"));
+
+        // Otra IP tiene su propio bucket
+        assertEquals(200, ejecutar("POST", "/api/auth/login", "2.2.2.2").getStatus());
+    }
+
+    @Test
+    void soloAplicaAlMetodoYPatronAnotados() throws Exception {
+        assertEquals(200, ejecutar("PATCH", "/api/proyectos/7/data", "1.1.1.1").getStatus());
+        // GLOBAL: el segundo guardado (de cualquier cliente) se rechaza
+        assertEquals(429, ejecutar("PATCH", "/api/proyectos/8/data", "3.3.3.3").getStatus());
+        // El bucket GLOBAL es uno solo para todos los niveles
+        autenticar(usuario(2L, Usuario.Rol.USUARIO, Usuario.Plan.PREMIUM));
+        assertEquals(429, ejecutar("PATCH", "/api/proyectos/8/data", "3.3.3.3").getStatus());
+        SecurityContextHolder.clearContext();
+
+        MockHttpServletResponse sinLimite = ejecutar("GET", "/api/proyectos/7", "1.1.1.1");
+        assertEquals(200, sinLimite.getStatus());
+        assertNull(sinLimite.getHeader("X-RateLimit-Limit"));
+        assertEquals(200, ejecutar("GET", "/api/auth/login", "1.1.1.1").getStatus());
+        assertEquals(200, ejecutar("POST", "/api/auth/login/otra", "1.1.1.1").getStatus());
+    }
+
+    @Test
+    void lasVariantesCodificadasDeLaRutaCompartenElLimite() throws Exception {
+        assertEquals(200, ejecutar("POST", "/api/auth/%6Cogin", "1.1.1.1").getStatus());
+        assertEquals(200, ejecutar("POST", "/api/auth/login;jsessionid=ABC", "1.1.1.1").getStatus());
+        assertEquals(429, ejecutar("POST", "/api/auth/%6C%6Fgin", "1.1.1.1").getStatus());
+        assertEquals(429, ejecutar("POST", "/api/auth;x=1/login", "1.1.1.1").getStatus());
+        assertEquals(429, ejecutar("POST", "/api/auth/login", "1.1.1.1").getStatus());
+    }
+
+    @Test
+    void conPatronesSolapadosGanaElMasEspecifico() throws Exception {
+        // "/proyectos/{id}/duplicar" antes que "/proyectos/{id}/{accion}" (100 por IP)
+        assertEquals("1", ejecutar("POST", "/api/proyectos/1/duplicar", "1.1.1.1").getHeader("X-RateLimit-Limit"));
+        assertEquals("100", ejecutar("POST", "/api/proyectos/1/archivar", "1.1.1.1").getHeader("X-RateLimit-Limit"));
+    }
+
+    @Test
+    void elLimiteDependeDelPlanYDelRol() throws Exception {
+        Usuario free = usuario(1L, Usuario.Rol.USUARIO, Usuario.Plan.FREE);
+        Usuario premium = usuario(2L, Usuario.Rol.USUARIO, Usuario.Plan.PREMIUM);
+        Usuario admin = usuario(3L, Usuario.Rol.ADMIN, Usuario.Plan.FREE);
+
+        // FREE: 1 por usuario, aunque cambie de IP
+        autenticar(free);
+        assertEquals("1", ejecutar("POST", "/api/proyectos/1/duplicar", "1.1.1.1").getHeader("X-RateLimit-Limit"));
+        assertEquals(429, ejecutar("POST", "/api/proyectos/1/duplicar", "9.9.9.9").getStatus());
+
+        // PREMIUM: 3 por usuario
+        autenticar(premium);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, ejecutar("POST", "/api/proyectos/1/duplicar", "1.1.1.1").getStatus());
+        }
+        MockHttpServletResponse rechazada = ejecutar("POST", "/api/proyectos/1/duplicar", "1.1.1.1");
+        assertEquals(429, rechazada.getStatus());
+
+        // ADMIN: sin límite por usuario, pero sí el cupo compartido del nivel
+        autenticar(admin);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(200, ejecutar("POST", "/api/proyectos/1/duplicar", "1.1.1.1").getStatus());
+        }
+        MockHttpServletResponse sinCupo = ejecutar("POST", "/api/proyectos/1/duplicar", "1.1.1.1");
+        assertEquals(429, sinCupo.getStatus());
+        assertTrue(sinCupo.getContentAsString().contains("Cupo del plan agotado"));
+
+        // El cupo PLAN de FREE es independiente del de ADMIN; el anónimo cuenta como FREE por IP
+        SecurityContextHolder.clearContext();
+        assertEquals(200, ejecutar("POST", "/api/proyectos/1/duplicar", "4.4.4.4").getStatus());
+        assertEquals(429, ejecutar("POST", "/api/proyectos/1/duplicar", "4.4.4.4").getStatus());
+        assertEquals(200, ejecutar("POST", "/api/proyectos/1/duplicar", "5.5.5.5").getStatus());
+    }
+
+    @Test
+    void unaPeticionRechazadaNoGastaLosDemasLimites() throws Exception {
+        Usuario premium = usuario(2L, Usuario.Rol.USUARIO, Usuario.Plan.PREMIUM);
+        Usuario otroPremium = usuario(4L, Usuario.Rol.USUARIO, Usuario.Plan.PREMIUM);
+
+        // Entre los dos agotan el cupo PLAN de PREMIUM (4)
+        autenticar(otroPremium);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, ejecutar("POST", "/api/proyectos/1/duplicar", "1.1.1.1").getStatus());
+        }
+        autenticar(premium);
+        assertEquals(200, ejecutar("POST", "/api/proyectos/1/duplicar", "1.1.1.1").getStatus());
+
+        // El PLAN rechaza: el token USER ya tomado se devuelve
+        assertEquals(429, ejecutar("POST", "/api/proyectos/1/duplicar", "1.1.1.1").getStatus());
+        RateLimitFilter.Limit porUsuario = filter.getRoutes().stream()
+                .filter(route -> route.pattern.getPatternString().equals("/api/proyectos/{id}/duplicar"))
+                .findFirst().orElseThrow().limits[0];
+        long clave = porUsuario.keyFor(RateLimitService.hash("1.1.1.1"), premium, RateLimitFilter.Limit.PREMIUM);
+        assertEquals(2, rateLimitService.getRemainingRequests(clave, 3, porUsuario.durationMs));
+    }
+
+    private static Usuario usuario(Long id, Usuario.Rol rol, Usuario.Plan plan) {
+        Usuario usuario = new Usuario();
+        usuario.setId(id);
+        usuario.setRol(rol);
+        usuario.setPlan(plan);
+        return usuario;
+    }
+
+    private static void autenticar(Usuario usuario) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(usuario, null, List.of()));
+    }
+
+    private MockHttpServletResponse ejecutar(String metodo, String ruta, String ip) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(peticion(metodo, ruta, ip), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest peticion(String metodo, String ruta, String ip) {
+        MockHttpServletRequest request = new MockHttpServletRequest(metodo, ruta);
+        request.setRemoteAddr(ip);
+        return request;
+    }
+}
@@ -0,0 +1,127 @@
+package com.utp.timeline.config_seguridad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class RateLimitServiceTest {
+
+    private RateLimitService service;
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void admiteLaRafagaYLuegoRecargaUnTokenPorIntervalo(boolean offHeap) throws InterruptedException {
+        service = new RateLimitService(64, offHeap, 60_000);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.isAllowed("login:1.2.3.4", 5, 500));
+        }
+        long result = service.acquire(RateLimitService.hash("login:1.2.3.4"), 5, 500);
+        assertTrue(result < 0);
+        assertTrue(-result <= 100);
+        assertEquals(0, service.getRemainingRequests("login:1.2.3.4", 5, 500));
+
+        // Otra clave no se ve afectada
+        assertTrue(service.isAllowed("login:5.6.7.8", 5, 500));
+
+        // T = 100 ms: tras la espera hay un token de nuevo
+        Thread.sleep(120);
+        assertTrue(service.isAllowed("login:1.2.3.4", 5, 500));
+        assertFalse(service.isAllowed("login:1.2.3.4", 5, 500));
+
+        service.reset("login:1.2.3.4");
+        assertEquals(5, service.getRemainingRequests("login:1.2.3.4", 5, 500));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void hilosConcurrentesNoSuperanElLimite(boolean offHeap) throws InterruptedException {
+        service = new RateLimitService(64, offHeap, 60_000);
+        AtomicInteger admitidas = new AtomicInteger();
+        CountDownLatch inicio = new CountDownLatch(1);
+
+        List<Thread> hilos = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    inicio.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1_000; i++) {
+                    if (service.isAllowed("global", 100, 60_000)) {
+                        admitidas.incrementAndGet();
+                    }
+                }
+            });
+            hilos.add(hilo);
+            hilo.start();
+        }
+        inicio.countDown();
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        assertEquals(100, admitidas.get());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void creceConMuchosClientesSinPerderEstado(boolean offHeap) throws InterruptedException {
+        service = new RateLimitService(16, offHeap, 60_000);
+        int clientes = 50_000;
+
+        // Varios hilos insertan claves nuevas mientras la tabla se reconstruye
+        List<Thread> hilos = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int desde = t;
+            Thread hilo = new Thread(() -> {
+                for (int i = desde; i < clientes; i += 4) {
+                    assertTrue(service.isAllowed("ip:" + i, 2, 60_000));
+                }
+            });
+            hilos.add(hilo);
+            hilo.start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        // Cada clave conserva su consumo: un token más y después rechazo
+        for (int i = 0; i < clientes; i++) {
+            assertTrue(service.isAllowed("ip:" + i, 2, 60_000), "ip:" + i);
+            assertFalse(service.isAllowed("ip:" + i, 2, 60_000), "ip:" + i);
+        }
+        assertTrue((Long) service.getStatistics().get("reconstrucciones") > 0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void elBarridoDescartaLasClavesExpiradas(boolean offHeap) throws InterruptedException {
+        service = new RateLimitService(16, offHeap, 60_000);
+        for (int i = 0; i < 10; i++) {
+            service.isAllowed("ip:" + i, 10, 50);
+        }
+        Thread.sleep(80);
+        service.isAllowed("ip:vigente", 10, 60_000);
+
+        service.sweep();
+
+        assertEquals(1, service.getStatistics().get("ocupadas"));
+        assertEquals(9, service.getRemainingRequests("ip:vigente", 10, 60_000));
+    }
+}
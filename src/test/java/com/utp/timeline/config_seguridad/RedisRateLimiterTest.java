@@ -0,0 +1,199 @@
+package com.utp.timeline.config_seguridad;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import redis.embedded.RedisServer;
+
+class RedisRateLimiterTest {
+
+    private static RedisServer redisServer;
+    private static int port;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private final List<RateLimitService> locales = new ArrayList<>();
+    private final List<RedisRateLimiter> creados = new ArrayList<>();
+
+    @BeforeAll
+    static void iniciarRedis() throws IOException {
+        port = puertoLibre();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+    }
+
+    @AfterAll
+    static void detenerRedis() throws IOException {
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = conexion(port);
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        redisTemplate.getConnectionFactory().getConnection().serverCommands().flushAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        creados.forEach(RedisRateLimiter::shutdown);
+        locales.forEach(RateLimitService::shutdown);
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void elLimiteEsGlobalEntreNodos() throws InterruptedException {
+        // Tres "nodos" con lotes de 10 tokens: entre todos, como mucho 100 peticiones
+        List<RedisRateLimiter> nodos = List.of(nodo(redisTemplate), nodo(redisTemplate), nodo(redisTemplate));
+        long clave = RateLimitService.hash("ratelimit:global:buscar");
+        AtomicInteger admitidas = new AtomicInteger();
+        CountDownLatch inicio = new CountDownLatch(1);
+
+        List<Thread> hilos = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            RedisRateLimiter nodo = nodos.get(t % nodos.size());
+            Thread hilo = new Thread(() -> {
+                try {
+                    inicio.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (nodo.acquire(clave, 100, 60_000) >= 0) {
+                        admitidas.incrementAndGet();
+                    }
+                }
+            });
+            hilos.add(hilo);
+            hilo.start();
+        }
+        inicio.countDown();
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        assertTrue(admitidas.get() <= 100, "admitidas: " + admitidas.get());
+        assertTrue(admitidas.get() >= 70, "admitidas: " + admitidas.get());
+
+        // Los lotes evitan una ida a Redis por petición
+        long consultas = nodos.stream()
+                .mapToLong(n -> (Long) n.getStatistics().get("consultasRedis"))
+                .sum();
+        assertTrue(consultas < 600, "consultas: " + consultas);
+    }
+
+    @Test
+    void limitePequenoNoSeReparteEnLotes() {
+        RedisRateLimiter nodoA = nodo(redisTemplate);
+        RedisRateLimiter nodoB = nodo(redisTemplate);
+        long clave = RateLimitService.hash("ratelimit:ip:1.2.3.4:login");
+
+        assertEquals(1, nodoA.leaseSize(5));
+        for (int i = 0; i < 5; i++) {
+            RedisRateLimiter nodo = i % 2 == 0 ? nodoA : nodoB;
+            assertTrue(nodo.acquire(clave, 5, 60_000) >= 0);
+        }
+
+        long espera = nodoB.acquire(clave, 5, 60_000);
+        assertTrue(espera < 0);
+        // T = 12 s: el próximo token llega en como mucho 12 s
+        assertTrue(-espera <= 12_000);
+        assertTrue(nodoA.acquire(clave, 5, 60_000) < 0);
+    }
+
+    @Test
+    void siRedisNoRespondeSeUsaElLimiteLocal() throws IOException {
+        LettuceConnectionFactory caida = conexion(puertoLibre());
+        try {
+            StringRedisTemplate plantilla = new StringRedisTemplate(caida);
+            plantilla.afterPropertiesSet();
+            RedisRateLimiter nodo = nodo(plantilla);
+            long clave = RateLimitService.hash("ratelimit:ip:5.6.7.8:login");
+
+            for (int i = 0; i < 3; i++) {
+                assertTrue(nodo.acquire(clave, 3, 60_000) >= 0);
+            }
+            assertTrue(nodo.acquire(clave, 3, 60_000) < 0);
+            assertEquals(4L, nodo.getStatistics().get("erroresRedis"));
+        } finally {
+            caida.destroy();
+        }
+    }
+
+    @Test
+    void unRedisColgadoAbreElCircuitoSinRetenerLasPeticiones() throws Exception {
+        // Acepta conexiones pero nunca responde
+        try (ServerSocket colgado = new ServerSocket(0)) {
+            List<Socket> aceptados = new ArrayList<>();
+            Thread aceptador = new Thread(() -> {
+                try {
+                    while (true) {
+                        aceptados.add(colgado.accept());
+                    }
+                } catch (IOException e) {
+                    // Cerrado al terminar el test
+                }
+            });
+            aceptador.setDaemon(true);
+            aceptador.start();
+
+            LettuceConnectionFactory factoria = conexion(colgado.getLocalPort());
+            try {
+                StringRedisTemplate plantilla = new StringRedisTemplate(factoria);
+                plantilla.afterPropertiesSet();
+                RedisRateLimiter nodo = nodo(plantilla);
+                long clave = RateLimitService.hash("ratelimit:ip:9.9.9.9:login");
+
+                long inicio = System.nanoTime();
+                for (int i = 0; i < 20; i++) {
+                    assertTrue(nodo.acquire(clave, 100, 60_000) >= 0);
+                }
+                // Cinco timeouts cortos y el resto en local con el circuito abierto
+                assertTrue(System.nanoTime() - inicio < TimeUnit.SECONDS.toNanos(10));
+                assertEquals(5L, nodo.getStatistics().get("erroresRedis"));
+            } finally {
+                factoria.destroy();
+            }
+        }
+    }
+
+    private RedisRateLimiter nodo(StringRedisTemplate plantilla) {
+        RateLimitService local = new RateLimitService(64, false, 60_000);
+        locales.add(local);
+        RedisRateLimiter nodo = new RedisRateLimiter(plantilla, local, 0.1, 20, 1_000, 200, 5, 60_000);
+        creados.add(nodo);
+        return nodo;
+    }
+
+    private static LettuceConnectionFactory conexion(int puerto) {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", puerto));
+        factory.afterPropertiesSet();
+        factory.start();
+        return factory;
+    }
+
+    private static int puertoLibre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
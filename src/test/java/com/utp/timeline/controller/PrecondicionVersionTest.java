@@ -0,0 +1,46 @@
+package com.utp.timeline.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.Test;
+
+class PrecondicionVersionTest {
+
+    private final AtomicInteger consultas = new AtomicInteger();
+    private final LongSupplier versionActual = () -> {
+        consultas.incrementAndGet();
+        return 7L;
+    };
+
+    @Test
+    void unaEtiquetaFuerteNoConsultaLaVersion() {
+        assertEquals(7L, PrecondicionVersion.versionIfMatch("\"7\"", versionActual));
+        assertNull(PrecondicionVersion.versionIfMatch(null, versionActual));
+        assertNull(PrecondicionVersion.versionIfMatch("*", versionActual));
+        assertEquals(0, consultas.get());
+    }
+
+    @Test
+    void lasEtiquetasDebilesNuncaCoinciden() {
+        assertEquals(PrecondicionVersion.NINGUNA, PrecondicionVersion.versionIfMatch("W/\"7\"", versionActual));
+        assertEquals(6L, PrecondicionVersion.versionIfMatch("W/\"7\", \"6\"", versionActual));
+        // Una etiqueta que no es una versión tampoco coincide, pero no es un error
+        assertEquals(PrecondicionVersion.NINGUNA, PrecondicionVersion.versionIfMatch("\"abc\"", versionActual));
+    }
+
+    @Test
+    void conUnaListaValeLaVersionVigenteSiEstaEnElla() {
+        assertEquals(7L, PrecondicionVersion.versionIfMatch("\"6\", \"7\"", versionActual));
+        assertEquals(PrecondicionVersion.NINGUNA, PrecondicionVersion.versionIfMatch("\"1\",\"2\"", versionActual));
+        assertEquals(2, consultas.get());
+
+        assertFalse(PrecondicionVersion.tieneIfMatch("\"1\", *"));
+        assertThrows(IllegalArgumentException.class, () -> PrecondicionVersion.versionIfMatch("siete", versionActual));
+    }
+}
@@ -0,0 +1,113 @@
+package com.utp.timeline.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.utp.timeline.entity.DiccionarioDatos;
+import com.utp.timeline.repository.DiccionarioDatosRepository;
+
+class CompresorDatosTest {
+
+    private static final String PLANTILLA = timeline("Plantilla", 0, 6);
+
+    private DiccionarioDatosRepository diccionarioRepository;
+    private CompresorDatos compresor;
+
+    @BeforeEach
+    void setUp() {
+        diccionarioRepository = mock(DiccionarioDatosRepository.class);
+        compresor = new CompresorDatos(diccionarioRepository, 6, 100);
+    }
+
+    @Test
+    void sinDiccionarioSeRecuperaLaMismaData() {
+        String data = timeline("Historia del Perú — ñandú", 1, 10);
+
+        CompresorDatos.Comprimido comprimido = compresor.comprimir(data, 5L);
+
+        assertNull(comprimido.getDiccionarioId());
+        assertNull(CompresorDatos.diccionarioDe(comprimido.getBytes()));
+        assertEquals(data, compresor.descomprimir(comprimido.getBytes()));
+        assertNull(compresor.comprimir(null, 5L).getBytes());
+        assertEquals("", compresor.descomprimir(compresor.comprimir("", null).getBytes()));
+    }
+
+    @Test
+    void conDiccionarioElBlobLlevaSuIdYOcupaMenos() {
+        List<String> proyectos = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            proyectos.add(timeline("Proyecto " + i, i, 8));
+        }
+        DiccionarioDatos diccionario = new DiccionarioDatos(5L,
+                EntrenadorDiccionario.entrenar(PLANTILLA, proyectos, 16 * 1024), proyectos.size());
+        diccionario.setId(42L);
+
+        String data = timeline("Proyecto nuevo", 99, 4);
+        int sinDiccionario = compresor.comprimir(data, 5L).getBytes().length;
+        compresor.registrarDiccionario(diccionario);
+        CompresorDatos.Comprimido comprimido = compresor.comprimir(data, 5L);
+
+        assertEquals(42L, comprimido.getDiccionarioId());
+        assertEquals(42L, CompresorDatos.diccionarioDe(comprimido.getBytes()));
+        assertEquals(data, compresor.descomprimir(comprimido.getBytes()));
+        assertTrue(comprimido.getBytes().length * 3 < sinDiccionario * 2,
+                comprimido.getBytes().length + " bytes con diccionario, " + sinDiccionario + " sin él");
+
+        // Otro nodo, sin el diccionario en memoria: lo lee del repositorio al descomprimir
+        when(diccionarioRepository.findById(42L)).thenReturn(Optional.of(diccionario));
+        CompresorDatos otroNodo = new CompresorDatos(diccionarioRepository, 6, 100);
+        assertEquals(data, otroNodo.descomprimir(comprimido.getBytes()));
+    }
+
+    @Test
+    void comprimirNoConsultaLaBaseYElRefrescoCargaLosDiccionariosNuevos() {
+        DiccionarioDatos diccionario = new DiccionarioDatos(5L,
+                EntrenadorDiccionario.entrenar(PLANTILLA, List.of(timeline("Proyecto", 1, 8)), 16 * 1024), 2);
+        diccionario.setId(42L);
+        when(diccionarioRepository.findByIdGreaterThanOrderByIdAsc(0L)).thenReturn(List.of(diccionario));
+
+        // Desde un callback de JPA: sin diccionario en memoria se comprime sin él
+        String data = timeline("Proyecto nuevo", 99, 4);
+        assertNull(compresor.comprimir(data, 5L).getDiccionarioId());
+        verifyNoInteractions(diccionarioRepository);
+
+        // El refresco (fuera de los callbacks) lo carga y los siguientes guardados ya lo usan
+        compresor.refrescarDiccionarios();
+        assertEquals(42L, compresor.comprimir(data, 5L).getDiccionarioId());
+
+        // Solo pide los posteriores al último cargado
+        compresor.refrescarDiccionarios();
+        verify(diccionarioRepository).findByIdGreaterThanOrderByIdAsc(42L);
+    }
+
+    // JSON con la forma de la data del editor de línea de tiempo
+    private static String timeline(String titulo, int semilla, int eventos) {
+        StringBuilder json = new StringBuilder("{\"titulo\":\"").append(titulo)
+                .append("\",\"configuracion\":{\"tema\":\"claro\",\"orientacion\":\"horizontal\",\"escala\":\"anios\",")
+                .append("\"fuente\":\"Inter\",\"mostrarLeyenda\":true},\"eventos\":[");
+        for (int i = 0; i < eventos; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"evento-").append(semilla * 100 + i)
+                    .append("\",\"fecha\":\"").append(1800 + semilla + i * 7).append("-01-01\",")
+                    .append("\"titulo\":\"Evento ").append(i).append("\",")
+                    .append("\"descripcion\":\"Descripción del evento\",")
+                    .append("\"estilo\":{\"color\":\"#1e88e5\",\"icono\":\"circulo\",\"tamano\":\"mediano\"},")
+                    .append("\"posicion\":{\"x\":").append(i * 120).append(",\"y\":").append(semilla % 3 * 40).append("}}");
+        }
+        return json.append("]}").toString();
+    }
+}
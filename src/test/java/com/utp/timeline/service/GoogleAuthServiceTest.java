@@ -0,0 +1,185 @@
+package com.utp.timeline.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import com.sun.net.httpserver.HttpServer;
+import com.utp.timeline.config.CircuitBreaker;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+
+class GoogleAuthServiceTest {
+
+    private static final String CLIENT_ID = "timeline-client.apps.googleusercontent.com";
+
+    private HttpServer servidorClaves;
+    private final AtomicInteger peticionesJwks = new AtomicInteger();
+
+    // kid -> par de claves publicado por el servidor local
+    private final List<String> kids = new ArrayList<>();
+    private final List<KeyPair> claves = new ArrayList<>();
+    private volatile int maxAgeSegundos = 3600;
+
+    private GoogleAuthService googleAuthService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        agregarClave("kid-1");
+
+        servidorClaves = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        servidorClaves.createContext("/certs", exchange -> {
+            peticionesJwks.incrementAndGet();
+            byte[] body = jwks().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Cache-Control", "public, max-age=" + maxAgeSegundos);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        servidorClaves.start();
+
+        String uri = "http://localhost:" + servidorClaves.getAddress().getPort() + "/certs";
+        CircuitBreaker circuitBreaker = new CircuitBreaker("Google", 5, 30_000L, e -> false);
+        GoogleJwksService jwksService = new GoogleJwksService(new RestTemplate(), circuitBreaker, uri, 0L);
+        googleAuthService = new GoogleAuthService(new RestTemplate(), jwksService, circuitBreaker);
+        ReflectionTestUtils.setField(googleAuthService, "clientId", CLIENT_ID);
+        googleAuthService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        servidorClaves.stop(0);
+    }
+
+    @Test
+    void verificaIdTokenLocalmenteYCacheaLasClaves() {
+        String idToken = firmar("kid-1", CLIENT_ID, "https://accounts.google.com");
+
+        GoogleAuthService.GoogleUserInfo info = googleAuthService.verifyToken(idToken);
+        googleAuthService.verifyToken(idToken);
+
+        assertEquals("google-123", info.getSub());
+        assertEquals("ana@gmail.com", info.getEmail());
+        assertTrue(info.isEmailVerified());
+        assertEquals(1, peticionesJwks.get());
+    }
+
+    @Test
+    void rechazaAudienciaDeOtraAplicacion() {
+        String idToken = firmar("kid-1", "otra-app.apps.googleusercontent.com", "accounts.google.com");
+        assertThrows(RuntimeException.class, () -> googleAuthService.verifyToken(idToken));
+    }
+
+    @Test
+    void rechazaEmisorDistintoDeGoogle() {
+        String idToken = firmar("kid-1", CLIENT_ID, "https://evil.example.com");
+        assertThrows(RuntimeException.class, () -> googleAuthService.verifyToken(idToken));
+    }
+
+    @Test
+    void rechazaFirmaConClaveNoPublicada() throws Exception {
+        KeyPair ajena = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        String idToken = Jwts.builder()
+                .setHeaderParam("kid", "kid-1")
+                .setSubject("google-123")
+                .setAudience(CLIENT_ID)
+                .setIssuer("accounts.google.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(ajena.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+        assertThrows(RuntimeException.class, () -> googleAuthService.verifyToken(idToken));
+    }
+
+    @Test
+    void kidNuevoFuerzaRecargaDelJwks() throws Exception {
+        googleAuthService.verifyToken(firmar("kid-1", CLIENT_ID, "accounts.google.com"));
+
+        // Google rota sus claves
+        agregarClave("kid-2");
+        GoogleAuthService.GoogleUserInfo info = googleAuthService.verifyToken(firmar("kid-2", CLIENT_ID, "accounts.google.com"));
+
+        assertEquals("google-123", info.getSub());
+        assertEquals(2, peticionesJwks.get());
+    }
+
+    @Test
+    void recargaLasClavesCuandoVenceElMaxAge() throws Exception {
+        maxAgeSegundos = 1;
+        String idToken = firmar("kid-1", CLIENT_ID, "accounts.google.com");
+
+        googleAuthService.verifyToken(idToken);
+        Thread.sleep(1100);
+        googleAuthService.verifyToken(idToken);
+
+        assertEquals(2, peticionesJwks.get());
+    }
+
+    private void agregarClave(String kid) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        kids.add(kid);
+        claves.add(generator.generateKeyPair());
+    }
+
+    private String firmar(String kid, String audiencia, String emisor) {
+        KeyPair par = claves.get(kids.indexOf(kid));
+        return Jwts.builder()
+                .setHeaderParam("kid", kid)
+                .setSubject("google-123")
+                .setAudience(audiencia)
+                .setIssuer(emisor)
+                .claim("email", "ana@gmail.com")
+                .claim("name", "Ana")
+                .claim("email_verified", true)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(par.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+    }
+
+    private String jwks() {
+        StringBuilder json = new StringBuilder("{\"keys\":[");
+        for (int i = 0; i < kids.size(); i++) {
+            RSAPublicKey publica = (RSAPublicKey) claves.get(i).getPublic();
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"").append(kids.get(i))
+                    .append("\",\"n\":\"").append(base64Url(publica.getModulus().toByteArray()))
+                    .append("\",\"e\":\"").append(base64Url(publica.getPublicExponent().toByteArray()))
+                    .append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String base64Url(byte[] bytes) {
+        // Sin el byte de signo que añade BigInteger
+        if (bytes.length > 1 && bytes[0] == 0) {
+            byte[] sinSigno = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, sinSigno, 0, sinSigno.length);
+            bytes = sinSigno;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
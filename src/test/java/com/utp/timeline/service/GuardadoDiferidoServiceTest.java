@@ -0,0 +1,188 @@
+package com.utp.timeline.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.utp.timeline.entity.Proyecto;
+import com.utp.timeline.entity.Usuario;
+import com.utp.timeline.repository.DiccionarioDatosRepository;
+import com.utp.timeline.repository.ProyectoRepository;
+
+class GuardadoDiferidoServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private ProyectoRepository proyectoRepository;
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final Usuario usuario = new Usuario();
+    private final AtomicInteger cargas = new AtomicInteger();
+    private final CompresorDatos compresor = new CompresorDatos(mock(DiccionarioDatosRepository.class),
+            6, 100);
+
+    @BeforeEach
+    void setUp() {
+        proyectoRepository = mock(ProyectoRepository.class);
+        when(proyectoRepository.volcarDatos(anyLong(), any(), any(), anyString(), anyLong(), anyLong(), any())).thenReturn(1);
+        usuario.setId(3L);
+    }
+
+    @Test
+    void variosGuardadosSeguidosAcabanEnUnaEscritura() throws Exception {
+        GuardadoDiferidoService servicio = servicio();
+
+        for (int i = 1; i <= 20; i++) {
+            assertEquals(i, servicio.guardar(7L, usuario, null, actual -> "{}", this::cargar));
+        }
+        long version = servicio.guardar(7L, usuario, 20L, actual -> actual.replace("}", "\"n\":21}"), this::cargar);
+
+        // Solo la primera vez se lee la base de datos; las lecturas ven el pendiente
+        assertEquals(1, cargas.get());
+        assertEquals(21, version);
+        assertEquals("{\"n\":21}", servicio.conPendiente(cargar()).getData());
+        verify(proyectoRepository, never()).volcarDatos(anyLong(), any(), any(), anyString(), anyLong(), anyLong(), any());
+
+        servicio.volcarTodo();
+
+        verify(proyectoRepository, times(1)).volcarDatos(eq(7L), comprimido("{\"n\":21}"), any(), eq(Proyecto.huellaDe("{\"n\":21}")), eq(0L), eq(21L), any());
+        assertNull(servicio.obtener(7L));
+        assertEquals(0, Files.size(directorio.resolve("guardados.journal")));
+        servicio.shutdown();
+    }
+
+    @Test
+    void unaVersionAntiguaEsUnConflicto() throws Exception {
+        GuardadoDiferidoService servicio = servicio();
+        servicio.guardar(7L, usuario, 0L, actual -> "{\"a\":1}", this::cargar);
+
+        ConflictoVersionException conflicto = assertThrows(ConflictoVersionException.class,
+                () -> servicio.guardar(7L, usuario, 0L, actual -> "{\"a\":2}", this::cargar));
+        assertEquals(1, conflicto.getVersionActual());
+        assertEquals("{\"a\":1}", servicio.obtener(7L).getData());
+        servicio.shutdown();
+    }
+
+    @Test
+    void losPendientesSeRecuperanDelDiarioTrasUnaCaida() throws Exception {
+        GuardadoDiferidoService caido = servicio();
+        caido.guardar(7L, usuario, null, actual -> "{\"v\":1}", this::cargar);
+        caido.guardar(7L, usuario, null, actual -> "{\"v\":2}", this::cargar);
+        caido.guardar(8L, usuario, null, actual -> "{\"otro\":true}", this::cargar);
+        // Sin shutdown: el proceso "cae" con todo en memoria
+
+        GuardadoDiferidoService nuevo = servicio();
+        nuevo.afterSingletonsInstantiated();
+
+        verify(proyectoRepository).volcarDatos(eq(7L), comprimido("{\"v\":2}"), any(), eq(Proyecto.huellaDe("{\"v\":2}")), eq(0L), eq(2L), any());
+        verify(proyectoRepository).volcarDatos(eq(8L), comprimido("{\"otro\":true}"), any(), eq(Proyecto.huellaDe("{\"otro\":true}")), eq(0L), eq(1L), any());
+        assertNull(nuevo.obtener(7L));
+        nuevo.shutdown();
+    }
+
+    @Test
+    void unGuardadoEnConflictoAlVolcarSeConservaComoCopia() throws Exception {
+        GuardadoDiferidoService servicio = servicio();
+        servicio.guardar(7L, usuario, null, actual -> "{\"mio\":true}", this::cargar);
+        // Otro nodo escribió el proyecto entretanto
+        when(proyectoRepository.volcarDatos(anyLong(), any(), any(), anyString(), anyLong(), anyLong(), any())).thenReturn(0);
+        Proyecto original = cargar();
+        original.setUsuario(usuario);
+        original.setTitulo("Línea de tiempo");
+        when(proyectoRepository.findById(7L)).thenReturn(Optional.of(original));
+        when(proyectoRepository.save(any(Proyecto.class))).thenAnswer(invocacion -> invocacion.getArgument(0));
+        when(proyectoRepository.obtenerHuella(7L, 3L)).thenReturn(Optional.of(huella(2L, Proyecto.huellaDe("{\"suyo\":true}"))));
+
+        servicio.volcarTodo();
+
+        verify(proyectoRepository).save(argThat((Proyecto copia) -> copia.getUsuario() == usuario
+                && "Línea de tiempo (copia en conflicto)".equals(copia.getTitulo())
+                && "{\"mio\":true}".equals(copia.getData())));
+        assertNull(servicio.obtener(7L));
+        assertEquals(1L, servicio.getStatistics().get("copiasConflicto"));
+        servicio.shutdown();
+    }
+
+    @Test
+    void unVolcadoSueltoODescartadoNoSeReaplicaTrasUnaCaida() throws Exception {
+        GuardadoDiferidoService caido = servicio();
+        caido.guardar(7L, usuario, null, actual -> "{\"v\":1}", this::cargar);
+        caido.guardar(8L, usuario, null, actual -> "{\"borrado\":true}", this::cargar);
+        // PUT sobre el 7 (vuelca solo ese proyecto) y eliminación del 8, sin compactar
+        caido.volcar(7L);
+        caido.descartar(8L);
+
+        GuardadoDiferidoService nuevo = servicio();
+        nuevo.afterSingletonsInstantiated();
+
+        verify(proyectoRepository, times(1)).volcarDatos(eq(7L), any(), any(), anyString(), anyLong(), anyLong(), any());
+        verify(proyectoRepository, never()).volcarDatos(eq(8L), any(), any(), anyString(), anyLong(), anyLong(), any());
+        verify(proyectoRepository, never()).save(any());
+        nuevo.shutdown();
+    }
+
+    @Test
+    void unGuardadoRecuperadoQueYaEstaEnLaBaseNoEsUnConflicto() throws Exception {
+        GuardadoDiferidoService caido = servicio();
+        caido.guardar(7L, usuario, null, actual -> "{\"v\":1}", this::cargar);
+
+        // Se volcó antes de caer, pero el diario no llegó a reflejarlo
+        when(proyectoRepository.volcarDatos(anyLong(), any(), any(), anyString(), anyLong(), anyLong(), any())).thenReturn(0);
+        when(proyectoRepository.obtenerHuella(7L, 3L)).thenReturn(Optional.of(huella(1L, Proyecto.huellaDe("{\"v\":1}"))));
+        GuardadoDiferidoService nuevo = servicio();
+        nuevo.afterSingletonsInstantiated();
+
+        verify(proyectoRepository, never()).save(any());
+        assertNull(nuevo.obtener(7L));
+        assertEquals(0L, nuevo.getStatistics().get("conflictos"));
+        assertEquals(1L, nuevo.getStatistics().get("yaVolcados"));
+        nuevo.shutdown();
+    }
+
+    private static ProyectoRepository.HuellaDatos huella(long version, String dataHash) {
+        return new ProyectoRepository.HuellaDatos() {
+            @Override
+            public Long getVersion() { return version; }
+
+            @Override
+            public String getDataHash() { return dataHash; }
+        };
+    }
+
+    private GuardadoDiferidoService servicio() throws Exception {
+        return new GuardadoDiferidoService(proyectoRepository, compresor, transactionManager, true, 60_000, 500, 50,
+                directorio.resolve("guardados.journal").toString(), false);
+    }
+
+    private byte[] comprimido(String data) {
+        return argThat(bytes -> data.equals(compresor.descomprimir(bytes)));
+    }
+
+    private Proyecto cargar() {
+        cargas.incrementAndGet();
+        Proyecto proyecto = new Proyecto();
+        proyecto.setId(7L);
+        proyecto.setData("{}");
+        return proyecto;
+    }
+}
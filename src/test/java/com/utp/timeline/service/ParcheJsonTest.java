@@ -0,0 +1,79 @@
+package com.utp.timeline.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class ParcheJsonTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void aplicaLasOperacionesDeJsonPatch() throws Exception {
+        JsonNode documento = json("{'titulo':'Guerra','eventos':[{'anio':1939},{'anio':1945}],'a/b':1}");
+        JsonNode parche = json("["
+                + "{'op':'test','path':'/titulo','value':'Guerra'},"
+                + "{'op':'replace','path':'/titulo','value':'Segunda Guerra'},"
+                + "{'op':'add','path':'/eventos/1','value':{'anio':1941}},"
+                + "{'op':'add','path':'/eventos/-','value':{'anio':1946}},"
+                + "{'op':'remove','path':'/a~1b'},"
+                + "{'op':'copy','from':'/eventos/0','path':'/inicio'},"
+                + "{'op':'move','from':'/eventos/3','path':'/fin'}"
+                + "]");
+
+        JsonNode resultado = ParcheJson.aplicarJsonPatch(documento, parche);
+
+        assertEquals(json("{'titulo':'Segunda Guerra','eventos':[{'anio':1939},{'anio':1941},{'anio':1945}],"
+                + "'inicio':{'anio':1939},'fin':{'anio':1946}}"), resultado);
+        // El documento original no se modifica
+        assertEquals(json("{'titulo':'Guerra','eventos':[{'anio':1939},{'anio':1945}],'a/b':1}"), documento);
+    }
+
+    @Test
+    void testComparaLosNumerosPorValor() throws Exception {
+        JsonNode documento = json("{'escala':1,'eventos':[{'anio':1939,'peso':0.5}]}");
+
+        ParcheJson.aplicarJsonPatch(documento, json("[{'op':'test','path':'/escala','value':1.0},"
+                + "{'op':'test','path':'/eventos','value':[{'anio':1939.00,'peso':0.50}]}]"));
+        assertThrows(IllegalArgumentException.class, () -> ParcheJson.aplicarJsonPatch(documento,
+                json("[{'op':'test','path':'/escala','value':1.5}]")));
+        assertThrows(IllegalArgumentException.class, () -> ParcheJson.aplicarJsonPatch(documento,
+                json("[{'op':'test','path':'/escala','value':'1'}]")));
+    }
+
+    @Test
+    void unaOperacionFallidaNoAplicaNada() throws Exception {
+        JsonNode documento = json("{'titulo':'Guerra'}");
+
+        assertThrows(IllegalArgumentException.class, () -> ParcheJson.aplicarJsonPatch(documento,
+                json("[{'op':'test','path':'/titulo','value':'Otra'}]")));
+        assertThrows(IllegalArgumentException.class, () -> ParcheJson.aplicarJsonPatch(documento,
+                json("[{'op':'remove','path':'/no-existe'}]")));
+        assertThrows(IllegalArgumentException.class, () -> ParcheJson.aplicarJsonPatch(documento,
+                json("[{'op':'add','path':'/eventos/5','value':1}]")));
+        assertThrows(IllegalArgumentException.class, () -> ParcheJson.aplicarJsonPatch(documento,
+                json("{'op':'add','path':'/x','value':1}")));
+        assertEquals(json("{'titulo':'Guerra'}"), documento);
+    }
+
+    @Test
+    void aplicaMergePatchSegunRfc7386() throws Exception {
+        // Ejemplo de la sección 3 del RFC 7386
+        JsonNode documento = json("{'title':'Goodbye!','author':{'givenName':'John','familyName':'Doe'},"
+                + "'tags':['example','sample'],'content':'This will be unchanged'}");
+        JsonNode parche = json("{'title':'Hello!','phoneNumber':'+01-123-456-7890',"
+                + "'author':{'familyName':null},'tags':['example']}");
+
+        assertEquals(json("{'title':'Hello!','author':{'givenName':'John'},'tags':['example'],"
+                        + "'content':'This will be unchanged','phoneNumber':'+01-123-456-7890'}"),
+                ParcheJson.aplicarMergePatch(documento, parche));
+    }
+
+    private JsonNode json(String texto) throws Exception {
+        return objectMapper.readTree(texto.replace('\'', '"'));
+    }
+}
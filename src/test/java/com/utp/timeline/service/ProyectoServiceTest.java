@@ -0,0 +1,183 @@
+package com.utp.timeline.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utp.timeline.entity.Plantilla;
+import com.utp.timeline.entity.Proyecto;
+import com.utp.timeline.entity.Usuario;
+import com.utp.timeline.repository.DiccionarioDatosRepository;
+import com.utp.timeline.repository.PlantillaRepository;
+import com.utp.timeline.repository.ProyectoRepository;
+
+class ProyectoServiceTest {
+
+    private static final String DATA = "{\"eventos\":[1,2,3]}";
+
+    private ProyectoRepository proyectoRepository;
+    private ProyectoService proyectoService;
+    private CompresorDatos compresor;
+    private PlatformTransactionManager transactionManager;
+    private final Usuario usuario = new Usuario();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        proyectoRepository = mock(ProyectoRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        compresor = new CompresorDatos(mock(DiccionarioDatosRepository.class), 6, 100);
+        GuardadoDiferidoService guardadoDiferido = new GuardadoDiferidoService(proyectoRepository, compresor,
+                transactionManager, false, 5000, 500, 50, "no-usado", false);
+        proyectoService = new ProyectoService(proyectoRepository, mock(PlantillaRepository.class),
+                new ObjectMapper(), guardadoDiferido, compresor, transactionManager);
+        usuario.setId(3L);
+        when(proyectoRepository.obtenerHuella(7L, 3L)).thenReturn(Optional.of(huella(4L, Proyecto.huellaDe(DATA))));
+    }
+
+    @Test
+    void laMismaDataSeConfirmaSinLeerNiEscribirLaFila() {
+        assertEquals(4L, proyectoService.actualizarDatosProyecto(7L, DATA, usuario));
+
+        verify(proyectoRepository, never()).findByIdAndUsuario(any(), any());
+        verify(proyectoRepository, never()).actualizarDatosSiVersion(anyLong(), anyLong(), any(), any(), anyString(), anyLong(), any());
+    }
+
+    @Test
+    void conIfMatchSeGuardaConUnSoloUpdate() {
+        when(proyectoRepository.actualizarDatosSiVersion(eq(7L), eq(3L), any(), any(), anyString(), eq(4L), any())).thenReturn(1);
+
+        assertEquals(5L, proyectoService.actualizarDatosProyecto(7L, "{\"eventos\":[]}", 4L, usuario));
+        verify(proyectoRepository).actualizarDatosSiVersion(eq(7L), eq(3L), comprimido("{\"eventos\":[]}"), any(),
+                eq(Proyecto.huellaDe("{\"eventos\":[]}")), eq(4L), any());
+        verify(proyectoRepository, never()).findByIdAndUsuario(any(), any());
+        verify(proyectoRepository, never()).obtenerHuella(any(), any());
+    }
+
+    @Test
+    void siElUpdateNoEscribeSeDistingueSinCambiosDeConflicto() {
+        // Misma data con el If-Match vigente: el UPDATE no escribe y se confirma
+        assertEquals(4L, proyectoService.actualizarDatosProyecto(7L, DATA, 4L, usuario));
+
+        // Misma data pero If-Match antiguo: conflicto con la versión vigente
+        ConflictoVersionException conflicto = assertThrows(ConflictoVersionException.class,
+                () -> proyectoService.actualizarDatosProyecto(7L, DATA, 3L, usuario));
+        assertEquals(4L, conflicto.getVersionActual());
+
+        // Proyecto de otro usuario o inexistente
+        when(proyectoRepository.obtenerHuella(8L, 3L)).thenReturn(Optional.empty());
+        assertThrows(RuntimeException.class, () -> proyectoService.actualizarDatosProyecto(8L, DATA, 1L, usuario));
+        verify(proyectoRepository, never()).findByIdAndUsuario(any(), any());
+    }
+
+    @Test
+    void sinIfMatchSeEscribeCondicionadoALaVersionLeida() {
+        // Entre la lectura y el UPDATE otro guardado pasa la versión de 4 a 5: se relee y se reintenta
+        // en una transacción nueva (con REPEATABLE READ la misma transacción seguiría viendo la 4)
+        when(proyectoRepository.obtenerEstado(7L, 3L)).thenReturn(Optional.of(estado(4L)), Optional.of(estado(5L)));
+        when(proyectoRepository.findByIdAndUsuario(7L, usuario)).thenReturn(Optional.of(proyecto(6L)));
+        when(proyectoRepository.actualizarSiVersion(eq(7L), eq(3L), any(), any(), any(), any(), anyString(), eq(4L), any())).thenReturn(0);
+        when(proyectoRepository.actualizarSiVersion(eq(7L), eq(3L), any(), any(), any(), any(), anyString(), eq(5L), any())).thenReturn(1);
+
+        Proyecto cambios = new Proyecto(usuario, "Título", "{\"eventos\":[]}");
+        assertEquals(6L, proyectoService.actualizarProyecto(7L, cambios, usuario).getVersion());
+
+        verify(proyectoRepository).actualizarSiVersion(eq(7L), eq(3L), eq("Título"), any(), comprimido("{\"eventos\":[]}"),
+                any(), eq(Proyecto.huellaDe("{\"eventos\":[]}")), eq(5L), any());
+        verify(proyectoRepository, never()).save(any());
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void conIfMatchUnaPlantillaInexistenteNoLlegaAlUpdate() {
+        Proyecto cambios = new Proyecto(usuario, "Título", "{\"eventos\":[]}");
+        Plantilla plantilla = new Plantilla();
+        plantilla.setId(99L);
+        cambios.setPlantillaBase(plantilla);
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> proyectoService.actualizarProyecto(7L, cambios, 4L, usuario));
+        assertEquals("Plantilla no encontrada", e.getMessage());
+        verify(proyectoRepository, never()).actualizarConPlantillaSiVersion(any(), any(), any(), any(), any(), any(),
+                any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void unPutSinCambiosNoCargaLaFila() {
+        when(proyectoRepository.obtenerEstado(7L, 3L)).thenReturn(Optional.of(estado(4L)));
+
+        Proyecto respuesta = proyectoService.actualizarProyecto(7L, new Proyecto(usuario, "Título", DATA), usuario);
+
+        assertEquals(4L, respuesta.getVersion());
+        assertEquals(DATA, respuesta.getData());
+        verify(proyectoRepository, never()).findByIdAndUsuario(any(), any());
+        verify(proyectoRepository, never()).actualizarSiVersion(any(), any(), any(), any(), any(), any(), any(), anyLong(), any());
+        verify(proyectoRepository, never()).actualizarMetadatos(any(), any(), any(), any(), any(), any());
+    }
+
+    private static ProyectoRepository.EstadoProyecto estado(long version) {
+        return new ProyectoRepository.EstadoProyecto() {
+            @Override
+            public Long getVersion() { return version; }
+
+            @Override
+            public String getDataHash() { return Proyecto.huellaDe(DATA); }
+
+            @Override
+            public String getTitulo() { return "Título"; }
+
+            @Override
+            public String getDescripcion() { return null; }
+
+            @Override
+            public Long getPlantillaId() { return null; }
+
+            @Override
+            public String getPlantillaNombre() { return null; }
+
+            @Override
+            public LocalDateTime getFechaCreacion() { return null; }
+
+            @Override
+            public LocalDateTime getFechaModificacion() { return null; }
+        };
+    }
+
+    private Proyecto proyecto(long version) {
+        Proyecto proyecto = new Proyecto(usuario, "Título", DATA);
+        proyecto.setId(7L);
+        proyecto.setVersion(version);
+        return proyecto;
+    }
+
+    private byte[] comprimido(String data) {
+        return argThat(bytes -> data.equals(compresor.descomprimir(bytes)));
+    }
+
+    private static ProyectoRepository.HuellaDatos huella(Long version, String dataHash) {
+        return new ProyectoRepository.HuellaDatos() {
+            @Override
+            public Long getVersion() { return version; }
+
+            @Override
+            public String getDataHash() { return dataHash; }
+        };
+    }
+}